@@ -0,0 +1,81 @@
+package com.utochkin.getawayserver.config;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/**
+ * Кэш проверенных токенов перед настоящим декодером: подпись RSA проверяется один раз на токен,
+ * а не на каждый запрос. Ключ — SHA-256 токена, запись живёт до exp токена, но не дольше maxTtl.
+ * Одновременные запросы с одним и тем же новым токеном ждут одну проверку; ошибка проверки не кэшируется.
+ */
+public class CachingJwtDecoder implements ReactiveJwtDecoder {
+
+    private final ReactiveJwtDecoder delegate;
+    private final AsyncCache<String, Jwt> cache;
+
+    public CachingJwtDecoder(ReactiveJwtDecoder delegate, long maxSize, Duration maxTtl) {
+        this(delegate, maxSize, maxTtl, Ticker.systemTicker());
+    }
+
+    CachingJwtDecoder(ReactiveJwtDecoder delegate, long maxSize, Duration maxTtl, Ticker ticker) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new UntilTokenExpires(maxTtl))
+                .ticker(ticker)
+                .buildAsync();
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) {
+        // подписчик, отменивший запрос, не должен отменять проверку, которую ждут другие запросы
+        return Mono.fromFuture(cache.get(hash(token), (key, executor) -> delegate.decode(token).toFuture()), true);
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record UntilTokenExpires(Duration maxTtl) implements Expiry<String, Jwt> {
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            Instant expiresAt = jwt.getExpiresAt();
+            if (expiresAt == null) {
+                return maxTtl.toNanos();
+            }
+            Duration untilExpiry = Duration.between(Instant.now(), expiresAt);
+            if (untilExpiry.isNegative()) {
+                return 0;
+            }
+            return Math.min(untilExpiry.toNanos(), maxTtl.toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
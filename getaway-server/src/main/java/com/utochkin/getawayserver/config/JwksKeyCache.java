@@ -0,0 +1,178 @@
+package com.utochkin.getawayserver.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ключи подписи Keycloak из JWKS, проиндексированные по kid. На горячем пути — только поиск в Map:
+ * набор ключей обновляется в фоне раз в refreshInterval. Токен с незнакомым kid (ротация ключа)
+ * запускает внеочередное обновление, одно на все одновременные запросы и не чаще minRefreshInterval.
+ * kid, которого нет в JWKS, успешно загруженном уже после промаха, запоминается на negativeTtl, чтобы токены
+ * с поддельным kid не заставляли gateway ходить в Keycloak. Если JWKS недоступен, продолжают работать прежние ключи.
+ */
+@Log4j2
+public class JwksKeyCache {
+
+    private static final Duration INITIAL_LOAD_TIMEOUT = Duration.ofSeconds(10);
+
+    private final WebClient webClient;
+    private final String jwkSetUri;
+    private final Duration refreshInterval;
+    private final long minRefreshIntervalNanos;
+    private final Cache<String, Boolean> unknownKids;
+
+    private final AtomicReference<Mono<Map<String, JWK>>> inFlight = new AtomicReference<>();
+    private final AtomicLong fetchesStarted = new AtomicLong();
+    private volatile long lastLoadedFetch;
+    private volatile Map<String, JWK> keys = Map.of();
+    private volatile long lastRefreshNanos;
+    private volatile boolean refreshedOnce;
+    private Disposable scheduledRefresh;
+
+    public JwksKeyCache(WebClient webClient,
+                        String jwkSetUri,
+                        Duration refreshInterval,
+                        Duration minRefreshInterval,
+                        Duration negativeTtl) {
+        this.webClient = webClient;
+        this.jwkSetUri = jwkSetUri;
+        this.refreshInterval = refreshInterval;
+        this.minRefreshIntervalNanos = minRefreshInterval.toNanos();
+        this.unknownKids = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(negativeTtl)
+                .build();
+    }
+
+    // первая загрузка ждёт JWKS, чтобы первые запросы после старта не шли в Keycloak;
+    // если он недоступен, ключи загрузятся при первом токене или плановом обновлении
+    @PostConstruct
+    public void start() {
+        try {
+            refresh().block(INITIAL_LOAD_TIMEOUT);
+        } catch (RuntimeException e) {
+            log.warn("JwksKeyCache: initial JWKS load from {} failed: {}", jwkSetUri, e.getMessage());
+        }
+        scheduledRefresh = Flux.interval(refreshInterval, refreshInterval)
+                .concatMap(tick -> forceRefresh())
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.dispose();
+        }
+    }
+
+    /**
+     * Ключи для проверки подписи токена. Без kid — все текущие ключи, пусть Nimbus выберет подходящий.
+     */
+    public Flux<JWK> keys(String kid) {
+        Map<String, JWK> current = keys;
+        if (kid == null) {
+            return Flux.fromIterable(current.values());
+        }
+        JWK key = current.get(kid);
+        if (key != null) {
+            return Flux.just(key);
+        }
+        if (unknownKids.getIfPresent(kid) != null) {
+            return Flux.empty();
+        }
+
+        long fetchesBeforeMiss = fetchesStarted.get();
+        return refresh().flatMapMany(refreshed -> {
+            JWK rotated = refreshed.get(kid);
+            if (rotated != null) {
+                return Flux.just(rotated);
+            }
+            // запоминается, только если kid нет в JWKS, загруженном после промаха: пропущенное из-за
+            // minRefreshInterval или неудачное обновление вернуло прежние ключи и об этом kid ничего не знает
+            if (lastLoadedFetch > fetchesBeforeMiss) {
+                log.warn("JwksKeyCache: key kid={} not found in JWKS, rejecting tokens with it for a while", kid);
+                unknownKids.put(kid, Boolean.TRUE);
+            }
+            return Flux.empty();
+        });
+    }
+
+    Mono<Map<String, JWK>> refresh() {
+        if (refreshedOnce && System.nanoTime() - lastRefreshNanos < minRefreshIntervalNanos) {
+            return Mono.just(keys);
+        }
+        return forceRefresh();
+    }
+
+    private Mono<Map<String, JWK>> forceRefresh() {
+        Mono<Map<String, JWK>> running = inFlight.get();
+        if (running != null) {
+            return running;
+        }
+
+        Mono<Map<String, JWK>> fetch = Mono.defer(this::fetch)
+                // до выдачи результата: следующий промах начинает новое обновление, а не получает это
+                .doOnTerminate(() -> inFlight.set(null))
+                .cache();
+        if (inFlight.compareAndSet(null, fetch)) {
+            return fetch;
+        }
+        running = inFlight.get();
+        return running != null ? running : Mono.just(keys);
+    }
+
+    private Mono<Map<String, JWK>> fetch() {
+        long fetch = fetchesStarted.incrementAndGet();
+        lastRefreshNanos = System.nanoTime();
+        refreshedOnce = true;
+        return webClient.get()
+                .uri(jwkSetUri)
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(JwksKeyCache::parse)
+                .map(loaded -> {
+                    if (!loaded.keySet().equals(keys.keySet())) {
+                        log.info("JwksKeyCache: signing keys updated from {}: {}", jwkSetUri, loaded.keySet());
+                    }
+                    keys = loaded;
+                    lastLoadedFetch = fetch;
+                    unknownKids.invalidateAll();
+                    return loaded;
+                })
+                .onErrorResume(e -> {
+                    log.warn("JwksKeyCache: JWKS refresh from {} failed, keeping {} known keys: {}",
+                            jwkSetUri, keys.size(), e.getMessage());
+                    return Mono.just(keys);
+                });
+    }
+
+    private static Map<String, JWK> parse(String body) {
+        try {
+            Map<String, JWK> loaded = new HashMap<>();
+            for (JWK jwk : JWKSet.parse(body).getKeys()) {
+                if (jwk.getKeyID() != null) {
+                    loaded.put(jwk.getKeyID(), jwk);
+                }
+            }
+            return Map.copyOf(loaded);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Malformed JWKS: " + e.getMessage(), e);
+        }
+    }
+}
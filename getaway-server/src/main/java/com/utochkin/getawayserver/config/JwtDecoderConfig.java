@@ -0,0 +1,76 @@
+package com.utochkin.getawayserver.config;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.security.KeyFactory;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Единственный декодер JWT в gateway: его использует resource server в ReactiveConfig,
+ * а JwtTokenFilter берёт уже проверенный токен из security context.
+ * Ключи подписи берутся из JWKS Keycloak по kid (spring.security.oauth2.resourceserver.jwt.jwk-set-uri),
+ * так что ротация ключей не требует перезапуска; без JWKS — статический ключ из jwt.public-key.
+ * Парсер Nimbus строится один раз при старте.
+ */
+@Configuration
+@Log4j2
+public class JwtDecoderConfig {
+
+    @Bean
+    @ConditionalOnProperty("spring.security.oauth2.resourceserver.jwt.jwk-set-uri")
+    public JwksKeyCache jwksKeyCache(WebClient.Builder webClientBuilder,
+                                     @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}") String jwkSetUri,
+                                     @Value("${gateway.jwt.jwks.refresh-interval:PT5M}") Duration refreshInterval,
+                                     @Value("${gateway.jwt.jwks.min-refresh-interval:PT10S}") Duration minRefreshInterval,
+                                     @Value("${gateway.jwt.jwks.negative-ttl:PT1M}") Duration negativeTtl) {
+        return new JwksKeyCache(webClientBuilder.build(), jwkSetUri, refreshInterval, minRefreshInterval, negativeTtl);
+    }
+
+    @Bean
+    public ReactiveJwtDecoder jwtDecoder(Optional<JwksKeyCache> jwksKeyCache,
+                                         @Value("${jwt.public-key:}") String publicKey,
+                                         @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:}") String issuer,
+                                         @Value("${gateway.jwt.cache.max-size:10000}") long cacheMaxSize,
+                                         @Value("${gateway.jwt.cache.max-ttl:PT5M}") Duration cacheMaxTtl) throws Exception {
+        NimbusReactiveJwtDecoder decoder;
+        if (jwksKeyCache.isPresent()) {
+            JwksKeyCache keys = jwksKeyCache.get();
+            decoder = NimbusReactiveJwtDecoder.withJwkSource(signedJwt -> keys.keys(signedJwt.getHeader().getKeyID())).build();
+            log.info("JwtDecoderConfig: JWT signing keys resolved by kid from JWKS");
+        } else if (!publicKey.isBlank()) {
+            decoder = NimbusReactiveJwtDecoder.withPublicKey(readRsaPublicKey(publicKey)).build();
+            log.info("JwtDecoderConfig: JWT signing key taken from jwt.public-key");
+        } else {
+            throw new IllegalStateException(
+                    "Neither spring.security.oauth2.resourceserver.jwt.jwk-set-uri nor jwt.public-key is configured");
+        }
+        decoder.setJwtValidator(issuer.isEmpty() ? JwtValidators.createDefault() : JwtValidators.createDefaultWithIssuer(issuer));
+
+        log.info("JwtDecoderConfig: JWT decoder ready, verified tokens cached (max {} entries, max ttl {})", cacheMaxSize, cacheMaxTtl);
+        return new CachingJwtDecoder(decoder, cacheMaxSize, cacheMaxTtl);
+    }
+
+    static RSAPublicKey readRsaPublicKey(String pemEncodedKey) throws Exception {
+        String publicKeyPEM = pemEncodedKey
+                .replace("-----BEGIN PUBLIC KEY-----", "")
+                .replace("-----END PUBLIC KEY-----", "")
+                .replaceAll("\\s+", "");
+
+        byte[] decodedKey = Base64.getDecoder().decode(publicKeyPEM);
+        X509EncodedKeySpec keySpec = new X509EncodedKeySpec(decodedKey);
+
+        return (RSAPublicKey) KeyFactory.getInstance("RSA").generatePublic(keySpec);
+    }
+}
@@ -1,25 +1,21 @@
 package com.utochkin.getawayserver.config;
 
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import lombok.SneakyThrows;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.security.KeyFactory;
-import java.security.PublicKey;
-import java.security.spec.X509EncodedKeySpec;
-import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 
@@ -83,11 +79,11 @@ import java.util.Map;
 
 
 @Component
+@RequiredArgsConstructor
 @Log4j2
 public class JwtTokenFilter implements GlobalFilter, Ordered {
 
-    @Value("${jwt.public-key}")
-    public String publicKey;
+    private final ReactiveJwtDecoder jwtDecoder;
 
     @Override
     public int getOrder() {
@@ -95,7 +91,6 @@ public class JwtTokenFilter implements GlobalFilter, Ordered {
         return Ordered.LOWEST_PRECEDENCE - 10;
     }
 
-    @SneakyThrows
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
         String authHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
@@ -105,65 +100,49 @@ public class JwtTokenFilter implements GlobalFilter, Ordered {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
 
-            log.debug("JwtTokenFilter: found Bearer token, parsing…");
-
-            Claims claims = parseJwtToken(token);
-
-            log.info("JwtTokenFilter: authenticated user sub={} username={}", claims.get("sub"), claims.get("preferred_username"));
-
-            // Собираем мутированный запрос
-            ServerHttpRequest mutatedReq = exchange.getRequest()
-                    .mutate()
-                    .header("X-User-SubId", claims.get("sub").toString())
-                    .header("X-User-UserName", claims.get("preferred_username").toString())
-                    .header("X-User-FirstName", URLEncoder.encode(claims.get("given_name").toString(), StandardCharsets.UTF_8))
-                    .header("X-User-LastName", URLEncoder.encode(claims.get("family_name").toString(), StandardCharsets.UTF_8))
-                    .header("X-User-Email", claims.get("email").toString())
-                    .header("X-User-Role", extractRole(claims))
-                    .build();
-
-            log.info("JwtTokenFilter: headers injected, forwarding mutated request");
-
-            ServerWebExchange mutatedExchange = exchange.mutate().request(mutatedReq).build();
-
-            return chain.filter(mutatedExchange);
+            // resource server уже проверил токен этого запроса — берём его из security context;
+            // на маршрутах вне resource server токен проверяется тем же декодером с кэшем
+            return authenticatedJwt(exchange, token)
+                    .switchIfEmpty(Mono.defer(() -> {
+                        log.debug("JwtTokenFilter: token not verified by security chain, decoding…");
+                        return jwtDecoder.decode(token);
+                    }))
+                    .flatMap(jwt -> {
+                        log.info("JwtTokenFilter: authenticated user sub={} username={}", jwt.getSubject(), jwt.getClaimAsString("preferred_username"));
+
+                        // Собираем мутированный запрос
+                        ServerHttpRequest mutatedReq = exchange.getRequest()
+                                .mutate()
+                                .header("X-User-SubId", jwt.getSubject())
+                                .header("X-User-UserName", jwt.getClaimAsString("preferred_username"))
+                                .header("X-User-FirstName", URLEncoder.encode(jwt.getClaimAsString("given_name"), StandardCharsets.UTF_8))
+                                .header("X-User-LastName", URLEncoder.encode(jwt.getClaimAsString("family_name"), StandardCharsets.UTF_8))
+                                .header("X-User-Email", jwt.getClaimAsString("email"))
+                                .header("X-User-Role", extractRole(jwt))
+                                .build();
+
+                        log.info("JwtTokenFilter: headers injected, forwarding mutated request");
+
+                        return chain.filter(exchange.mutate().request(mutatedReq).build());
+                    });
         }
         log.info("JwtTokenFilter: no Authorization header, forwarding original request");
 
         return chain.filter(exchange);
     }
 
-    private String extractRole(Claims claims) {
-        Map<String, Object> resourceAccess = claims.get("resource_access", Map.class);
+    private static Mono<Jwt> authenticatedJwt(ServerWebExchange exchange, String token) {
+        return exchange.getPrincipal()
+                .filter(JwtAuthenticationToken.class::isInstance)
+                .map(principal -> ((JwtAuthenticationToken) principal).getToken())
+                .filter(jwt -> jwt.getTokenValue().equals(token));
+    }
+
+    private String extractRole(Jwt jwt) {
+        Map<String, Object> resourceAccess = jwt.getClaimAsMap("resource_access");
         Map<String, Object> clientAccess = (Map<String, Object>) resourceAccess.get("spring-microservices");
         List<String> roles = (List<String>) clientAccess.get("roles");
 
         return (roles != null && !roles.isEmpty()) ? roles.get(0) : "UNKNOWN";
     }
-
-
-        private Claims parseJwtToken(String token) throws Exception {
-        PublicKey key = readRsaPublicKey(publicKey);
-
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private static PublicKey readRsaPublicKey(String pemEncodedKey) throws Exception {
-
-        String publicKeyPEM = pemEncodedKey
-                .replace("-----BEGIN PUBLIC KEY-----", "")
-                .replace("-----END PUBLIC KEY-----", "")
-                .replaceAll("\\s+", "");
-
-        byte[] decodedKey = Base64.getDecoder().decode(publicKeyPEM);
-        X509EncodedKeySpec keySpec = new X509EncodedKeySpec(decodedKey);
-
-        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-        return keyFactory.generatePublic(keySpec);
-    }
-
-}
\ No newline at end of file
+}
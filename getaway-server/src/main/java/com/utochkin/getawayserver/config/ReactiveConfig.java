@@ -9,6 +9,7 @@ import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtAuthenticationConverterAdapter;
 import org.springframework.security.web.server.SecurityWebFilterChain;
@@ -114,11 +115,13 @@ public class ReactiveConfig {
 
     @Bean
     @Order(2)
-    public SecurityWebFilterChain resourceServerChain(ServerHttpSecurity http) {
+    public SecurityWebFilterChain resourceServerChain(ServerHttpSecurity http, ReactiveJwtDecoder jwtDecoder) {
         http
                 .securityMatcher(pathMatchers(
                         "/order/api/v1/**",
-                        "/shop/api/v1/**"
+                        "/shop/api/v1/**",
+                        "/history/api/v1/**",
+                        "/notification/api/v1/**"
                 ))
                 .csrf(ServerHttpSecurity.CsrfSpec::disable)
                 .authorizeExchange(ex -> ex
@@ -126,6 +129,7 @@ public class ReactiveConfig {
                 )
                 .oauth2ResourceServer(oauth2 ->
                         oauth2.jwt(jwt -> jwt
+                                .jwtDecoder(jwtDecoder)
                                 .jwtAuthenticationConverter(grantedAuthoritiesExtractor())
                         )
                 );
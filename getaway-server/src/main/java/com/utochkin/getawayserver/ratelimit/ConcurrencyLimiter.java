@@ -0,0 +1,34 @@
+package com.utochkin.getawayserver.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Число одновременно выполняющихся запросов одного ключа на этом экземпляре gateway.
+ * Счётчик удаляется, когда последний запрос ключа завершился, так что память занимают только активные ключи.
+ */
+public class ConcurrencyLimiter {
+
+    private final ConcurrentMap<String, Integer> inFlight = new ConcurrentHashMap<>();
+
+    public boolean tryAcquire(String key, int maxConcurrent) {
+        boolean[] acquired = new boolean[1];
+        inFlight.compute(key, (k, current) -> {
+            int count = current == null ? 0 : current;
+            if (count >= maxConcurrent) {
+                return current;
+            }
+            acquired[0] = true;
+            return count + 1;
+        });
+        return acquired[0];
+    }
+
+    public void release(String key) {
+        inFlight.computeIfPresent(key, (k, current) -> current <= 1 ? null : current - 1);
+    }
+
+    int inFlight(String key) {
+        return inFlight.getOrDefault(key, 0);
+    }
+}
@@ -0,0 +1,72 @@
+package com.utochkin.getawayserver.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket в памяти экземпляра gateway. Состояние bucket меняется под одним из stripes замков,
+ * выбранным по хэшу ключа: разные пользователи почти никогда не ждут друг друга,
+ * и не нужен отдельный замок на каждого. Неактивные bucket удаляются через idleBucketTtl.
+ */
+public class InMemoryTokenBucketStore implements TokenBucketStore {
+
+    private static final long MAX_BUCKETS = 100_000;
+
+    private static final class Bucket {
+        private double tokens;
+        private long refilledAtNanos;
+
+        private Bucket(double tokens, long refilledAtNanos) {
+            this.tokens = tokens;
+            this.refilledAtNanos = refilledAtNanos;
+        }
+    }
+
+    private final Cache<String, Bucket> buckets;
+    private final Object[] stripes;
+    private final LongSupplier nanoTime;
+
+    public InMemoryTokenBucketStore(int stripes, Duration idleBucketTtl) {
+        this(stripes, idleBucketTtl, System::nanoTime);
+    }
+
+    InMemoryTokenBucketStore(int stripes, Duration idleBucketTtl, LongSupplier nanoTime) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(MAX_BUCKETS)
+                .expireAfterAccess(idleBucketTtl)
+                .build();
+        this.stripes = new Object[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Object();
+        }
+        this.nanoTime = nanoTime;
+    }
+
+    @Override
+    public Mono<RateLimitDecision> tryConsume(String key, RateLimitProperties.RouteLimit limit) {
+        return Mono.just(consume(key, limit));
+    }
+
+    RateLimitDecision consume(String key, RateLimitProperties.RouteLimit limit) {
+        long now = nanoTime.getAsLong();
+        Bucket bucket = buckets.get(key, k -> new Bucket(limit.getCapacity(), now));
+
+        synchronized (stripes[Math.floorMod(key.hashCode(), stripes.length)]) {
+            double elapsedSeconds = (now - bucket.refilledAtNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+            bucket.tokens = Math.min(limit.getCapacity(), bucket.tokens + Math.max(0, elapsedSeconds) * limit.getRefillPerSecond());
+            bucket.refilledAtNanos = now;
+
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return RateLimitDecision.ALLOWED;
+            }
+            double waitSeconds = (1 - bucket.tokens) / limit.getRefillPerSecond();
+            return RateLimitDecision.rejected(Duration.ofNanos((long) Math.ceil(waitSeconds * TimeUnit.SECONDS.toNanos(1))));
+        }
+    }
+}
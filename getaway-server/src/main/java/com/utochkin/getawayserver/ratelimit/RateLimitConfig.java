@@ -0,0 +1,33 @@
+package com.utochkin.getawayserver.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+
+@Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
+@ConditionalOnProperty(name = "gateway.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "gateway.rate-limit.backend", havingValue = "memory", matchIfMissing = true)
+    public TokenBucketStore inMemoryTokenBucketStore(RateLimitProperties properties) {
+        return new InMemoryTokenBucketStore(properties.getStripes(), properties.getIdleBucketTtl());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "gateway.rate-limit.backend", havingValue = "redis")
+    public TokenBucketStore redisTokenBucketStore(ReactiveStringRedisTemplate redisTemplate) {
+        return new RedisTokenBucketStore(redisTemplate);
+    }
+
+    @Bean
+    public RateLimitFilter rateLimitFilter(RateLimitProperties properties,
+                                           TokenBucketStore tokenBucketStore,
+                                           MeterRegistry meterRegistry) {
+        return new RateLimitFilter(properties, tokenBucketStore, new ConcurrencyLimiter(), meterRegistry);
+    }
+}
@@ -0,0 +1,147 @@
+package com.utochkin.getawayserver.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Ограничивает запросы по пользователю: ключ — X-User-SubId, который JwtTokenFilter выставил
+ * из проверенного токена, для запросов без токена — адрес клиента. Лимиты задаются по путям
+ * в gateway.rate-limit.routes: token bucket на частоту запросов и потолок одновременных запросов.
+ * Превышение — 429 с Retry-After. Если хранилище лимитов недоступно, запрос пропускается.
+ */
+@Log4j2
+public class RateLimitFilter implements GlobalFilter, Ordered {
+
+    private static final String USER_HEADER = "X-User-SubId";
+    private static final byte[] REJECTED_BODY =
+            "{\"messageError\":\"Слишком много запросов, повторите позже\"}".getBytes(StandardCharsets.UTF_8);
+
+    private record Route(PathPattern pattern, RateLimitProperties.RouteLimit limit) {
+    }
+
+    private record Key(String keyClass, String id) {
+    }
+
+    private final TokenBucketStore tokenBucketStore;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final MeterRegistry meterRegistry;
+    private final List<Route> routes;
+
+    public RateLimitFilter(RateLimitProperties properties,
+                           TokenBucketStore tokenBucketStore,
+                           ConcurrencyLimiter concurrencyLimiter,
+                           MeterRegistry meterRegistry) {
+        this.tokenBucketStore = tokenBucketStore;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.meterRegistry = meterRegistry;
+        this.routes = properties.getRoutes().stream()
+                .map(limit -> new Route(PathPatternParser.defaultInstance.parse(limit.getPath()), limit))
+                .toList();
+    }
+
+    @Override
+    public int getOrder() {
+        // сразу после JwtTokenFilter, который выставляет X-User-SubId
+        return Ordered.LOWEST_PRECEDENCE - 9;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = match(exchange.getRequest());
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+
+        Key key = key(exchange.getRequest());
+        String bucketKey = route.limit().getPath() + ":" + key.keyClass() + ":" + key.id();
+
+        return tokenBucketStore.tryConsume(bucketKey, route.limit())
+                .onErrorResume(e -> {
+                    log.warn("RateLimitFilter: rate limit store unavailable, letting request through: {}", e.getMessage());
+                    count(route, key, "store-error");
+                    return Mono.just(RateLimitDecision.ALLOWED);
+                })
+                .flatMap(decision -> {
+                    if (!decision.allowed()) {
+                        count(route, key, "rejected");
+                        log.info("RateLimitFilter: rate limit exceeded for {} {} on {}", key.keyClass(), key.id(), route.limit().getPath());
+                        return reject(exchange, decision.retryAfter());
+                    }
+                    return withConcurrencyCap(exchange, chain, route, key, bucketKey);
+                });
+    }
+
+    private Mono<Void> withConcurrencyCap(ServerWebExchange exchange, GatewayFilterChain chain,
+                                          Route route, Key key, String bucketKey) {
+        int maxConcurrent = route.limit().getMaxConcurrent();
+        if (maxConcurrent <= 0) {
+            count(route, key, "allowed");
+            return chain.filter(exchange);
+        }
+        if (!concurrencyLimiter.tryAcquire(bucketKey, maxConcurrent)) {
+            count(route, key, "concurrency-rejected");
+            log.info("RateLimitFilter: too many concurrent requests for {} {} on {}", key.keyClass(), key.id(), route.limit().getPath());
+            return reject(exchange, Duration.ofSeconds(1));
+        }
+        count(route, key, "allowed");
+        return chain.filter(exchange)
+                .doFinally(signal -> concurrencyLimiter.release(bucketKey));
+    }
+
+    private Route match(ServerHttpRequest request) {
+        for (Route route : routes) {
+            if (route.pattern().matches(request.getPath().pathWithinApplication())) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    // X-User-SubId доверяем только вместе с токеном: без него заголовок мог прислать сам клиент
+    private static Key key(ServerHttpRequest request) {
+        String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        String subId = request.getHeaders().getFirst(USER_HEADER);
+        if (authorization != null && authorization.startsWith("Bearer ") && subId != null) {
+            return new Key("user", subId);
+        }
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        String ip = remoteAddress == null || remoteAddress.getAddress() == null
+                ? "unknown"
+                : remoteAddress.getAddress().getHostAddress();
+        return new Key("ip", ip);
+    }
+
+    private static Mono<Void> reject(ServerWebExchange exchange, Duration retryAfter) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (retryAfter.toMillis() + 999) / 1000)));
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        DataBuffer body = response.bufferFactory().wrap(REJECTED_BODY);
+        return response.writeWith(Mono.just(body));
+    }
+
+    private void count(Route route, Key key, String outcome) {
+        meterRegistry.counter("gateway.rate.limit.requests",
+                "route", route.limit().getPath(),
+                "key_class", key.keyClass(),
+                "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,46 @@
+package com.utochkin.getawayserver.ratelimit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Лимиты запросов gateway: gateway.rate-limit.routes — список путей (PathPattern) с параметрами
+ * token bucket и потолком одновременных запросов одного пользователя. Для запроса берётся
+ * первый подходящий путь, запросы на пути вне списка не ограничиваются.
+ */
+@Data
+@ConfigurationProperties(prefix = "gateway.rate-limit")
+public class RateLimitProperties {
+
+    public enum Backend {
+        MEMORY,
+        REDIS
+    }
+
+    private boolean enabled = true;
+
+    // MEMORY — лимиты на каждом экземпляре gateway свои, REDIS — общие для всех экземпляров
+    private Backend backend = Backend.MEMORY;
+
+    private int stripes = 64;
+
+    // bucket, к которому не обращались столько времени, удаляется из памяти
+    private Duration idleBucketTtl = Duration.ofMinutes(10);
+
+    private List<RouteLimit> routes = new ArrayList<>();
+
+    @Data
+    public static class RouteLimit {
+        private String path;
+        // сколько запросов можно сделать разом
+        private int capacity;
+        // с какой скоростью bucket пополняется
+        private double refillPerSecond;
+        // 0 — без ограничения одновременных запросов
+        private int maxConcurrent;
+    }
+}
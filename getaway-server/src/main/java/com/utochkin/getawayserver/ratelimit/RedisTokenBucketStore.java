@@ -0,0 +1,57 @@
+package com.utochkin.getawayserver.ratelimit;
+
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Token bucket в Redis, общий для всех экземпляров gateway. Пополнение и списание выполняются
+ * одним Lua-скриптом атомарно, время берётся с сервера Redis, чтобы расхождение часов
+ * экземпляров gateway не влияло на лимит. Скрипт возвращает 0, если токен списан,
+ * иначе — через сколько миллисекунд появится следующий.
+ */
+public class RedisTokenBucketStore implements TokenBucketStore {
+
+    private static final String KEY_PREFIX = "gateway:rate-limit:";
+
+    private static final RedisScript<Long> TOKEN_BUCKET = RedisScript.of("""
+            local rate = tonumber(ARGV[1])
+            local capacity = tonumber(ARGV[2])
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+            local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+            local tokens = tonumber(state[1]) or capacity
+            local ts = tonumber(state[2]) or now
+            tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate / 1000)
+
+            local wait = 0
+            if tokens >= 1 then
+                tokens = tokens - 1
+            else
+                wait = math.ceil((1 - tokens) * 1000 / rate)
+            end
+
+            redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now)
+            redis.call('PEXPIRE', KEYS[1], math.ceil(capacity * 1000 / rate) + 1000)
+            return wait
+            """, Long.class);
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+
+    public RedisTokenBucketStore(ReactiveStringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public Mono<RateLimitDecision> tryConsume(String key, RateLimitProperties.RouteLimit limit) {
+        return redisTemplate.execute(TOKEN_BUCKET,
+                        List.of(KEY_PREFIX + key),
+                        List.of(String.valueOf(limit.getRefillPerSecond()), String.valueOf(limit.getCapacity())))
+                .next()
+                .map(waitMs -> waitMs == 0 ? RateLimitDecision.ALLOWED : RateLimitDecision.rejected(Duration.ofMillis(waitMs)));
+    }
+}
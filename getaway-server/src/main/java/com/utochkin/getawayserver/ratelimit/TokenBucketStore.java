@@ -0,0 +1,11 @@
+package com.utochkin.getawayserver.ratelimit;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Хранилище token bucket: списывает один токен из bucket ключа или сообщает, через сколько он появится.
+ */
+public interface TokenBucketStore {
+
+    Mono<RateLimitDecision> tryConsume(String key, RateLimitProperties.RouteLimit limit);
+}
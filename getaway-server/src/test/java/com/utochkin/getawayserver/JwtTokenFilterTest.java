@@ -1,5 +1,6 @@
 package com.utochkin.getawayserver;
 
+import com.utochkin.getawayserver.config.JwtDecoderConfig;
 import com.utochkin.getawayserver.config.JwtTokenFilter;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
@@ -11,6 +12,9 @@ import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.http.HttpHeaders;
 import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
 import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
@@ -21,12 +25,19 @@ import java.nio.charset.StandardCharsets;
 import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Base64;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.ArgumentMatchers.anyString;
 
 class JwtTokenFilterTest {
 
@@ -48,8 +59,11 @@ class JwtTokenFilterTest {
         publicKeyPem = "-----BEGIN PUBLIC KEY-----\n"
                 + base64Pub + "\n-----END PUBLIC KEY-----";
 
-        filter = new JwtTokenFilter();
-        filter.publicKey = publicKeyPem;
+        try {
+            filter = new JwtTokenFilter(new JwtDecoderConfig().jwtDecoder(Optional.empty(), publicKeyPem, "", 100, Duration.ofMinutes(5)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
 
         // Сохраняем приватный ключ для подписи в тестовом поле
         testPrivateKey = privateKey;
@@ -97,6 +111,36 @@ class JwtTokenFilterTest {
         assertThat(mutated.getHeaders().getFirst("X-User-Role")).isEqualTo("user");
     }
 
+    @Test
+    @DisplayName("Токен, уже проверенный resource server, повторно не декодируется")
+    void filterReusesAuthenticatedJwt() {
+        Jwt jwt = Jwt.withTokenValue("verified-token")
+                .header("alg", "RS256")
+                .subject("123")
+                .claim("preferred_username", "ivan")
+                .claim("given_name", "Иван")
+                .claim("family_name", "Иванов")
+                .claim("email", "ivan@example.com")
+                .claim("resource_access", Map.of("spring-microservices", Map.of("roles", List.of("admin"))))
+                .issuedAt(Instant.now())
+                .build();
+        ReactiveJwtDecoder decoder = mock(ReactiveJwtDecoder.class);
+        JwtTokenFilter filterWithMockDecoder = new JwtTokenFilter(decoder);
+
+        ServerWebExchange exchange = MockServerWebExchange.from(
+                        MockServerHttpRequest.get("/order/api/v1/orders")
+                                .header(HttpHeaders.AUTHORIZATION, "Bearer verified-token"))
+                .mutate()
+                .principal(Mono.just(new JwtAuthenticationToken(jwt)))
+                .build();
+        GatewayFilterChainStub chain = new GatewayFilterChainStub();
+
+        StepVerifier.create(filterWithMockDecoder.filter(exchange, chain)).verifyComplete();
+
+        assertThat(chain.capturedExchange.getRequest().getHeaders().getFirst("X-User-Role")).isEqualTo("admin");
+        verify(decoder, never()).decode(anyString());
+    }
+
     // Простая «заглушка» для GatewayFilterChain
     static class GatewayFilterChainStub implements GatewayFilterChain {
         ServerWebExchange capturedExchange;
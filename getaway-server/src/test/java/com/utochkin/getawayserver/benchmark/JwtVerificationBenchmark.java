@@ -0,0 +1,135 @@
+package com.utochkin.getawayserver.benchmark;
+
+import com.utochkin.getawayserver.config.JwtDecoderConfig;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Стоимость проверки одного токена на запрос:
+ * прежний JwtTokenFilter (разбор PEM и новый парсер jjwt на каждый запрос, копия ниже),
+ * декодер из JwtDecoderConfig при первом запросе с токеном (проверка подписи) и при повторных (кэш).
+ * Прежняя схема к тому же проверяла токен дважды — ещё раз в resource server.
+ * Запуск: ./gradlew benchmark
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JwtVerificationBenchmark {
+
+    private String publicKeyPem;
+    private KeyPair keyPair;
+    private String token;
+    private ReactiveJwtDecoder cachingDecoder;
+    private ReactiveJwtDecoder uncachedDecoder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        keyPair = Keys.keyPairFor(SignatureAlgorithm.RS256);
+        publicKeyPem = "-----BEGIN PUBLIC KEY-----\n"
+                + Base64.getMimeEncoder().encodeToString(keyPair.getPublic().getEncoded())
+                + "\n-----END PUBLIC KEY-----";
+        token = token();
+
+        cachingDecoder = new JwtDecoderConfig().jwtDecoder(Optional.empty(), publicKeyPem, "", 10_000, Duration.ofMinutes(5));
+        // тот же декодер Nimbus без кэша: так проходит первый запрос с новым токеном
+        uncachedDecoder = NimbusReactiveJwtDecoder.withPublicKey((RSAPublicKey) keyPair.getPublic()).build();
+    }
+
+    private String token() {
+        return Jwts.builder()
+                .setSubject("123")
+                .claim("preferred_username", "ivan")
+                .claim("given_name", "Иван")
+                .claim("family_name", "Иванов")
+                .claim("email", "ivan@example.com")
+                .claim("resource_access", Map.of("spring-microservices", Map.of("roles", List.of("user"))))
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 3_600_000))
+                .signWith(keyPair.getPrivate(), SignatureAlgorithm.RS256)
+                .compact();
+    }
+
+    @Benchmark
+    public Claims legacyParsePerRequest() throws Exception {
+        return Jwts.parserBuilder()
+                .setSigningKey(readRsaPublicKey(publicKeyPem))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    @Benchmark
+    public Jwt prebuiltDecoderVerify() {
+        return uncachedDecoder.decode(token).block();
+    }
+
+    @Benchmark
+    public Jwt cachedDecoderHit() {
+        return cachingDecoder.decode(token).block();
+    }
+
+    @Test
+    @DisplayName("JMH: проверка JWT прежним фильтром, предсобранным декодером и через кэш")
+    void run() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getName() + "\\.")
+                // форк JVM не видит classpath тестового воркера Gradle, поэтому замеры идут в той же JVM
+                .forks(0)
+                .build();
+
+        assertThat(new Runner(options).run()).isNotEmpty();
+    }
+
+    // JwtTokenFilter.readRsaPublicKey до переноса разбора ключа в JwtDecoderConfig
+    private static PublicKey readRsaPublicKey(String pemEncodedKey) throws Exception {
+        String publicKeyPEM = pemEncodedKey
+                .replace("-----BEGIN PUBLIC KEY-----", "")
+                .replace("-----END PUBLIC KEY-----", "")
+                .replaceAll("\\s+", "");
+
+        byte[] decodedKey = Base64.getDecoder().decode(publicKeyPEM);
+        X509EncodedKeySpec keySpec = new X509EncodedKeySpec(decodedKey);
+
+        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+        return keyFactory.generatePublic(keySpec);
+    }
+}
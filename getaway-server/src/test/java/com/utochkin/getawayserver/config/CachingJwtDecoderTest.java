@@ -0,0 +1,93 @@
+package com.utochkin.getawayserver.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingJwtDecoderTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger decodes = new AtomicInteger();
+
+    private static Jwt jwt(String token, Instant expiresAt) {
+        Jwt.Builder builder = Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .subject("123")
+                .issuedAt(Instant.now().minusSeconds(1));
+        if (expiresAt != null) {
+            builder.expiresAt(expiresAt);
+        }
+        return builder.build();
+    }
+
+    private CachingJwtDecoder decoder(ReactiveJwtDecoder delegate, long maxSize, Duration maxTtl) {
+        ReactiveJwtDecoder counting = token -> {
+            decodes.incrementAndGet();
+            return delegate.decode(token);
+        };
+        return new CachingJwtDecoder(counting, maxSize, maxTtl, nanos::get);
+    }
+
+    @Test
+    @DisplayName("Повторный запрос с тем же токеном не проверяет подпись заново")
+    void decode_cachesVerifiedToken() {
+        Jwt jwt = jwt("token", Instant.now().plusSeconds(300));
+        CachingJwtDecoder decoder = decoder(token -> Mono.just(jwt), 100, Duration.ofMinutes(10));
+
+        StepVerifier.create(decoder.decode("token")).expectNext(jwt).verifyComplete();
+        StepVerifier.create(decoder.decode("token")).expectNext(jwt).verifyComplete();
+
+        assertThat(decodes).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Запись кэша истекает вместе с exp токена, даже если maxTtl больше")
+    void decode_expiresAtTokenExpiry() {
+        Jwt jwt = jwt("token", Instant.now().plusSeconds(30));
+        CachingJwtDecoder decoder = decoder(token -> Mono.just(jwt), 100, Duration.ofMinutes(10));
+
+        decoder.decode("token").block();
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        decoder.decode("token").block();
+
+        assertThat(decodes).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Токен без exp хранится не дольше maxTtl")
+    void decode_limitsTtlWithoutExpiry() {
+        Jwt jwt = jwt("token", null);
+        CachingJwtDecoder decoder = decoder(token -> Mono.just(jwt), 100, Duration.ofSeconds(60));
+
+        decoder.decode("token").block();
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        decoder.decode("token").block();
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        decoder.decode("token").block();
+
+        assertThat(decodes).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Ошибка проверки не кэшируется: следующий запрос проверяет токен снова")
+    void decode_doesNotCacheFailures() {
+        CachingJwtDecoder decoder = decoder(token -> Mono.error(new BadJwtException("bad signature")), 100, Duration.ofMinutes(10));
+
+        StepVerifier.create(decoder.decode("token")).expectError(BadJwtException.class).verify();
+        StepVerifier.create(decoder.decode("token")).expectError(BadJwtException.class).verify();
+
+        assertThat(decodes).hasValue(2);
+    }
+}
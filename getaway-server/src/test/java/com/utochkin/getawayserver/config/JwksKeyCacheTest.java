@@ -0,0 +1,190 @@
+package com.utochkin.getawayserver.config;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.serverError;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JWKS Keycloak подменён WireMock-заглушкой на локальном порту.
+ */
+class JwksKeyCacheTest {
+
+    private static RSAKey oldKey;
+    private static RSAKey newKey;
+
+    private WireMockServer jwks;
+    private JwksKeyCache keyCache;
+
+    @BeforeAll
+    static void generateKeys() throws Exception {
+        oldKey = new RSAKeyGenerator(2048).keyID("old").generate();
+        newKey = new RSAKeyGenerator(2048).keyID("new").generate();
+    }
+
+    @BeforeEach
+    void startJwks() {
+        jwks = new WireMockServer(options().dynamicPort());
+        jwks.start();
+        publish(oldKey);
+    }
+
+    @AfterEach
+    void stop() {
+        if (keyCache != null) {
+            keyCache.stop();
+        }
+        jwks.stop();
+    }
+
+    private void publish(RSAKey... keys) {
+        List<JWK> publicKeys = Arrays.stream(keys).map(key -> (JWK) key.toPublicJWK()).toList();
+        jwks.stubFor(get("/certs").willReturn(okJson(new JWKSet(publicKeys).toString())));
+    }
+
+    private JwksKeyCache keyCache(Duration minRefreshInterval) {
+        keyCache = new JwksKeyCache(WebClient.create(), jwks.baseUrl() + "/certs",
+                Duration.ofHours(1), minRefreshInterval, Duration.ofMinutes(1));
+        keyCache.start();
+        return keyCache;
+    }
+
+    private int jwksRequests() {
+        return jwks.countRequestsMatching(getRequestedFor(urlEqualTo("/certs")).build()).getCount();
+    }
+
+    private static String token(RSAKey key) throws Exception {
+        SignedJWT jwt = new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+                new JWTClaimsSet.Builder()
+                        .subject("123")
+                        .issueTime(new Date())
+                        .expirationTime(new Date(System.currentTimeMillis() + 600_000))
+                        .build());
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    @Test
+    @DisplayName("Известный kid берётся из памяти без запроса к JWKS")
+    void keys_knownKidServedFromMemory() {
+        JwksKeyCache cache = keyCache(Duration.ZERO);
+
+        StepVerifier.create(cache.keys("old")).expectNextMatches(jwk -> jwk.getKeyID().equals("old")).verifyComplete();
+        StepVerifier.create(cache.keys("old")).expectNextCount(1).verifyComplete();
+
+        assertThat(jwksRequests()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("После ротации токен с новым kid проверяется без перезапуска gateway")
+    void decoder_acceptsTokenSignedWithRotatedKey() throws Exception {
+        ReactiveJwtDecoder decoder = new JwtDecoderConfig()
+                .jwtDecoder(Optional.of(keyCache(Duration.ZERO)), "", "", 100, Duration.ofMinutes(5));
+        StepVerifier.create(decoder.decode(token(oldKey))).expectNextCount(1).verifyComplete();
+
+        publish(oldKey, newKey);
+
+        StepVerifier.create(decoder.decode(token(newKey)))
+                .expectNextMatches(jwt -> jwt.getSubject().equals("123"))
+                .verifyComplete();
+        assertThat(jwksRequests()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Неизвестный kid запоминается: повторные токены с ним не вызывают запросов к JWKS")
+    void keys_unknownKidIsNegativelyCached() throws Exception {
+        ReactiveJwtDecoder decoder = new JwtDecoderConfig()
+                .jwtDecoder(Optional.of(keyCache(Duration.ZERO)), "", "", 100, Duration.ofMinutes(5));
+
+        StepVerifier.create(decoder.decode(token(newKey))).expectError(JwtException.class).verify();
+        StepVerifier.create(decoder.decode(token(newKey))).expectError(JwtException.class).verify();
+
+        assertThat(jwksRequests()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Одновременные запросы с незнакомым kid ждут одно обновление JWKS")
+    void keys_unknownKidRefreshIsSingleFlight() {
+        JwksKeyCache cache = keyCache(Duration.ZERO);
+        jwks.stubFor(get("/certs").willReturn(okJson(new JWKSet(List.of(oldKey.toPublicJWK(), newKey.toPublicJWK())).toString())
+                .withFixedDelay(300)));
+
+        // все 20 запросов приходят, пока первое обновление ещё идёт
+
+        StepVerifier.create(Flux.range(0, 20)
+                        .flatMap(i -> cache.keys("new").subscribeOn(Schedulers.parallel())))
+                .expectNextCount(20)
+                .verifyComplete();
+
+        assertThat(jwksRequests()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Если JWKS недоступен, продолжают работать уже загруженные ключи")
+    void keys_keepsKnownKeysWhenJwksFails() {
+        JwksKeyCache cache = keyCache(Duration.ZERO);
+        jwks.stubFor(get("/certs").willReturn(serverError()));
+
+        StepVerifier.create(cache.keys("new")).verifyComplete();
+        StepVerifier.create(cache.keys("old")).expectNextCount(1).verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Неудачное обновление JWKS не запоминает kid: после восстановления ключ находится")
+    void keys_failedRefreshDoesNotCacheUnknownKid() {
+        JwksKeyCache cache = keyCache(Duration.ZERO);
+        jwks.stubFor(get("/certs").willReturn(serverError()));
+
+        StepVerifier.create(cache.keys("new")).verifyComplete();
+
+        publish(oldKey, newKey);
+        StepVerifier.create(cache.keys("new")).expectNextMatches(jwk -> jwk.getKeyID().equals("new")).verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Обновление, пропущенное из-за minRefreshInterval, не запоминает kid")
+    void keys_throttledRefreshDoesNotCacheUnknownKid() throws Exception {
+        JwksKeyCache cache = keyCache(Duration.ofMillis(300));
+        publish(oldKey, newKey);
+
+        // JWKS только что загружен при старте, внеочередное обновление пропускается
+        StepVerifier.create(cache.keys("new")).verifyComplete();
+        assertThat(jwksRequests()).isEqualTo(1);
+
+        Thread.sleep(400);
+        StepVerifier.create(cache.keys("new")).expectNextMatches(jwk -> jwk.getKeyID().equals("new")).verifyComplete();
+        assertThat(jwksRequests()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,62 @@
+package com.utochkin.getawayserver.ratelimit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryTokenBucketStoreTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final InMemoryTokenBucketStore store = new InMemoryTokenBucketStore(4, Duration.ofMinutes(10), nanos::get);
+
+    private static RateLimitProperties.RouteLimit limit(int capacity, double refillPerSecond) {
+        RateLimitProperties.RouteLimit limit = new RateLimitProperties.RouteLimit();
+        limit.setPath("/order/api/v1/create");
+        limit.setCapacity(capacity);
+        limit.setRefillPerSecond(refillPerSecond);
+        return limit;
+    }
+
+    @Test
+    @DisplayName("Bucket пропускает capacity запросов разом, следующий — с Retry-After до появления токена")
+    void consume_rejectsWhenBucketEmpty() {
+        RateLimitProperties.RouteLimit limit = limit(3, 0.5);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(store.consume("user-1", limit).allowed()).isTrue();
+        }
+        RateLimitDecision rejected = store.consume("user-1", limit);
+
+        assertThat(rejected.allowed()).isFalse();
+        assertThat(rejected.retryAfter()).isEqualTo(Duration.ofSeconds(2));
+    }
+
+    @Test
+    @DisplayName("Bucket пополняется со временем, но не больше capacity")
+    void consume_refillsUpToCapacity() {
+        RateLimitProperties.RouteLimit limit = limit(2, 1);
+        store.consume("user-1", limit);
+        store.consume("user-1", limit);
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(60));
+
+        assertThat(store.consume("user-1", limit).allowed()).isTrue();
+        assertThat(store.consume("user-1", limit).allowed()).isTrue();
+        assertThat(store.consume("user-1", limit).allowed()).isFalse();
+    }
+
+    @Test
+    @DisplayName("У каждого ключа свой bucket")
+    void consume_keysAreIndependent() {
+        RateLimitProperties.RouteLimit limit = limit(1, 0.1);
+
+        assertThat(store.consume("user-1", limit).allowed()).isTrue();
+        assertThat(store.consume("user-1", limit).allowed()).isFalse();
+        assertThat(store.consume("user-2", limit).allowed()).isTrue();
+    }
+}
@@ -0,0 +1,122 @@
+package com.utochkin.getawayserver.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter();
+    private final AtomicInteger forwarded = new AtomicInteger();
+    private final GatewayFilterChain chain = exchange -> {
+        forwarded.incrementAndGet();
+        return Mono.empty();
+    };
+
+    private RateLimitFilter filter(int capacity, int maxConcurrent) {
+        RateLimitProperties.RouteLimit create = new RateLimitProperties.RouteLimit();
+        create.setPath("/order/api/v1/create");
+        create.setCapacity(capacity);
+        create.setRefillPerSecond(0.001);
+        create.setMaxConcurrent(maxConcurrent);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRoutes(List.of(create));
+        return new RateLimitFilter(properties, new InMemoryTokenBucketStore(4, Duration.ofMinutes(10)), concurrencyLimiter, meterRegistry);
+    }
+
+    private static MockServerWebExchange exchange(String subId, String ip) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.post("/order/api/v1/create")
+                .remoteAddress(new InetSocketAddress(ip, 40000));
+        if (subId != null) {
+            request.header(HttpHeaders.AUTHORIZATION, "Bearer token").header("X-User-SubId", subId);
+        }
+        return MockServerWebExchange.from(request);
+    }
+
+    private double requests(String keyClass, String outcome) {
+        return meterRegistry.counter("gateway.rate.limit.requests",
+                "route", "/order/api/v1/create", "key_class", keyClass, "outcome", outcome).count();
+    }
+
+    @Test
+    @DisplayName("Сверх лимита пользователь получает 429 с Retry-After, другие пользователи не затронуты")
+    void filter_rejectsOverLimitWith429() {
+        RateLimitFilter filter = filter(2, 0);
+
+        StepVerifier.create(filter.filter(exchange("user-1", "10.0.0.1"), chain)).verifyComplete();
+        StepVerifier.create(filter.filter(exchange("user-1", "10.0.0.1"), chain)).verifyComplete();
+        MockServerWebExchange rejected = exchange("user-1", "10.0.0.1");
+        StepVerifier.create(filter.filter(rejected, chain)).verifyComplete();
+        StepVerifier.create(filter.filter(exchange("user-2", "10.0.0.1"), chain)).verifyComplete();
+
+        assertThat(forwarded).hasValue(3);
+        assertThat(rejected.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(Long.parseLong(rejected.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER))).isPositive();
+        assertThat(requests("user", "rejected")).isEqualTo(1);
+        assertThat(requests("user", "allowed")).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("X-User-SubId без токена не учитывается: лимит считается по адресу клиента")
+    void filter_ignoresSubIdWithoutToken() {
+        RateLimitFilter filter = filter(1, 0);
+        MockServerWebExchange spoofed = MockServerWebExchange.from(MockServerHttpRequest.post("/order/api/v1/create")
+                .remoteAddress(new InetSocketAddress("10.0.0.2", 40000))
+                .header("X-User-SubId", "other-user"));
+
+        StepVerifier.create(filter.filter(exchange(null, "10.0.0.2"), chain)).verifyComplete();
+        StepVerifier.create(filter.filter(spoofed, chain)).verifyComplete();
+
+        assertThat(spoofed.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(requests("ip", "rejected")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Запрос сверх потолка одновременных получает 429, место освобождается после завершения запроса")
+    void filter_capsConcurrentRequests() {
+        RateLimitFilter filter = filter(10, 1);
+        Sinks.Empty<Void> slowUpstream = Sinks.empty();
+        GatewayFilterChain slowChain = exchange -> slowUpstream.asMono();
+
+        var first = filter.filter(exchange("user-1", "10.0.0.1"), slowChain).subscribe();
+        MockServerWebExchange second = exchange("user-1", "10.0.0.1");
+        StepVerifier.create(filter.filter(second, chain)).verifyComplete();
+
+        assertThat(second.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(requests("user", "concurrency-rejected")).isEqualTo(1);
+
+        slowUpstream.tryEmitEmpty();
+        first.dispose();
+        StepVerifier.create(filter.filter(exchange("user-1", "10.0.0.1"), chain)).verifyComplete();
+        assertThat(forwarded).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Пути без лимита не ограничиваются")
+    void filter_skipsUnlimitedPaths() {
+        RateLimitFilter filter = filter(1, 0);
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/shop/api/v1/products")), chain))
+                    .verifyComplete();
+        }
+
+        assertThat(forwarded).hasValue(3);
+    }
+}
@@ -0,0 +1,31 @@
+package com.utochkin.historyservice.config;
+
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+
+@Configuration
+public class KafkaErrorHandlingConfig {
+
+    private static final int LOCAL_RETRIES = 2;
+    private static final long LOCAL_RETRY_INTERVAL_MS = 1000;
+
+    // обработчик ошибок основного (пачечного) слушателя: пара быстрых повторов на месте, затем запись
+    // уходит в topic-orders-history и дальше повторяется уже без блокировки партиции topic-orders.
+    // Контейнеры топиков повторов @RetryableTopic настраивают свой обработчик и этот не используют
+    @Bean
+    public DefaultErrorHandler kafkaErrorHandler(KafkaTemplate<Object, Object> kafkaTemplate) {
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate,
+                (record, exception) -> new TopicPartition(KafkaTopics.RETRY_ENTRY_TOPIC, -1));
+
+        ExponentialBackOffWithMaxRetries backOff = new ExponentialBackOffWithMaxRetries(LOCAL_RETRIES);
+        backOff.setInitialInterval(LOCAL_RETRY_INTERVAL_MS);
+        backOff.setMultiplier(2);
+
+        return new DefaultErrorHandler(recoverer, backOff);
+    }
+}
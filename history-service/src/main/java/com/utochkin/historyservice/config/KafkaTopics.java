@@ -0,0 +1,22 @@
+package com.utochkin.historyservice.config;
+
+/**
+ * Топики неблокирующих повторов history-service. Пачка из topic-orders, которую не удалось записать
+ * за несколько быстрых повторов, разбирается по одной записи через topic-orders-history, затем
+ * topic-orders-history-retry-60000 и -600000, и только потом попадает в topic-orders-history-dlt.
+ * Свои топики, а не общие с notification-service: иначе каждый сервис обрабатывал бы чужие ошибки.
+ */
+public final class KafkaTopics {
+
+    public static final String TOPIC_ORDERS = "topic-orders";
+
+    public static final String RETRY_ENTRY_TOPIC = "topic-orders-history";
+
+    public static final long FIRST_RETRY_DELAY_MS = 60_000;
+    public static final double RETRY_DELAY_MULTIPLIER = 10;
+
+    public static final String DLT_TOPIC = RETRY_ENTRY_TOPIC + "-dlt";
+
+    private KafkaTopics() {
+    }
+}
@@ -0,0 +1,43 @@
+package com.utochkin.historyservice.config;
+
+import com.utochkin.historyservice.models.OrderHistoryEntry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// автосоздание индексов в Spring Data MongoDB выключено по умолчанию, поэтому индексы из аннотаций создаются явно при старте
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class OrderHistoryIndexes {
+
+    // индексы прежних версий, которые покрываются текущими
+    private static final List<String> OBSOLETE_INDEXES = List.of("username_createdAt");
+
+    private final MongoTemplate mongoTemplate;
+    private final MongoMappingContext mappingContext;
+
+    @Order(0)
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        IndexOperations indexOps = mongoTemplate.indexOps(OrderHistoryEntry.class);
+        indexOps.getIndexInfo().stream()
+                .map(IndexInfo::getName)
+                .filter(OBSOLETE_INDEXES::contains)
+                .forEach(indexOps::dropIndex);
+        new MongoPersistentEntityIndexResolver(mappingContext)
+                .resolveIndexFor(OrderHistoryEntry.class)
+                .forEach(indexOps::ensureIndex);
+        log.info("OrderHistoryIndexes: индексы коллекции orderHistoryEntries созданы");
+    }
+}
@@ -0,0 +1,28 @@
+package com.utochkin.historyservice.controllers;
+
+import com.utochkin.historyservice.dto.DltReplayResponse;
+import com.utochkin.historyservice.services.DltReplayService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import static com.utochkin.historyservice.config.KafkaTopics.DLT_TOPIC;
+
+@RestController
+@RequestMapping("/history/api/v1/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private static final int MAX_REPLAY = 10_000;
+
+    private final DltReplayService dltReplayService;
+
+    @PostMapping("/dlt/replay")
+    public ResponseEntity<DltReplayResponse> replayDeadLetters(@RequestParam(defaultValue = "100") int max) {
+        int replayed = dltReplayService.replay(Math.clamp(max, 1, MAX_REPLAY));
+        return ResponseEntity.ok(new DltReplayResponse(DLT_TOPIC, replayed));
+    }
+}
@@ -0,0 +1,86 @@
+package com.utochkin.historyservice.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utochkin.historyservice.dto.OrderHistoryFilter;
+import com.utochkin.historyservice.dto.OrderHistoryPage;
+import com.utochkin.historyservice.models.Status;
+import com.utochkin.historyservice.services.OrderHistoryQueryService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/history/api/v1")
+@RequiredArgsConstructor
+public class OrderHistoryController {
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private final OrderHistoryQueryService orderHistoryQueryService;
+    private final ObjectMapper objectMapper;
+
+    // история текущего пользователя: username приходит из JwtTokenFilter шлюза
+    @GetMapping("/orders")
+    public ResponseEntity<OrderHistoryPage> getMyOrders(@RequestHeader("X-User-UserName") String username,
+                                                        @RequestParam(required = false) Status status,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                        @RequestParam(required = false) String cursor,
+                                                        @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(orderHistoryQueryService.findPage(username, new OrderHistoryFilter(status, from, to), cursor, size));
+    }
+
+    @GetMapping(value = "/orders/export", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportMyOrders(@RequestHeader("X-User-UserName") String username,
+                                                                @RequestParam(required = false) Status status,
+                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return ndjson(username, new OrderHistoryFilter(status, from, to));
+    }
+
+    // то же для поддержки: история любого пользователя, доступ только у ADMIN (см. Config)
+    @GetMapping("/users/{username}/orders")
+    public ResponseEntity<OrderHistoryPage> getUserOrders(@PathVariable String username,
+                                                          @RequestParam(required = false) Status status,
+                                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(orderHistoryQueryService.findPage(username, new OrderHistoryFilter(status, from, to), cursor, size));
+    }
+
+    @GetMapping(value = "/users/{username}/orders/export", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUserOrders(@PathVariable String username,
+                                                                  @RequestParam(required = false) Status status,
+                                                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return ndjson(username, new OrderHistoryFilter(status, from, to));
+    }
+
+    // по строке JSON на запись, записи пишутся в ответ по мере чтения из MongoDB
+    private ResponseEntity<StreamingResponseBody> ndjson(String username, OrderHistoryFilter filter) {
+        StreamingResponseBody body = outputStream -> orderHistoryQueryService.export(username, filter, entry -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(entry));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
+    }
+}
@@ -0,0 +1,11 @@
+package com.utochkin.historyservice.dto;
+
+import com.utochkin.historyservice.models.Status;
+
+import java.time.LocalDateTime;
+
+// все поля необязательны: from включительно, to — нет
+public record OrderHistoryFilter(Status status,
+                                 LocalDateTime from,
+                                 LocalDateTime to) {
+}
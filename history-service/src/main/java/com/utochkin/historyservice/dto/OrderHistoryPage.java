@@ -0,0 +1,10 @@
+package com.utochkin.historyservice.dto;
+
+import com.utochkin.historyservice.models.OrderHistoryEntry;
+
+import java.util.List;
+
+// nextCursor == null — это последняя страница
+public record OrderHistoryPage(List<OrderHistoryEntry> items,
+                               String nextCursor) {
+}
@@ -0,0 +1,16 @@
+package com.utochkin.historyservice.exceptions;
+
+import com.utochkin.historyservice.models.ErrorResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+@RestControllerAdvice
+public class ExceptionControllerAdvice {
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(InvalidCursorException.class)
+    public ErrorResponse handlerInvalidCursorException(InvalidCursorException invalidCursorException) {
+        return new ErrorResponse(invalidCursorException.getMessage());
+    }
+}
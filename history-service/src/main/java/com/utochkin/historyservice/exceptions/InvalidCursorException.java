@@ -0,0 +1,7 @@
+package com.utochkin.historyservice.exceptions;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException() {
+        super("Error: invalid pagination cursor!");
+    }
+}
@@ -0,0 +1,10 @@
+package com.utochkin.historyservice.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ErrorResponse {
+    private String messageError;
+}
@@ -11,6 +11,7 @@ import org.springframework.data.mongodb.core.mapping.Document;
 import java.io.Serializable;
 import java.util.List;
 
+// старая модель: история пользователя одним документом; читается только миграцией в OrderHistoryEntry
 @Document(collection = "orderHistory")
 @AllArgsConstructor
 @NoArgsConstructor
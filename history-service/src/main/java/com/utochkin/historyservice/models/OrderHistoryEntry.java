@@ -0,0 +1,76 @@
+package com.utochkin.historyservice.models;
+
+import com.utochkin.historyservice.dto.AddressDto;
+import com.utochkin.historyservice.dto.OrderDtoForKafka;
+import com.utochkin.historyservice.dto.UserDto;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Одно событие заказа из topic-orders — отдельный документ. Запись не зависит от размера истории
+ * пользователя, а _id вида "orderUuid:status" делает повторную доставку того же события безопасной.
+ */
+@Document(collection = "orderHistoryEntries")
+// _id в индексе — второй ключ курсора: в пределах одной минуты createdAt у событий совпадает
+@CompoundIndex(name = "username_createdAt_id", def = "{'username': 1, 'createdAt': -1, '_id': -1}")
+@CompoundIndex(name = "username_orderStatus_createdAt_id", def = "{'username': 1, 'orderStatus': 1, 'createdAt': -1, '_id': -1}")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class OrderHistoryEntry {
+    @Id
+    private String id;
+
+    private String username;
+
+    @Field(targetType = FieldType.STRING)
+    private UUID orderUuid;
+
+    private Double totalAmount;
+
+    private Status orderStatus;
+
+    // хранится строкой "yyyy-MM-dd HH:mm", такие строки сортируются так же, как даты
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    private AddressDto addressDto;
+
+    private UserDto userDto;
+
+    private List<OrderRequest> orderRequests;
+
+    @Field(targetType = FieldType.STRING)
+    private UUID paymentId;
+
+    public static String idOf(UUID orderUuid, Status orderStatus) {
+        return orderUuid + ":" + orderStatus;
+    }
+
+    public static OrderHistoryEntry from(OrderDtoForKafka orderDto) {
+        return new OrderHistoryEntry(
+                idOf(orderDto.getOrderUuid(), orderDto.getOrderStatus()),
+                orderDto.getUserDto() != null ? orderDto.getUserDto().username() : null,
+                orderDto.getOrderUuid(),
+                orderDto.getTotalAmount(),
+                orderDto.getOrderStatus(),
+                orderDto.getCreatedAt(),
+                orderDto.getUpdatedAt(),
+                orderDto.getAddressDto(),
+                orderDto.getUserDto(),
+                orderDto.getOrderRequests(),
+                orderDto.getPaymentId()
+        );
+    }
+}
@@ -0,0 +1,15 @@
+package com.utochkin.historyservice.repositories;
+
+import com.utochkin.historyservice.models.OrderHistoryEntry;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OrderHistoryEntryRepository extends MongoRepository<OrderHistoryEntry, String> {
+
+    List<OrderHistoryEntry> findAllByUsernameOrderByCreatedAtDesc(String username);
+
+    long countByUsername(String username);
+}
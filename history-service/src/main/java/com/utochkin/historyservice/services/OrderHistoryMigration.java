@@ -0,0 +1,69 @@
+package com.utochkin.historyservice.services;
+
+import com.utochkin.historyservice.models.OrderHistory;
+import com.utochkin.historyservice.models.OrderHistoryEntry;
+import com.utochkin.historyservice.repositories.OrderHistoryEntryRepository;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Переносит документы старой коллекции orderHistory (один документ с массивом заказов на пользователя)
+ * в orderHistoryEntries. Каждый пользователь переносится целиком и только потом удаляется из старой
+ * коллекции, а _id записей детерминированы — поэтому прерванную миграцию можно просто запустить снова.
+ */
+@Component
+@Log4j2
+public class OrderHistoryMigration {
+
+    private final MongoTemplate mongoTemplate;
+    private final OrderHistoryEntryRepository orderHistoryEntryRepository;
+    private final boolean enabled;
+
+    public OrderHistoryMigration(MongoTemplate mongoTemplate,
+                                 OrderHistoryEntryRepository orderHistoryEntryRepository,
+                                 @Value("${history.migration.enabled:true}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.orderHistoryEntryRepository = orderHistoryEntryRepository;
+        this.enabled = enabled;
+    }
+
+    @Order(1)
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (enabled) {
+            migrate();
+        }
+    }
+
+    public int migrate() {
+        int migrated = 0;
+        try (Stream<OrderHistory> histories = mongoTemplate.stream(new Query(), OrderHistory.class)) {
+            for (OrderHistory history : (Iterable<OrderHistory>) histories::iterator) {
+                List<OrderHistoryEntry> entries = history.getOrders() == null ? List.of() : history.getOrders().stream()
+                        .map(order -> {
+                            OrderHistoryEntry entry = OrderHistoryEntry.from(order);
+                            entry.setUsername(history.getUsername());
+                            return entry;
+                        })
+                        .toList();
+
+                orderHistoryEntryRepository.saveAll(entries);
+                mongoTemplate.remove(history);
+                migrated++;
+            }
+        }
+        if (migrated > 0) {
+            log.info("OrderHistoryMigration: перенесена история {} пользователей", migrated);
+        }
+        return migrated;
+    }
+}
@@ -0,0 +1,138 @@
+package com.utochkin.historyservice.services;
+
+import com.utochkin.historyservice.dto.OrderHistoryFilter;
+import com.utochkin.historyservice.dto.OrderHistoryPage;
+import com.utochkin.historyservice.exceptions.InvalidCursorException;
+import com.utochkin.historyservice.models.OrderHistoryEntry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Чтение истории заказов пользователя от новых к старым. Страницы отдаются по курсору (createdAt, _id):
+ * следующая страница начинается строго после последней записи предыдущей, поэтому стоимость запроса
+ * не зависит от глубины пролистывания, а запрос обслуживается индексом username[, orderStatus], createdAt, _id.
+ */
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class OrderHistoryQueryService {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final int EXPORT_BATCH_SIZE = 500;
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("_id"));
+
+    private final MongoTemplate mongoTemplate;
+
+    public OrderHistoryPage findPage(String username, OrderHistoryFilter filter, String cursor, Integer size) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.clamp(size, 1, MAX_PAGE_SIZE);
+
+        List<Criteria> criteria = filterCriteria(username, filter);
+        if (cursor != null && !cursor.isBlank()) {
+            criteria.add(after(Cursor.decode(cursor)));
+        }
+
+        // одна лишняя запись показывает, есть ли следующая страница
+        Query query = new Query(new Criteria().andOperator(criteria))
+                .with(NEWEST_FIRST)
+                .limit(pageSize + 1);
+        List<OrderHistoryEntry> entries = mongoTemplate.find(query, OrderHistoryEntry.class);
+
+        if (entries.size() <= pageSize) {
+            return new OrderHistoryPage(entries, null);
+        }
+        List<OrderHistoryEntry> page = entries.subList(0, pageSize);
+        return new OrderHistoryPage(page, Cursor.of(page.getLast()).encode());
+    }
+
+    /**
+     * Отдаёт всю историю пользователя в том же порядке, что и страницы, читая курсор MongoDB
+     * пачками — в памяти одновременно не больше одной пачки.
+     */
+    public long export(String username, OrderHistoryFilter filter, Consumer<OrderHistoryEntry> consumer) {
+        Query query = new Query(new Criteria().andOperator(filterCriteria(username, filter)))
+                .with(NEWEST_FIRST)
+                .cursorBatchSize(EXPORT_BATCH_SIZE);
+
+        long exported = 0;
+        try (Stream<OrderHistoryEntry> entries = mongoTemplate.stream(query, OrderHistoryEntry.class)) {
+            for (OrderHistoryEntry entry : (Iterable<OrderHistoryEntry>) entries::iterator) {
+                consumer.accept(entry);
+                exported++;
+            }
+        }
+        log.info("OrderHistoryQueryService: выгружено {} записей истории пользователя {}", exported, username);
+        return exported;
+    }
+
+    private static List<Criteria> filterCriteria(String username, OrderHistoryFilter filter) {
+        List<Criteria> criteria = new ArrayList<>();
+        criteria.add(Criteria.where("username").is(username));
+        if (filter.status() != null) {
+            criteria.add(Criteria.where("orderStatus").is(filter.status()));
+        }
+        if (filter.from() != null) {
+            criteria.add(Criteria.where("createdAt").gte(filter.from()));
+        }
+        if (filter.to() != null) {
+            criteria.add(Criteria.where("createdAt").lt(filter.to()));
+        }
+        return criteria;
+    }
+
+    // записи строго после курсора в порядке createdAt desc, _id desc; null в createdAt сортируется последним
+    private static Criteria after(Cursor cursor) {
+        if (cursor.createdAt() == null) {
+            return new Criteria().andOperator(
+                    Criteria.where("createdAt").is(null),
+                    Criteria.where("_id").lt(cursor.id()));
+        }
+        return new Criteria().orOperator(
+                Criteria.where("createdAt").lt(cursor.createdAt()),
+                Criteria.where("createdAt").is(null),
+                new Criteria().andOperator(
+                        Criteria.where("createdAt").is(cursor.createdAt()),
+                        Criteria.where("_id").lt(cursor.id())));
+    }
+
+    record Cursor(LocalDateTime createdAt, String id) {
+
+        static Cursor of(OrderHistoryEntry entry) {
+            return new Cursor(entry.getCreatedAt(), entry.getId());
+        }
+
+        String encode() {
+            String raw = (createdAt == null ? "" : createdAt.toString()) + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                if (separator < 0 || separator == raw.length() - 1) {
+                    throw new InvalidCursorException();
+                }
+                String createdAt = raw.substring(0, separator);
+                return new Cursor(createdAt.isEmpty() ? null : LocalDateTime.parse(createdAt), raw.substring(separator + 1));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new InvalidCursorException();
+            }
+        }
+    }
+}
@@ -1,35 +1,129 @@
 package com.utochkin.historyservice.services;
 
+import com.mongodb.bulk.BulkWriteError;
+import com.utochkin.historyservice.config.KafkaTopics;
 import com.utochkin.historyservice.dto.OrderDtoForKafka;
-import com.utochkin.historyservice.models.OrderHistory;
-import com.utochkin.historyservice.repositories.OrderHistoryRepository;
+import com.utochkin.historyservice.models.OrderHistoryEntry;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Service
 @AllArgsConstructor
 @Log4j2
 public class OrderHistoryService {
 
-    private final OrderHistoryRepository orderHistoryRepository;
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
 
-    @KafkaListener(topics = "topic-orders", groupId = "history-group")
-    public void consume(OrderDtoForKafka orderDto) {
-        log.info("OrderHistoryService: получено сообщение из Kafka: {}", orderDto);
+    // слушатель получает всю пачку из poll (до history.kafka.batch-size записей) и пишет её одним bulkWrite;
+    // смещения коммитятся контейнером после возврата из метода (AckMode.BATCH), то есть только после записи.
+    // Если bulkWrite упал, пачка доставляется повторно — upsert по _id делает повтор безопасным.
+    // Если MongoDB отвергла конкретные документы, контейнеру сообщается первая такая запись: записи до неё
+    // коммитятся, она сама уходит на неблокирующие повторы (KafkaErrorHandlingConfig), остальные доставляются снова
+    @KafkaListener(topics = KafkaTopics.TOPIC_ORDERS, groupId = "history-group", batch = "true",
+            properties = "max.poll.records=${history.kafka.batch-size:500}")
+    public void consume(List<OrderDtoForKafka> orders) {
+        log.info("OrderHistoryService: получено {} сообщений из Kafka", orders.size());
+        try {
+            saveAll(orders);
+            count(KafkaTopics.TOPIC_ORDERS, "success", orders.size());
+        } catch (RuntimeException exception) {
+            count(KafkaTopics.TOPIC_ORDERS, "failure", 1);
+            throw exception;
+        }
+    }
+
+    // записи, которые не удалось сохранить из пачки, по одной: topic-orders-history, -retry-60000, -retry-600000, -dlt
+    @RetryableTopic(
+            attempts = "3",
+            backoff = @Backoff(delay = KafkaTopics.FIRST_RETRY_DELAY_MS, multiplier = KafkaTopics.RETRY_DELAY_MULTIPLIER),
+            topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_DELAY_VALUE
+    )
+    @KafkaListener(id = "history-retry-listener", idIsGroup = false, topics = KafkaTopics.RETRY_ENTRY_TOPIC, groupId = "history-group")
+    public void consumeRetry(OrderDtoForKafka orderDto, @Header(KafkaHeaders.RECEIVED_TOPIC) String topic) {
+        log.info("OrderHistoryService: повторная обработка заказа {} из {}", orderDto.getOrderUuid(), topic);
+        try {
+            saveAll(List.of(orderDto));
+            count(topic, "success", 1);
+        } catch (RuntimeException exception) {
+            count(topic, "failure", 1);
+            throw exception;
+        }
+    }
+
+    @DltHandler
+    public void onDeadLetter(OrderDtoForKafka orderDto, @Header(KafkaHeaders.RECEIVED_TOPIC) String topic) {
+        log.error("OrderHistoryService: история заказа {} не сохранена после всех повторов, запись в {}",
+                orderDto.getOrderUuid(), topic);
+        count(topic, "dead-letter", 1);
+    }
 
-        OrderHistory orderHistory = orderHistoryRepository
-                .findByUsername(orderDto.getUserDto().username())
-                .orElseGet(() -> {
-                    log.debug("OrderHistoryService: создаём новый OrderHistory для пользователя {}", orderDto.getUserDto().username());
-                    return new OrderHistory(orderDto.getUserDto().username(), new ArrayList<>());
-                });
+    /**
+     * Сохраняет события одним неупорядоченным bulkWrite из upsert-ов по _id "orderUuid:status".
+     * Повторы одного события внутри пачки схлопываются, побеждает последнее.
+     */
+    public int saveAll(List<OrderDtoForKafka> orders) {
+        Map<String, OrderHistoryEntry> entries = new LinkedHashMap<>();
+        // для каждой записи bulkWrite — индекс первого сообщения пачки, из которого она получена
+        Map<String, Integer> sourceIndexes = new LinkedHashMap<>();
+        for (int i = 0; i < orders.size(); i++) {
+            if (orders.get(i) == null) {
+                continue;
+            }
+            OrderHistoryEntry entry = OrderHistoryEntry.from(orders.get(i));
+            entries.put(entry.getId(), entry);
+            sourceIndexes.putIfAbsent(entry.getId(), i);
+        }
+
+        if (entries.isEmpty()) {
+            return 0;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OrderHistoryEntry.class);
+        for (OrderHistoryEntry entry : entries.values()) {
+            bulk.replaceOne(Query.query(Criteria.where("_id").is(entry.getId())), entry, FindAndReplaceOptions.options().upsert());
+        }
+        try {
+            bulk.execute();
+        } catch (BulkOperationException exception) {
+            List<Integer> written = new ArrayList<>(sourceIndexes.values());
+            int failed = exception.getErrors().stream()
+                    .mapToInt(BulkWriteError::getIndex)
+                    .map(written::get)
+                    .min()
+                    .orElseThrow(() -> exception);
+            log.error("OrderHistoryService: MongoDB отклонила {} записей пачки, первая — сообщение {}",
+                    exception.getErrors().size(), failed);
+            throw new BatchListenerFailedException("OrderHistoryService: не удалось сохранить историю заказа", exception, failed);
+        }
+
+        long users = entries.values().stream().map(OrderHistoryEntry::getUsername).distinct().count();
+        log.info("OrderHistoryService: сохранено {} событий истории заказов для {} пользователей", entries.size(), users);
+        return entries.size();
+    }
 
-        orderHistory.getOrders().add(orderDto);
-        orderHistoryRepository.save(orderHistory);
-        log.info("OrderHistoryService: сохранена история заказа для пользователя {}", orderDto.getUserDto().username());
+    private void count(String topic, String outcome, int records) {
+        meterRegistry.counter("order.events.consumed", "listener", "history", "topic", topic, "outcome", outcome).increment(records);
     }
 }
@@ -1,2 +1,5 @@
 db = db.getSiblingDB('HistoryServiceDB');
-db.createCollection('orderHistory');
\ No newline at end of file
+db.createCollection('orderHistory');
+db.createCollection('orderHistoryEntries');
+db.orderHistoryEntries.createIndex({ username: 1, createdAt: -1, _id: -1 }, { name: 'username_createdAt_id' });
+db.orderHistoryEntries.createIndex({ username: 1, orderStatus: 1, createdAt: -1, _id: -1 }, { name: 'username_orderStatus_createdAt_id' });
@@ -3,10 +3,10 @@ package com.utochkin.historyservice;
 import com.utochkin.historyservice.dto.AddressDto;
 import com.utochkin.historyservice.dto.OrderDtoForKafka;
 import com.utochkin.historyservice.dto.UserDto;
-import com.utochkin.historyservice.models.OrderHistory;
+import com.utochkin.historyservice.models.OrderHistoryEntry;
 import com.utochkin.historyservice.models.OrderRequest;
 import com.utochkin.historyservice.models.Status;
-import com.utochkin.historyservice.repositories.OrderHistoryRepository;
+import com.utochkin.historyservice.repositories.OrderHistoryEntryRepository;
 import org.awaitility.Awaitility;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -21,7 +21,6 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -51,14 +50,14 @@ public class HistoryServiceApplicationTests {
     private KafkaTemplate<String, OrderDtoForKafka> kafkaTemplate;
 
     @Autowired
-    private OrderHistoryRepository orderHistoryRepository;
+    private OrderHistoryEntryRepository orderHistoryEntryRepository;
 
     @MockitoBean
     private JwtDecoder jwtDecoder;
 
     @BeforeEach
     void setup() {
-        orderHistoryRepository.deleteAll();
+        orderHistoryEntryRepository.deleteAll();
         kafkaTemplate.setDefaultTopic("topic-orders");
     }
 
@@ -80,10 +79,46 @@ public class HistoryServiceApplicationTests {
         kafkaTemplate.sendDefault(orderDto);
 
         Awaitility.await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
-            Optional<OrderHistory> historyOpt = orderHistoryRepository.findByUsername("alice");
-            assertThat(historyOpt).isPresent();
-            assertThat(historyOpt.get().getOrders()).hasSize(1);
-            assertThat(historyOpt.get().getOrders().getFirst().getOrderUuid()).isEqualTo(orderDto.getOrderUuid());
+            List<OrderHistoryEntry> history = orderHistoryEntryRepository.findAllByUsernameOrderByCreatedAtDesc("alice");
+            assertThat(history).hasSize(1);
+            assertThat(history.getFirst().getOrderUuid()).isEqualTo(orderDto.getOrderUuid());
         });
     }
+
+    @Test
+    @DisplayName("Пачка сообщений из Kafka сохраняется целиком, повторная доставка не создаёт дублей")
+    void kafkaBatch_shouldSaveAllWithoutDuplicates() {
+        UUID orderUuid = UUID.randomUUID();
+        OrderDtoForKafka paid = new OrderDtoForKafka(
+                orderUuid,
+                200.0,
+                Status.SUCCESS,
+                LocalDateTime.now().minusHours(1),
+                LocalDateTime.now(),
+                new AddressDto("SPb", "Nevsky", 20, 5),
+                new UserDto("bob", "Bob", "Black", "bob@example.com"),
+                List.of(new OrderRequest(UUID.randomUUID(), 1)),
+                UUID.randomUUID()
+        );
+        OrderDtoForKafka refunded = new OrderDtoForKafka(
+                orderUuid,
+                200.0,
+                Status.REFUNDED,
+                paid.getCreatedAt(),
+                LocalDateTime.now(),
+                paid.getAddressDto(),
+                paid.getUserDto(),
+                paid.getOrderRequests(),
+                paid.getPaymentId()
+        );
+
+        kafkaTemplate.sendDefault(paid);
+        kafkaTemplate.sendDefault(refunded);
+        kafkaTemplate.sendDefault(paid);
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(orderHistoryEntryRepository.findAllByUsernameOrderByCreatedAtDesc("bob"))
+                        .extracting(OrderHistoryEntry::getId)
+                        .containsExactlyInAnyOrder(orderUuid + ":SUCCESS", orderUuid + ":REFUNDED"));
+    }
 }
@@ -0,0 +1,129 @@
+package com.utochkin.historyservice.benchmark;
+
+import com.utochkin.historyservice.config.LocalDateTimeToStringConverter;
+import com.utochkin.historyservice.config.StringToLocalDateTimeConverter;
+import com.utochkin.historyservice.dto.AddressDto;
+import com.utochkin.historyservice.dto.OrderDtoForKafka;
+import com.utochkin.historyservice.dto.UserDto;
+import com.utochkin.historyservice.models.OrderHistory;
+import com.utochkin.historyservice.models.OrderHistoryEntry;
+import com.utochkin.historyservice.models.OrderRequest;
+import com.utochkin.historyservice.models.Status;
+import com.mongodb.MongoClientSettings;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнивает стоимость записи одного события заказа в старой модели (массив заказов в документе
+ * пользователя, который переписывается целиком) и в новой (отдельный документ на событие).
+ * База не нужна: документы сериализуются тем же MappingMongoConverter, что и в сервисе,
+ * и измеряется размер BSON, который ушёл бы в MongoDB, и время сериализации.
+ * Запуск: ./gradlew benchmark
+ */
+@Tag("benchmark")
+class OrderHistoryWriteCostBenchmark {
+
+    private static final int[] HISTORY_SIZES = {10, 100, 1_000, 10_000};
+    private static final int MONGO_MAX_DOCUMENT_BYTES = 16 * 1024 * 1024;
+    private static final int ITERATIONS = 20;
+
+    private static MappingMongoConverter converter;
+
+    @BeforeAll
+    static void setUpConverter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of(
+                new LocalDateTimeToStringConverter(),
+                new StringToLocalDateTimeConverter()));
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+    }
+
+    private static OrderDtoForKafka order(String username) {
+        return new OrderDtoForKafka(
+                UUID.randomUUID(),
+                120.0,
+                Status.SUCCESS,
+                LocalDateTime.now().minusDays(1),
+                LocalDateTime.now(),
+                new AddressDto("City", "Street", 1, 1),
+                new UserDto(username, "John", "Doe", "john@example.com"),
+                List.of(new OrderRequest(UUID.randomUUID(), 2), new OrderRequest(UUID.randomUUID(), 1)),
+                UUID.randomUUID()
+        );
+    }
+
+    private static int bsonSize(Object entity) {
+        Document document = new Document();
+        converter.write(entity, document);
+        return new RawBsonDocument(document, new DocumentCodec(MongoClientSettings.getDefaultCodecRegistry()))
+                .getByteBuffer().remaining();
+    }
+
+    private static long averageNanos(Runnable write) {
+        for (int i = 0; i < ITERATIONS; i++) {
+            write.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            write.run();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    @Test
+    @DisplayName("Стоимость записи события: массив в документе пользователя растёт с историей, отдельный документ — нет")
+    void writeCostByHistorySize() {
+        System.out.printf("%-10s %-22s %-22s %-16s %-16s%n",
+                "заказов", "старая модель, байт", "новая модель, байт", "старая, мкс", "новая, мкс");
+
+        int perOrderBytes = 0;
+        int previousEntryBytes = -1;
+        for (int size : HISTORY_SIZES) {
+            List<OrderDtoForKafka> orders = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                orders.add(order("john"));
+            }
+            OrderHistory history = new OrderHistory("john", orders);
+            OrderHistoryEntry entry = OrderHistoryEntry.from(orders.get(size - 1));
+
+            int historyBytes = bsonSize(history);
+            int entryBytes = bsonSize(entry);
+            long historyNanos = averageNanos(() -> bsonSize(history));
+            long entryNanos = averageNanos(() -> bsonSize(entry));
+
+            System.out.printf("%-10d %-22d %-22d %-16d %-16d%n",
+                    size, historyBytes, entryBytes, historyNanos / 1_000, entryNanos / 1_000);
+
+            assertThat(historyBytes).isGreaterThan(entryBytes * (size / 2));
+            if (previousEntryBytes >= 0) {
+                assertThat(entryBytes).isEqualTo(previousEntryBytes);
+            }
+            previousEntryBytes = entryBytes;
+            perOrderBytes = historyBytes / size;
+        }
+
+        System.out.printf("Старая модель упрётся в лимит документа MongoDB (16 МБ) примерно на %d заказах пользователя%n",
+                MONGO_MAX_DOCUMENT_BYTES / perOrderBytes);
+    }
+}
@@ -0,0 +1,61 @@
+package com.utochkin.historyservice.controllers;
+
+import com.utochkin.historyservice.config.Config;
+import com.utochkin.historyservice.config.KafkaTopics;
+import com.utochkin.historyservice.services.DltReplayService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = AdminController.class)
+@Import(Config.class)
+@ActiveProfiles("test")
+class AdminControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockitoBean
+    private DltReplayService dltReplayService;
+
+    @MockitoBean
+    private JwtDecoder jwtDecoder;
+
+    @Test
+    @DisplayName("POST /history/api/v1/admin/dlt/replay — 200 для ADMIN, возвращает число переигранных записей")
+    void replay_admin_returns200() throws Exception {
+        given(dltReplayService.replay(50)).willReturn(3);
+
+        mvc.perform(post("/history/api/v1/admin/dlt/replay")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .param("max", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.dltTopic").value(KafkaTopics.DLT_TOPIC))
+                .andExpect(jsonPath("$.replayed").value(3));
+    }
+
+    @Test
+    @DisplayName("POST /history/api/v1/admin/dlt/replay — 403 для USER")
+    void replay_user_returns403() throws Exception {
+        mvc.perform(post("/history/api/v1/admin/dlt/replay")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER"))))
+                .andExpect(status().isForbidden());
+
+        then(dltReplayService).should(never()).replay(anyInt());
+    }
+}
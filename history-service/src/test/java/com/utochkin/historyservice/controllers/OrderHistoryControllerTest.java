@@ -0,0 +1,136 @@
+package com.utochkin.historyservice.controllers;
+
+import com.utochkin.historyservice.config.Config;
+import com.utochkin.historyservice.dto.OrderHistoryFilter;
+import com.utochkin.historyservice.dto.OrderHistoryPage;
+import com.utochkin.historyservice.exceptions.InvalidCursorException;
+import com.utochkin.historyservice.models.OrderHistoryEntry;
+import com.utochkin.historyservice.models.Status;
+import com.utochkin.historyservice.services.OrderHistoryQueryService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = OrderHistoryController.class)
+@Import(Config.class)
+@ActiveProfiles("test")
+class OrderHistoryControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockitoBean
+    private OrderHistoryQueryService orderHistoryQueryService;
+
+    @MockitoBean
+    private JwtDecoder jwtDecoder;
+
+    private static OrderHistoryEntry entry(Status status) {
+        UUID orderUuid = UUID.randomUUID();
+        OrderHistoryEntry entry = new OrderHistoryEntry();
+        entry.setId(OrderHistoryEntry.idOf(orderUuid, status));
+        entry.setUsername("john");
+        entry.setOrderUuid(orderUuid);
+        entry.setOrderStatus(status);
+        entry.setCreatedAt(LocalDateTime.of(2025, 1, 10, 12, 0));
+        return entry;
+    }
+
+    @Test
+    @DisplayName("GET /history/api/v1/orders — 200, страница истории текущего пользователя с курсором")
+    void getMyOrders_returnsPage() throws Exception {
+        OrderHistoryEntry entry = entry(Status.SUCCESS);
+        OrderHistoryFilter filter = new OrderHistoryFilter(Status.SUCCESS, LocalDateTime.of(2025, 1, 1, 0, 0), null);
+        given(orderHistoryQueryService.findPage(eq("john"), eq(filter), isNull(), eq(10)))
+                .willReturn(new OrderHistoryPage(List.of(entry), "next"));
+
+        mvc.perform(get("/history/api/v1/orders")
+                        .with(jwt())
+                        .header("X-User-UserName", "john")
+                        .param("status", "SUCCESS")
+                        .param("from", "2025-01-01T00:00:00")
+                        .param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(entry.getId()))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    @DisplayName("GET /history/api/v1/orders — 400, неверный курсор")
+    void getMyOrders_invalidCursor_returns400() throws Exception {
+        given(orderHistoryQueryService.findPage(eq("john"), any(), eq("broken"), any()))
+                .willThrow(new InvalidCursorException());
+
+        mvc.perform(get("/history/api/v1/orders")
+                        .with(jwt())
+                        .header("X-User-UserName", "john")
+                        .param("cursor", "broken"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.messageError").value("Error: invalid pagination cursor!"));
+    }
+
+    @Test
+    @DisplayName("GET /history/api/v1/orders/export — NDJSON, по строке на запись")
+    @SuppressWarnings("unchecked")
+    void exportMyOrders_streamsNdjson() throws Exception {
+        OrderHistoryEntry first = entry(Status.REFUNDED);
+        OrderHistoryEntry second = entry(Status.SUCCESS);
+        given(orderHistoryQueryService.export(eq("john"), any(), any())).willAnswer(inv -> {
+            Consumer<OrderHistoryEntry> consumer = inv.getArgument(2);
+            consumer.accept(first);
+            consumer.accept(second);
+            return 2L;
+        });
+
+        MvcResult result = mvc.perform(get("/history/api/v1/orders/export")
+                        .with(jwt())
+                        .header("X-User-UserName", "john"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", OrderHistoryController.APPLICATION_NDJSON_VALUE))
+                .andExpect(content().string(matchesPattern(
+                        "\\{\"id\":\"" + first.getId() + "\".*}\n\\{\"id\":\"" + second.getId() + "\".*}\n")));
+    }
+
+    @Test
+    @DisplayName("GET /history/api/v1/users/{username}/orders — 403 для USER, 200 для ADMIN")
+    void getUserOrders_requiresAdmin() throws Exception {
+        given(orderHistoryQueryService.findPage(eq("alice"), any(), any(), any()))
+                .willReturn(new OrderHistoryPage(List.of(), null));
+
+        mvc.perform(get("/history/api/v1/users/alice/orders")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER"))))
+                .andExpect(status().isForbidden());
+
+        mvc.perform(get("/history/api/v1/users/alice/orders")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items").isEmpty());
+    }
+}
@@ -0,0 +1,93 @@
+package com.utochkin.historyservice.services;
+
+import com.utochkin.historyservice.dto.AddressDto;
+import com.utochkin.historyservice.dto.OrderDtoForKafka;
+import com.utochkin.historyservice.dto.UserDto;
+import com.utochkin.historyservice.models.OrderHistory;
+import com.utochkin.historyservice.models.OrderHistoryEntry;
+import com.utochkin.historyservice.models.OrderRequest;
+import com.utochkin.historyservice.models.Status;
+import com.utochkin.historyservice.repositories.OrderHistoryEntryRepository;
+import com.utochkin.historyservice.repositories.OrderHistoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataMongoTest
+@Import(OrderHistoryMigration.class)
+@TestPropertySource(properties = "history.migration.enabled=false")
+@ActiveProfiles("test")
+class OrderHistoryMigrationTest {
+
+    @Autowired
+    private OrderHistoryMigration migration;
+
+    @Autowired
+    private OrderHistoryRepository orderHistoryRepository;
+
+    @Autowired
+    private OrderHistoryEntryRepository orderHistoryEntryRepository;
+
+    @BeforeEach
+    void setUp() {
+        orderHistoryRepository.deleteAll();
+        orderHistoryEntryRepository.deleteAll();
+    }
+
+    private static OrderDtoForKafka order(String username, Status status, UUID orderUuid) {
+        return new OrderDtoForKafka(
+                orderUuid,
+                100.0,
+                status,
+                LocalDateTime.now().minusDays(1),
+                LocalDateTime.now(),
+                new AddressDto("Moscow", "Arbat", 12, 45),
+                new UserDto(username, "Alice", "Smith", "alice@example.com"),
+                List.of(new OrderRequest(UUID.randomUUID(), 1)),
+                UUID.randomUUID()
+        );
+    }
+
+    @Test
+    @DisplayName("migrate → переносит каждый заказ из массива в отдельный документ и удаляет старый документ")
+    void migrate_splitsHistoryIntoEntries() {
+        UUID orderUuid = UUID.randomUUID();
+        orderHistoryRepository.save(new OrderHistory("alice", List.of(
+                order("alice", Status.SUCCESS, orderUuid),
+                order("alice", Status.REFUNDED, orderUuid),
+                order("alice", Status.FAILED, UUID.randomUUID()))));
+
+        int migrated = migration.migrate();
+
+        assertThat(migrated).isEqualTo(1);
+        assertThat(orderHistoryRepository.findByUsername("alice")).isEmpty();
+        assertThat(orderHistoryEntryRepository.countByUsername("alice")).isEqualTo(3);
+        assertThat(orderHistoryEntryRepository.findById(OrderHistoryEntry.idOf(orderUuid, Status.REFUNDED))).isPresent();
+    }
+
+    @Test
+    @DisplayName("migrate → повторный запуск после частичного переноса не создаёт дублей")
+    void migrate_isRestartable() {
+        OrderDtoForKafka order = order("bob", Status.SUCCESS, UUID.randomUUID());
+        // запись уже перенесена, но старый документ не успели удалить
+        orderHistoryEntryRepository.save(OrderHistoryEntry.from(order));
+        orderHistoryRepository.save(new OrderHistory("bob", List.of(order)));
+
+        migration.migrate();
+        migration.migrate();
+
+        assertThat(orderHistoryEntryRepository.countByUsername("bob")).isEqualTo(1);
+        assertThat(orderHistoryRepository.count()).isZero();
+    }
+}
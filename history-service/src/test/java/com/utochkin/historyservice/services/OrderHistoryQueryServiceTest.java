@@ -0,0 +1,123 @@
+package com.utochkin.historyservice.services;
+
+import com.utochkin.historyservice.dto.OrderHistoryFilter;
+import com.utochkin.historyservice.dto.OrderHistoryPage;
+import com.utochkin.historyservice.exceptions.InvalidCursorException;
+import com.utochkin.historyservice.models.OrderHistoryEntry;
+import com.utochkin.historyservice.models.Status;
+import com.utochkin.historyservice.repositories.OrderHistoryEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataMongoTest
+@Import(OrderHistoryQueryService.class)
+@ActiveProfiles("test")
+class OrderHistoryQueryServiceTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 3, 1, 12, 0);
+    private static final OrderHistoryFilter NO_FILTER = new OrderHistoryFilter(null, null, null);
+
+    @Autowired
+    private OrderHistoryQueryService queryService;
+
+    @Autowired
+    private OrderHistoryEntryRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    private OrderHistoryEntry save(String username, Status status, LocalDateTime createdAt) {
+        UUID orderUuid = UUID.randomUUID();
+        OrderHistoryEntry entry = new OrderHistoryEntry();
+        entry.setId(OrderHistoryEntry.idOf(orderUuid, status));
+        entry.setUsername(username);
+        entry.setOrderUuid(orderUuid);
+        entry.setOrderStatus(status);
+        entry.setCreatedAt(createdAt);
+        entry.setTotalAmount(100.0);
+        return repository.save(entry);
+    }
+
+    @Test
+    @DisplayName("findPage → листает историю от новых к старым без пропусков и повторов, в том числе при одинаковом createdAt")
+    void findPage_walksAllPages() {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            // по две записи на одну минуту, чтобы порядок решал _id
+            expected.add(save("john", Status.SUCCESS, BASE.minusMinutes(i / 2)).getId());
+        }
+        save("alice", Status.SUCCESS, BASE);
+
+        List<String> walked = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            OrderHistoryPage page = queryService.findPage("john", NO_FILTER, cursor, 3);
+            page.items().forEach(entry -> walked.add(entry.getId()));
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(walked).containsExactlyInAnyOrderElementsOf(expected).doesNotHaveDuplicates();
+        assertThat(walked).isEqualTo(repository.findAll().stream()
+                .filter(entry -> entry.getUsername().equals("john"))
+                .sorted((a, b) -> {
+                    int byDate = b.getCreatedAt().compareTo(a.getCreatedAt());
+                    return byDate != 0 ? byDate : b.getId().compareTo(a.getId());
+                })
+                .map(OrderHistoryEntry::getId)
+                .toList());
+    }
+
+    @Test
+    @DisplayName("findPage → фильтрует по статусу и диапазону дат")
+    void findPage_filtersByStatusAndDates() {
+        save("john", Status.SUCCESS, BASE.minusDays(10));
+        OrderHistoryEntry inRange = save("john", Status.SUCCESS, BASE.minusDays(2));
+        save("john", Status.FAILED, BASE.minusDays(2));
+        save("john", Status.SUCCESS, BASE);
+
+        OrderHistoryPage page = queryService.findPage("john",
+                new OrderHistoryFilter(Status.SUCCESS, BASE.minusDays(5), BASE), null, null);
+
+        assertThat(page.items()).extracting(OrderHistoryEntry::getId).containsExactly(inRange.getId());
+        assertThat(page.nextCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("findPage → неверный курсор приводит к InvalidCursorException")
+    void findPage_invalidCursor() {
+        assertThatThrownBy(() -> queryService.findPage("john", NO_FILTER, "not-a-cursor!", 10))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    @DisplayName("export → отдаёт все записи пользователя в порядке от новых к старым")
+    void export_streamsAllEntries() {
+        OrderHistoryEntry older = save("john", Status.SUCCESS, BASE.minusDays(1));
+        OrderHistoryEntry newer = save("john", Status.REFUNDED, BASE);
+        save("alice", Status.SUCCESS, BASE);
+
+        List<String> exported = new ArrayList<>();
+        long count = queryService.export("john", NO_FILTER, entry -> exported.add(entry.getId()));
+
+        assertThat(count).isEqualTo(2);
+        assertThat(exported).containsExactly(newer.getId(), older.getId());
+    }
+}
@@ -1,84 +1,140 @@
 package com.utochkin.historyservice.services;
 
+import com.mongodb.bulk.BulkWriteError;
+import com.utochkin.historyservice.config.KafkaTopics;
 import com.utochkin.historyservice.dto.AddressDto;
 import com.utochkin.historyservice.dto.OrderDtoForKafka;
 import com.utochkin.historyservice.dto.UserDto;
-import com.utochkin.historyservice.models.OrderHistory;
+import com.utochkin.historyservice.models.OrderHistoryEntry;
 import com.utochkin.historyservice.models.OrderRequest;
 import com.utochkin.historyservice.models.Status;
-import com.utochkin.historyservice.repositories.OrderHistoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.kafka.listener.BatchListenerFailedException;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 @ExtendWith(MockitoExtension.class)
 class OrderHistoryServiceTest {
 
     @Mock
-    private OrderHistoryRepository orderHistoryRepository;
+    private MongoTemplate mongoTemplate;
 
-    @InjectMocks
-    private OrderHistoryService orderHistoryService;
+    @Mock
+    private BulkOperations bulkOperations;
 
-    private OrderDtoForKafka orderDto;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private OrderHistoryService orderHistoryService;
 
     @BeforeEach
-    void setup() {
-        orderDto = new OrderDtoForKafka(
+    void setUp() {
+        orderHistoryService = new OrderHistoryService(mongoTemplate, meterRegistry);
+    }
+
+    private OrderDtoForKafka orderDto(String username, Status status) {
+        return new OrderDtoForKafka(
                 UUID.randomUUID(),
                 120.0,
-                Status.SUCCESS,
+                status,
                 LocalDateTime.now().minusDays(1),
                 LocalDateTime.now(),
                 new AddressDto("City", "Street", 1, 1),
-                new UserDto("john", "John", "Doe", "john@example.com"),
+                new UserDto(username, "John", "Doe", username + "@example.com"),
                 List.of(new OrderRequest(UUID.randomUUID(), 2)),
                 UUID.randomUUID()
         );
     }
 
+    private void givenBulkOperations() {
+        given(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OrderHistoryEntry.class)).willReturn(bulkOperations);
+    }
+
+    private List<OrderHistoryEntry> capturedEntries(int expected) {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(bulkOperations, times(expected)).replaceOne(any(Query.class), captor.capture(), any(FindAndReplaceOptions.class));
+        return captor.getAllValues().stream().map(OrderHistoryEntry.class::cast).toList();
+    }
+
     @Test
-    @DisplayName("Создание нового OrderHistory для нового пользователя и его дальнейшее сохранение")
-    void consume_createsNewOrderHistory_ifUserNotExists() {
-        when(orderHistoryRepository.findByUsername("john"))
-                .thenReturn(Optional.empty());
+    @DisplayName("Пачка событий разных пользователей записывается одним bulkWrite из upsert-ов")
+    void consume_batch_singleBulkWrite() {
+        OrderDtoForKafka first = orderDto("john", Status.SUCCESS);
+        OrderDtoForKafka second = orderDto("john", Status.FAILED);
+        OrderDtoForKafka third = orderDto("alice", Status.SUCCESS);
+        givenBulkOperations();
+
+        orderHistoryService.consume(List.of(first, second, third));
+
+        List<OrderHistoryEntry> entries = capturedEntries(3);
+        assertThat(entries).extracting(OrderHistoryEntry::getId).containsExactly(
+                first.getOrderUuid() + ":SUCCESS",
+                second.getOrderUuid() + ":FAILED",
+                third.getOrderUuid() + ":SUCCESS");
+        assertThat(entries).extracting(OrderHistoryEntry::getUsername).containsExactly("john", "john", "alice");
+        verify(bulkOperations).execute();
+    }
 
-        orderHistoryService.consume(orderDto);
+    @Test
+    @DisplayName("Повтор того же события внутри пачки схлопывается в один upsert")
+    void consume_duplicateInBatch_collapsed() {
+        OrderDtoForKafka order = orderDto("john", Status.SUCCESS);
+        givenBulkOperations();
 
-        ArgumentCaptor<OrderHistory> captor = ArgumentCaptor.forClass(OrderHistory.class);
-        verify(orderHistoryRepository).save(captor.capture());
+        assertThat(orderHistoryService.saveAll(List.of(order, order))).isEqualTo(1);
 
-        OrderHistory saved = captor.getValue();
-        assertThat(saved.getUsername()).isEqualTo("john");
-        assertThat(saved.getOrders()).hasSize(1);
-        assertThat(saved.getOrders().getFirst()).isEqualTo(orderDto);
+        assertThat(capturedEntries(1)).extracting(OrderHistoryEntry::getId).containsOnly(order.getOrderUuid() + ":SUCCESS");
+        verify(bulkOperations).execute();
     }
 
     @Test
-    @DisplayName("Корректное сохранение в OrderHistory для существующего пользователя")
-    void consume_appendsOrder_ifUserExists() {
-        OrderHistory existing = new OrderHistory("john", new ArrayList<>());
-        when(orderHistoryRepository.findByUsername("john"))
-                .thenReturn(Optional.of(existing));
+    @DisplayName("Пустая пачка не обращается к MongoDB")
+    void consume_emptyBatch_noWrite() {
+        assertThat(orderHistoryService.saveAll(List.of())).isZero();
+
+        verifyNoInteractions(mongoTemplate);
+    }
 
-        orderHistoryService.consume(orderDto);
+    @Test
+    @DisplayName("Отклонённый MongoDB документ указывает контейнеру на исходное сообщение пачки с учётом схлопнутых дублей")
+    void consume_rejectedDocument_reportsFailedRecordIndex() {
+        OrderDtoForKafka first = orderDto("john", Status.SUCCESS);
+        OrderDtoForKafka second = orderDto("alice", Status.SUCCESS);
+        givenBulkOperations();
+        BulkOperationException rejected = mock(BulkOperationException.class);
+        given(rejected.getErrors()).willReturn(List.of(new BulkWriteError(2, "bad document", new BsonDocument(), 1)));
+        willThrow(rejected).given(bulkOperations).execute();
 
-        verify(orderHistoryRepository).save(existing);
-        assertThat(existing.getOrders()).containsExactly(orderDto);
+        // first повторён дважды: второй документ bulkWrite — это сообщение с индексом 2
+        assertThatThrownBy(() -> orderHistoryService.consume(List.of(first, first, second)))
+                .isInstanceOf(BatchListenerFailedException.class)
+                .extracting(exception -> ((BatchListenerFailedException) exception).getIndex())
+                .isEqualTo(2);
+        assertThat(meterRegistry.counter("order.events.consumed",
+                "listener", "history", "topic", KafkaTopics.TOPIC_ORDERS, "outcome", "failure").count()).isEqualTo(1);
     }
 }
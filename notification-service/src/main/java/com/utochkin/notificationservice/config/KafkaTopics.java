@@ -0,0 +1,24 @@
+package com.utochkin.notificationservice.config;
+
+/**
+ * Топики неблокирующих повторов notification-service. Суффиксы свои у каждого сервиса:
+ * history-service читает тот же topic-orders, и общий топик повторов заставил бы его
+ * повторно обрабатывать чужие ошибки, а нас — слать письма по его ошибкам.
+ * Имена топиков повторов строятся из задержки: topic-orders-notification-retry-60000, -600000.
+ */
+public final class KafkaTopics {
+
+    public static final String TOPIC_ORDERS = "topic-orders";
+
+    public static final String RETRY_TOPIC_SUFFIX = "-notification-retry";
+    public static final String DLT_TOPIC_SUFFIX = "-notification-dlt";
+
+    public static final long FIRST_RETRY_DELAY_MS = 60_000;
+    public static final double RETRY_DELAY_MULTIPLIER = 10;
+
+    public static final String FIRST_RETRY_TOPIC = TOPIC_ORDERS + RETRY_TOPIC_SUFFIX + "-" + FIRST_RETRY_DELAY_MS;
+    public static final String DLT_TOPIC = TOPIC_ORDERS + DLT_TOPIC_SUFFIX;
+
+    private KafkaTopics() {
+    }
+}
@@ -0,0 +1,37 @@
+package com.utochkin.notificationservice.config;
+
+import com.utochkin.notificationservice.models.Status;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Шаблоны писем по языкам: notification.templates.locales.<язык>.statuses.<статус заказа>.subject/text/html
+ * и строка одного товара notification.templates.locales.<язык>.product.
+ * Значения по умолчанию лежат в notification-templates.yml, config-server может их переопределить.
+ */
+@Data
+@ConfigurationProperties(prefix = "notification.templates")
+public class NotificationTemplateProperties {
+
+    private String defaultLocale = "ru";
+
+    private Map<String, LocaleTemplates> locales = new HashMap<>();
+
+    @Data
+    public static class LocaleTemplates {
+        private String product;
+        private Map<Status, StatusTemplates> statuses = new EnumMap<>(Status.class);
+    }
+
+    // html не обязателен: без него письмо уходит только текстом
+    @Data
+    public static class StatusTemplates {
+        private String subject;
+        private String text;
+        private String html;
+    }
+}
@@ -0,0 +1,5 @@
+package com.utochkin.notificationservice.dto;
+
+public record DltReplayResponse(String dltTopic,
+                                int replayed) {
+}
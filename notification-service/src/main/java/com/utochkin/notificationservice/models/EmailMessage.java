@@ -0,0 +1,21 @@
+package com.utochkin.notificationservice.models;
+
+import com.utochkin.notificationservice.dto.OrderDtoForKafka;
+
+// html == null — письмо только текстом; order — событие, из которого сформировано письмо:
+// по нему письмо можно отправить на стадию повтора
+public record EmailMessage(String to,
+                           String subject,
+                           String text,
+                           String html,
+                           OrderDtoForKafka order) {
+
+    public EmailMessage(String to, String subject, String text) {
+        this(to, subject, text, null, null);
+    }
+
+    public String domain() {
+        int at = to.lastIndexOf('@');
+        return at < 0 ? "" : to.substring(at + 1).toLowerCase();
+    }
+}
@@ -0,0 +1,94 @@
+package com.utochkin.notificationservice.services;
+
+import com.utochkin.notificationservice.dto.OrderDtoForKafka;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.utochkin.notificationservice.config.KafkaTopics.DLT_TOPIC;
+
+/**
+ * Повторная обработка записей из topic-orders-notification-dlt: записи отправляются на первую стадию повтора,
+ * а прочитанная позиция сохраняется смещениями отдельной группы, поэтому каждая запись переигрывается один раз.
+ */
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class DltReplayService {
+
+    public static final String REPLAY_GROUP = "notification-dlt-replay";
+
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(2);
+    private static final long SEND_TIMEOUT_SECONDS = 10;
+
+    private final ConsumerFactory<Object, Object> consumerFactory;
+    private final NotificationRetryPublisher retryPublisher;
+
+    public int replay(int max) {
+        try (Consumer<Object, Object> consumer = consumerFactory.createConsumer(REPLAY_GROUP, "replay")) {
+            List<PartitionInfo> partitionInfos = consumer.partitionsFor(DLT_TOPIC);
+            if (partitionInfos == null || partitionInfos.isEmpty()) {
+                return 0;
+            }
+            List<TopicPartition> partitions = partitionInfos.stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+
+            // при первом запуске группы — с начала DLT, дальше — с сохранённой позиции
+            Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(new HashSet<>(partitions));
+            for (TopicPartition partition : partitions) {
+                OffsetAndMetadata offset = committed.get(partition);
+                if (offset == null) {
+                    consumer.seekToBeginning(List.of(partition));
+                } else {
+                    consumer.seek(partition, offset.offset());
+                }
+            }
+
+            Map<TopicPartition, OffsetAndMetadata> replayedOffsets = new HashMap<>();
+            int replayed = 0;
+            try {
+                while (replayed < max) {
+                    ConsumerRecords<Object, Object> records = consumer.poll(POLL_TIMEOUT);
+                    if (records.isEmpty()) {
+                        break;
+                    }
+                    for (ConsumerRecord<Object, Object> record : records) {
+                        if (replayed >= max) {
+                            break;
+                        }
+                        if (record.value() instanceof OrderDtoForKafka orderDto) {
+                            retryPublisher.publish(record.key(), orderDto).get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                            replayed++;
+                        }
+                        replayedOffsets.put(new TopicPartition(record.topic(), record.partition()), new OffsetAndMetadata(record.offset() + 1));
+                    }
+                }
+            } catch (Exception e) {
+                log.error("DltReplayService: повтор записей из {} прерван после {} записей: {}", DLT_TOPIC, replayed, e.getMessage());
+            } finally {
+                if (!replayedOffsets.isEmpty()) {
+                    consumer.commitSync(replayedOffsets);
+                }
+            }
+
+            log.info("DltReplayService: из {} на повтор отправлено {} записей", DLT_TOPIC, replayed);
+            return replayed;
+        }
+    }
+}
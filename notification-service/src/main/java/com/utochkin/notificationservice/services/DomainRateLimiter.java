@@ -0,0 +1,53 @@
+package com.utochkin.notificationservice.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Ограничение числа писем в секунду на почтовый домен получателя: SMTP-серверы крупных почтовиков
+ * режут или откладывают отправителя, который шлёт им слишком часто. Каждому письму выдаётся
+ * очередной слот не раньше, чем через 1/permitsPerSecond после предыдущего слота этого домена.
+ */
+public class DomainRateLimiter {
+
+    private final long intervalNanos;
+    private final LongSupplier nanoTime;
+    private final Map<String, AtomicLong> nextSlot = new ConcurrentHashMap<>();
+
+    public DomainRateLimiter(double permitsPerSecond) {
+        this(permitsPerSecond, System::nanoTime);
+    }
+
+    DomainRateLimiter(double permitsPerSecond, LongSupplier nanoTime) {
+        this.intervalNanos = permitsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Резервирует слот для письма на домен и возвращает, сколько наносекунд до него осталось ждать.
+     */
+    public long reserve(String domain) {
+        if (intervalNanos == 0) {
+            return 0;
+        }
+        AtomicLong next = nextSlot.computeIfAbsent(domain, d -> new AtomicLong(Long.MIN_VALUE));
+        while (true) {
+            long now = nanoTime.getAsLong();
+            long previous = next.get();
+            long slot = previous == Long.MIN_VALUE || previous - now < 0 ? now : previous;
+            if (next.compareAndSet(previous, slot + intervalNanos)) {
+                return slot - now;
+            }
+        }
+    }
+
+    public void acquire(String domain) throws InterruptedException {
+        long waitNanos = reserve(domain);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
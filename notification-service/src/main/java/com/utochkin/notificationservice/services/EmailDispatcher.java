@@ -0,0 +1,259 @@
+package com.utochkin.notificationservice.services;
+
+import com.utochkin.notificationservice.models.EmailMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Отделяет чтение topic-orders от SMTP: слушатель только кладёт письмо в ограниченную очередь,
+ * а отправляют его воркеры на виртуальных потоках. Воркер забирает из очереди пачку и отправляет её
+ * через одно SMTP-соединение, соблюдая лимит писем в секунду на домен получателя.
+ * Когда очередь заполнена, контейнер слушателя ставится на паузу и снимается с неё,
+ * как только очередь разгружена наполовину, — медленный SMTP не приводит к бесконечному росту памяти.
+ * <p>
+ * onHandled письма (подтверждение смещения записи) вызывается, только когда письмо отправлено или
+ * передано на стадию повтора: письма, оставшиеся в очереди при падении, будут прочитаны из topic-orders заново.
+ */
+@Component
+@Log4j2
+public class EmailDispatcher {
+
+    private static final long POLL_TIMEOUT_MS = 200;
+    private static final long RETRY_BACKOFF_MS = 1000;
+
+    private final EmailService emailService;
+    private final NotificationRetryPublisher retryPublisher;
+    private final KafkaListenerEndpointRegistry registry;
+    private final DomainRateLimiter rateLimiter;
+    private final BlockingQueue<Queued> queue;
+    private final int capacity;
+    private final int workers;
+    private final int batchSize;
+    private final int maxAttempts;
+
+    private final AtomicBoolean paused = new AtomicBoolean();
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private volatile boolean running;
+
+    public EmailDispatcher(EmailService emailService,
+                           NotificationRetryPublisher retryPublisher,
+                           KafkaListenerEndpointRegistry registry,
+                           @Value("${notification.dispatch.queue-capacity:1000}") int capacity,
+                           @Value("${notification.dispatch.workers:4}") int workers,
+                           @Value("${notification.dispatch.batch-size:20}") int batchSize,
+                           @Value("${notification.dispatch.per-domain-per-second:5}") double perDomainPerSecond,
+                           @Value("${notification.dispatch.max-attempts:3}") int maxAttempts) {
+        this.emailService = emailService;
+        this.retryPublisher = retryPublisher;
+        this.registry = registry;
+        this.rateLimiter = new DomainRateLimiter(perDomainPerSecond);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        Thread.Builder builder = Thread.ofVirtual().name("email-worker-", 0);
+        for (int i = 0; i < workers; i++) {
+            workerThreads.add(builder.start(this::runWorker));
+        }
+        log.info("EmailDispatcher: запущено {} воркеров, очередь на {} писем", workers, capacity);
+    }
+
+    // контейнеры Kafka к этому моменту уже остановлены, поэтому воркеры дорабатывают оставшуюся очередь;
+    // их смещения могут уже не закоммититься, и такие записи после перезапуска прочитаются повторно
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread worker : workerThreads) {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        if (!queue.isEmpty()) {
+            log.warn("EmailDispatcher: остановка, не отправлено {} писем", queue.size());
+        }
+    }
+
+    public void submit(EmailMessage message) {
+        submit(message, () -> {
+        });
+    }
+
+    /**
+     * Ставит письмо в очередь. Если очередь заполнена, ставит слушателя на паузу и ждёт места —
+     * так дочитываются только записи уже полученного poll, новых контейнер не запрашивает.
+     * onHandled вызывается в потоке воркера после отправки письма или передачи его на повтор.
+     */
+    public void submit(EmailMessage message, Runnable onHandled) {
+        Queued queued = new Queued(message, onHandled);
+        if (queue.offer(queued)) {
+            return;
+        }
+        pauseListener();
+        try {
+            queue.put(queued);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("EmailDispatcher: прервано ожидание места в очереди писем", e);
+        }
+    }
+
+    public int queueSize() {
+        return queue.size();
+    }
+
+    private void runWorker() {
+        List<Queued> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                Queued first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                resumeListenerIfDrained();
+
+                for (Queued queued : batch) {
+                    rateLimiter.acquire(queued.message().domain());
+                }
+                // копия: буфер очищается под следующую пачку, а отправленная может ещё где-то храниться
+                send(List.copyOf(batch));
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("EmailDispatcher: воркер {} прерван", Thread.currentThread().getName());
+        }
+    }
+
+    // повторяем на месте только если не ушло ни одно письмо пачки, иначе повтор продублирует отправленные;
+    // то, что не ушло, передаётся на стадию повтора topic-orders-notification-retry
+    private void send(List<Queued> batch) throws InterruptedException {
+        List<EmailMessage> messages = batch.stream().map(Queued::message).toList();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                emailService.sendBatch(messages);
+                batch.forEach(EmailDispatcher::markHandled);
+                return;
+            } catch (MailException exception) {
+                List<EmailMessage> failed = failedMessages(messages, exception);
+                if (failed.size() < batch.size() || attempt >= maxAttempts) {
+                    log.error("EmailDispatcher: из пачки в {} писем не отправлено {} после {} попыток",
+                            batch.size(), failed.size(), attempt);
+                    for (Queued queued : batch) {
+                        if (failed.contains(queued.message())) {
+                            handOverToRetry(queued);
+                        } else {
+                            markHandled(queued);
+                        }
+                    }
+                    return;
+                }
+                TimeUnit.MILLISECONDS.sleep(RETRY_BACKOFF_MS * attempt);
+            }
+        }
+    }
+
+    // MailSendException без списка неотправленных — сбой до отправки (например, соединения), не ушло ничего
+    private static List<EmailMessage> failedMessages(List<EmailMessage> batch, MailException exception) {
+        if (!(exception instanceof MailSendException sendException) || sendException.getFailedMessages().isEmpty()) {
+            return batch;
+        }
+        Set<String> recipients = new HashSet<>();
+        for (Object message : sendException.getFailedMessages().keySet()) {
+            recipients.addAll(recipientsOf(message));
+        }
+        return batch.stream().filter(message -> recipients.contains(message.to())).toList();
+    }
+
+    private static List<String> recipientsOf(Object message) {
+        if (message instanceof MimeMessage mime) {
+            try {
+                Address[] addresses = mime.getAllRecipients();
+                if (addresses != null) {
+                    return Arrays.stream(addresses)
+                            .map(address -> address instanceof InternetAddress internet ? internet.getAddress() : address.toString())
+                            .toList();
+                }
+            } catch (MessagingException e) {
+                log.warn("EmailDispatcher: не удалось прочитать получателей неотправленного письма: {}", e.getMessage());
+            }
+        }
+        return List.of();
+    }
+
+    // запись подтверждается, только когда стадия повтора её приняла; иначе её прочитают заново после перезапуска
+    private void handOverToRetry(Queued queued) {
+        EmailMessage message = queued.message();
+        if (message.order() == null) {
+            log.error("EmailDispatcher: письмо на {} не отправлено и не может быть повторено", message.to());
+            markHandled(queued);
+            return;
+        }
+        try {
+            retryPublisher.publish(message.order()).whenComplete((result, exception) -> {
+                if (exception == null) {
+                    markHandled(queued);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("EmailDispatcher: письмо на {} не передано на повтор: {}", message.to(), e.getMessage());
+        }
+    }
+
+    private static void markHandled(Queued queued) {
+        try {
+            queued.onHandled().run();
+        } catch (RuntimeException e) {
+            log.warn("EmailDispatcher: не удалось подтвердить письмо на {}: {}", queued.message().to(), e.getMessage());
+        }
+    }
+
+    private record Queued(EmailMessage message, Runnable onHandled) {
+    }
+
+    private void pauseListener() {
+        if (paused.compareAndSet(false, true)) {
+            MessageListenerContainer container = registry.getListenerContainer(NotificationConsumer.LISTENER_ID);
+            if (container != null) {
+                container.pause();
+            }
+            log.warn("EmailDispatcher: очередь писем заполнена ({}), чтение topic-orders приостановлено", capacity);
+        }
+    }
+
+    private void resumeListenerIfDrained() {
+        if (paused.get() && queue.size() <= capacity / 2 && paused.compareAndSet(true, false)) {
+            MessageListenerContainer container = registry.getListenerContainer(NotificationConsumer.LISTENER_ID);
+            if (container != null) {
+                container.resume();
+            }
+            log.info("EmailDispatcher: очередь писем разгружена ({}), чтение topic-orders возобновлено", queue.size());
+        }
+    }
+}
@@ -1,12 +1,18 @@
 package com.utochkin.notificationservice.services;
 
+import com.utochkin.notificationservice.models.EmailMessage;
 import lombok.AllArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.mail.MailException;
-import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.mail.javamail.MimeMessagePreparator;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
 @Service
 @AllArgsConstructor
 @Log4j2
@@ -14,19 +20,53 @@ public class EmailService {
 
     private final JavaMailSender mailSender;
 
-    public void sendOrderNotification(String to, String subject, String text) {
-        log.info("EmailService: отправка уведомления на {}: {}", to, subject);
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(to);
-        message.setSubject(subject);
-        message.setText(text);
+    // письмо с HTML-вариантом уходит как multipart/alternative, без него — обычным текстом
+    public void send(EmailMessage message) {
+        log.info("EmailService: отправка уведомления на {}: {}", message.to(), message.subject());
+        try {
+            mailSender.send(preparator(message));
+            log.info("EmailService: письмо успешно отправлено на {}", message.to());
+        } catch (MailException exception) {
+            log.error("EmailService: не удалось отправить письмо на {}: {}", message.to(), exception.getMessage(), exception);
+            throw exception;
+        }
+    }
+
+    // JavaMailSenderImpl отправляет все письма пачки через одно SMTP-соединение
+    public void sendBatch(List<EmailMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (messages.size() == 1) {
+            send(messages.getFirst());
+            return;
+        }
 
+        log.info("EmailService: отправка пачки из {} писем", messages.size());
         try {
-            mailSender.send(message);
-            log.info("EmailService: письмо успешно отправлено на {}", to);
+            mailSender.send(messages.stream().map(EmailService::preparator).toArray(MimeMessagePreparator[]::new));
+            log.info("EmailService: пачка из {} писем успешно отправлена", messages.size());
+        } catch (MailSendException exception) {
+            log.error("EmailService: из пачки в {} писем не отправлено {}: {}",
+                    messages.size(), exception.getFailedMessages().size(), exception.getMessage(), exception);
+            throw exception;
         } catch (MailException exception) {
-            log.error("EmailService: не удалось отправить письмо на {}: {}", to, exception.getMessage(), exception);
+            log.error("EmailService: не удалось отправить пачку из {} писем: {}", messages.size(), exception.getMessage(), exception);
             throw exception;
         }
     }
+
+    private static MimeMessagePreparator preparator(EmailMessage message) {
+        return mimeMessage -> {
+            boolean multipart = message.html() != null;
+            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, multipart, StandardCharsets.UTF_8.name());
+            helper.setTo(message.to());
+            helper.setSubject(message.subject());
+            if (multipart) {
+                helper.setText(message.text(), message.html());
+            } else {
+                helper.setText(message.text());
+            }
+        };
+    }
 }
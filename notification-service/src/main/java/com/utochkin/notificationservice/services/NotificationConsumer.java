@@ -1,102 +1,93 @@
 package com.utochkin.notificationservice.services;
 
+import com.utochkin.notificationservice.config.KafkaTopics;
 import com.utochkin.notificationservice.dto.OrderDtoForKafka;
+import com.utochkin.notificationservice.models.EmailMessage;
+import com.utochkin.notificationservice.templates.NotificationTemplates;
+import com.utochkin.notificationservice.templates.RenderedEmail;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Service;
 
-import java.util.stream.Collectors;
-
+/**
+ * Читает события заказов и отправляет по ним письма. Смещение подтверждается вручную (ack-mode manual,
+ * async-acks): запись из topic-orders подтверждает EmailDispatcher, когда письмо отправлено или передано на
+ * стадию повтора, а не когда оно встало в очередь. Контейнер коммитит смещения без пропусков, поэтому
+ * после падения письма из очереди читаются заново — доставка как минимум однократная, возможны дубли.
+ */
 @Service
 @AllArgsConstructor
 @Log4j2
 public class NotificationConsumer {
 
-    private final EmailService emailService;
-
-    @KafkaListener(topics = "topic-orders", groupId = "notification-group")
-    public void onOrderEvent(OrderDtoForKafka orderDto) {
-        log.info("NotificationConsumer: получено сообщение из Kafka: {}", orderDto);
-
-        String recipientEmail = orderDto.getUserDto().email();
-        if (recipientEmail != null && !recipientEmail.isEmpty()) {
-            String subject = "Номер заказа " + orderDto.getOrderUuid();
-            String text = createEmailText(orderDto);
-            emailService.sendOrderNotification(recipientEmail, subject, text);
-        } else {
-            log.warn("NotificationConsumer: у пользователя {} нет email, пропускаем уведомление", orderDto.getUserDto().username());
-        }
-    }
-
-        private String createEmailText(OrderDtoForKafka orderDto) {
-            log.debug("NotificationConsumer: формируем текст письма для заказа {}", orderDto.getOrderUuid());
-
-            StringBuilder sb = new StringBuilder();
+    public static final String LISTENER_ID = "notification-listener";
 
-            String productList = orderDto.getOrderRequests().stream()
-                    .map(req -> "Номер товара: " + req.articleId() + ", Количество: " + req.quantity() + " шт.")
-                    .collect(Collectors.joining("; "));
+    private final EmailDispatcher emailDispatcher;
+    private final EmailService emailService;
+    private final NotificationTemplates notificationTemplates;
+    private final MeterRegistry meterRegistry;
 
-            switch (orderDto.getOrderStatus()){
-                case SUCCESS -> {
-                    sb.append("Здравствуйте, ")
-                            .append(orderDto.getUserDto().firstName())
-                            .append("!\n\n");
-                    sb.append("Ваш заказ № ")
-                            .append(orderDto.getOrderUuid())
-                            .append(" на сумму ")
-                            .append(orderDto.getTotalAmount())
-                            .append(" рублей успешно оплачен.\n\n")
-                            .append("Номер платежа: ")
-                            .append(orderDto.getPaymentId())
-                            .append(".\n\n");
-                    sb.append("Заказ будет отправлен по адресу: ")
-                            .append(orderDto.getAddressDto().city())
-                            .append(", ")
-                            .append(orderDto.getAddressDto().street())
-                            .append(", дом № ")
-                            .append(orderDto.getAddressDto().houseNumber())
-                            .append(", квартира № ")
-                            .append(orderDto.getAddressDto().apartmentNumber())
-                            .append(".\n\n");
-                    sb.append("Дата создания заказа: ")
-                            .append(orderDto.getCreatedAt().toString().replace("T", " "))
-                            .append(".\n\n");
-                    sb.append("Список товаров в заказе: ")
-                            .append(productList)
-                            .append("\n");
-                    }
+    // ошибка обработки не держит партицию: запись уходит в topic-orders-notification-retry-60000,
+    // затем в -600000 и после этого в topic-orders-notification-dlt
+    @RetryableTopic(
+            attempts = "3",
+            backoff = @Backoff(delay = KafkaTopics.FIRST_RETRY_DELAY_MS, multiplier = KafkaTopics.RETRY_DELAY_MULTIPLIER),
+            topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_DELAY_VALUE,
+            retryTopicSuffix = KafkaTopics.RETRY_TOPIC_SUFFIX,
+            dltTopicSuffix = KafkaTopics.DLT_TOPIC_SUFFIX
+    )
+    @KafkaListener(id = LISTENER_ID, idIsGroup = false, topics = KafkaTopics.TOPIC_ORDERS, groupId = "notification-group")
+    public void onOrderEvent(OrderDtoForKafka orderDto, @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
+                             Acknowledgment acknowledgment) {
+        log.info("NotificationConsumer: получено сообщение из {}: {}", topic, orderDto);
 
-                case FAILED -> {
-                    sb.append("Здравствуйте, ")
-                            .append(orderDto.getUserDto().firstName())
-                            .append("!\n\n");
-                    sb.append("Ваш заказ №")
-                            .append(orderDto.getOrderUuid())
-                            .append(" на сумму ")
-                            .append(orderDto.getTotalAmount())
-                            .append(" не получилось оплатить.")
-                            .append(" Пожалуйста проверьте свой баланс.")
-                            .append("\n");
-                }
-                case REFUNDED -> {
-                    sb.append("Здравствуйте, ")
-                            .append(orderDto.getUserDto().firstName())
-                            .append("!\n\n");
-                    sb.append("Ваш заказ №")
-                            .append(orderDto.getOrderUuid())
-                            .append(" успешно отменен.")
-                            .append(" Ваши средства в размере ")
-                            .append(orderDto.getTotalAmount())
-                            .append(" в ближайшее время вернутся на счет.")
-                            .append("\n");
+        try {
+            String recipientEmail = orderDto.getUserDto().email();
+            if (recipientEmail != null && !recipientEmail.isEmpty()) {
+                // в событии заказа нет языка пользователя, поэтому письмо на языке шаблонов по умолчанию
+                RenderedEmail email = notificationTemplates.render(orderDto, null);
+                log.debug("NotificationConsumer: сформировано письмо по заказу {} со статусом {}",
+                        orderDto.getOrderUuid(), orderDto.getOrderStatus());
+                EmailMessage message = new EmailMessage(recipientEmail, email.subject(), email.text(), email.html(), orderDto);
+                if (KafkaTopics.TOPIC_ORDERS.equals(topic)) {
+                    // письмо только ставится в очередь EmailDispatcher, SMTP не задерживает чтение партиции;
+                    // смещение подтвердит воркер после отправки
+                    emailDispatcher.submit(message, acknowledgment::acknowledge);
+                } else {
+                    // на стадиях повтора записей мало, отправляем сразу, чтобы ошибка SMTP перевела запись на следующую стадию
+                    emailService.send(message);
+                    acknowledgment.acknowledge();
                 }
+            } else {
+                log.warn("NotificationConsumer: у пользователя {} нет email, пропускаем уведомление", orderDto.getUserDto().username());
+                acknowledgment.acknowledge();
             }
-
-            sb.append("\nСпасибо, что выбираете наш сервис!");
-            log.info("Сформировано сообщения для отправке по почте: {}", sb.toString());
-            return sb.toString();
+            count(topic, "success");
+        } catch (RuntimeException exception) {
+            count(topic, "failure");
+            throw exception;
         }
+    }
 
+    @DltHandler
+    public void onDeadLetter(OrderDtoForKafka orderDto, @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
+                             Acknowledgment acknowledgment) {
+        log.error("NotificationConsumer: уведомление по заказу {} не отправлено после всех повторов, запись в {}",
+                orderDto.getOrderUuid(), topic);
+        count(topic, "dead-letter");
+        acknowledgment.acknowledge();
+    }
+
+    private void count(String topic, String outcome) {
+        meterRegistry.counter("order.events.consumed", "listener", "notification", "topic", topic, "outcome", outcome).increment();
+    }
 }
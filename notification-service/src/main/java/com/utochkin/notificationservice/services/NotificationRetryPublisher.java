@@ -0,0 +1,41 @@
+package com.utochkin.notificationservice.services;
+
+import com.utochkin.notificationservice.dto.OrderDtoForKafka;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+
+import static com.utochkin.notificationservice.config.KafkaTopics.FIRST_RETRY_TOPIC;
+
+/**
+ * Отправляет событие на первую стадию повтора. Используется для писем, которые EmailDispatcher
+ * не смог отправить сам, и для повторной обработки записей из DLT.
+ */
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class NotificationRetryPublisher {
+
+    private final KafkaTemplate<Object, Object> kafkaTemplate;
+
+    public CompletableFuture<SendResult<Object, Object>> publish(Object key, OrderDtoForKafka orderDto) {
+        CompletableFuture<SendResult<Object, Object>> future = kafkaTemplate.send(FIRST_RETRY_TOPIC, key, orderDto);
+        future.whenComplete((result, exception) -> {
+            if (exception != null) {
+                log.error("NotificationRetryPublisher: не удалось отправить заказ {} в {}: {}",
+                        orderDto.getOrderUuid(), FIRST_RETRY_TOPIC, exception.getMessage());
+            } else {
+                log.info("NotificationRetryPublisher: заказ {} отправлен в {}", orderDto.getOrderUuid(), FIRST_RETRY_TOPIC);
+            }
+        });
+        return future;
+    }
+
+    public CompletableFuture<SendResult<Object, Object>> publish(OrderDtoForKafka orderDto) {
+        return publish(orderDto.getOrderUuid() == null ? null : orderDto.getOrderUuid().toString(), orderDto);
+    }
+}
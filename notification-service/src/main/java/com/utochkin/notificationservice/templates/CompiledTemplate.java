@@ -0,0 +1,86 @@
+package com.utochkin.notificationservice.templates;
+
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Шаблон, разобранный один раз на список сегментов: литералы и подстановки {{name}}.
+ * render только склеивает сегменты, без повторного разбора исходного текста.
+ * В HTML-шаблонах подставляемые значения экранируются.
+ */
+public final class CompiledTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    private sealed interface Segment permits Literal, Placeholder {
+    }
+
+    private record Literal(String text) implements Segment {
+    }
+
+    private record Placeholder(String name) implements Segment {
+    }
+
+    private final Segment[] segments;
+    private final boolean escapeHtml;
+    private final int literalLength;
+
+    private CompiledTemplate(Segment[] segments, boolean escapeHtml) {
+        this.segments = segments;
+        this.escapeHtml = escapeHtml;
+        int length = 0;
+        for (Segment segment : segments) {
+            if (segment instanceof Literal literal) {
+                length += literal.text().length();
+            }
+        }
+        this.literalLength = length;
+    }
+
+    public static CompiledTemplate compile(String source, boolean escapeHtml) {
+        List<Segment> segments = new ArrayList<>();
+        int position = 0;
+        while (position < source.length()) {
+            int open = source.indexOf(OPEN, position);
+            if (open < 0) {
+                segments.add(new Literal(source.substring(position)));
+                break;
+            }
+            if (open > position) {
+                segments.add(new Literal(source.substring(position, open)));
+            }
+            int close = source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException("Незакрытая подстановка в шаблоне на позиции " + open);
+            }
+            String name = source.substring(open + OPEN.length(), close).trim();
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Пустая подстановка в шаблоне на позиции " + open);
+            }
+            segments.add(new Placeholder(name));
+            position = close + CLOSE.length();
+        }
+        return new CompiledTemplate(segments.toArray(Segment[]::new), escapeHtml);
+    }
+
+    // отсутствующее в модели значение подставляется пустой строкой
+    public String render(Map<String, String> model) {
+        StringBuilder sb = new StringBuilder(literalLength + 16 * segments.length);
+        for (Segment segment : segments) {
+            switch (segment) {
+                case Literal literal -> sb.append(literal.text());
+                case Placeholder placeholder -> {
+                    String value = model.get(placeholder.name());
+                    if (value != null) {
+                        sb.append(escapeHtml ? HtmlUtils.htmlEscape(value) : value);
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
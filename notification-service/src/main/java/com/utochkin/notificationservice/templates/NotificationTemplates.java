@@ -0,0 +1,167 @@
+package com.utochkin.notificationservice.templates;
+
+import com.utochkin.notificationservice.config.NotificationTemplateProperties;
+import com.utochkin.notificationservice.dto.AddressDto;
+import com.utochkin.notificationservice.dto.OrderDtoForKafka;
+import com.utochkin.notificationservice.models.OrderRequest;
+import com.utochkin.notificationservice.models.Status;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Шаблоны писем, скомпилированные один раз при старте: на каждое письмо только подставляются значения.
+ * После обновления конфигурации из config-server (RefreshScopeRefreshedEvent) шаблоны компилируются заново;
+ * если новые шаблоны с ошибкой, продолжают работать прежние.
+ */
+@Component
+@EnableConfigurationProperties(NotificationTemplateProperties.class)
+@Log4j2
+public class NotificationTemplates {
+
+    private record StatusTemplates(CompiledTemplate subject, CompiledTemplate text, CompiledTemplate html) {
+    }
+
+    private record LocaleTemplates(CompiledTemplate product, Map<Status, StatusTemplates> statuses) {
+    }
+
+    private record Compiled(LocaleTemplates defaults, Map<String, LocaleTemplates> locales) {
+    }
+
+    private final NotificationTemplateProperties properties;
+    private volatile Compiled compiled;
+
+    public NotificationTemplates(NotificationTemplateProperties properties) {
+        this.properties = properties;
+        this.compiled = compile(properties);
+        log.info("NotificationTemplates: скомпилированы шаблоны для языков {}", compiled.locales().keySet());
+    }
+
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void reload() {
+        try {
+            compiled = compile(properties);
+            log.info("NotificationTemplates: шаблоны перекомпилированы после обновления конфигурации, языки {}",
+                    compiled.locales().keySet());
+        } catch (IllegalArgumentException e) {
+            log.error("NotificationTemplates: новые шаблоны не применены, остаются прежние: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Письмо по статусу заказа на языке locale. Если для языка нет шаблонов или нет шаблона этого статуса,
+     * используется язык по умолчанию; locale == null — сразу язык по умолчанию.
+     */
+    public RenderedEmail render(OrderDtoForKafka order, Locale locale) {
+        Compiled current = compiled;
+        LocaleTemplates templates = resolve(current, locale);
+        StatusTemplates statusTemplates = templates.statuses().get(order.getOrderStatus());
+        if (statusTemplates == null) {
+            templates = current.defaults();
+            statusTemplates = templates.statuses().get(order.getOrderStatus());
+        }
+
+        Map<String, String> model = model(order, templates.product());
+        return new RenderedEmail(
+                statusTemplates.subject().render(model),
+                statusTemplates.text().render(model),
+                statusTemplates.html() == null ? null : statusTemplates.html().render(model));
+    }
+
+    private static LocaleTemplates resolve(Compiled current, Locale locale) {
+        if (locale == null) {
+            return current.defaults();
+        }
+        LocaleTemplates templates = current.locales().get(locale.toLanguageTag().toLowerCase(Locale.ROOT));
+        if (templates == null) {
+            templates = current.locales().get(locale.getLanguage());
+        }
+        return templates == null ? current.defaults() : templates;
+    }
+
+    private static Map<String, String> model(OrderDtoForKafka order, CompiledTemplate product) {
+        Map<String, String> model = new HashMap<>(16);
+        model.put("orderUuid", value(order.getOrderUuid()));
+        model.put("totalAmount", value(order.getTotalAmount()));
+        model.put("paymentId", value(order.getPaymentId()));
+        if (order.getCreatedAt() != null) {
+            model.put("createdAt", order.getCreatedAt().toString().replace("T", " "));
+        }
+        if (order.getUserDto() != null) {
+            model.put("firstName", order.getUserDto().firstName());
+        }
+        AddressDto address = order.getAddressDto();
+        if (address != null) {
+            model.put("city", address.city());
+            model.put("street", address.street());
+            model.put("houseNumber", value(address.houseNumber()));
+            model.put("apartmentNumber", value(address.apartmentNumber()));
+        }
+        if (order.getOrderRequests() != null) {
+            model.put("products", products(order.getOrderRequests(), product));
+        }
+        return model;
+    }
+
+    private static String products(List<OrderRequest> requests, CompiledTemplate product) {
+        StringBuilder sb = new StringBuilder();
+        Map<String, String> line = new HashMap<>(4);
+        for (OrderRequest request : requests) {
+            if (!sb.isEmpty()) {
+                sb.append("; ");
+            }
+            line.put("articleId", value(request.articleId()));
+            line.put("quantity", value(request.quantity()));
+            sb.append(product.render(line));
+        }
+        return sb.toString();
+    }
+
+    private static String value(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static Compiled compile(NotificationTemplateProperties properties) {
+        Map<String, LocaleTemplates> locales = new HashMap<>();
+        properties.getLocales().forEach((locale, source) ->
+                locales.put(locale.toLowerCase(Locale.ROOT), compile(locale, source)));
+
+        LocaleTemplates defaults = locales.get(properties.getDefaultLocale().toLowerCase(Locale.ROOT));
+        if (defaults == null) {
+            throw new IllegalArgumentException("Нет шаблонов для языка по умолчанию " + properties.getDefaultLocale());
+        }
+        for (Status status : Status.values()) {
+            if (!defaults.statuses().containsKey(status)) {
+                throw new IllegalArgumentException("Для языка по умолчанию нет шаблона статуса " + status);
+            }
+        }
+        return new Compiled(defaults, Map.copyOf(locales));
+    }
+
+    private static LocaleTemplates compile(String locale, NotificationTemplateProperties.LocaleTemplates source) {
+        String product = source.getProduct() == null ? "{{articleId}} x {{quantity}}" : source.getProduct();
+        Map<Status, StatusTemplates> statuses = new EnumMap<>(Status.class);
+        source.getStatuses().forEach((status, templates) -> {
+            if (templates.getSubject() == null || templates.getText() == null) {
+                throw new IllegalArgumentException("У шаблона " + locale + "/" + status + " нет темы или текста");
+            }
+            try {
+                statuses.put(status, new StatusTemplates(
+                        CompiledTemplate.compile(templates.getSubject(), false),
+                        CompiledTemplate.compile(templates.getText(), false),
+                        templates.getHtml() == null ? null : CompiledTemplate.compile(templates.getHtml(), true)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Шаблон " + locale + "/" + status + ": " + e.getMessage(), e);
+            }
+        });
+        return new LocaleTemplates(CompiledTemplate.compile(product, false), statuses);
+    }
+}
@@ -0,0 +1,7 @@
+package com.utochkin.notificationservice.templates;
+
+// html == null — у шаблона нет HTML-варианта, письмо уходит только текстом
+public record RenderedEmail(String subject,
+                            String text,
+                            String html) {
+}
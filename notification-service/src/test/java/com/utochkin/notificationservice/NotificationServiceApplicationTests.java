@@ -6,10 +6,16 @@ import com.utochkin.notificationservice.dto.OrderDtoForKafka;
 import com.utochkin.notificationservice.dto.UserDto;
 import com.utochkin.notificationservice.models.OrderRequest;
 import com.utochkin.notificationservice.models.Status;
+import jakarta.mail.Address;
+import jakarta.mail.Multipart;
+import jakarta.mail.Part;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
 import org.awaitility.Awaitility;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
@@ -17,8 +23,8 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.test.EmbeddedKafkaBroker;
 import org.springframework.kafka.test.context.EmbeddedKafka;
-import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessagePreparator;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
@@ -26,10 +32,10 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Objects;
+import java.util.Properties;
 import java.util.UUID;
 
-import static org.mockito.ArgumentMatchers.argThat;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.verify;
 
 
@@ -91,13 +97,31 @@ class NotificationServiceApplicationTests {
         kafkaTemplate.sendDefault(order);
         kafkaTemplate.flush();
 
-        Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
-            verify(mailSender).send(argThat((SimpleMailMessage msg) ->
-                    Objects.requireNonNull(msg.getTo())[0].equals("alice@example.com")
-                            && Objects.requireNonNull(msg.getSubject()).contains(order.getOrderUuid().toString())
-                            && Objects.requireNonNull(msg.getText()).contains("Ваш заказ № " + order.getOrderUuid())
-            ));
-        });
+        ArgumentCaptor<MimeMessagePreparator> preparator = ArgumentCaptor.forClass(MimeMessagePreparator.class);
+        Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> verify(mailSender).send(preparator.capture()));
+
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+        preparator.getValue().prepare(message);
+        message.saveChanges();
+        assertThat(message.getAllRecipients()).extracting(Address::toString).containsExactly("alice@example.com");
+        assertThat(message.getSubject()).contains(order.getOrderUuid().toString());
+        assertThat(text(message)).contains("Ваш заказ № " + order.getOrderUuid());
+    }
+
+    // текстовая часть письма: у шаблона с HTML-вариантом она лежит внутри multipart/alternative
+    private static String text(Part part) throws Exception {
+        if (part.isMimeType("text/plain")) {
+            return (String) part.getContent();
+        }
+        if (part.getContent() instanceof Multipart multipart) {
+            for (int i = 0; i < multipart.getCount(); i++) {
+                String text = text(multipart.getBodyPart(i));
+                if (text != null) {
+                    return text;
+                }
+            }
+        }
+        return null;
     }
 
 }
@@ -0,0 +1,137 @@
+package com.utochkin.notificationservice.benchmark;
+
+import com.utochkin.notificationservice.dto.AddressDto;
+import com.utochkin.notificationservice.dto.OrderDtoForKafka;
+import com.utochkin.notificationservice.dto.UserDto;
+import com.utochkin.notificationservice.models.OrderRequest;
+import com.utochkin.notificationservice.models.Status;
+import com.utochkin.notificationservice.templates.ClasspathTemplates;
+import com.utochkin.notificationservice.templates.NotificationTemplates;
+import com.utochkin.notificationservice.templates.RenderedEmail;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнивает формирование письма прежним StringBuilder из NotificationConsumer (копия ниже)
+ * и рендер скомпилированных шаблонов: текст и HTML-вариант.
+ * Запуск: ./gradlew benchmark
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NotificationTemplateBenchmark {
+
+    @Param({"SUCCESS", "FAILED", "REFUNDED"})
+    public Status status;
+
+    private NotificationTemplates templates;
+    private OrderDtoForKafka order;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        templates = ClasspathTemplates.templates();
+        order = new OrderDtoForKafka(
+                UUID.randomUUID(),
+                1234.5,
+                status,
+                LocalDateTime.of(2025, 7, 1, 10, 0),
+                LocalDateTime.of(2025, 7, 1, 10, 5),
+                new AddressDto("Москва", "Тверская", 10, 25),
+                new UserDto("ivan", "Иван", "Иванов", "ivan@example.com"),
+                List.of(new OrderRequest(UUID.randomUUID(), 2),
+                        new OrderRequest(UUID.randomUUID(), 1),
+                        new OrderRequest(UUID.randomUUID(), 5)),
+                UUID.randomUUID()
+        );
+    }
+
+    @Benchmark
+    public String legacyStringBuilder() {
+        return "Номер заказа " + order.getOrderUuid() + legacyEmailText(order);
+    }
+
+    @Benchmark
+    public RenderedEmail compiledTemplates() {
+        return templates.render(order, null);
+    }
+
+    @Test
+    @DisplayName("JMH: прежний StringBuilder против скомпилированных шаблонов")
+    void run() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(NotificationTemplateBenchmark.class.getName() + "\\.")
+                // форк JVM не видит classpath тестового воркера Gradle, поэтому замеры идут в той же JVM
+                .forks(0)
+                .build();
+
+        assertThat(new Runner(options).run()).isNotEmpty();
+    }
+
+    // NotificationConsumer.createEmailText до перехода на шаблоны, без логирования тела письма
+    private static String legacyEmailText(OrderDtoForKafka orderDto) {
+        StringBuilder sb = new StringBuilder();
+
+        String productList = orderDto.getOrderRequests().stream()
+                .map(req -> "Номер товара: " + req.articleId() + ", Количество: " + req.quantity() + " шт.")
+                .collect(Collectors.joining("; "));
+
+        switch (orderDto.getOrderStatus()) {
+            case SUCCESS -> {
+                sb.append("Здравствуйте, ").append(orderDto.getUserDto().firstName()).append("!\n\n");
+                sb.append("Ваш заказ № ").append(orderDto.getOrderUuid())
+                        .append(" на сумму ").append(orderDto.getTotalAmount())
+                        .append(" рублей успешно оплачен.\n\n")
+                        .append("Номер платежа: ").append(orderDto.getPaymentId()).append(".\n\n");
+                sb.append("Заказ будет отправлен по адресу: ").append(orderDto.getAddressDto().city())
+                        .append(", ").append(orderDto.getAddressDto().street())
+                        .append(", дом № ").append(orderDto.getAddressDto().houseNumber())
+                        .append(", квартира № ").append(orderDto.getAddressDto().apartmentNumber())
+                        .append(".\n\n");
+                sb.append("Дата создания заказа: ")
+                        .append(orderDto.getCreatedAt().toString().replace("T", " ")).append(".\n\n");
+                sb.append("Список товаров в заказе: ").append(productList).append("\n");
+            }
+            case FAILED -> {
+                sb.append("Здравствуйте, ").append(orderDto.getUserDto().firstName()).append("!\n\n");
+                sb.append("Ваш заказ №").append(orderDto.getOrderUuid())
+                        .append(" на сумму ").append(orderDto.getTotalAmount())
+                        .append(" не получилось оплатить.").append(" Пожалуйста проверьте свой баланс.").append("\n");
+            }
+            case REFUNDED -> {
+                sb.append("Здравствуйте, ").append(orderDto.getUserDto().firstName()).append("!\n\n");
+                sb.append("Ваш заказ №").append(orderDto.getOrderUuid()).append(" успешно отменен.")
+                        .append(" Ваши средства в размере ").append(orderDto.getTotalAmount())
+                        .append(" в ближайшее время вернутся на счет.").append("\n");
+            }
+        }
+
+        sb.append("\nСпасибо, что выбираете наш сервис!");
+        return sb.toString();
+    }
+}
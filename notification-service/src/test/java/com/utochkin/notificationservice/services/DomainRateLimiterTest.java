@@ -0,0 +1,46 @@
+package com.utochkin.notificationservice.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DomainRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000);
+
+    @Test
+    @DisplayName("reserve → письма на один домен разносятся на интервал, другой домен не ждёт")
+    void reserve_spacesPerDomain() {
+        DomainRateLimiter limiter = new DomainRateLimiter(10, now::get);
+        long interval = TimeUnit.MILLISECONDS.toNanos(100);
+
+        assertThat(limiter.reserve("gmail.com")).isZero();
+        assertThat(limiter.reserve("gmail.com")).isEqualTo(interval);
+        assertThat(limiter.reserve("gmail.com")).isEqualTo(2 * interval);
+        assertThat(limiter.reserve("yandex.ru")).isZero();
+    }
+
+    @Test
+    @DisplayName("reserve → после паузы длиннее интервала слот выдаётся сразу")
+    void reserve_idleDomainIsFree() {
+        DomainRateLimiter limiter = new DomainRateLimiter(10, now::get);
+        limiter.reserve("gmail.com");
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(limiter.reserve("gmail.com")).isZero();
+    }
+
+    @Test
+    @DisplayName("reserve → лимит 0 означает отсутствие ограничения")
+    void reserve_unlimited() {
+        DomainRateLimiter limiter = new DomainRateLimiter(0, now::get);
+
+        assertThat(limiter.reserve("gmail.com")).isZero();
+        assertThat(limiter.reserve("gmail.com")).isZero();
+    }
+}
@@ -0,0 +1,69 @@
+package com.utochkin.notificationservice.services;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.utochkin.notificationservice.models.EmailMessage;
+import jakarta.mail.internet.MimeMessage;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Отправка через настоящий SMTP-протокол: GreenMail поднимает SMTP-сервер внутри теста.
+ */
+class EmailDispatcherSmtpTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private EmailDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+
+        dispatcher = new EmailDispatcher(new EmailService(mailSender), null, new KafkaListenerEndpointRegistry(),
+                100, 2, 10, 50, 3);
+        dispatcher.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.stop();
+    }
+
+    @Test
+    @DisplayName("Письма на разные домены доставляются SMTP-серверу все и без дублей")
+    void submit_deliversAllMessages() {
+        for (int i = 0; i < 30; i++) {
+            String domain = i % 2 == 0 ? "example.com" : "example.org";
+            dispatcher.submit(new EmailMessage("user" + i + "@" + domain, "Номер заказа " + i, "Ваш заказ № " + i));
+        }
+
+        Awaitility.await().atMost(Duration.ofSeconds(10))
+                .untilAsserted(() -> assertThat(greenMail.getReceivedMessages()).hasSize(30));
+
+        assertThat(Arrays.stream(greenMail.getReceivedMessages()).map(EmailDispatcherSmtpTest::subject).distinct())
+                .hasSize(30);
+    }
+
+    private static String subject(MimeMessage message) {
+        try {
+            return message.getSubject();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.utochkin.notificationservice.services;
+
+import com.utochkin.notificationservice.dto.OrderDtoForKafka;
+import com.utochkin.notificationservice.models.EmailMessage;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.mail.MailSendException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class EmailDispatcherTest {
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private NotificationRetryPublisher retryPublisher;
+
+    @Mock
+    private KafkaListenerEndpointRegistry registry;
+
+    @Mock
+    private MessageListenerContainer container;
+
+    private EmailDispatcher dispatcher;
+
+    private EmailDispatcher dispatcher(int capacity, int workers, int batchSize, int maxAttempts) {
+        given(registry.getListenerContainer(NotificationConsumer.LISTENER_ID)).willReturn(container);
+        dispatcher = new EmailDispatcher(emailService, retryPublisher, registry, capacity, workers, batchSize, 0, maxAttempts);
+        dispatcher.start();
+        return dispatcher;
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    private static EmailMessage message(int i) {
+        return new EmailMessage("user" + i + "@example.com", "subject " + i, "text " + i);
+    }
+
+    @Test
+    @DisplayName("submit → письма уходят воркерами пачками, слушатель не ставится на паузу")
+    void submit_sendsInBatches() {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        willAnswer(inv -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).given(emailService).sendBatch(anyList());
+        dispatcher(10, 1, 5, 1);
+
+        dispatcher.submit(message(0));
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> started.getCount() == 0);
+        for (int i = 1; i <= 5; i++) {
+            dispatcher.submit(message(i));
+        }
+        release.countDown();
+
+        // первое письмо ушло одно, пока воркер был занят, остальные пять накопились в одну пачку
+        Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+            then(emailService).should(times(2)).sendBatch(anyList());
+            then(emailService).should().sendBatch(argThat(batch -> batch.size() == 5));
+        });
+        then(container).should(never()).pause();
+    }
+
+    @Test
+    @DisplayName("submit → при заполненной очереди слушатель ставится на паузу и возобновляется после разгрузки")
+    void submit_pausesAndResumesListener() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        willAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).given(emailService).sendBatch(anyList());
+        dispatcher(2, 1, 1, 1);
+
+        // первое письмо занимает воркер, следующие два заполняют очередь
+        dispatcher.submit(message(0));
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> dispatcher.queueSize() == 0);
+        dispatcher.submit(message(1));
+        dispatcher.submit(message(2));
+
+        Thread blocked = Thread.ofVirtual().start(() -> dispatcher.submit(message(3)));
+        Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> then(container).should().pause());
+
+        release.countDown();
+        blocked.join(5_000);
+
+        Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+            then(container).should().resume();
+            then(emailService).should(times(4)).sendBatch(anyList());
+        });
+    }
+
+    @Test
+    @DisplayName("Пачка, из которой не ушло ни одно письмо, отправляется повторно")
+    void send_retriesWhenNothingSent() {
+        willThrow(new MailSendException("smtp down"))
+                .willAnswer(inv -> null)
+                .given(emailService).sendBatch(any());
+        dispatcher(10, 1, 10, 2);
+
+        dispatcher.submit(message(0));
+
+        Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                then(emailService).should(times(2)).sendBatch(List.of(message(0))));
+    }
+
+    @Test
+    @DisplayName("Письмо, которое не ушло после всех попыток, передаётся на стадию повтора вместе с исходным заказом")
+    void send_handsOverToRetryTopic() {
+        OrderDtoForKafka order = new OrderDtoForKafka();
+        order.setOrderUuid(UUID.randomUUID());
+        willThrow(new MailSendException("smtp down")).given(emailService).sendBatch(any());
+        given(retryPublisher.publish(any(OrderDtoForKafka.class))).willReturn(CompletableFuture.completedFuture(null));
+        dispatcher(10, 1, 10, 1);
+        AtomicBoolean acknowledged = new AtomicBoolean();
+
+        dispatcher.submit(new EmailMessage("user@example.com", "subject", "text", null, order), () -> acknowledged.set(true));
+        dispatcher.submit(message(1));
+
+        Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                then(retryPublisher).should().publish(order));
+        then(retryPublisher).shouldHaveNoMoreInteractions();
+        Awaitility.await().atMost(Duration.ofSeconds(5)).untilTrue(acknowledged);
+    }
+
+    @Test
+    @DisplayName("Отправленное письмо подтверждается после отправки пачки, а не при постановке в очередь")
+    void send_acknowledgesAfterDelivery() {
+        CountDownLatch smtp = new CountDownLatch(1);
+        willAnswer(inv -> {
+            smtp.await(5, TimeUnit.SECONDS);
+            return null;
+        }).given(emailService).sendBatch(anyList());
+        dispatcher(10, 1, 10, 1);
+        AtomicBoolean acknowledged = new AtomicBoolean();
+
+        dispatcher.submit(message(0), () -> acknowledged.set(true));
+
+        Awaitility.await().during(Duration.ofMillis(300)).atMost(Duration.ofSeconds(1)).untilFalse(acknowledged);
+        smtp.countDown();
+        Awaitility.await().atMost(Duration.ofSeconds(5)).untilTrue(acknowledged);
+    }
+
+    @Test
+    @DisplayName("Письмо, которое не удалось передать на стадию повтора, не подтверждается и будет прочитано заново")
+    void send_retryPublishFailed_doesNotAcknowledge() {
+        OrderDtoForKafka order = new OrderDtoForKafka();
+        order.setOrderUuid(UUID.randomUUID());
+        willThrow(new MailSendException("smtp down")).given(emailService).sendBatch(any());
+        given(retryPublisher.publish(any(OrderDtoForKafka.class)))
+                .willReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+        dispatcher(10, 1, 10, 1);
+        AtomicBoolean acknowledged = new AtomicBoolean();
+
+        dispatcher.submit(new EmailMessage("user@example.com", "subject", "text", null, order), () -> acknowledged.set(true));
+
+        Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                then(retryPublisher).should().publish(order));
+        Awaitility.await().during(Duration.ofMillis(300)).atMost(Duration.ofSeconds(1)).untilFalse(acknowledged);
+    }
+}
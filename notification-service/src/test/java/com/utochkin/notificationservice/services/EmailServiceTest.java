@@ -1,5 +1,9 @@
 package com.utochkin.notificationservice.services;
 
+import com.utochkin.notificationservice.models.EmailMessage;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,8 +14,11 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mail.MailException;
 import org.springframework.mail.MailSendException;
-import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessagePreparator;
+
+import java.util.List;
+import java.util.Properties;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
@@ -31,35 +38,60 @@ public class EmailServiceTest {
     private EmailService emailService;
 
     @Captor
-    private ArgumentCaptor<SimpleMailMessage> messageCaptor;
+    private ArgumentCaptor<MimeMessagePreparator> preparatorCaptor;
+
+    private static MimeMessage prepare(MimeMessagePreparator preparator) throws Exception {
+        MimeMessage mimeMessage = new MimeMessage(Session.getInstance(new Properties()));
+        preparator.prepare(mimeMessage);
+        mimeMessage.saveChanges();
+        return mimeMessage;
+    }
 
     @Test
     @DisplayName("Уведомление о заказе на отправку должно вызвать JavaMailSender и отправить корректные поля")
-    void sendOrderNotification_invokesMailSender() {
-        String to      = "user@example.com";
-        String subject = "Hello";
-        String text    = "Body text";
+    void send_invokesMailSender() throws Exception {
+        emailService.send(new EmailMessage("user@example.com", "Hello", "Body text"));
 
-        emailService.sendOrderNotification(to, subject, text);
+        then(mailSender).should().send(preparatorCaptor.capture());
+        MimeMessage sent = prepare(preparatorCaptor.getValue());
 
-        then(mailSender).should().send(messageCaptor.capture());
-        SimpleMailMessage sent = messageCaptor.getValue();
+        assertThat(sent.getAllRecipients()).extracting(Object::toString).containsExactly("user@example.com");
+        assertThat(sent.getSubject()).isEqualTo("Hello");
+        assertThat(sent.getContent()).isEqualTo("Body text");
+    }
+
+    @Test
+    @DisplayName("Письмо с HTML-вариантом уходит как multipart с текстовой и HTML-частью")
+    void send_withHtml_buildsMultipart() throws Exception {
+        emailService.send(new EmailMessage("user@example.com", "Hello", "Body text", "<p>Body</p>", null));
 
-        assertThat(sent.getTo()).containsExactly(to);
-        assertThat(sent.getSubject()).isEqualTo(subject);
-        assertThat(sent.getText()).isEqualTo(text);
+        then(mailSender).should().send(preparatorCaptor.capture());
+        MimeMessage sent = prepare(preparatorCaptor.getValue());
+
+        assertThat(sent.getContent()).isInstanceOf(MimeMultipart.class);
+        assertThat(sent.getContentType()).startsWith("multipart/mixed");
     }
 
     @Test
     @DisplayName("Уведомление о заказе на отправку выдает исключение MailException в случае сбоя")
-    void sendOrderNotification_throwsOnMailException() {
+    void send_throwsOnMailException() {
         willThrow(new MailSendException("smtp down"))
-                .given(mailSender).send(any(SimpleMailMessage.class));
+                .given(mailSender).send(any(MimeMessagePreparator.class));
 
         assertThatThrownBy(() ->
-                emailService.sendOrderNotification("a@b.com", "subj", "body"))
+                emailService.send(new EmailMessage("a@b.com", "subj", "body")))
                 .isInstanceOf(MailException.class)
                 .hasMessageContaining("smtp down");
     }
 
+    @Test
+    @DisplayName("Пачка писем отправляется одним вызовом JavaMailSender")
+    void sendBatch_sendsAllInOneCall() {
+        emailService.sendBatch(List.of(
+                new EmailMessage("a@example.com", "subj", "body"),
+                new EmailMessage("b@example.com", "subj", "body")));
+
+        then(mailSender).should().send(any(MimeMessagePreparator[].class));
+    }
+
 }
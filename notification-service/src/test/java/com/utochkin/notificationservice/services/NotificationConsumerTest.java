@@ -1,34 +1,59 @@
 package com.utochkin.notificationservice.services;
 
+import com.utochkin.notificationservice.config.KafkaTopics;
 import com.utochkin.notificationservice.dto.AddressDto;
 import com.utochkin.notificationservice.dto.OrderDtoForKafka;
 import com.utochkin.notificationservice.dto.UserDto;
 import com.utochkin.notificationservice.models.OrderRequest;
 import com.utochkin.notificationservice.models.Status;
+import com.utochkin.notificationservice.templates.ClasspathTemplates;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.mail.MailSendException;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.BDDMockito.then;
 import static org.mockito.Mockito.never;
 
 @ExtendWith(MockitoExtension.class)
 public class NotificationConsumerTest {
 
+    @Mock
+    private EmailDispatcher emailDispatcher;
+
     @Mock
     private EmailService emailService;
 
-    @InjectMocks
+    @Mock
+    private Acknowledgment acknowledgment;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     private NotificationConsumer consumer;
 
+    @BeforeEach
+    void setUp() {
+        consumer = new NotificationConsumer(emailDispatcher, emailService, ClasspathTemplates.templates(), meterRegistry);
+    }
+
+    private double consumed(String topic, String outcome) {
+        return meterRegistry.counter("order.events.consumed", "listener", "notification", "topic", topic, "outcome", outcome).count();
+    }
+
     private OrderDtoForKafka baseOrder() {
         return new OrderDtoForKafka(
                 UUID.randomUUID(),
@@ -44,18 +69,32 @@ public class NotificationConsumerTest {
     }
 
     @Test
-    @DisplayName("onOrderEvent должен отправлять электронное письмо при наличии email у пользователя")
+    @DisplayName("onOrderEvent должен ставить электронное письмо в очередь при наличии email у пользователя")
     void onOrderEvent_sendsEmail() {
         var order = baseOrder();
 
-        consumer.onOrderEvent(order);
+        consumer.onOrderEvent(order, KafkaTopics.TOPIC_ORDERS, acknowledgment);
 
-        then(emailService).should()
-                .sendOrderNotification(
-                        eq("john@doe.com"),
-                        eq("Номер заказа " + order.getOrderUuid()),
-                        contains("Ваш заказ № " + order.getOrderUuid())
-                );
+        then(emailDispatcher).should()
+                .submit(argThat(message -> message.to().equals("john@doe.com")
+                        && message.subject().equals("Номер заказа " + order.getOrderUuid())
+                        && message.text().contains("Ваш заказ № " + order.getOrderUuid())
+                        && message.html().contains("<p>Ваш заказ № " + order.getOrderUuid())
+                        && message.order() == order), any());
+    }
+
+    @Test
+    @DisplayName("onOrderEvent подтверждает запись из topic-orders только когда EmailDispatcher обработал письмо")
+    void onOrderEvent_acknowledgesAfterDispatch() {
+        consumer.onOrderEvent(baseOrder(), KafkaTopics.TOPIC_ORDERS, acknowledgment);
+
+        then(acknowledgment).should(never()).acknowledge();
+        ArgumentCaptor<Runnable> onHandled = ArgumentCaptor.forClass(Runnable.class);
+        then(emailDispatcher).should().submit(any(), onHandled.capture());
+
+        onHandled.getValue().run();
+
+        then(acknowledgment).should().acknowledge();
     }
 
     @Test
@@ -73,9 +112,35 @@ public class NotificationConsumerTest {
                 baseOrder().getPaymentId()
         );
 
-        consumer.onOrderEvent(order);
+        consumer.onOrderEvent(order, KafkaTopics.TOPIC_ORDERS, acknowledgment);
+
+        then(emailDispatcher).should(never()).submit(any(), any());
+        then(acknowledgment).should().acknowledge();
+    }
+
+    @Test
+    @DisplayName("onOrderEvent на стадии повтора отправляет письмо сразу, ошибка SMTP уходит в контейнер для перехода на следующую стадию")
+    void onOrderEvent_retryStage_sendsSynchronously() {
+        var order = baseOrder();
+        willThrow(new MailSendException("smtp down"))
+                .given(emailService).send(any());
+
+        assertThatThrownBy(() -> consumer.onOrderEvent(order, KafkaTopics.FIRST_RETRY_TOPIC, acknowledgment))
+                .isInstanceOf(MailSendException.class);
+
+        then(emailDispatcher).should(never()).submit(any(), any());
+        then(acknowledgment).should(never()).acknowledge();
+        assertThat(consumed(KafkaTopics.FIRST_RETRY_TOPIC, "failure")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("onOrderEvent считает обработанные записи по топику стадии, onDeadLetter — записи в DLT")
+    void onOrderEvent_countsPerStage() {
+        consumer.onOrderEvent(baseOrder(), KafkaTopics.TOPIC_ORDERS, acknowledgment);
+        consumer.onDeadLetter(baseOrder(), KafkaTopics.DLT_TOPIC, acknowledgment);
 
-        then(emailService).should(never()).sendOrderNotification(any(),any(),any());
+        assertThat(consumed(KafkaTopics.TOPIC_ORDERS, "success")).isEqualTo(1);
+        assertThat(consumed(KafkaTopics.DLT_TOPIC, "dead-letter")).isEqualTo(1);
     }
 
 }
@@ -0,0 +1,35 @@
+package com.utochkin.notificationservice.templates;
+
+import com.utochkin.notificationservice.config.NotificationTemplateProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Шаблоны из notification-templates.yml, связанные так же, как при старте сервиса, — без контекста Spring.
+ */
+public final class ClasspathTemplates {
+
+    private ClasspathTemplates() {
+    }
+
+    public static NotificationTemplateProperties properties() {
+        try {
+            var sources = new YamlPropertySourceLoader()
+                    .load("notification-templates", new ClassPathResource("notification-templates.yml"));
+            return new Binder(ConfigurationPropertySources.from(sources))
+                    .bind("notification.templates", NotificationTemplateProperties.class)
+                    .get();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static NotificationTemplates templates() {
+        return new NotificationTemplates(properties());
+    }
+}
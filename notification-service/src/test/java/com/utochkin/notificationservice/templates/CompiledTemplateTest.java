@@ -0,0 +1,39 @@
+package com.utochkin.notificationservice.templates;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompiledTemplateTest {
+
+    @Test
+    @DisplayName("render подставляет значения, отсутствующие в модели подстановки заменяются пустой строкой")
+    void render_substitutesValues() {
+        CompiledTemplate template = CompiledTemplate.compile("Здравствуйте, {{ firstName }}! Заказ {{orderUuid}}{{missing}}.", false);
+
+        assertThat(template.render(Map.of("firstName", "Иван", "orderUuid", "42")))
+                .isEqualTo("Здравствуйте, Иван! Заказ 42.");
+    }
+
+    @Test
+    @DisplayName("HTML-шаблон экранирует подставляемые значения, но не сам шаблон")
+    void render_escapesHtmlValues() {
+        CompiledTemplate template = CompiledTemplate.compile("<p>{{firstName}}</p>", true);
+
+        assertThat(template.render(Map.of("firstName", "<script>alert(1)</script>")))
+                .isEqualTo("<p>&lt;script&gt;alert(1)&lt;/script&gt;</p>");
+    }
+
+    @Test
+    @DisplayName("compile отклоняет незакрытую и пустую подстановку")
+    void compile_rejectsMalformedPlaceholders() {
+        assertThatThrownBy(() -> CompiledTemplate.compile("Заказ {{orderUuid", false))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CompiledTemplate.compile("Заказ {{ }}", false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,114 @@
+package com.utochkin.notificationservice.templates;
+
+import com.utochkin.notificationservice.config.NotificationTemplateProperties;
+import com.utochkin.notificationservice.dto.AddressDto;
+import com.utochkin.notificationservice.dto.OrderDtoForKafka;
+import com.utochkin.notificationservice.dto.UserDto;
+import com.utochkin.notificationservice.models.OrderRequest;
+import com.utochkin.notificationservice.models.Status;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NotificationTemplatesTest {
+
+    private static final UUID ORDER_UUID = UUID.fromString("11111111-1111-1111-1111-111111111111");
+    private static final UUID ARTICLE_ID = UUID.fromString("22222222-2222-2222-2222-222222222222");
+    private static final UUID PAYMENT_ID = UUID.fromString("33333333-3333-3333-3333-333333333333");
+
+    private static OrderDtoForKafka order(Status status) {
+        return new OrderDtoForKafka(
+                ORDER_UUID,
+                123.45,
+                status,
+                LocalDateTime.of(2025, 7, 1, 10, 0),
+                LocalDateTime.of(2025, 7, 1, 10, 5),
+                new AddressDto("City", "Street", 1, 2),
+                new UserDto("john", "John", "Doe", "john@doe.com"),
+                List.of(new OrderRequest(ARTICLE_ID, 2), new OrderRequest(ARTICLE_ID, 1)),
+                PAYMENT_ID
+        );
+    }
+
+    @Test
+    @DisplayName("Шаблон SUCCESS даёт тот же текст, что раньше собирался через StringBuilder")
+    void render_success_matchesLegacyText() {
+        RenderedEmail email = ClasspathTemplates.templates().render(order(Status.SUCCESS), null);
+
+        assertThat(email.subject()).isEqualTo("Номер заказа " + ORDER_UUID);
+        assertThat(email.text()).isEqualTo("Здравствуйте, John!\n\n"
+                + "Ваш заказ № " + ORDER_UUID + " на сумму 123.45 рублей успешно оплачен.\n\n"
+                + "Номер платежа: " + PAYMENT_ID + ".\n\n"
+                + "Заказ будет отправлен по адресу: City, Street, дом № 1, квартира № 2.\n\n"
+                + "Дата создания заказа: 2025-07-01 10:00.\n\n"
+                + "Список товаров в заказе: Номер товара: " + ARTICLE_ID + ", Количество: 2 шт.; "
+                + "Номер товара: " + ARTICLE_ID + ", Количество: 1 шт.\n"
+                + "\nСпасибо, что выбираете наш сервис!");
+        assertThat(email.html()).contains("<p>Ваш заказ № " + ORDER_UUID + " на сумму 123.45 рублей успешно оплачен.</p>");
+    }
+
+    @Test
+    @DisplayName("Для каждого статуса есть тема, текст и HTML-вариант")
+    void render_allStatuses() {
+        NotificationTemplates templates = ClasspathTemplates.templates();
+
+        assertThat(templates.render(order(Status.FAILED), null).text())
+                .contains("не получилось оплатить");
+        assertThat(templates.render(order(Status.REFUNDED), null).html())
+                .contains("успешно отменен");
+    }
+
+    @Test
+    @DisplayName("Для языка без шаблонов и для отсутствующего в языке статуса используется язык по умолчанию")
+    void render_fallsBackToDefaultLocale() {
+        NotificationTemplateProperties properties = ClasspathTemplates.properties();
+        NotificationTemplateProperties.StatusTemplates english = new NotificationTemplateProperties.StatusTemplates();
+        english.setSubject("Order {{orderUuid}}");
+        english.setText("Hello, {{firstName}}!");
+        NotificationTemplateProperties.LocaleTemplates en = new NotificationTemplateProperties.LocaleTemplates();
+        en.getStatuses().put(Status.SUCCESS, english);
+        properties.getLocales().put("en", en);
+        NotificationTemplates templates = new NotificationTemplates(properties);
+
+        RenderedEmail success = templates.render(order(Status.SUCCESS), Locale.forLanguageTag("en-GB"));
+        assertThat(success.subject()).isEqualTo("Order " + ORDER_UUID);
+        assertThat(success.html()).isNull();
+
+        assertThat(templates.render(order(Status.FAILED), Locale.ENGLISH).subject()).isEqualTo("Номер заказа " + ORDER_UUID);
+        assertThat(templates.render(order(Status.SUCCESS), Locale.GERMAN).subject()).isEqualTo("Номер заказа " + ORDER_UUID);
+    }
+
+    @Test
+    @DisplayName("reload применяет изменённые шаблоны, а шаблоны с ошибкой не заменяют работающие")
+    void reload_keepsPreviousTemplatesOnError() {
+        NotificationTemplateProperties properties = ClasspathTemplates.properties();
+        NotificationTemplates templates = new NotificationTemplates(properties);
+        NotificationTemplateProperties.StatusTemplates success = properties.getLocales().get("ru").getStatuses().get(Status.SUCCESS);
+
+        success.setSubject("Заказ {{orderUuid}} оплачен");
+        templates.reload();
+        assertThat(templates.render(order(Status.SUCCESS), null).subject()).isEqualTo("Заказ " + ORDER_UUID + " оплачен");
+
+        success.setSubject("Заказ {{orderUuid");
+        templates.reload();
+        assertThat(templates.render(order(Status.SUCCESS), null).subject()).isEqualTo("Заказ " + ORDER_UUID + " оплачен");
+    }
+
+    @Test
+    @DisplayName("Без шаблона какого-либо статуса для языка по умолчанию сервис не стартует")
+    void compile_requiresAllStatusesForDefaultLocale() {
+        NotificationTemplateProperties properties = ClasspathTemplates.properties();
+        properties.getLocales().get("ru").getStatuses().remove(Status.REFUNDED);
+
+        assertThatThrownBy(() -> new NotificationTemplates(properties))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("REFUNDED");
+    }
+}
@@ -1,13 +1,18 @@
 package com.utochkin.orderservice;
 
+import com.utochkin.orderservice.config.LatencyAwareLoadBalancerConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableDiscoveryClient
 @EnableFeignClients
+@LoadBalancerClients(defaultConfiguration = LatencyAwareLoadBalancerConfig.class)
+@EnableScheduling
 public class OrderServiceApplication {
 
     public static void main(String[] args) {
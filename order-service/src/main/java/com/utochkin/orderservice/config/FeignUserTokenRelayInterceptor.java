@@ -2,14 +2,37 @@ package com.utochkin.orderservice.config;
 
 import feign.RequestInterceptor;
 import feign.RequestTemplate;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.AuthorizedClientServiceOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Component;
 
 @Component
+@Log4j2
 public class FeignUserTokenRelayInterceptor implements RequestInterceptor {
 
+    private final ObjectProvider<ClientRegistrationRepository> clientRegistrationRepository;
+    private final ObjectProvider<OAuth2AuthorizedClientService> authorizedClientService;
+    private final String registrationId;
+
+    private volatile AuthorizedClientServiceOAuth2AuthorizedClientManager serviceClientManager;
+
+    public FeignUserTokenRelayInterceptor(ObjectProvider<ClientRegistrationRepository> clientRegistrationRepository,
+                                          ObjectProvider<OAuth2AuthorizedClientService> authorizedClientService,
+                                          @Value("${order.service-client.registration-id:order-service}") String registrationId) {
+        this.clientRegistrationRepository = clientRegistrationRepository;
+        this.authorizedClientService = authorizedClientService;
+        this.registrationId = registrationId;
+    }
+
     @Override
     public void apply(RequestTemplate requestTemplate) {
         // Получаем текущую аутентификацию из SecurityContext
@@ -19,7 +42,42 @@ public class FeignUserTokenRelayInterceptor implements RequestInterceptor {
             String tokenValue = jwtAuthToken.getToken().getTokenValue();
             // Добавляем заголовок Authorization с переданным JWT
             requestTemplate.header("Authorization", "Bearer " + tokenValue);
+            return;
+        }
+
+        // Фоновые задачи (сверка зависших заказов) идут без пользователя — используем токен самого сервиса
+        String serviceToken = serviceToken();
+        if (serviceToken != null) {
+            requestTemplate.header("Authorization", "Bearer " + serviceToken);
         }
     }
-}
 
+    private String serviceToken() {
+        AuthorizedClientServiceOAuth2AuthorizedClientManager manager = serviceClientManager();
+        if (manager == null) {
+            return null;
+        }
+        try {
+            OAuth2AuthorizedClient client = manager.authorize(OAuth2AuthorizeRequest
+                    .withClientRegistrationId(registrationId)
+                    .principal(registrationId)
+                    .build());
+            return client != null ? client.getAccessToken().getTokenValue() : null;
+        } catch (RuntimeException exception) {
+            log.warn("FeignUserTokenRelayInterceptor: не удалось получить токен сервиса: {}", exception.getMessage());
+            return null;
+        }
+    }
+
+    private AuthorizedClientServiceOAuth2AuthorizedClientManager serviceClientManager() {
+        if (serviceClientManager == null) {
+            ClientRegistrationRepository registrations = clientRegistrationRepository.getIfAvailable();
+            OAuth2AuthorizedClientService clients = authorizedClientService.getIfAvailable();
+            if (registrations == null || clients == null || registrations.findByRegistrationId(registrationId) == null) {
+                return null;
+            }
+            serviceClientManager = new AuthorizedClientServiceOAuth2AuthorizedClientManager(registrations, clients);
+        }
+        return serviceClientManager;
+    }
+}
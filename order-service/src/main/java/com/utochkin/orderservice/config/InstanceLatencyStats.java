@@ -0,0 +1,74 @@
+package com.utochkin.orderservice.config;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Задержка ответов и число запросов в работе по каждому экземпляру сервиса.
+ * Задержка — экспоненциальное скользящее среднее; если экземпляр давно не вызывался, его оценка
+ * затухает к нулю, чтобы однажды медленный экземпляр снова получил запросы и оценка обновилась.
+ */
+public class InstanceLatencyStats {
+
+    private static final double ALPHA = 0.3;
+    private static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final class Stats {
+        private double ewmaNanos;
+        private long updatedAtNanos;
+        private int inFlight;
+    }
+
+    private final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<>();
+    private final LongSupplier nanoTime;
+
+    public InstanceLatencyStats() {
+        this(System::nanoTime);
+    }
+
+    InstanceLatencyStats(LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+    }
+
+    public void started(String instanceId) {
+        Stats instance = stats.computeIfAbsent(instanceId, id -> new Stats());
+        synchronized (instance) {
+            instance.inFlight++;
+        }
+    }
+
+    public void completed(String instanceId, long latencyNanos, boolean failed) {
+        Stats instance = stats.computeIfAbsent(instanceId, id -> new Stats());
+        long sample = failed ? latencyNanos + FAILURE_PENALTY_NANOS : latencyNanos;
+        synchronized (instance) {
+            instance.inFlight = Math.max(0, instance.inFlight - 1);
+            double current = decayed(instance, nanoTime.getAsLong());
+            instance.ewmaNanos = current == 0 ? sample : ALPHA * sample + (1 - ALPHA) * current;
+            instance.updatedAtNanos = nanoTime.getAsLong();
+        }
+    }
+
+    /**
+     * Чем меньше, тем лучше: ожидаемая задержка с учётом запросов, которые экземпляр уже выполняет.
+     */
+    public double score(String instanceId) {
+        Stats instance = stats.get(instanceId);
+        if (instance == null) {
+            return 0;
+        }
+        synchronized (instance) {
+            return decayed(instance, nanoTime.getAsLong()) * (instance.inFlight + 1);
+        }
+    }
+
+    private static double decayed(Stats instance, long now) {
+        if (instance.ewmaNanos == 0) {
+            return 0;
+        }
+        long age = now - instance.updatedAtNanos;
+        return instance.ewmaNanos * Math.exp(-(double) age / DECAY_NANOS);
+    }
+}
@@ -0,0 +1,40 @@
+package com.utochkin.orderservice.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Конфигурация балансировщика для каждого Feign-клиента (shop-service, payment-service).
+ * Подключается через @LoadBalancerClients в OrderServiceApplication и намеренно не помечена @Configuration:
+ * её бины создаются в отдельном контексте каждого клиента, а не в основном контексте приложения.
+ * Экземпляры берутся из Eureka, из них предпочитаются экземпляры своей зоны
+ * (spring.cloud.loadbalancer.zone / eureka.instance.metadata-map.zone), список кэшируется.
+ */
+public class LatencyAwareLoadBalancerConfig {
+
+    @Bean
+    public ServiceInstanceListSupplier discoveryClientServiceInstanceListSupplier(ConfigurableApplicationContext context) {
+        return ServiceInstanceListSupplier.builder()
+                .withBlockingDiscoveryClient()
+                .withZonePreference()
+                .withCaching()
+                .build(context);
+    }
+
+    @Bean
+    public InstanceLatencyStats instanceLatencyStats() {
+        return new InstanceLatencyStats();
+    }
+
+    @Bean
+    public LatencyAwareLoadBalancer latencyAwareLoadBalancer(Environment environment,
+                                                             ObjectProvider<ServiceInstanceListSupplier> suppliers,
+                                                             InstanceLatencyStats stats) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        return new LatencyAwareLoadBalancer(serviceId, suppliers, stats);
+    }
+}
@@ -0,0 +1,31 @@
+package com.utochkin.orderservice.config;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+
+import java.util.Map;
+
+@Configuration
+public class SagaKafkaConfig {
+
+    public static final String LISTENER_FACTORY = "sagaListenerFactory";
+
+    // сообщения саги читаются строкой и разбираются ObjectMapper'ом: JSON-десериализатор topic-orders
+    // ждёт заголовок с именем класса, которого у сообщений из других сервисов нет.
+    // Фабрика потребителей не регистрируется бином, чтобы не заменить автоконфигурацию для topic-orders
+    @Bean(LISTENER_FACTORY)
+    public ConcurrentKafkaListenerContainerFactory<String, String> sagaListenerFactory(KafkaProperties kafkaProperties) {
+        Map<String, Object> props = kafkaProperties.buildConsumerProperties(null);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(props));
+        return factory;
+    }
+}
@@ -0,0 +1,16 @@
+package com.utochkin.orderservice.config;
+
+/**
+ * Топики саги заказа: у shop-service и payment-service свой топик команд и свой топик ответов.
+ * Команды пишет только order-service (через outbox), ответы читает только он.
+ */
+public final class SagaTopics {
+
+    public static final String SHOP_COMMANDS = "topic-shop-commands";
+    public static final String SHOP_REPLIES = "topic-shop-replies";
+    public static final String PAYMENT_COMMANDS = "topic-payment-commands";
+    public static final String PAYMENT_REPLIES = "topic-payment-replies";
+
+    private SagaTopics() {
+    }
+}
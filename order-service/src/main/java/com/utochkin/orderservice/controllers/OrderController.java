@@ -2,11 +2,14 @@ package com.utochkin.orderservice.controllers;
 
 import com.utochkin.orderservice.dto.OrderDto;
 import com.utochkin.orderservice.dto.OrderDtoForKafka;
+import com.utochkin.orderservice.dto.OrderSagaStatus;
 import com.utochkin.orderservice.models.ErrorResponse;
 import com.utochkin.orderservice.models.User;
 import com.utochkin.orderservice.request.CompositeRequest;
 import com.utochkin.orderservice.request.PaymentRequest;
 import com.utochkin.orderservice.request.PaymentResponse;
+import com.utochkin.orderservice.services.IdempotencyService;
+import com.utochkin.orderservice.services.OrderSagaService;
 import com.utochkin.orderservice.services.OrderService;
 import com.utochkin.orderservice.services.UserService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -24,8 +27,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/order/api/v1")
@@ -35,15 +40,25 @@ public class OrderController {
 
     private final UserService userService;
     private final OrderService orderService;
+    private final IdempotencyService idempotencyService;
+    private final OrderSagaService orderSagaService;
+
+    // в режиме саги запрос только принят: ход обработки отдаётся по statusUrl
+    private static ResponseEntity<OrderSagaStatus> accepted(OrderSagaStatus status) {
+        return ResponseEntity.accepted().location(URI.create(status.statusUrl())).body(status);
+    }
 
     @PostMapping("/create")
     @Operation(summary = "Создание заказа")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Заказ оплачен", content = @Content(mediaType = "application/json", schema = @Schema(implementation = OrderDtoForKafka.class))),
             @ApiResponse(responseCode = "201", description = "Заказ создан", content = @Content(mediaType = "application/json", schema = @Schema(implementation = OrderDto.class))),
+            @ApiResponse(responseCode = "202", description = "Заказ принят в обработку (order.saga.enabled)", content = @Content(mediaType = "application/json", schema = @Schema(implementation = OrderSagaStatus.class))),
             @ApiResponse(responseCode = "400", description = "Плохой запрос", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "402", description = "Ошибка оплаты заказа", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "404", description = "Не найдено", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "409", description = "Запрос с таким Idempotency-Key ещё выполняется", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "422", description = "Idempotency-Key использован для другого запроса", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "500", description = "Ошибка сервера", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
     })
     public ResponseEntity<?> createOrder(@Parameter(hidden = true) @RequestHeader(value = "X-User-SubId", required = false) String subId,
@@ -52,42 +67,67 @@ public class OrderController {
                                          @Parameter(hidden = true) @RequestHeader(value = "X-User-LastName", required = false) String lastName,
                                          @Parameter(hidden = true) @RequestHeader(value = "X-User-Email", required = false) String email,
                                          @Parameter(hidden = true) @RequestHeader(value = "X-User-Role", required = false) String role,
+                                         @Parameter(description = "Ключ идемпотентности: повтор с тем же ключом вернёт сохранённый ответ")
+                                         @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
                                          @RequestBody @io.swagger.v3.oas.annotations.parameters.RequestBody(content = @Content(schema = @Schema(implementation = CompositeRequest.class),
                                                  encoding = @Encoding(contentType = "application/json")),
                                                  description = "Ввод списка товаров для покупки и адреса доставки заказа", required = true) @Valid CompositeRequest compositeRequest
     ) {
 
-        firstName = URLDecoder.decode(firstName, StandardCharsets.UTF_8);
-        lastName = URLDecoder.decode(lastName, StandardCharsets.UTF_8);
-        User user;
+        return idempotencyService.execute("create:" + subId, idempotencyKey, compositeRequest, () -> {
+            String decodedFirstName = URLDecoder.decode(firstName, StandardCharsets.UTF_8);
+            String decodedLastName = URLDecoder.decode(lastName, StandardCharsets.UTF_8);
+            User user;
 
-        if (!userService.isUserExistsByUsername(subId, username)) {
-            user = userService.createUser(subId, username, firstName, lastName, email, role);
-        } else {
-            user = userService.findUserBySubIdAndUsername(subId, username);
-        }
+            if (!userService.isUserExistsByUsername(subId, username)) {
+                user = userService.createUser(subId, username, decodedFirstName, decodedLastName, email, role);
+            } else {
+                user = userService.findUserBySubIdAndUsername(subId, username);
+            }
+
+            if (orderSagaService.isEnabled()) {
+                return accepted(orderSagaService.startCreate(user, compositeRequest.getOrderRequests(), compositeRequest.getAddressDto()));
+            }
 
-        if (!orderService.checkOrder(compositeRequest.getOrderRequests())) {
-            return new ResponseEntity<>("У нас нет товара в таком количестве или вы неправильно задали артикул товара", HttpStatus.BAD_REQUEST);
-        } else {
             OrderDto orderDto = orderService.createOrder(user, compositeRequest.getOrderRequests(), compositeRequest.getAddressDto());
             return new ResponseEntity<>(orderDto, HttpStatus.CREATED);
-        }
+        });
     }
 
     @PostMapping("/pay")
     @Operation(summary = "Оплата заказа")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Заказ успешно оплачен", content = @Content(mediaType = "application/json", schema = @Schema(implementation = PaymentResponse.class))),
+            @ApiResponse(responseCode = "202", description = "Оплата принята в обработку (order.saga.enabled)", content = @Content(mediaType = "application/json", schema = @Schema(implementation = OrderSagaStatus.class))),
             @ApiResponse(responseCode = "400", description = "Плохой запрос", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "402", description = "Ошибка оплаты заказа", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "404", description = "Не найдено", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "409", description = "Запрос с таким Idempotency-Key ещё выполняется", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "422", description = "Idempotency-Key использован для другого запроса", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "500", description = "Ошибка сервера", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
     })
-    public ResponseEntity<?> paymentOrder(@RequestBody @io.swagger.v3.oas.annotations.parameters.RequestBody(content = @Content(schema = @Schema(implementation = PaymentRequest.class),
+    public ResponseEntity<?> paymentOrder(@Parameter(hidden = true) @RequestHeader(value = "X-User-SubId", required = false) String subId,
+                                          @Parameter(description = "Ключ идемпотентности: повтор с тем же ключом вернёт сохранённый ответ")
+                                          @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                          @RequestBody @io.swagger.v3.oas.annotations.parameters.RequestBody(content = @Content(schema = @Schema(implementation = PaymentRequest.class),
             encoding = @Encoding(contentType = "application/json")),
             description = "Ввод uuid заказа и номера карты для оплаты заказа", required = true) @Valid PaymentRequest paymentRequest) {
-        return new ResponseEntity<>(orderService.paymentOrder(paymentRequest), HttpStatus.OK);
+        return idempotencyService.execute("pay:" + subId, idempotencyKey, paymentRequest, () -> {
+            if (orderSagaService.isEnabled()) {
+                return accepted(orderSagaService.startPayment(paymentRequest));
+            }
+            return new ResponseEntity<>(orderService.paymentOrder(paymentRequest), HttpStatus.OK);
+        });
+    }
+
+    @GetMapping("/orders/{orderUuid}/status")
+    @Operation(summary = "Ход обработки заказа")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Текущий шаг саги и статус заказа", content = @Content(mediaType = "application/json", schema = @Schema(implementation = OrderSagaStatus.class))),
+            @ApiResponse(responseCode = "404", description = "Не найдено", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    public ResponseEntity<OrderSagaStatus> orderStatus(@PathVariable("orderUuid") UUID orderUuid) {
+        return ResponseEntity.ok(orderSagaService.getStatus(orderUuid));
     }
 
     @PostMapping("/refunded")
@@ -4,11 +4,16 @@ package com.utochkin.orderservice.controllers;
 import com.utochkin.orderservice.request.AccountRequest;
 import com.utochkin.orderservice.request.PaymentResponse;
 import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 
-//@FeignClient(name = "payment-service", url = "http://localhost:8072/payment/api/v1")
-@FeignClient(name = "payment-service", url = "http://getaway-server:8072/payment/api/v1")
+import java.util.UUID;
+
+// экземпляры payment-service берутся из Eureka и выбираются LatencyAwareLoadBalancer, мимо gateway;
+// order.clients.payment.url задаёт адрес явно, например для локального запуска без Eureka
+@FeignClient(name = "payment-service", url = "${order.clients.payment.url:}", path = "/payment/api/v1")
 public interface PaymentController {
 
     @PostMapping("/pay")
@@ -17,4 +22,10 @@ public interface PaymentController {
     @PostMapping("/refunded")
     PaymentResponse refundedOrder(@RequestBody AccountRequest accountRequest);
 
+    @GetMapping("/pay/{orderUuid}")
+    PaymentResponse findPayment(@PathVariable("orderUuid") UUID orderUuid);
+
+    @GetMapping("/refunded/{orderUuid}")
+    PaymentResponse findRefund(@PathVariable("orderUuid") UUID orderUuid);
+
 }
@@ -2,23 +2,33 @@ package com.utochkin.orderservice.controllers;
 
 
 import com.utochkin.orderservice.request.OrderRequest;
+import com.utochkin.orderservice.request.ReservationRequest;
+import com.utochkin.orderservice.request.ReserveOrderResponse;
 import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 
 import java.util.List;
-//@FeignClient(name = "shop-service", url = "http://localhost:8072/shop/api/v1")
-@FeignClient(name = "shop-service", url = "http://getaway-server:8072/shop/api/v1")
+import java.util.UUID;
+
+// экземпляры shop-service берутся из Eureka и выбираются LatencyAwareLoadBalancer, мимо gateway;
+// order.clients.shop.url задаёт адрес явно, например для локального запуска без Eureka
+@FeignClient(name = "shop-service", url = "${order.clients.shop.url:}", path = "/shop/api/v1")
 public interface ShopController {
 
-    @PostMapping("/checkOrder")
-    Boolean checkOrder(@RequestBody List<OrderRequest> orderRequests);
+    // резерв со сроком: если заказ не перешёл к оплате, shop-service сам вернёт товар на склад
+    @PostMapping("/reservations")
+    ReserveOrderResponse reserve(@RequestBody ReservationRequest reservationRequest);
+
+    @PostMapping("/reservations/{reservationId}/confirm")
+    void confirmReservation(@PathVariable("reservationId") UUID reservationId);
 
-    @PostMapping("/getSumTotalPriceOrder")
-    Double getSumTotalPriceOrder(@RequestBody List<OrderRequest> orderRequests);
+    @PostMapping("/reservations/{reservationId}/hold")
+    void holdReservation(@PathVariable("reservationId") UUID reservationId);
 
-    @PostMapping("/changeTotalQuantityProductsAfterCreateOrder")
-    void changeTotalQuantityProductsAfterCreateOrder(@RequestBody List<OrderRequest> orderRequests);
+    @PostMapping("/reservations/{reservationId}/release")
+    void releaseReservation(@PathVariable("reservationId") UUID reservationId);
 
     @PostMapping("/changeTotalQuantityProductsAfterRefundedOrder")
     void changeTotalQuantityProductsAfterRefundedOrder(@RequestBody List<OrderRequest> orderRequests);
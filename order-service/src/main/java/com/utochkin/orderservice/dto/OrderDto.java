@@ -13,7 +13,7 @@ import java.util.UUID;
 public record OrderDto(
         @Schema(description = "UUID заказа", example = "3f9edc4b-e4cf-4257-a485-72a147a0b45f", type = "string", format = "uuid") UUID orderUuid,
         @Schema(description = "Общая стоимость заказа", example = "1000.0", type = "number", format = "double") Double totalAmount,
-        @Schema(description = "Статус заказа", example = "SUCCESS", allowableValues = {"WAITING_FOR_PAYMENT", "SUCCESS", "FAILED", "REFUNDED"}) Status orderStatus,
+        @Schema(description = "Статус заказа", example = "SUCCESS", allowableValues = {"WAITING_FOR_PAYMENT", "SUCCESS", "FAILED", "REFUNDED", "EXPIRED"}) Status orderStatus,
         @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm")
         @Schema(description = "Дата и время создания заказа", example = "2025-01-12 13:56",
                 type = "string", pattern = "yyyy-MM-dd HH:mm") LocalDateTime createdAt,
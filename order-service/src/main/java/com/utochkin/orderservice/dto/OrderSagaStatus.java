@@ -0,0 +1,18 @@
+package com.utochkin.orderservice.dto;
+
+import com.utochkin.orderservice.models.SagaState;
+import com.utochkin.orderservice.models.Status;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.UUID;
+
+@Schema(description = "Ход асинхронной обработки заказа")
+public record OrderSagaStatus(
+        @Schema(description = "UUID заказа", example = "3f9edc4b-e4cf-4257-a485-72a147a0b45f", type = "string", format = "uuid") UUID orderUuid,
+        @Schema(description = "Шаг саги; пусто для заказа, созданного синхронно", example = "AWAITING_PAYMENT",
+                allowableValues = {"STOCK_PENDING", "AWAITING_PAYMENT", "STOCK_CONFIRMING", "PAYMENT_PENDING", "COMPLETED", "FAILED"}) SagaState state,
+        @Schema(description = "Статус заказа; пусто, пока заказ не создан", example = "WAITING_FOR_PAYMENT",
+                allowableValues = {"WAITING_FOR_PAYMENT", "PAYMENT_IN_PROGRESS", "SUCCESS", "FAILED", "REFUNDED", "EXPIRED"}) Status orderStatus,
+        @Schema(description = "Причина неудачи последнего шага", example = "У нас нет товара в таком количестве") String reason,
+        @Schema(description = "Адрес, по которому можно узнать ход обработки", example = "/order/api/v1/orders/3f9edc4b-e4cf-4257-a485-72a147a0b45f/status") String statusUrl) {
+}
@@ -0,0 +1,37 @@
+package com.utochkin.orderservice.dto;
+
+import com.utochkin.orderservice.models.SagaMessageType;
+import com.utochkin.orderservice.request.OrderRequest;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Команда или ответ саги заказа. Передаётся в Kafka как JSON без заголовков типа: shop-service и
+ * payment-service читают его в свои классы и заполняют только нужные шагу поля.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SagaMessage {
+    // ключ сообщения: команды и ответы одного заказа идут через одну партицию по порядку
+    private UUID orderUuid;
+
+    private SagaMessageType type;
+
+    private List<OrderRequest> items;
+
+    private Double totalAmount;
+
+    // номер карты, зашифрованный для payment-service (SagaCardCipher)
+    private String encryptedCard;
+
+    private UUID paymentId;
+
+    private String reason;
+}
@@ -37,9 +37,33 @@ public class ExceptionControllerAdvice {
     public ErrorResponse handlerFailedOrderStatusException(FailedOrderStatusException failedOrderStatusException) {
         return new ErrorResponse(failedOrderStatusException.getMessage());
     }
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(ProductsNotAvailableException.class)
+    public ErrorResponse handlerProductsNotAvailableException(ProductsNotAvailableException productsNotAvailableException) {
+        return new ErrorResponse(productsNotAvailableException.getMessage());
+    }
+
     @ResponseStatus(HttpStatus.NOT_FOUND)
     @ExceptionHandler(CardNumberNotFoundException.class)
     public ErrorResponse handlerCardNumberNotFoundException(CardNumberNotFoundException cardNumberNotFoundException) {
         return new ErrorResponse(cardNumberNotFoundException.getMessage());
     }
+
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    @ExceptionHandler(IdempotencyKeyConflictException.class)
+    public ErrorResponse handlerIdempotencyKeyConflictException(IdempotencyKeyConflictException idempotencyKeyConflictException) {
+        return new ErrorResponse(idempotencyKeyConflictException.getMessage());
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(InvalidIdempotencyKeyException.class)
+    public ErrorResponse handlerInvalidIdempotencyKeyException(InvalidIdempotencyKeyException invalidIdempotencyKeyException) {
+        return new ErrorResponse(invalidIdempotencyKeyException.getMessage());
+    }
+
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(RequestInProgressException.class)
+    public ErrorResponse handlerRequestInProgressException(RequestInProgressException requestInProgressException) {
+        return new ErrorResponse(requestInProgressException.getMessage());
+    }
 }
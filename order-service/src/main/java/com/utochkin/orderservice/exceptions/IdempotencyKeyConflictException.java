@@ -0,0 +1,7 @@
+package com.utochkin.orderservice.exceptions;
+
+public class IdempotencyKeyConflictException extends RuntimeException {
+    public IdempotencyKeyConflictException() {
+        super("Idempotency-Key уже использован для другого запроса");
+    }
+}
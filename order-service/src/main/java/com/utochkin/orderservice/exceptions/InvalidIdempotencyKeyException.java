@@ -0,0 +1,7 @@
+package com.utochkin.orderservice.exceptions;
+
+public class InvalidIdempotencyKeyException extends RuntimeException {
+    public InvalidIdempotencyKeyException(int maxLength) {
+        super("Idempotency-Key не должен быть длиннее " + maxLength + " символов");
+    }
+}
@@ -0,0 +1,7 @@
+package com.utochkin.orderservice.exceptions;
+
+public class ProductsNotAvailableException extends RuntimeException {
+    public ProductsNotAvailableException() {
+        super("У нас нет товара в таком количестве или вы неправильно задали артикул товара");
+    }
+}
@@ -0,0 +1,7 @@
+package com.utochkin.orderservice.exceptions;
+
+public class RequestInProgressException extends RuntimeException {
+    public RequestInProgressException() {
+        super("Запрос с таким Idempotency-Key ещё выполняется, повторите попытку позже");
+    }
+}
@@ -0,0 +1,49 @@
+package com.utochkin.orderservice.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+@Entity
+@Builder
+@Table(name = "idempotency_keys",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"scope", "idempotency_key"}))
+public class IdempotencyKey {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // эндпоинт и пользователь: один и тот же ключ у разных пользователей не пересекается
+    @Column(name = "scope", nullable = false)
+    private String scope;
+
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+
+    // sha-256 тела запроса: повтор с тем же ключом, но другим телом — ошибка клиента
+    @Column(name = "request_hash", nullable = false)
+    private String requestHash;
+
+    // null, пока первый запрос ещё выполняется
+    @Column(name = "response_status")
+    private Integer responseStatus;
+
+    @Column(name = "response_body", columnDefinition = "TEXT")
+    private String responseBody;
+
+    // Location ответа 201/202: без него повтор теряет ссылку на созданный заказ или статус саги
+    @Column(name = "response_location")
+    private String responseLocation;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,34 @@
+package com.utochkin.orderservice.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+@Entity
+@Builder
+@Table(name = "order_outbox")
+public class OrderOutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // ключ сообщения в Kafka: события одного заказа попадают в одну партицию и читаются по порядку
+    @Column(name = "order_uuid", nullable = false)
+    private UUID orderUuid;
+
+    @Column(name = "topic", nullable = false)
+    private String topic;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
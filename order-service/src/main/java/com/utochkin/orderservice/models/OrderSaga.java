@@ -0,0 +1,49 @@
+package com.utochkin.orderservice.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+@Entity
+@Builder
+@Table(name = "order_sagas")
+public class OrderSaga {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_uuid", nullable = false, unique = true)
+    private UUID orderUuid;
+
+    @Enumerated(value = EnumType.STRING)
+    @Column(name = "state", nullable = false)
+    private SagaState state;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // товары и адрес из запроса: заказ создаётся из них, когда shop-service подтвердит резерв
+    @Column(name = "payload", columnDefinition = "TEXT")
+    private String payload;
+
+    // зашифрованный номер карты (SagaCardCipher): хранится, только пока shop-service закрепляет резерв,
+    // любой переход из STOCK_CONFIRMING его стирает
+    @Column(name = "encrypted_card")
+    private String encryptedCard;
+
+    @Column(name = "reason")
+    private String reason;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,28 @@
+package com.utochkin.orderservice.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+@Entity
+@Builder
+@Table(name = "outbox_relay_lease")
+public class OutboxRelayLease {
+
+    @Id
+    @Column(name = "name", nullable = false)
+    private String name;
+
+    // экземпляр order-service, который сейчас отправляет outbox
+    @Column(name = "owner", nullable = false)
+    private String owner;
+
+    // после этого момента аренду может забрать другой экземпляр
+    @Column(name = "lease_until", nullable = false)
+    private LocalDateTime leaseUntil;
+}
@@ -0,0 +1,18 @@
+package com.utochkin.orderservice.models;
+
+public enum SagaMessageType {
+    // команды в shop-service; RESERVE_STOCK — событие «заказ создан»
+    RESERVE_STOCK,
+    CONFIRM_RESERVATION,
+    HOLD_RESERVATION,
+    RELEASE_RESERVATION,
+    // ответы shop-service
+    STOCK_RESERVED,
+    STOCK_REJECTED,
+    RESERVATION_CONFIRMED,
+    RESERVATION_EXPIRED,
+    // команда в payment-service и её ответы
+    PAYMENT_REQUESTED,
+    PAYMENT_COMPLETED,
+    PAYMENT_FAILED
+}
@@ -0,0 +1,15 @@
+package com.utochkin.orderservice.models;
+
+// шаг саги создания и оплаты заказа; у каждого шага, кроме конечных, есть ответ, который его завершает
+public enum SagaState {
+    // команда резерва отправлена в shop-service, заказа ещё нет
+    STOCK_PENDING,
+    // товар зарезервирован, заказ создан и ждёт оплаты
+    AWAITING_PAYMENT,
+    // перед оплатой shop-service закрепляет резерв
+    STOCK_CONFIRMING,
+    // команда списания отправлена в payment-service
+    PAYMENT_PENDING,
+    COMPLETED,
+    FAILED
+}
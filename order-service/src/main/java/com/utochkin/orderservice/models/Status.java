@@ -2,7 +2,12 @@ package com.utochkin.orderservice.models;
 
 public enum Status {
     WAITING_FOR_PAYMENT,
+    // промежуточные статусы: запрос в payment-service отправлен, результат ещё не записан в заказ
+    PAYMENT_IN_PROGRESS,
+    REFUND_IN_PROGRESS,
     SUCCESS,
     FAILED,
-    REFUNDED
+    REFUNDED,
+    // резерв товаров в shop-service истёк до оплаты, товар вернулся на склад
+    EXPIRED
 }
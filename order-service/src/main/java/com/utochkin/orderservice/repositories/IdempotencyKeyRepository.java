@@ -0,0 +1,34 @@
+package com.utochkin.orderservice.repositories;
+
+import com.utochkin.orderservice.models.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, Long> {
+
+    Optional<IdempotencyKey> findByScopeAndIdempotencyKey(String scope, String idempotencyKey);
+
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.responseStatus = :responseStatus, k.responseBody = :responseBody, " +
+            "k.responseLocation = :responseLocation, k.expiresAt = :expiresAt " +
+            "WHERE k.scope = :scope AND k.idempotencyKey = :idempotencyKey")
+    int complete(@Param("scope") String scope,
+                 @Param("idempotencyKey") String idempotencyKey,
+                 @Param("responseStatus") Integer responseStatus,
+                 @Param("responseBody") String responseBody,
+                 @Param("responseLocation") String responseLocation,
+                 @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.scope = :scope AND k.idempotencyKey = :idempotencyKey")
+    int deleteByScopeAndKey(@Param("scope") String scope, @Param("idempotencyKey") String idempotencyKey);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,20 @@
+package com.utochkin.orderservice.repositories;
+
+import com.utochkin.orderservice.models.OrderOutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OrderOutboxRepository extends JpaRepository<OrderOutboxEvent, Long> {
+
+    // outbox читает только держатель аренды outbox_relay_lease, поэтому блокировки строк не нужны,
+    // а события заказа уходят строго в порядке id
+    @Query("SELECT e FROM OrderOutboxEvent e ORDER BY e.id")
+    List<OrderOutboxEvent> findBatch(Pageable pageable);
+
+    @Query("SELECT MIN(e.createdAt) FROM OrderOutboxEvent e")
+    LocalDateTime findOldestCreatedAt();
+}
@@ -1,10 +1,15 @@
 package com.utochkin.orderservice.repositories;
 
 import com.utochkin.orderservice.models.Order;
+import com.utochkin.orderservice.models.Status;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -15,4 +20,15 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     Double findTotalAmountByOrderUuid(@Param("orderUuid") UUID orderUuid);
 
     Optional<Order> findByOrderUuid(UUID orderUuid);
+
+    // переход статуса выполняется, только если заказ всё ещё в ожидаемом статусе: 0 — заказ уже забрал другой запрос
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Order o SET o.orderStatus = :newStatus, o.updatedAt = :updatedAt " +
+            "WHERE o.orderUuid = :orderUuid AND o.orderStatus = :expectedStatus")
+    int compareAndSetStatus(@Param("orderUuid") UUID orderUuid,
+                            @Param("expectedStatus") Status expectedStatus,
+                            @Param("newStatus") Status newStatus,
+                            @Param("updatedAt") LocalDateTime updatedAt);
+
+    List<Order> findAllByOrderStatusInAndUpdatedAtBefore(Collection<Status> statuses, LocalDateTime updatedAt);
 }
@@ -0,0 +1,32 @@
+package com.utochkin.orderservice.repositories;
+
+import com.utochkin.orderservice.models.OrderSaga;
+import com.utochkin.orderservice.models.SagaState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface OrderSagaRepository extends JpaRepository<OrderSaga, Long> {
+
+    Optional<OrderSaga> findByOrderUuid(UUID orderUuid);
+
+    // шаг выполняется, только если сага всё ещё ждёт этого ответа: 0 — ответ повторный или опоздал.
+    // Номер карты нужен только в STOCK_CONFIRMING, а оттуда сага всегда уходит этим переходом, поэтому он стирается здесь
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE OrderSaga s SET s.state = :newState, s.reason = :reason, s.updatedAt = :updatedAt, s.encryptedCard = NULL " +
+            "WHERE s.orderUuid = :orderUuid AND s.state = :expectedState")
+    int compareAndSetState(@Param("orderUuid") UUID orderUuid,
+                           @Param("expectedState") SagaState expectedState,
+                           @Param("newState") SagaState newState,
+                           @Param("reason") String reason,
+                           @Param("updatedAt") LocalDateTime updatedAt);
+
+    List<OrderSaga> findAllByStateInAndUpdatedAtBefore(Collection<SagaState> states, LocalDateTime updatedAt);
+}
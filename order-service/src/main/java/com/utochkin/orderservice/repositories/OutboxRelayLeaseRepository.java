@@ -0,0 +1,25 @@
+package com.utochkin.orderservice.repositories;
+
+import com.utochkin.orderservice.models.OutboxRelayLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface OutboxRelayLeaseRepository extends JpaRepository<OutboxRelayLease, String> {
+
+    // продлевает свою аренду или забирает истёкшую чужую: 0 — outbox сейчас отправляет другой экземпляр
+    @Modifying
+    @Query("UPDATE OutboxRelayLease l SET l.owner = :owner, l.leaseUntil = :leaseUntil " +
+            "WHERE l.name = :name AND (l.owner = :owner OR l.leaseUntil < :now)")
+    int tryAcquire(@Param("name") String name,
+                   @Param("owner") String owner,
+                   @Param("now") LocalDateTime now,
+                   @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Query("UPDATE OutboxRelayLease l SET l.leaseUntil = :now WHERE l.name = :name AND l.owner = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now);
+}
@@ -5,6 +5,8 @@ import jakarta.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.util.UUID;
+
 @AllArgsConstructor
 @Data
 public class AccountRequest {
@@ -17,4 +19,11 @@ public class AccountRequest {
             message = "Номер карты должен быть в формате '5078 6038 0721 8893'"
     )
     private String cardNumber;
+
+    // по uuid заказа payment-service не проводит одну и ту же операцию дважды
+    private UUID orderUuid;
+
+    public AccountRequest(Double totalAmount, String cardNumber) {
+        this(totalAmount, cardNumber, null);
+    }
 }
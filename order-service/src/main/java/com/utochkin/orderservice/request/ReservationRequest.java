@@ -0,0 +1,18 @@
+package com.utochkin.orderservice.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservationRequest {
+    // orderUuid заказа: shop-service не спишет товар второй раз при повторе запроса
+    private UUID reservationId;
+
+    private List<OrderRequest> items;
+}
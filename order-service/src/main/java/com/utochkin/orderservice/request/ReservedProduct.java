@@ -0,0 +1,18 @@
+package com.utochkin.orderservice.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservedProduct {
+    private UUID articleId;
+
+    private Integer quantity;
+
+    private Double price;
+}
@@ -0,0 +1,178 @@
+package com.utochkin.orderservice.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utochkin.orderservice.exceptions.IdempotencyKeyConflictException;
+import com.utochkin.orderservice.exceptions.InvalidIdempotencyKeyException;
+import com.utochkin.orderservice.exceptions.RequestInProgressException;
+import com.utochkin.orderservice.models.IdempotencyKey;
+import com.utochkin.orderservice.repositories.IdempotencyKeyRepository;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Обработка заголовка Idempotency-Key: первый запрос с ключом выполняется и его успешный ответ сохраняется
+ * в таблице idempotency_keys, повторы получают сохранённый ответ, а дубль, пришедший пока первый запрос
+ * ещё выполняется, сразу получает 409 вместо повторного прогона заказа через shop- и payment-service.
+ */
+@Service
+@Log4j2
+public class IdempotencyService {
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    // размер колонки idempotency_keys.idempotency_key
+    static final int MAX_KEY_LENGTH = 255;
+
+    // SQLSTATE нарушения уникальности; единственный уникальный ключ таблицы, кроме id, — (scope, idempotency_key)
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate requiresNew;
+    private final Duration ttl;
+    private final Duration inProgressTimeout;
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${order.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${order.idempotency.in-progress-timeout-ms:60000}") long inProgressTimeoutMs) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.ttl = Duration.ofHours(ttlHours);
+        this.inProgressTimeout = Duration.ofMillis(inProgressTimeoutMs);
+    }
+
+    public ResponseEntity<?> execute(String scope, String key, Object request, Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException(MAX_KEY_LENGTH);
+        }
+
+        Optional<ResponseEntity<?>> replay = begin(scope, key, hash(request));
+        if (replay.isPresent()) {
+            return replay.get();
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException exception) {
+            // ошибки не запоминаются: ключ освобождается, и клиент может повторить запрос
+            requiresNew.executeWithoutResult(status -> idempotencyKeyRepository.deleteByScopeAndKey(scope, key));
+            throw exception;
+        }
+
+        String body = toJson(response.getBody());
+        URI location = response.getHeaders().getLocation();
+        requiresNew.executeWithoutResult(status -> idempotencyKeyRepository.complete(scope, key,
+                response.getStatusCode().value(), body, location == null ? null : location.toString(),
+                LocalDateTime.now().plus(ttl)));
+        return response;
+    }
+
+    private Optional<ResponseEntity<?>> begin(String scope, String key, String requestHash) {
+        // вторая попытка нужна, когда найденная запись истекла или была удалена между вставкой и чтением
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                requiresNew.executeWithoutResult(status -> idempotencyKeyRepository.saveAndFlush(IdempotencyKey.builder()
+                        .scope(scope)
+                        .idempotencyKey(key)
+                        .requestHash(requestHash)
+                        .createdAt(LocalDateTime.now())
+                        .expiresAt(LocalDateTime.now().plus(inProgressTimeout))
+                        .build()));
+                return Optional.empty();
+            } catch (DataIntegrityViolationException exception) {
+                if (!isDuplicateKey(exception)) {
+                    throw exception;
+                }
+                IdempotencyKey existing = requiresNew.execute(status ->
+                        idempotencyKeyRepository.findByScopeAndIdempotencyKey(scope, key).orElse(null));
+                if (existing == null) {
+                    continue;
+                }
+                if (existing.getExpiresAt().isBefore(LocalDateTime.now())) {
+                    // истёкший ответ или запись запроса, который упал, не успев освободить ключ
+                    requiresNew.executeWithoutResult(status -> idempotencyKeyRepository.deleteByScopeAndKey(scope, key));
+                    continue;
+                }
+                if (!existing.getRequestHash().equals(requestHash)) {
+                    throw new IdempotencyKeyConflictException();
+                }
+                if (existing.getResponseStatus() == null) {
+                    log.info("IdempotencyService: запрос {} с ключом {} ещё выполняется", scope, key);
+                    throw new RequestInProgressException();
+                }
+                log.info("IdempotencyService: повтор запроса {} с ключом {}, возвращаем сохранённый ответ", scope, key);
+                ResponseEntity.BodyBuilder replay = ResponseEntity.status(existing.getResponseStatus());
+                if (existing.getResponseLocation() != null) {
+                    replay.location(URI.create(existing.getResponseLocation()));
+                }
+                return Optional.of(replay
+                        .header(REPLAYED_HEADER, "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(existing.getResponseBody()));
+            }
+        }
+        throw new RequestInProgressException();
+    }
+
+    // остальные нарушения (длина, NOT NULL) — ошибка самой вставки, а не занятый ключ
+    private static boolean isDuplicateKey(DataIntegrityViolationException exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                return UNIQUE_VIOLATION.equals(sqlException.getSQLState());
+            }
+        }
+        return false;
+    }
+
+    @Scheduled(fixedDelayString = "${order.idempotency.cleanup-interval-ms:600000}")
+    public void deleteExpiredKeys() {
+        Integer deleted = requiresNew.execute(status -> idempotencyKeyRepository.deleteExpired(LocalDateTime.now()));
+        if (deleted != null && deleted > 0) {
+            log.info("IdempotencyService: удалено истёкших ключей идемпотентности: {}", deleted);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Не удалось вычислить хеш запроса", e);
+        }
+    }
+
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сохранить ответ для Idempotency-Key", e);
+        }
+    }
+}
@@ -4,24 +4,30 @@ import com.utochkin.orderservice.dto.OrderDtoForKafka;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
 @RequiredArgsConstructor
 @Log4j2
 public class KafkaSenderService {
     private final KafkaTemplate<String, Object> kafkaTemplate;
 
-    public void send(OrderDtoForKafka orderDtoForKafka) {
-        log.info("KafkaSenderService: отправка в topic-orders: {}", orderDtoForKafka);
+    // ключ — uuid заказа: все события заказа попадают в одну партицию и сохраняют порядок
+    public CompletableFuture<SendResult<String, Object>> send(String topic, OrderDtoForKafka orderDtoForKafka) {
+        log.info("KafkaSenderService: отправка в {}: {}", topic, orderDtoForKafka);
 
-        kafkaTemplate.send("topic-orders", orderDtoForKafka)
-                .whenComplete((result, ex) -> {
-                    if (ex == null) {
-                        log.info("KafkaSenderService: сообщение успешно отправлено, offset={}", result.getRecordMetadata().offset());
-                    } else {
-                        log.error("KafkaSenderService: ошибка при отправке: {}", ex.getMessage(), ex);
-                    }
-                });
+        CompletableFuture<SendResult<String, Object>> future =
+                kafkaTemplate.send(topic, orderDtoForKafka.getOrderUuid().toString(), orderDtoForKafka);
+        future.whenComplete((result, ex) -> {
+            if (ex == null) {
+                log.info("KafkaSenderService: сообщение успешно отправлено, offset={}", result.getRecordMetadata().offset());
+            } else {
+                log.error("KafkaSenderService: ошибка при отправке: {}", ex.getMessage(), ex);
+            }
+        });
+        return future;
     }
 }
@@ -0,0 +1,57 @@
+package com.utochkin.orderservice.services;
+
+import com.utochkin.orderservice.models.OutboxRelayLease;
+import com.utochkin.orderservice.repositories.OutboxRelayLeaseRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Аренды фоновых задач в outbox_relay_lease: задачу выполняет один экземпляр order-service — тот, кто держит
+ * аренду с её именем. Истёкшую аренду упавшего экземпляра забирает следующий.
+ */
+@Component
+public class LeaseService {
+
+    private final OutboxRelayLeaseRepository leaseRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    public LeaseService(OutboxRelayLeaseRepository leaseRepository, PlatformTransactionManager transactionManager) {
+        this.leaseRepository = leaseRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // продлевает свою аренду или забирает истёкшую чужую; false — задачу сейчас выполняет другой экземпляр
+    public boolean acquire(String name, Duration duration) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime leaseUntil = now.plus(duration);
+        Integer acquired = transactionTemplate.execute(status ->
+                leaseRepository.tryAcquire(name, instanceId, now, leaseUntil));
+        if (acquired != null && acquired == 1) {
+            return true;
+        }
+        if (Boolean.TRUE.equals(transactionTemplate.execute(status -> leaseRepository.existsById(name)))) {
+            return false;
+        }
+        // строки аренды ещё нет (база без миграции): первый вставивший становится владельцем
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    leaseRepository.saveAndFlush(new OutboxRelayLease(name, instanceId, leaseUntil)));
+            return true;
+        } catch (DataIntegrityViolationException concurrentInsert) {
+            return false;
+        }
+    }
+
+    // при остановке аренда отдаётся сразу, не дожидаясь её истечения
+    public void release(String name) {
+        transactionTemplate.executeWithoutResult(status ->
+                leaseRepository.release(name, instanceId, LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,194 @@
+package com.utochkin.orderservice.services;
+
+import com.utochkin.orderservice.models.OrderOutboxEvent;
+import com.utochkin.orderservice.repositories.OrderOutboxRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Переносит события из таблицы order_outbox в Kafka пачками. Событие удаляется из outbox только после
+ * подтверждения от брокера, поэтому доставка как минимум однократная: при сбое пачка отправляется повторно,
+ * и потребители должны быть готовы к дублям по (orderUuid, orderStatus).
+ * <p>
+ * Outbox отправляет один экземпляр order-service — тот, кто держит аренду в outbox_relay_lease: при
+ * нескольких отправителях более новое событие заказа могло бы уйти раньше старого, которое разбирает
+ * соседний экземпляр. Подтверждения Kafka ждём вне транзакции; чтение пачки и удаление отправленного —
+ * отдельные короткие транзакции.
+ */
+@Component
+@Log4j2
+public class OrderOutboxRelay {
+
+    static final String LEASE_NAME = "order-outbox";
+
+    private final OrderOutboxRepository outboxRepository;
+    private final LeaseService leaseService;
+    private final OrderOutboxService outboxService;
+    private final KafkaSenderService kafkaSenderService;
+    private final SagaMessageSender sagaMessageSender;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long sendTimeoutMs;
+    private final Duration leaseDuration;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+
+    public OrderOutboxRelay(OrderOutboxRepository outboxRepository,
+                            LeaseService leaseService,
+                            OrderOutboxService outboxService,
+                            KafkaSenderService kafkaSenderService,
+                            SagaMessageSender sagaMessageSender,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${order.outbox.batch-size:100}") int batchSize,
+                            @Value("${order.outbox.send-timeout-ms:10000}") long sendTimeoutMs,
+                            @Value("${order.outbox.lease-ms:30000}") long leaseMs) {
+        this.outboxRepository = outboxRepository;
+        this.leaseService = leaseService;
+        this.outboxService = outboxService;
+        this.kafkaSenderService = kafkaSenderService;
+        this.sagaMessageSender = sagaMessageSender;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.sendTimeoutMs = sendTimeoutMs;
+        // аренда должна пережить ожидание подтверждений одной пачки, иначе её заберут посреди отправки
+        this.leaseDuration = Duration.ofMillis(Math.max(leaseMs, 2 * sendTimeoutMs));
+
+        Gauge.builder("order.outbox.pending", pending, AtomicLong::get)
+                .description("События в outbox, ещё не отправленные в Kafka")
+                .register(meterRegistry);
+        Gauge.builder("order.outbox.lag", lagSeconds, AtomicLong::get)
+                .baseUnit("seconds")
+                .description("Возраст самого старого неотправленного события")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${order.outbox.poll-interval-ms:500}")
+    public void relayPendingEvents() {
+        // пока пачки уходят целиком, outbox разбирается дальше, не дожидаясь следующего запуска
+        boolean fullBatch;
+        do {
+            fullBatch = acquireLease() && relayBatch();
+        } while (fullBatch);
+        updateLag();
+    }
+
+    // аренда продлевается перед каждой пачкой; истёкшую аренду упавшего экземпляра забирает следующий
+    private boolean acquireLease() {
+        return leaseService.acquire(LEASE_NAME, leaseDuration);
+    }
+
+    @PreDestroy
+    public void releaseLease() {
+        leaseService.release(LEASE_NAME);
+    }
+
+    private boolean relayBatch() {
+        List<OrderOutboxEvent> batch = transactionTemplate.execute(status ->
+                outboxRepository.findBatch(PageRequest.of(0, batchSize)));
+        if (batch == null || batch.isEmpty()) {
+            return false;
+        }
+
+        // заказы отправляются параллельно, а события одного заказа — по очереди: следующее уходит только после
+        // подтверждения предыдущего, поэтому после сбоя более новые события заказа не обгоняют упавшее
+        Map<UUID, List<OrderOutboxEvent>> byOrder = new LinkedHashMap<>();
+        for (OrderOutboxEvent event : batch) {
+            byOrder.computeIfAbsent(event.getOrderUuid(), orderUuid -> new ArrayList<>()).add(event);
+        }
+
+        AtomicBoolean abandoned = new AtomicBoolean();
+        Set<Long> confirmedIds = ConcurrentHashMap.newKeySet();
+        List<CompletableFuture<?>> chains = new ArrayList<>(byOrder.size());
+        for (List<OrderOutboxEvent> events : byOrder.values()) {
+            chains.add(sendInOrder(events, confirmedIds, abandoned));
+        }
+
+        try {
+            CompletableFuture.allOf(chains.toArray(CompletableFuture[]::new)).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // сбои уже записаны в лог по заказам, остальные цепочки к этому моменту завершены
+        } catch (TimeoutException e) {
+            log.warn("OrderOutboxRelay: подтверждения не получены за {} мс, неотправленное уйдёт следующей пачкой", sendTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // после ожидания новые события не отправляются: их удалить уже не успеем, и они ушли бы повторно вне очереди
+        abandoned.set(true);
+        List<Long> sentIds = batch.stream()
+                .map(OrderOutboxEvent::getId)
+                .filter(confirmedIds::contains)
+                .toList();
+
+        if (!sentIds.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> outboxRepository.deleteAllByIdInBatch(sentIds));
+        }
+        log.info("OrderOutboxRelay: отправлено {} из {} событий", sentIds.size(), batch.size());
+
+        return sentIds.size() == batchSize;
+    }
+
+    // отправляет события заказа по одному; после сбоя или по истечении ожидания остальные остаются в outbox
+    private CompletableFuture<?> sendInOrder(List<OrderOutboxEvent> events, Set<Long> confirmedIds, AtomicBoolean abandoned) {
+        CompletableFuture<?> chain = CompletableFuture.completedFuture(null);
+        for (OrderOutboxEvent event : events) {
+            // следующая отправка не выполняется в потоке продюсера, который завершил предыдущую
+            chain = chain.thenComposeAsync(previous -> {
+                if (abandoned.get()) {
+                    return CompletableFuture.failedFuture(new TimeoutException("ожидание подтверждений истекло"));
+                }
+                return send(event).whenComplete((result, error) -> {
+                    if (error == null) {
+                        confirmedIds.add(event.getId());
+                    } else {
+                        log.warn("OrderOutboxRelay: событие {} заказа {} не отправлено: {}", event.getId(), event.getOrderUuid(), error.getMessage());
+                    }
+                });
+            });
+        }
+        return chain;
+    }
+
+    private CompletableFuture<?> send(OrderOutboxEvent event) {
+        try {
+            if (!OrderOutboxService.TOPIC_ORDERS.equals(event.getTopic())) {
+                // команды саги уходят тем JSON, что записан в outbox
+                return sagaMessageSender.send(event.getTopic(), event.getOrderUuid(), event.getPayload());
+            }
+            return kafkaSenderService.send(event.getTopic(), outboxService.fromJson(event.getPayload()));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void updateLag() {
+        pending.set(outboxRepository.count());
+        LocalDateTime oldest = outboxRepository.findOldestCreatedAt();
+        lagSeconds.set(oldest == null ? 0 : Math.max(0, Duration.between(oldest, LocalDateTime.now()).toSeconds()));
+    }
+}
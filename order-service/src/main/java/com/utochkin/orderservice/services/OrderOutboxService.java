@@ -0,0 +1,71 @@
+package com.utochkin.orderservice.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utochkin.orderservice.dto.OrderDtoForKafka;
+import com.utochkin.orderservice.dto.SagaMessage;
+import com.utochkin.orderservice.models.OrderOutboxEvent;
+import com.utochkin.orderservice.repositories.OrderOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class OrderOutboxService {
+
+    public static final String TOPIC_ORDERS = "topic-orders";
+
+    private final OrderOutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+
+    // событие сохраняется в транзакции, которая меняет заказ: фиксируются оба или ни одно,
+    // а в Kafka его отправит OrderOutboxRelay уже после коммита
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(OrderDtoForKafka orderDtoForKafka) {
+        outboxRepository.save(OrderOutboxEvent.builder()
+                .orderUuid(orderDtoForKafka.getOrderUuid())
+                .topic(TOPIC_ORDERS)
+                .payload(toJson(orderDtoForKafka))
+                .createdAt(LocalDateTime.now())
+                .build());
+
+        log.info("OrderOutboxService: событие {} для заказа {} записано в outbox",
+                orderDtoForKafka.getOrderStatus(), orderDtoForKafka.getOrderUuid());
+    }
+
+    // команда саги ложится в outbox рядом с переходом саги: если переход откатился, команда не уйдёт
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueSagaMessage(String topic, SagaMessage sagaMessage) {
+        outboxRepository.save(OrderOutboxEvent.builder()
+                .orderUuid(sagaMessage.getOrderUuid())
+                .topic(topic)
+                .payload(toJson(sagaMessage))
+                .createdAt(LocalDateTime.now())
+                .build());
+
+        log.info("OrderOutboxService: команда {} для заказа {} записана в outbox",
+                sagaMessage.getType(), sagaMessage.getOrderUuid());
+    }
+
+    OrderDtoForKafka fromJson(String payload) {
+        try {
+            return objectMapper.readValue(payload, OrderDtoForKafka.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось прочитать событие из outbox", e);
+        }
+    }
+
+    private String toJson(Object event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сохранить событие в outbox", e);
+        }
+    }
+}
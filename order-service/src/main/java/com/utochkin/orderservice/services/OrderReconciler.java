@@ -0,0 +1,66 @@
+package com.utochkin.orderservice.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Сверяет зависшие заказы и саги. Сверку выполняет один экземпляр order-service — тот, кто держит аренду
+ * order-reconciler: два экземпляра, взявшие один заказ, дважды записали бы возврат и его событие.
+ */
+@Component
+@Log4j2
+public class OrderReconciler {
+
+    static final String LEASE_NAME = "order-reconciler";
+
+    private final OrderService orderService;
+    private final OrderSagaService orderSagaService;
+    private final LeaseService leaseService;
+    private final Duration staleAfter;
+    private final Duration sagaReplyTimeout;
+    private final Duration leaseDuration;
+
+    public OrderReconciler(OrderService orderService,
+                           OrderSagaService orderSagaService,
+                           LeaseService leaseService,
+                           @Value("${order.reconciliation.stale-after-ms:120000}") long staleAfterMs,
+                           @Value("${order.saga.reply-timeout-ms:60000}") long sagaReplyTimeoutMs,
+                           @Value("${order.reconciliation.interval-ms:60000}") long intervalMs,
+                           @Value("${order.reconciliation.lease-ms:300000}") long leaseMs) {
+        this.orderService = orderService;
+        this.orderSagaService = orderSagaService;
+        this.leaseService = leaseService;
+        this.staleAfter = Duration.ofMillis(staleAfterMs);
+        this.sagaReplyTimeout = Duration.ofMillis(sagaReplyTimeoutMs);
+        // аренда переживает паузу между проходами, иначе сверка переходила бы от экземпляра к экземпляру
+        this.leaseDuration = Duration.ofMillis(Math.max(leaseMs, 2 * intervalMs));
+    }
+
+    // заказ считается зависшим, если промежуточный статус не менялся дольше staleAfter — запрос, который его выставил, уже не завершится
+    @Scheduled(fixedDelayString = "${order.reconciliation.interval-ms:60000}")
+    public void reconcileStaleOrders() {
+        if (!leaseService.acquire(LEASE_NAME, leaseDuration)) {
+            return;
+        }
+        int reconciled = orderService.reconcile(staleAfter);
+        if (reconciled > 0) {
+            log.info("OrderReconciler: сверено зависших заказов: {}", reconciled);
+        }
+        if (orderSagaService.isEnabled()) {
+            int expired = orderSagaService.expireStale(sagaReplyTimeout);
+            if (expired > 0) {
+                log.info("OrderReconciler: завершено саг без ответа: {}", expired);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void releaseLease() {
+        leaseService.release(LEASE_NAME);
+    }
+}
@@ -0,0 +1,25 @@
+package com.utochkin.orderservice.services;
+
+import com.utochkin.orderservice.config.SagaKafkaConfig;
+import com.utochkin.orderservice.config.SagaTopics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Log4j2
+@ConditionalOnProperty(name = "order.saga.enabled", havingValue = "true")
+public class OrderSagaListener {
+
+    private final OrderSagaService orderSagaService;
+
+    // смещение коммитится после обработки: если шаг упал, ответ придёт снова, а повтор шага ничего не меняет
+    @KafkaListener(topics = {SagaTopics.SHOP_REPLIES, SagaTopics.PAYMENT_REPLIES}, groupId = "order-saga-group",
+            containerFactory = SagaKafkaConfig.LISTENER_FACTORY)
+    public void onReply(String payload) {
+        orderSagaService.handleReply(orderSagaService.readMessage(payload));
+    }
+}
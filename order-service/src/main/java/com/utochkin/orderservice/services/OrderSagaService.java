@@ -0,0 +1,354 @@
+package com.utochkin.orderservice.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utochkin.orderservice.config.SagaTopics;
+import com.utochkin.orderservice.dto.AddressDto;
+import com.utochkin.orderservice.dto.OrderSagaStatus;
+import com.utochkin.orderservice.dto.SagaMessage;
+import com.utochkin.orderservice.exceptions.FailedOrderStatusException;
+import com.utochkin.orderservice.exceptions.OrderNotFoundException;
+import com.utochkin.orderservice.exceptions.ProductsNotAvailableException;
+import com.utochkin.orderservice.exceptions.UserNotFoundException;
+import com.utochkin.orderservice.models.Order;
+import com.utochkin.orderservice.models.OrderSaga;
+import com.utochkin.orderservice.models.SagaMessageType;
+import com.utochkin.orderservice.models.SagaState;
+import com.utochkin.orderservice.models.Status;
+import com.utochkin.orderservice.models.User;
+import com.utochkin.orderservice.repositories.OrderRepository;
+import com.utochkin.orderservice.repositories.OrderSagaRepository;
+import com.utochkin.orderservice.repositories.UserRepository;
+import com.utochkin.orderservice.request.CompositeRequest;
+import com.utochkin.orderservice.request.OrderRequest;
+import com.utochkin.orderservice.request.PaymentRequest;
+import com.utochkin.orderservice.request.PaymentResponse;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Асинхронный режим создания и оплаты заказа (order.saga.enabled): вместо вызовов Feign order-service
+ * пишет команды в outbox, а shop-service и payment-service отвечают через свои топики ответов.
+ * Каждый ответ переводит сагу на следующий шаг, только если она ещё ждёт именно его, поэтому повторная
+ * доставка ничего не меняет. Компенсации: неудачная оплата возвращает резерву срок, а резерв, пришедший
+ * после того как сага сдалась по таймауту, снимается.
+ */
+@Service
+@Log4j2
+public class OrderSagaService {
+
+    private static final String STATUS_URL = "/order/api/v1/orders/%s/status";
+    private static final String CREATING_MESSAGE = "Заказ ещё создаётся, повторите оплату позже";
+    private static final String TIMEOUT_MESSAGE = "Сервис временно недоступен, пожалуйста, повторите попытку позже";
+
+    private final OrderSagaRepository sagaRepository;
+    private final OrderRepository orderRepository;
+    private final UserRepository userRepository;
+    private final OrderService orderService;
+    private final OrderOutboxService orderOutboxService;
+    private final ObjectMapper objectMapper;
+    private final SagaCardCipher cardCipher;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+
+    public OrderSagaService(OrderSagaRepository sagaRepository,
+                            OrderRepository orderRepository,
+                            UserRepository userRepository,
+                            OrderService orderService,
+                            OrderOutboxService orderOutboxService,
+                            ObjectMapper objectMapper,
+                            SagaCardCipher cardCipher,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${order.saga.enabled:false}") boolean enabled) {
+        this.sagaRepository = sagaRepository;
+        this.orderRepository = orderRepository;
+        this.userRepository = userRepository;
+        this.orderService = orderService;
+        this.orderOutboxService = orderOutboxService;
+        this.objectMapper = objectMapper;
+        this.cardCipher = cardCipher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        if (enabled && !cardCipher.hasKey()) {
+            throw new IllegalStateException("order.saga.enabled требует ключ шифрования номера карты order.saga.card-key");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private <T> T inTransaction(Supplier<T> action) {
+        return transactionTemplate.execute(status -> action.get());
+    }
+
+    private boolean moveTo(UUID orderUuid, SagaState expectedState, SagaState newState, String reason) {
+        if (sagaRepository.compareAndSetState(orderUuid, expectedState, newState, reason, LocalDateTime.now()) == 1) {
+            log.info("OrderSagaService: сага заказа {} перешла {} -> {}", orderUuid, expectedState, newState);
+            return true;
+        }
+        log.info("OrderSagaService: сага заказа {} уже не в {}, ответ пропущен", orderUuid, expectedState);
+        return false;
+    }
+
+    private void sendToShop(UUID orderUuid, SagaMessageType type, List<OrderRequest> items) {
+        orderOutboxService.enqueueSagaMessage(SagaTopics.SHOP_COMMANDS,
+                SagaMessage.builder().orderUuid(orderUuid).type(type).items(items).build());
+    }
+
+    /**
+     * Начинает сагу создания заказа: сам заказ появится, когда shop-service зарезервирует товар.
+     */
+    public OrderSagaStatus startCreate(User user, List<OrderRequest> orderRequests, AddressDto addressDto) {
+        UUID orderUuid = UUID.randomUUID();
+        log.info("OrderSagaService: начало саги заказа {} для user={} requests={}", orderUuid, user.getUsername(), orderRequests);
+
+        inTransaction(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            sagaRepository.save(OrderSaga.builder()
+                    .orderUuid(orderUuid)
+                    .state(SagaState.STOCK_PENDING)
+                    .userId(user.getId())
+                    .payload(toJson(new CompositeRequest(orderRequests, addressDto)))
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build());
+            sendToShop(orderUuid, SagaMessageType.RESERVE_STOCK, orderRequests);
+            return null;
+        });
+
+        return toStatus(orderUuid, SagaState.STOCK_PENDING, null, null);
+    }
+
+    /**
+     * Начинает оплату: shop-service закрепляет резерв, после чего списание запрашивается у payment-service.
+     */
+    public OrderSagaStatus startPayment(PaymentRequest paymentRequest) {
+        UUID orderUuid = paymentRequest.getOrderUuid();
+        log.info("OrderSagaService: оплата заказа {}", orderUuid);
+
+        inTransaction(() -> {
+            OrderSaga existing = sagaRepository.findByOrderUuid(orderUuid).orElse(null);
+            if (existing != null && existing.getState() == SagaState.STOCK_PENDING) {
+                throw new FailedOrderStatusException(CREATING_MESSAGE);
+            }
+
+            // проверка статуса заказа и захват оплаты — те же, что в синхронном режиме
+            orderService.startPayment(orderUuid);
+
+            // заказ, созданный до включения саги, оплачивается через новую сагу
+            OrderSaga saga = sagaRepository.findByOrderUuid(orderUuid).orElseGet(() -> newSagaFor(orderUuid));
+            saga.setState(SagaState.STOCK_CONFIRMING);
+            saga.setEncryptedCard(cardCipher.encrypt(orderUuid, paymentRequest.getCardNumber()));
+            saga.setReason(null);
+            saga.setUpdatedAt(LocalDateTime.now());
+            sagaRepository.save(saga);
+
+            sendToShop(orderUuid, SagaMessageType.CONFIRM_RESERVATION, null);
+            return null;
+        });
+
+        return toStatus(orderUuid, SagaState.STOCK_CONFIRMING, Status.PAYMENT_IN_PROGRESS, null);
+    }
+
+    private OrderSaga newSagaFor(UUID orderUuid) {
+        Order order = orderRepository.findByOrderUuid(orderUuid).orElseThrow(OrderNotFoundException::new);
+        LocalDateTime now = LocalDateTime.now();
+        return OrderSaga.builder()
+                .orderUuid(orderUuid)
+                .userId(order.getUser().getId())
+                .createdAt(now)
+                .build();
+    }
+
+    public void handleReply(SagaMessage message) {
+        log.info("OrderSagaService: ответ {} для заказа {}", message.getType(), message.getOrderUuid());
+        inTransaction(() -> {
+            switch (message.getType()) {
+                case STOCK_RESERVED -> onStockReserved(message);
+                case STOCK_REJECTED -> moveTo(message.getOrderUuid(), SagaState.STOCK_PENDING, SagaState.FAILED,
+                        new ProductsNotAvailableException().getMessage());
+                case RESERVATION_CONFIRMED -> onReservationConfirmed(message);
+                case RESERVATION_EXPIRED -> onReservationExpired(message);
+                case PAYMENT_COMPLETED, PAYMENT_FAILED -> onPaymentResult(message);
+                default -> log.warn("OrderSagaService: неожиданный ответ {} для заказа {}", message.getType(), message.getOrderUuid());
+            }
+            return null;
+        });
+    }
+
+    private void onStockReserved(SagaMessage message) {
+        UUID orderUuid = message.getOrderUuid();
+        if (!moveTo(orderUuid, SagaState.STOCK_PENDING, SagaState.AWAITING_PAYMENT, null)) {
+            OrderSaga saga = sagaRepository.findByOrderUuid(orderUuid).orElse(null);
+            if (saga != null && saga.getState() == SagaState.FAILED) {
+                // сага уже сдалась по таймауту, а резерв всё-таки состоялся: товар возвращается на склад
+                sendToShop(orderUuid, SagaMessageType.RELEASE_RESERVATION, null);
+            }
+            return;
+        }
+
+        OrderSaga saga = sagaRepository.findByOrderUuid(orderUuid).orElseThrow(OrderNotFoundException::new);
+        CompositeRequest request = fromJson(saga.getPayload());
+        User user = userRepository.findById(saga.getUserId()).orElseThrow(UserNotFoundException::new);
+
+        orderService.saveOrder(orderUuid, user, message.getTotalAmount(), request.getOrderRequests(), request.getAddressDto());
+        saga.setPayload(null);
+        sagaRepository.save(saga);
+    }
+
+    private void onReservationConfirmed(SagaMessage message) {
+        UUID orderUuid = message.getOrderUuid();
+        // номер карты читается до перехода: переход стирает его из саги
+        String encryptedCard = sagaRepository.findByOrderUuid(orderUuid).map(OrderSaga::getEncryptedCard).orElse(null);
+        if (!moveTo(orderUuid, SagaState.STOCK_CONFIRMING, SagaState.PAYMENT_PENDING, null)) {
+            return;
+        }
+
+        orderOutboxService.enqueueSagaMessage(SagaTopics.PAYMENT_COMMANDS, SagaMessage.builder()
+                .orderUuid(orderUuid)
+                .type(SagaMessageType.PAYMENT_REQUESTED)
+                .totalAmount(orderRepository.findTotalAmountByOrderUuid(orderUuid))
+                .encryptedCard(encryptedCard)
+                .build());
+    }
+
+    private void onReservationExpired(SagaMessage message) {
+        UUID orderUuid = message.getOrderUuid();
+        if (!moveTo(orderUuid, SagaState.STOCK_CONFIRMING, SagaState.FAILED, OrderService.EXPIRED_MESSAGE)) {
+            return;
+        }
+        orderRepository.compareAndSetStatus(orderUuid, Status.PAYMENT_IN_PROGRESS, Status.EXPIRED, LocalDateTime.now());
+    }
+
+    private void onPaymentResult(SagaMessage message) {
+        UUID orderUuid = message.getOrderUuid();
+        boolean paid = message.getType() == SagaMessageType.PAYMENT_COMPLETED;
+        if (paid) {
+            // деньги списаны: результат записывается, даже если сага уже вернула заказ к оплате по таймауту
+            if (!moveTo(orderUuid, SagaState.PAYMENT_PENDING, SagaState.COMPLETED, null)
+                    && !moveTo(orderUuid, SagaState.AWAITING_PAYMENT, SagaState.COMPLETED, null)) {
+                return;
+            }
+        } else if (!moveTo(orderUuid, SagaState.PAYMENT_PENDING, SagaState.AWAITING_PAYMENT, message.getReason())) {
+            // после неудачи сага снова ждёт оплаты: заказ можно оплатить повторно, пока резерв не истёк
+            return;
+        }
+
+        orderService.processPaymentResult(orderUuid,
+                new PaymentResponse(message.getPaymentId(), paid ? Status.SUCCESS : Status.FAILED));
+
+        if (!paid) {
+            // компенсация: резерву снова назначается срок, и брошенный заказ вернёт товар на склад сам
+            sendToShop(orderUuid, SagaMessageType.HOLD_RESERVATION, null);
+        }
+    }
+
+    /**
+     * Завершает шаги, ответ на которые не пришёл за timeout, и возвращает их число. Ожидание резерва
+     * прекращается со снятием возможного резерва, ожидание подтверждения — возвратом заказа к оплате.
+     * Шаг оплаты не трогается: заказ в PAYMENT_IN_PROGRESS сверяет OrderReconciler, а сага берёт его итог.
+     */
+    public int expireStale(Duration timeout) {
+        List<OrderSaga> stale = inTransaction(() -> sagaRepository.findAllByStateInAndUpdatedAtBefore(
+                List.of(SagaState.STOCK_PENDING, SagaState.STOCK_CONFIRMING, SagaState.PAYMENT_PENDING),
+                LocalDateTime.now().minus(timeout)));
+
+        int expired = 0;
+        for (OrderSaga saga : stale) {
+            UUID orderUuid = saga.getOrderUuid();
+            Boolean changed = inTransaction(() -> switch (saga.getState()) {
+                case STOCK_PENDING -> expireReservation(orderUuid);
+                case STOCK_CONFIRMING -> expireConfirmation(orderUuid);
+                case PAYMENT_PENDING -> syncWithOrder(orderUuid);
+                default -> false;
+            });
+            if (Boolean.TRUE.equals(changed)) {
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    private boolean expireReservation(UUID orderUuid) {
+        if (!moveTo(orderUuid, SagaState.STOCK_PENDING, SagaState.FAILED, TIMEOUT_MESSAGE)) {
+            return false;
+        }
+        // команда идёт за командой резерва в той же партиции: если резерв состоится, он тут же снимется
+        sendToShop(orderUuid, SagaMessageType.RELEASE_RESERVATION, null);
+        return true;
+    }
+
+    private boolean expireConfirmation(UUID orderUuid) {
+        if (!moveTo(orderUuid, SagaState.STOCK_CONFIRMING, SagaState.AWAITING_PAYMENT, TIMEOUT_MESSAGE)) {
+            return false;
+        }
+        orderRepository.compareAndSetStatus(orderUuid, Status.PAYMENT_IN_PROGRESS, Status.WAITING_FOR_PAYMENT, LocalDateTime.now());
+        sendToShop(orderUuid, SagaMessageType.HOLD_RESERVATION, null);
+        return true;
+    }
+
+    private boolean syncWithOrder(UUID orderUuid) {
+        Status orderStatus = orderRepository.findByOrderUuid(orderUuid).map(Order::getOrderStatus).orElse(null);
+        if (orderStatus == null || orderStatus == Status.PAYMENT_IN_PROGRESS) {
+            return false;
+        }
+        SagaState next = switch (orderStatus) {
+            case WAITING_FOR_PAYMENT, FAILED -> SagaState.AWAITING_PAYMENT;
+            case EXPIRED -> SagaState.FAILED;
+            default -> SagaState.COMPLETED;
+        };
+        return moveTo(orderUuid, SagaState.PAYMENT_PENDING, next, null);
+    }
+
+    public OrderSagaStatus getStatus(UUID orderUuid) {
+        return inTransaction(() -> {
+            Status orderStatus = orderRepository.findByOrderUuid(orderUuid).map(Order::getOrderStatus).orElse(null);
+            return sagaRepository.findByOrderUuid(orderUuid)
+                    .map(saga -> toStatus(orderUuid, saga.getState(), orderStatus, saga.getReason()))
+                    .orElseGet(() -> {
+                        if (orderStatus == null) {
+                            throw new OrderNotFoundException();
+                        }
+                        return toStatus(orderUuid, null, orderStatus, null);
+                    });
+        });
+    }
+
+    private static OrderSagaStatus toStatus(UUID orderUuid, SagaState state, Status orderStatus, String reason) {
+        return new OrderSagaStatus(orderUuid, state, orderStatus, reason, STATUS_URL.formatted(orderUuid));
+    }
+
+    SagaMessage readMessage(String payload) {
+        try {
+            return objectMapper.readValue(payload, SagaMessage.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Не удалось прочитать сообщение саги", e);
+        }
+    }
+
+    private CompositeRequest fromJson(String payload) {
+        try {
+            return objectMapper.readValue(payload, CompositeRequest.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось прочитать заказ саги", e);
+        }
+    }
+
+    private String toJson(CompositeRequest request) {
+        try {
+            return objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сохранить заказ саги", e);
+        }
+    }
+}
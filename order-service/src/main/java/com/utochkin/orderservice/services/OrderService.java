@@ -21,19 +21,24 @@ import com.utochkin.orderservice.request.AccountRequest;
 import com.utochkin.orderservice.request.OrderRequest;
 import com.utochkin.orderservice.request.PaymentRequest;
 import com.utochkin.orderservice.request.PaymentResponse;
+import com.utochkin.orderservice.request.ReserveOrderResponse;
 import feign.FeignException;
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.github.resilience4j.retry.annotation.Retry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 import static com.utochkin.orderservice.models.Status.REFUNDED;
 
@@ -44,61 +49,120 @@ import static com.utochkin.orderservice.models.Status.REFUNDED;
 public class OrderService {
 
     private final ShopController shopController;
+    private final ReservationService reservationService;
     private final PaymentController paymentController;
+    private final PaymentService paymentService;
     private final ProductInfoMapper productInfoMapper;
     private final OrderRepository orderRepository;
     private final ProductInfoRepository productInfoRepository;
     private final UserMapper userMapper;
     private final OrderMapper orderMapper;
     private final AddressMapper addressMapper;
-    private final KafkaSenderService kafkaSenderService;
+    private final OrderOutboxService orderOutboxService;
+    private final PlatformTransactionManager transactionManager;
 
-    private void processPaymentResult(Order order, PaymentResponse paymentResponse) {
-        order.setOrderStatus(paymentResponse.getStatus());
-        order.setUpdatedAt(LocalDateTime.now());
-        order.setPaymentId(paymentResponse.getPaymentId());
-        Order savedOrder = orderRepository.save(order);
+    private static final String IN_PROGRESS_MESSAGE = "По заказу уже выполняется операция, повторите запрос позже";
+    static final String EXPIRED_MESSAGE = "Резерв товаров истёк, необходимо создать новый заказ!";
+
+    // короткие транзакции вокруг удалённых вызовов: соединение с БД не держится, пока ждём payment-service
+    private <T> T inTransaction(Supplier<T> action) {
+        return new TransactionTemplate(transactionManager).execute(status -> action.get());
+    }
 
-        List<OrderRequest> orderRequests = savedOrder.getProductInfos().stream()
+    private void changeStatus(UUID orderUuid, Status expectedStatus, Status newStatus) {
+        inTransaction(() -> orderRepository.compareAndSetStatus(orderUuid, expectedStatus, newStatus, LocalDateTime.now()));
+    }
+
+    private static List<OrderRequest> toOrderRequests(List<ProductInfo> productInfos) {
+        return productInfos.stream()
                 .map(productInfo -> new OrderRequest(productInfo.getArticleId(), productInfo.getQuantity()))
                 .toList();
+    }
 
+    // событие пишется в outbox в той же транзакции, что и заказ; в Kafka его отправит OrderOutboxRelay
+    private void enqueueEvent(Order order, List<OrderRequest> orderRequests) {
         OrderDtoForKafka dto = orderMapper.toDtoForKafka(
-                savedOrder,
-                userMapper.toDto(savedOrder.getUser()),
-                addressMapper.toDto(savedOrder.getAddress()),
+                order,
+                userMapper.toDto(order.getUser()),
+                addressMapper.toDto(order.getAddress()),
                 orderRequests
         );
-        kafkaSenderService.send(dto);
-
-        log.info("OrderService: отправлено событие {} для заказа {}", paymentResponse.getStatus(), savedOrder.getOrderUuid());
+        orderOutboxService.enqueue(dto);
     }
 
-    @Transactional(readOnly = true)
-    @CircuitBreaker(name = "circuitBreakerCheckOrder", fallbackMethod = "fallbackMethodCheckOrder")
-    @Retry(name = "retryCheckOrder", fallbackMethod = "fallbackMethodCheckOrder")
-    public Boolean checkOrder(List<OrderRequest> orderRequests) {
-        log.info("OrderService: проверка наличия товаров: {}", orderRequests);
-        return shopController.checkOrder(orderRequests);
-    }
+    // записывает результат списания в заказ; в транзакции шага саги выполняется в ней же
+    public void processPaymentResult(UUID orderUuid, PaymentResponse paymentResponse) {
+        inTransaction(() -> {
+            Order order = orderRepository.findByOrderUuid(orderUuid).orElseThrow(OrderNotFoundException::new);
 
-    public Boolean fallbackMethodCheckOrder(List<OrderRequest> orderRequests, Throwable throwable) {
-        log.error("Fallback для checkOrder сработал из-за: {}", throwable.getMessage());
-        throw new ServiceUnavailableException("Сервис временно недоступен, пожалуйста, повторите попытку позже");
+            switch (order.getOrderStatus()) {
+                case SUCCESS, REFUND_IN_PROGRESS, REFUNDED -> {
+                    log.info("OrderService: результат оплаты заказа {} уже записан", orderUuid);
+                    return null;
+                }
+            }
+
+            order.setOrderStatus(paymentResponse.getStatus());
+            order.setUpdatedAt(LocalDateTime.now());
+            order.setPaymentId(paymentResponse.getPaymentId());
+            Order savedOrder = orderRepository.save(order);
+
+            enqueueEvent(savedOrder, toOrderRequests(savedOrder.getProductInfos()));
+
+            log.info("OrderService: событие {} для заказа {} записано в outbox", paymentResponse.getStatus(), savedOrder.getOrderUuid());
+            return null;
+        });
     }
 
-    @Transactional
-    @CircuitBreaker(name = "circuitBreakerCreateOrder", fallbackMethod = "fallbackMethodCreateOrder")
-    @Retry(name = "retryCreateOrder", fallbackMethod = "fallbackMethodCreateOrder")
     public OrderDto createOrder(User user, List<OrderRequest> orderRequests, AddressDto addressDto) {
         log.info("OrderService: начало создания заказа для user={} requests={}", user.getUsername(), orderRequests);
 
+        // проверка остатков, расчёт суммы и резерв со сроком выполняются в shop-service одним запросом;
+        // orderUuid выбирается один раз, поэтому повторы резерва идемпотентны, а если ответ потеряется совсем,
+        // товар вернётся на склад по истечении срока
+        UUID orderUuid = UUID.randomUUID();
+        ReserveOrderResponse reservation = reservationService.reserve(orderUuid, orderRequests);
+
+        if (!Boolean.TRUE.equals(reservation.getReserved())) {
+            log.info("OrderService: товары для заказа не зарезервированы {}", orderRequests);
+            throw new ProductsNotAvailableException();
+        }
+
+        return inTransaction(() -> {
+            releaseReservationOnRollback(orderUuid);
+            return saveOrder(orderUuid, user, reservation.getTotalAmount(), orderRequests, addressDto);
+        });
+    }
+
+    // откат ловится и при ошибке на коммите, а не только при исключении из saveOrder
+    private void releaseReservationOnRollback(UUID orderUuid) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK) {
+                    return;
+                }
+                log.error("OrderService: заказ {} не сохранён, возвращаем зарезервированные товары", orderUuid);
+                try {
+                    shopController.releaseReservation(orderUuid);
+                } catch (RuntimeException exception) {
+                    log.warn("OrderService: резерв заказа {} не снят, его вернёт сборщик по сроку: {}", orderUuid, exception.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Сохраняет заказ, товар под который уже зарезервирован в shop-service. Вызывается в транзакции
+     * создания заказа или шага саги, получившего ответ о резерве.
+     */
+    public OrderDto saveOrder(UUID orderUuid, User user, Double totalAmount, List<OrderRequest> orderRequests, AddressDto addressDto) {
         List<ProductInfo> listEntity = productInfoMapper.toListEntity(orderRequests);
         productInfoRepository.saveAll(listEntity);
 
         Order order = Order.builder()
-                .orderUuid(UUID.randomUUID())
-                .totalAmount(shopController.getSumTotalPriceOrder(orderRequests))
+                .orderUuid(orderUuid)
+                .totalAmount(totalAmount)
                 .orderStatus(Status.WAITING_FOR_PAYMENT)
                 .createdAt(LocalDateTime.now())
                 .updatedAt(null)
@@ -112,84 +176,217 @@ public class OrderService {
 
         listEntity.forEach(productInfo -> productInfo.setOrder(savedOrder));
 
-        shopController.changeTotalQuantityProductsAfterCreateOrder(orderRequests);
-
         log.info("OrderService: заказ {} создан успешно", savedOrder.getOrderUuid());
 
         return orderMapper.toDto(savedOrder, userMapper.toDto(user), addressDto, orderRequests);
     }
 
-    public OrderDto fallbackMethodCreateOrder(User user, List<OrderRequest> orderRequests, AddressDto addressDto, Throwable throwable) {
-        log.error("Fallback для createOrder сработал из-за: {}", throwable.getMessage());
-        throw new ServiceUnavailableException("Сервис временно недоступен, пожалуйста, повторите попытку позже");
+    // повторы и circuit breaker — на удалённом вызове в PaymentService: повтор всего метода упёрся бы в PAYMENT_IN_PROGRESS
+    public PaymentResponse paymentOrder(PaymentRequest paymentRequest) {
+        try {
+            return payOrder(paymentRequest);
+        } catch (RuntimeException exception) {
+            throw toClientException(paymentRequest, "paymentOrder", exception);
+        }
     }
 
-    @Transactional(noRollbackFor = FailedPayOrderException.class)
-    @CircuitBreaker(name = "circuitBreakerPayOrder", fallbackMethod = "fallbackMethodPayOrder")
-    @Retry(name = "retryPayOrder", fallbackMethod = "fallbackMethodPayOrder")
-    public PaymentResponse paymentOrder(PaymentRequest paymentRequest) {
+    private PaymentResponse payOrder(PaymentRequest paymentRequest) {
         log.info("OrderService: оплата заказа {}", paymentRequest.getOrderUuid());
 
-        Order order = orderRepository.findByOrderUuid(paymentRequest.getOrderUuid()).orElseThrow(OrderNotFoundException::new);
-
-        switch (order.getOrderStatus()) {
-            case SUCCESS -> throw new FailedOrderStatusException("Заказ уже оплачен!");
-            case REFUNDED -> throw new FailedOrderStatusException("Заказ отменен, необходимо создать новый заказ!");
+        UUID orderUuid = paymentRequest.getOrderUuid();
+        Double totalAmount = inTransaction(() -> startPayment(orderUuid));
+        PaymentResponse earlierPayment = confirmReservation(orderUuid);
+        if (earlierPayment != null) {
+            processPaymentResult(orderUuid, earlierPayment);
+            return earlierPayment;
         }
 
-        Double totalAmountById = orderRepository.findTotalAmountByOrderUuid(paymentRequest.getOrderUuid());
-        PaymentResponse paymentResponse = paymentController.paymentOrder(new AccountRequest(totalAmountById, paymentRequest.getCardNumber()));
+        PaymentResponse paymentResponse;
+        try {
+            paymentResponse = paymentService.pay(new AccountRequest(totalAmount, paymentRequest.getCardNumber(), orderUuid));
+        } catch (RuntimeException exception) {
+            if (isRejected(exception)) {
+                // payment-service отказал до списания, заказ можно снова отдать на оплату
+                log.warn("OrderService: оплата заказа {} отклонена, заказ снова ожидает оплаты: {}", orderUuid, exception.getMessage());
+                changeStatus(orderUuid, Status.PAYMENT_IN_PROGRESS, Status.WAITING_FOR_PAYMENT);
+                holdReservation(orderUuid);
+            } else {
+                // таймаут или обрыв связи: деньги могли списаться, поэтому заказ остаётся в PAYMENT_IN_PROGRESS,
+                // резерв — подтверждённым, а итог по журналу payment-service запишет сверка
+                log.warn("OrderService: результат оплаты заказа {} неизвестен, его выяснит сверка: {}", orderUuid, exception.getMessage());
+            }
+            throw exception;
+        }
 
-        processPaymentResult(order, paymentResponse);
+        processPaymentResult(orderUuid, paymentResponse);
 
         if (paymentResponse.getStatus() == Status.FAILED) {
+            holdReservation(orderUuid);
             throw new FailedPayOrderException();
         }
 
         return paymentResponse;
     }
 
-    public PaymentResponse fallbackMethodPayOrder(PaymentRequest paymentRequest, Throwable throwable) {
-        extractedFullbackMethod(paymentRequest, throwable);
-        log.error("Fallback для paymentOrder сработал из-за: {}", throwable.getMessage());
-        throw new ServiceUnavailableException("Сервис временно недоступен, пожалуйста, повторите попытку позже");
+    // переводит заказ в PAYMENT_IN_PROGRESS, если его можно оплачивать; вызывается в транзакции
+    public Double startPayment(UUID orderUuid) {
+        Order order = orderRepository.findByOrderUuid(orderUuid).orElseThrow(OrderNotFoundException::new);
+
+        switch (order.getOrderStatus()) {
+            case SUCCESS -> throw new FailedOrderStatusException("Заказ уже оплачен!");
+            case REFUNDED, REFUND_IN_PROGRESS -> throw new FailedOrderStatusException("Заказ отменен, необходимо создать новый заказ!");
+            case PAYMENT_IN_PROGRESS -> throw new FailedOrderStatusException(IN_PROGRESS_MESSAGE);
+            case EXPIRED -> throw new FailedOrderStatusException(EXPIRED_MESSAGE);
+        }
+
+        if (orderRepository.compareAndSetStatus(orderUuid, order.getOrderStatus(), Status.PAYMENT_IN_PROGRESS, LocalDateTime.now()) == 0) {
+            throw new FailedOrderStatusException(IN_PROGRESS_MESSAGE);
+        }
+
+        return orderRepository.findTotalAmountByOrderUuid(orderUuid);
+    }
+
+    // ответ 4xx означает, что payment-service отказал и списания не было, открытый circuit breaker — что запрос
+    // не отправлялся; остальные ошибки неоднозначны
+    private static boolean isRejected(RuntimeException exception) {
+        return exception instanceof CallNotPermittedException
+                || exception instanceof FeignException feignException
+                && feignException.status() >= 400 && feignException.status() < 500;
+    }
+
+    // пока идёт оплата, shop-service не снимет резерв; если он уже снят по сроку, оплачивать нечего.
+    // Возвращает успешную оплату, найденную в журнале payment-service, если заказ на самом деле уже оплачен
+    private PaymentResponse confirmReservation(UUID orderUuid) {
+        try {
+            shopController.confirmReservation(orderUuid);
+            return null;
+        } catch (FeignException.NotFound notFound) {
+            log.info("OrderService: у заказа {} нет резерва в shop-service, товар списан без срока", orderUuid);
+            return null;
+        } catch (FeignException.Conflict conflict) {
+            PaymentResponse earlierPayment = findSuccessfulPayment(orderUuid);
+            if (earlierPayment != null) {
+                log.error("OrderService: резерв заказа {} снят по сроку, но заказ уже оплачен: записываем оплату, товар нужно вернуть в заказ вручную", orderUuid);
+                return earlierPayment;
+            }
+            log.info("OrderService: резерв заказа {} истёк до оплаты", orderUuid);
+            changeStatus(orderUuid, Status.PAYMENT_IN_PROGRESS, Status.EXPIRED);
+            throw new FailedOrderStatusException(EXPIRED_MESSAGE);
+        } catch (RuntimeException exception) {
+            changeStatus(orderUuid, Status.PAYMENT_IN_PROGRESS, Status.WAITING_FOR_PAYMENT);
+            throw exception;
+        }
+    }
+
+    // журнал недоступен — заказ остаётся в PAYMENT_IN_PROGRESS, и его доведёт сверка
+    private PaymentResponse findSuccessfulPayment(UUID orderUuid) {
+        try {
+            PaymentResponse payment = paymentController.findPayment(orderUuid);
+            return payment.getStatus() == Status.SUCCESS ? payment : null;
+        } catch (FeignException.NotFound notFound) {
+            return null;
+        }
     }
 
+    // оплата не прошла, заказ могут бросить: резерву снова назначается срок
+    private void holdReservation(UUID orderUuid) {
+        try {
+            shopController.holdReservation(orderUuid);
+        } catch (FeignException.NotFound notFound) {
+            log.info("OrderService: у заказа {} нет резерва в shop-service", orderUuid);
+        } catch (RuntimeException exception) {
+            log.warn("OrderService: не удалось вернуть срок резерву заказа {}: {}", orderUuid, exception.getMessage());
+        }
+    }
 
-    @Transactional
-    @CircuitBreaker(name = "circuitBreakerRefundedOrder", fallbackMethod = "fallbackMethodRefundedOrder")
-    @Retry(name = "retryRefundedOrder", fallbackMethod = "fallbackMethodRefundedOrder")
     public void refundedOrder(PaymentRequest paymentRequest) {
+        try {
+            refundOrder(paymentRequest);
+        } catch (RuntimeException exception) {
+            throw toClientException(paymentRequest, "refundedOrder", exception);
+        }
+    }
+
+    private void refundOrder(PaymentRequest paymentRequest) {
         log.info("OrderService: возврат заказа {}", paymentRequest.getOrderUuid());
 
-        Order order = orderRepository.findByOrderUuid(paymentRequest.getOrderUuid()).orElseThrow(OrderNotFoundException::new);
+        UUID orderUuid = paymentRequest.getOrderUuid();
+        RefundContext refund = inTransaction(() -> startRefund(orderUuid));
+
+        PaymentResponse refundedOrder;
+        try {
+            refundedOrder = paymentService.refund(new AccountRequest(refund.totalAmount(), paymentRequest.getCardNumber(), orderUuid));
+        } catch (RuntimeException exception) {
+            if (isRejected(exception)) {
+                log.warn("OrderService: возврат заказа {} отклонён, заказ остаётся оплаченным: {}", orderUuid, exception.getMessage());
+                changeStatus(orderUuid, Status.REFUND_IN_PROGRESS, Status.SUCCESS);
+            } else {
+                // таймаут или обрыв связи: деньги могли вернуться, заказ остаётся в REFUND_IN_PROGRESS до сверки
+                log.warn("OrderService: результат возврата заказа {} неизвестен, его выяснит сверка: {}", orderUuid, exception.getMessage());
+            }
+            throw exception;
+        }
+
+        if (refundedOrder.getStatus() != REFUNDED) {
+            changeStatus(orderUuid, Status.REFUND_IN_PROGRESS, Status.SUCCESS);
+            return;
+        }
+
+        // если shop-service недоступен, заказ остаётся в REFUND_IN_PROGRESS и его довозвращает сверка
+        returnStock(orderUuid, refund.orderRequests());
+        completeRefund(orderUuid, refundedOrder);
+
+        log.info("OrderService: возврат выполнен {}", orderUuid);
+    }
+
+    private record RefundContext(Double totalAmount, List<OrderRequest> orderRequests) {
+    }
+
+    private RefundContext startRefund(UUID orderUuid) {
+        Order order = orderRepository.findByOrderUuid(orderUuid).orElseThrow(OrderNotFoundException::new);
 
         switch (order.getOrderStatus()) {
-            case WAITING_FOR_PAYMENT, FAILED, REFUNDED ->
+            case WAITING_FOR_PAYMENT, FAILED, REFUNDED, EXPIRED ->
                     throw new FailedOrderStatusException("Заказ нельзя отменить, т.к. он не был оплачен!");
+            case PAYMENT_IN_PROGRESS, REFUND_IN_PROGRESS -> throw new FailedOrderStatusException(IN_PROGRESS_MESSAGE);
+        }
+
+        // товары читаются до перехода статуса: compareAndSetStatus очищает контекст и order становится detached
+        List<OrderRequest> orderRequests = toOrderRequests(order.getProductInfos());
+
+        if (orderRepository.compareAndSetStatus(orderUuid, Status.SUCCESS, Status.REFUND_IN_PROGRESS, LocalDateTime.now()) == 0) {
+            throw new FailedOrderStatusException(IN_PROGRESS_MESSAGE);
         }
 
-        Double totalAmountById = orderRepository.findTotalAmountByOrderUuid(paymentRequest.getOrderUuid());
-        PaymentResponse refundedOrder = paymentController.refundedOrder(new AccountRequest(totalAmountById, paymentRequest.getCardNumber()));
+        return new RefundContext(orderRepository.findTotalAmountByOrderUuid(orderUuid), orderRequests);
+    }
 
-        if (refundedOrder.getStatus() == REFUNDED) {
+    // товар возвращается снятием подтверждённого резерва: shop-service снимает резерв один раз, поэтому повтор
+    // после потерянного ответа или незавершённого completeRefund товар второй раз не вернёт
+    private void returnStock(UUID orderUuid, List<OrderRequest> orderRequests) {
+        try {
+            shopController.releaseReservation(orderUuid);
+        } catch (FeignException.NotFound notFound) {
+            log.warn("OrderService: у заказа {} нет резерва в shop-service, товар возвращается по списку", orderUuid);
+            shopController.changeTotalQuantityProductsAfterRefundedOrder(orderRequests);
+        }
+    }
+
+    private void completeRefund(UUID orderUuid, PaymentResponse refundedOrder) {
+        inTransaction(() -> {
+            // переход блокирует строку заказа: возврат записывается и уходит в outbox один раз
+            if (orderRepository.compareAndSetStatus(orderUuid, Status.REFUND_IN_PROGRESS, REFUNDED, LocalDateTime.now()) == 0) {
+                log.info("OrderService: возврат заказа {} уже записан", orderUuid);
+                return null;
+            }
+            Order order = orderRepository.findByOrderUuid(orderUuid).orElseThrow(OrderNotFoundException::new);
 
             order.setOrderStatus(Status.REFUNDED);
             order.setUpdatedAt(LocalDateTime.now());
             order.setPaymentId(refundedOrder.getPaymentId());
 
             List<ProductInfo> productInfos = order.getProductInfos();
-
-            List<OrderRequest> orderRequests = productInfos.stream()
-                    .map(productInfo -> {
-                        OrderRequest orderRequest = new OrderRequest();
-                        orderRequest.setArticleId(productInfo.getArticleId());
-                        orderRequest.setQuantity(productInfo.getQuantity());
-                        return orderRequest;
-                    })
-                    .toList();
-
-            shopController.changeTotalQuantityProductsAfterRefundedOrder(orderRequests);
+            List<OrderRequest> orderRequests = toOrderRequests(productInfos);
 
             order.setProductInfos(Collections.emptyList());
 
@@ -199,18 +396,78 @@ public class OrderService {
 
             Order saveOrder = orderRepository.save(order);
 
-            OrderDtoForKafka dtoForKafka = orderMapper.toDtoForKafka(saveOrder, userMapper.toDto(saveOrder.getUser()), addressMapper.toDto(order.getAddress()), orderRequests);
+            enqueueEvent(saveOrder, orderRequests);
+            return null;
+        });
+    }
 
-            kafkaSenderService.send(dtoForKafka);
+    /**
+     * Доводит до конца заказы, зависшие в PAYMENT_IN_PROGRESS/REFUND_IN_PROGRESS дольше staleAfter:
+     * результат операции берётся из журнала payment-service, а если операции там нет — заказ возвращается в исходный статус.
+     */
+    public int reconcile(Duration staleAfter) {
+        // товары заказа читаются внутри транзакции: дальше идут удалённые вызовы без открытой сессии
+        List<StaleOrder> stale = inTransaction(() -> orderRepository.findAllByOrderStatusInAndUpdatedAtBefore(
+                        List.of(Status.PAYMENT_IN_PROGRESS, Status.REFUND_IN_PROGRESS), LocalDateTime.now().minus(staleAfter))
+                .stream()
+                .map(order -> new StaleOrder(order.getOrderUuid(), order.getOrderStatus(), toOrderRequests(order.getProductInfos())))
+                .toList());
+
+        int reconciled = 0;
+        for (StaleOrder order : stale) {
+            try {
+                if (order.status() == Status.PAYMENT_IN_PROGRESS) {
+                    reconcilePayment(order.orderUuid());
+                } else {
+                    reconcileRefund(order.orderUuid(), order.orderRequests());
+                }
+                reconciled++;
+            } catch (RuntimeException exception) {
+                log.warn("OrderService: сверка заказа {} отложена: {}", order.orderUuid(), exception.getMessage());
+            }
+        }
+        return reconciled;
+    }
+
+    private record StaleOrder(UUID orderUuid, Status status, List<OrderRequest> orderRequests) {
+    }
+
+    private void reconcilePayment(UUID orderUuid) {
+        PaymentResponse paymentResponse;
+        try {
+            paymentResponse = paymentController.findPayment(orderUuid);
+        } catch (FeignException.NotFound notFound) {
+            log.info("OrderService: оплата заказа {} не проводилась, заказ снова ожидает оплаты", orderUuid);
+            changeStatus(orderUuid, Status.PAYMENT_IN_PROGRESS, Status.WAITING_FOR_PAYMENT);
+            holdReservation(orderUuid);
+            return;
+        }
+        log.info("OrderService: оплата заказа {} найдена при сверке", orderUuid);
+        processPaymentResult(orderUuid, paymentResponse);
+        if (paymentResponse.getStatus() == Status.FAILED) {
+            holdReservation(orderUuid);
+        }
+    }
 
-            log.info("OrderService: возврат выполнен {}", paymentRequest.getOrderUuid());
+    private void reconcileRefund(UUID orderUuid, List<OrderRequest> orderRequests) {
+        PaymentResponse refundedOrder;
+        try {
+            refundedOrder = paymentController.findRefund(orderUuid);
+        } catch (FeignException.NotFound notFound) {
+            log.info("OrderService: возврат по заказу {} не проводился, заказ остаётся оплаченным", orderUuid);
+            changeStatus(orderUuid, Status.REFUND_IN_PROGRESS, Status.SUCCESS);
+            return;
         }
+        log.info("OrderService: возврат по заказу {} найден при сверке", orderUuid);
+        returnStock(orderUuid, orderRequests);
+        completeRefund(orderUuid, refundedOrder);
     }
 
-    public void fallbackMethodRefundedOrder(PaymentRequest paymentRequest, Throwable throwable) {
-        extractedFullbackMethod(paymentRequest, throwable);
-        log.error("Fallback для refundedOrder сработал из-за: {}", throwable.getMessage());
-        throw new ServiceUnavailableException("Сервис временно недоступен, пожалуйста, повторите попытку позже");
+    // ошибки оплаты и возврата, понятные клиенту, отдаются как есть, остальные — как недоступность сервиса
+    private static RuntimeException toClientException(PaymentRequest paymentRequest, String operation, RuntimeException exception) {
+        extractedFullbackMethod(paymentRequest, exception);
+        log.error("OrderService: {} не выполнен из-за: {}", operation, exception.getMessage());
+        return new ServiceUnavailableException("Сервис временно недоступен, пожалуйста, повторите попытку позже");
     }
 
     private static void extractedFullbackMethod(PaymentRequest paymentRequest, Throwable throwable) {
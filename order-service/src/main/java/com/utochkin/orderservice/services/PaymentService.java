@@ -0,0 +1,37 @@
+package com.utochkin.orderservice.services;
+
+import com.utochkin.orderservice.controllers.PaymentController;
+import com.utochkin.orderservice.request.AccountRequest;
+import com.utochkin.orderservice.request.PaymentResponse;
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.github.resilience4j.retry.annotation.Retry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Service;
+
+/**
+ * Списание и возврат в payment-service. Повторяется только сам удалённый вызов: payment-service не проводит
+ * операцию по (orderUuid, операция) дважды, поэтому повтор после потерянного ответа вернёт уже проведённую
+ * операцию. Переход статуса заказа выполняется один раз в OrderService, до первой попытки.
+ */
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class PaymentService {
+
+    private final PaymentController paymentController;
+
+    @CircuitBreaker(name = "circuitBreakerPayOrder")
+    @Retry(name = "retryPayOrder")
+    public PaymentResponse pay(AccountRequest accountRequest) {
+        log.info("PaymentService: списание по заказу {}", accountRequest.getOrderUuid());
+        return paymentController.paymentOrder(accountRequest);
+    }
+
+    @CircuitBreaker(name = "circuitBreakerRefundedOrder")
+    @Retry(name = "retryRefundedOrder")
+    public PaymentResponse refund(AccountRequest accountRequest) {
+        log.info("PaymentService: возврат по заказу {}", accountRequest.getOrderUuid());
+        return paymentController.refundedOrder(accountRequest);
+    }
+}
@@ -0,0 +1,39 @@
+package com.utochkin.orderservice.services;
+
+import com.utochkin.orderservice.controllers.ShopController;
+import com.utochkin.orderservice.exceptions.ServiceUnavailableException;
+import com.utochkin.orderservice.request.OrderRequest;
+import com.utochkin.orderservice.request.ReservationRequest;
+import com.utochkin.orderservice.request.ReserveOrderResponse;
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.github.resilience4j.retry.annotation.Retry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Резерв товаров под новый заказ в shop-service. Повторяется только сам удалённый вызов и всегда с тем же
+ * orderUuid: если ответ на первую попытку потерялся, повтор вернёт уже созданный резерв, а не займёт товар второй раз.
+ */
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class ReservationService {
+
+    private final ShopController shopController;
+
+    @CircuitBreaker(name = "circuitBreakerCreateOrder", fallbackMethod = "fallbackMethodReserve")
+    @Retry(name = "retryCreateOrder", fallbackMethod = "fallbackMethodReserve")
+    public ReserveOrderResponse reserve(UUID orderUuid, List<OrderRequest> orderRequests) {
+        log.info("ReservationService: резерв товаров для заказа {}: {}", orderUuid, orderRequests);
+        return shopController.reserve(new ReservationRequest(orderUuid, orderRequests));
+    }
+
+    public ReserveOrderResponse fallbackMethodReserve(UUID orderUuid, List<OrderRequest> orderRequests, Throwable throwable) {
+        log.error("Fallback для reserve сработал из-за: {}", throwable.getMessage());
+        throw new ServiceUnavailableException("Сервис временно недоступен, пожалуйста, повторите попытку позже");
+    }
+}
@@ -0,0 +1,60 @@
+package com.utochkin.orderservice.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Шифрует номер карты для саги: в order_sagas, outbox и топик команд payment-service попадает только
+ * шифротекст AES-GCM. Ключ (order.saga.card-key, base64 от 32 байт) общий с payment-service, orderUuid
+ * связывает шифротекст с заказом, и подставить его в команду другого заказа нельзя.
+ */
+@Component
+public class SagaCardCipher {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+
+    public SagaCardCipher(@Value("${order.saga.card-key:}") String base64Key) {
+        this.key = base64Key == null || base64Key.isBlank()
+                ? null
+                : new SecretKeySpec(Base64.getDecoder().decode(base64Key), "AES");
+    }
+
+    public boolean hasKey() {
+        return key != null;
+    }
+
+    public String encrypt(UUID orderUuid, String cardNumber) {
+        if (key == null) {
+            throw new IllegalStateException("Не задан ключ шифрования номера карты order.saga.card-key");
+        }
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            cipher.updateAAD(orderUuid.toString().getBytes(StandardCharsets.UTF_8));
+            byte[] encrypted = cipher.doFinal(cardNumber.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(ByteBuffer.allocate(iv.length + encrypted.length)
+                    .put(iv)
+                    .put(encrypted)
+                    .array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось зашифровать номер карты заказа " + orderUuid, e);
+        }
+    }
+}
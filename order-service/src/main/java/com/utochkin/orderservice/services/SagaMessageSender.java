@@ -0,0 +1,45 @@
+package com.utochkin.orderservice.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Отправляет команды саги готовой JSON-строкой из outbox. Свой KafkaTemplate со строковым сериализатором,
+ * а не бин: иначе автоконфигурация не создала бы JSON-шаблон для topic-orders.
+ */
+@Component
+@Log4j2
+public class SagaMessageSender {
+
+    private final DefaultKafkaProducerFactory<String, String> producerFactory;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+
+    public SagaMessageSender(KafkaProperties kafkaProperties) {
+        Map<String, Object> props = kafkaProperties.buildProducerProperties(null);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        this.producerFactory = new DefaultKafkaProducerFactory<>(props);
+        this.kafkaTemplate = new KafkaTemplate<>(producerFactory);
+    }
+
+    public CompletableFuture<SendResult<String, String>> send(String topic, UUID orderUuid, String payload) {
+        log.info("SagaMessageSender: отправка в {} для заказа {}", topic, orderUuid);
+        return kafkaTemplate.send(topic, orderUuid.toString(), payload);
+    }
+
+    @PreDestroy
+    public void close() {
+        producerFactory.destroy();
+    }
+}
@@ -0,0 +1 @@
+alter table idempotency_keys add column if not exists response_location VARCHAR(512);
@@ -0,0 +1,3 @@
+-- номер карты больше не хранится открытым: сага держит только шифротекст до подтверждения резерва
+alter table order_sagas drop column if exists card_number;
+alter table order_sagas add column if not exists encrypted_card VARCHAR(255);
@@ -0,0 +1,14 @@
+create table if not exists idempotency_keys
+(
+    id BIGSERIAL PRIMARY KEY,
+    scope VARCHAR(255) NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    response_status INTEGER,
+    response_body TEXT,
+    created_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    UNIQUE (scope, idempotency_key)
+);
+
+create index if not exists idx_idempotency_keys_expires_at on idempotency_keys (expires_at);
@@ -0,0 +1,8 @@
+create table if not exists order_outbox
+(
+    id BIGSERIAL PRIMARY KEY,
+    order_uuid UUID NOT NULL,
+    topic VARCHAR(255) NOT NULL,
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
@@ -0,0 +1,4 @@
+-- сверку зависших заказов выполняет один экземпляр order-service, как и отправку outbox
+insert into outbox_relay_lease (name, owner, lease_until)
+values ('order-reconciler', '', '1970-01-01 00:00:00')
+on conflict (name) do nothing;
@@ -0,0 +1,16 @@
+create table if not exists order_sagas
+(
+    id BIGSERIAL PRIMARY KEY,
+    order_uuid UUID NOT NULL UNIQUE,
+    state VARCHAR(32) NOT NULL,
+    user_id BIGINT NOT NULL REFERENCES users (id),
+    payload TEXT,
+    card_number VARCHAR(32),
+    reason VARCHAR(255),
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
+
+-- сборщик зависших саг выбирает незавершённые шаги по времени последнего перехода
+create index if not exists idx_order_sagas_state_updated_at on order_sagas (state, updated_at)
+    where state not in ('COMPLETED', 'FAILED');
@@ -0,0 +1,10 @@
+create table if not exists outbox_relay_lease
+(
+    name VARCHAR(64) PRIMARY KEY,
+    owner VARCHAR(64) NOT NULL,
+    lease_until TIMESTAMP NOT NULL
+);
+
+insert into outbox_relay_lease (name, owner, lease_until)
+values ('order-outbox', '', '1970-01-01 00:00:00')
+on conflict (name) do nothing;
@@ -29,6 +29,7 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.net.URLEncoder;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +37,8 @@ import java.util.UUID;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -86,8 +89,7 @@ class OrderServiceIntegrationTest {
     private UUID createOrder(double total) throws Exception {
         UUID articleId = UUID.fromString("00000000-0000-0000-0000-000000000003");
         List<OrderRequest> req = List.of(new OrderRequest(articleId, 3));
-        given(shopController.checkOrder(req)).willReturn(true);
-        given(shopController.getSumTotalPriceOrder(req)).willReturn(total);
+        given(shopController.reserve(argThat(r -> req.equals(r.getItems())))).willReturn(new ReserveOrderResponse(true, total, List.of()));
 
         CompositeRequest cr = new CompositeRequest(req, new AddressDto("City", "Street", 10, 101));
         String json = objectMapper.writeValueAsString(cr);
@@ -112,8 +114,7 @@ class OrderServiceIntegrationTest {
     void createOrder_onlyHttp() throws Exception {
         UUID articleId = UUID.fromString("00000000-0000-0000-0000-000000000003");
         List<OrderRequest> reqs = List.of(new OrderRequest(articleId, 3));
-        given(shopController.checkOrder(reqs)).willReturn(true);
-        given(shopController.getSumTotalPriceOrder(reqs)).willReturn(250.5);
+        given(shopController.reserve(argThat(r -> reqs.equals(r.getItems())))).willReturn(new ReserveOrderResponse(true, 250.5, List.of()));
 
         CompositeRequest payload = new CompositeRequest(
                 reqs,
@@ -144,7 +145,7 @@ class OrderServiceIntegrationTest {
         UUID orderUuid = createOrder(total);
 
         PaymentRequest payReq = new PaymentRequest(orderUuid, "1111 2222 3333 4444");
-        AccountRequest acct = new AccountRequest(total, payReq.getCardNumber());
+        AccountRequest acct = new AccountRequest(total, payReq.getCardNumber(), orderUuid);
         UUID payId = UUID.randomUUID();
         given(paymentController.paymentOrder(acct))
                 .willReturn(new PaymentResponse(payId, Status.SUCCESS));
@@ -188,7 +189,7 @@ class OrderServiceIntegrationTest {
         UUID orderUuid = createOrder(total);
 
         PaymentRequest payReq = new PaymentRequest(orderUuid, "1111 2222 3333 4444");
-        AccountRequest acctPay = new AccountRequest(total, payReq.getCardNumber());
+        AccountRequest acctPay = new AccountRequest(total, payReq.getCardNumber(), orderUuid);
         UUID payId = UUID.randomUUID();
         given(paymentController.paymentOrder(acctPay))
                 .willReturn(new PaymentResponse(payId, Status.SUCCESS));
@@ -200,7 +201,7 @@ class OrderServiceIntegrationTest {
                 .andExpect(jsonPath("$.status").value("SUCCESS"));
 
         PaymentRequest refundReq = new PaymentRequest(orderUuid, "9999 8888 7777 6666");
-        AccountRequest acctRefund = new AccountRequest(total, refundReq.getCardNumber());
+        AccountRequest acctRefund = new AccountRequest(total, refundReq.getCardNumber(), orderUuid);
         UUID refundId = UUID.randomUUID();
         given(paymentController.refundedOrder(acctRefund))
                 .willReturn(new PaymentResponse(refundId, Status.REFUNDED));
@@ -220,11 +221,12 @@ class OrderServiceIntegrationTest {
         try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<String, String>(consumerProps).createConsumer()) {
             embeddedKafka.consumeFromAnEmbeddedTopic(consumer, "topic-orders");
 
-            ConsumerRecords<String, String> records = KafkaTestUtils.getRecords(consumer);
+            // события уходят из outbox асинхронно: SUCCESS может прийти отдельно и раньше REFUNDED
             List<String> values = new ArrayList<>();
-            records.forEach(record -> values.add(record.value()));
-
-            assertThat(values).anyMatch(v -> v.contains("\"orderStatus\":\"REFUNDED\""));
+            await().atMost(Duration.ofSeconds(30)).untilAsserted(() -> {
+                consumer.poll(Duration.ofMillis(500)).forEach(record -> values.add(record.value()));
+                assertThat(values).anyMatch(v -> v.contains("\"orderStatus\":\"REFUNDED\""));
+            });
         }
     }
 }
\ No newline at end of file
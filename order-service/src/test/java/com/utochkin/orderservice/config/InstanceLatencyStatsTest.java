@@ -0,0 +1,67 @@
+package com.utochkin.orderservice.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InstanceLatencyStatsTest {
+
+    private final AtomicLong now = new AtomicLong(1);
+    private final InstanceLatencyStats stats = new InstanceLatencyStats(now::get);
+
+    private static long millis(long value) {
+        return TimeUnit.MILLISECONDS.toNanos(value);
+    }
+
+    @Test
+    @DisplayName("score → у неизвестного экземпляра 0, у медленного больше, чем у быстрого")
+    void score_slowerInstanceScoresHigher() {
+        stats.started("fast");
+        stats.completed("fast", millis(10), false);
+        stats.started("slow");
+        stats.completed("slow", millis(200), false);
+
+        assertThat(stats.score("unknown")).isZero();
+        assertThat(stats.score("slow")).isGreaterThan(stats.score("fast"));
+    }
+
+    @Test
+    @DisplayName("score → запросы в работе увеличивают оценку экземпляра")
+    void score_growsWithInFlight() {
+        stats.started("a");
+        stats.completed("a", millis(50), false);
+        double idle = stats.score("a");
+
+        stats.started("a");
+        stats.started("a");
+
+        assertThat(stats.score("a")).isEqualTo(idle * 3);
+    }
+
+    @Test
+    @DisplayName("completed → ошибка штрафует экземпляр сильнее медленного ответа")
+    void completed_failureIsPenalized() {
+        stats.started("failed");
+        stats.completed("failed", millis(5), true);
+        stats.started("slow");
+        stats.completed("slow", millis(500), false);
+
+        assertThat(stats.score("failed")).isGreaterThan(stats.score("slow"));
+    }
+
+    @Test
+    @DisplayName("score → оценка давно не вызывавшегося экземпляра затухает")
+    void score_decaysOverTime() {
+        stats.started("a");
+        stats.completed("a", millis(100), false);
+        double fresh = stats.score("a");
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(5));
+
+        assertThat(stats.score("a")).isLessThan(fresh / 100);
+    }
+}
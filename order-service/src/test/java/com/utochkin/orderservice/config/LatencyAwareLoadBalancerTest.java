@@ -0,0 +1,69 @@
+package com.utochkin.orderservice.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.ServiceInstanceListSuppliers;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyAwareLoadBalancerTest {
+
+    private final InstanceLatencyStats stats = new InstanceLatencyStats();
+
+    private static ServiceInstance instance(String id) {
+        return new DefaultServiceInstance(id, "shop-service", id, 8080, false);
+    }
+
+    private LatencyAwareLoadBalancer balancer(ServiceInstance... instances) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("supplier", ServiceInstanceListSuppliers.from("shop-service", instances));
+        return new LatencyAwareLoadBalancer("shop-service",
+                beanFactory.getBeanProvider(ServiceInstanceListSupplier.class), stats);
+    }
+
+    @Test
+    @DisplayName("choose → из двух экземпляров всегда выбирается более быстрый")
+    void choose_prefersFasterInstance() {
+        ServiceInstance fast = instance("fast");
+        ServiceInstance slow = instance("slow");
+        stats.completed("fast", TimeUnit.MILLISECONDS.toNanos(10), false);
+        stats.completed("slow", TimeUnit.MILLISECONDS.toNanos(300), false);
+        LatencyAwareLoadBalancer balancer = balancer(fast, slow);
+
+        for (int i = 0; i < 20; i++) {
+            Response<ServiceInstance> response = balancer.choose(new DefaultRequest<>()).block();
+            assertThat(response.getServer()).isSameAs(fast);
+        }
+    }
+
+    @Test
+    @DisplayName("choose → медленный экземпляр не выбирается, пока есть более быстрые")
+    void choose_neverPicksWorstOfMany() {
+        List<ServiceInstance> instances = List.of(instance("a"), instance("b"), instance("c"));
+        stats.completed("a", TimeUnit.MILLISECONDS.toNanos(10), false);
+        stats.completed("b", TimeUnit.MILLISECONDS.toNanos(20), false);
+        stats.completed("c", TimeUnit.MILLISECONDS.toNanos(900), false);
+        LatencyAwareLoadBalancer balancer = balancer(instances.toArray(ServiceInstance[]::new));
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(balancer.choose(instances).getServer().getInstanceId()).isNotEqualTo("c");
+        }
+    }
+
+    @Test
+    @DisplayName("choose → без экземпляров возвращает пустой ответ")
+    void choose_noInstances_returnsEmpty() {
+        Response<ServiceInstance> response = balancer().choose(new DefaultRequest<>()).block();
+
+        assertThat(response.hasServer()).isFalse();
+    }
+}
@@ -4,21 +4,29 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.utochkin.orderservice.config.Config;
 import com.utochkin.orderservice.dto.AddressDto;
 import com.utochkin.orderservice.dto.OrderDto;
+import com.utochkin.orderservice.dto.OrderSagaStatus;
 import com.utochkin.orderservice.exceptions.OrderNotFoundException;
+import com.utochkin.orderservice.exceptions.ProductsNotAvailableException;
+import com.utochkin.orderservice.exceptions.RequestInProgressException;
+import com.utochkin.orderservice.models.SagaState;
 import com.utochkin.orderservice.models.Status;
 import com.utochkin.orderservice.models.User;
 import com.utochkin.orderservice.request.CompositeRequest;
 import com.utochkin.orderservice.request.OrderRequest;
 import com.utochkin.orderservice.request.PaymentRequest;
 import com.utochkin.orderservice.request.PaymentResponse;
+import com.utochkin.orderservice.services.IdempotencyService;
+import com.utochkin.orderservice.services.OrderSagaService;
 import com.utochkin.orderservice.services.OrderService;
 import com.utochkin.orderservice.services.UserService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
@@ -26,11 +34,16 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
 import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -54,6 +67,19 @@ public class OrderControllerTest {
     @MockitoBean
     private JwtDecoder jwtDecoder;
 
+    @MockitoBean
+    private IdempotencyService idempotencyService;
+
+    @MockitoBean
+    private OrderSagaService orderSagaService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void executeWithoutIdempotencyStore() {
+        given(idempotencyService.execute(any(), any(), any(), any()))
+                .willAnswer(inv -> ((Supplier<ResponseEntity<?>>) inv.getArgument(3)).get());
+    }
+
     private final UUID orderUuid = UUID.randomUUID();
 
     @Test
@@ -72,8 +98,6 @@ public class OrderControllerTest {
         given(userService.createUser(eq("sub"), eq("login"), any(), any(), any(), any()))
                 .willReturn(createdUser);
 
-        given(orderService.checkOrder(requests)).willReturn(true);
-
         OrderDto returned = new OrderDto(
                 UUID.randomUUID(), 300.0, /* status */ null, /*createdAt*/null,
                 address, /*userDto*/null, requests
@@ -106,7 +130,8 @@ public class OrderControllerTest {
                 new AddressDto("LA","St",1,1)
         );
 
-        given(orderService.checkOrder(requests)).willReturn(false);
+        given(orderService.createOrder(any(), eq(requests), any()))
+                .willThrow(new ProductsNotAvailableException());
 
         mvc.perform(post("/order/api/v1/create")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -119,7 +144,7 @@ public class OrderControllerTest {
                         .content(mapper.writeValueAsString(cr))
                 )
                 .andExpect(status().isBadRequest())
-                .andExpect(content().string("У нас нет товара в таком количестве или вы неправильно задали артикул товара"));
+                .andExpect(jsonPath("$.messageError").value("У нас нет товара в таком количестве или вы неправильно задали артикул товара"));
     }
 
 
@@ -180,4 +205,111 @@ public class OrderControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    @DisplayName("POST /order/api/v1/pay — Idempotency-Key передаётся в IdempotencyService, повтор отдаёт сохранённый ответ")
+    void paymentOrder_IdempotencyKey_ReturnsStoredResponse() throws Exception {
+        PaymentRequest req = new PaymentRequest(orderUuid, "1234 5678 9012 3456");
+        // willAnswer/willThrow-стиль: given(...) вызвал бы общий стаб из @BeforeEach с пустым Supplier
+        willAnswer(inv -> ResponseEntity.ok()
+                .header(IdempotencyService.REPLAYED_HEADER, "true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body("{\"paymentId\":null,\"status\":\"SUCCESS\"}"))
+                .given(idempotencyService).execute(eq("pay:sub"), eq("key-1"), eq(req), any());
+
+        mvc.perform(post("/order/api/v1/pay")
+                        .header("X-User-SubId", "sub")
+                        .header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(req))
+                )
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyService.REPLAYED_HEADER, "true"))
+                .andExpect(jsonPath("$.status").value("SUCCESS"));
+
+        then(orderService).should(never()).paymentOrder(any());
+    }
+
+    @Test
+    @DisplayName("POST /order/api/v1/pay — 409, запрос с тем же Idempotency-Key ещё выполняется")
+    void paymentOrder_IdempotencyKeyInProgress_Returns409() throws Exception {
+        PaymentRequest req = new PaymentRequest(orderUuid, "1234 5678 9012 3456");
+        willThrow(new RequestInProgressException())
+                .given(idempotencyService).execute(eq("pay:sub"), eq("key-2"), eq(req), any());
+
+        mvc.perform(post("/order/api/v1/pay")
+                        .header("X-User-SubId", "sub")
+                        .header("Idempotency-Key", "key-2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(req))
+                )
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    @DisplayName("POST /order/api/v1/create — 202 и ссылка на статус в режиме саги, синхронное создание не вызывается")
+    void createOrder_SagaMode_Returns202() throws Exception {
+        List<OrderRequest> requests = List.of(new OrderRequest(UUID.randomUUID(), 2));
+        AddressDto address = new AddressDto("LA", "Main St", 10, 5);
+        User user = User.builder().id(1L).subId("sub").username("login").build();
+        String statusUrl = "/order/api/v1/orders/" + orderUuid + "/status";
+
+        given(userService.isUserExistsByUsername("sub", "login")).willReturn(true);
+        given(userService.findUserBySubIdAndUsername("sub", "login")).willReturn(user);
+        given(orderSagaService.isEnabled()).willReturn(true);
+        given(orderSagaService.startCreate(user, requests, address))
+                .willReturn(new OrderSagaStatus(orderUuid, SagaState.STOCK_PENDING, null, null, statusUrl));
+
+        mvc.perform(post("/order/api/v1/create")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("X-User-SubId", "sub")
+                        .header("X-User-UserName", "login")
+                        .header("X-User-FirstName", "John")
+                        .header("X-User-LastName", "Doe")
+                        .header("X-User-Email", "john@doe.com")
+                        .header("X-User-Role", "USER")
+                        .content(mapper.writeValueAsString(new CompositeRequest(requests, address)))
+                )
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", statusUrl))
+                .andExpect(jsonPath("$.orderUuid").value(orderUuid.toString()))
+                .andExpect(jsonPath("$.state").value("STOCK_PENDING"));
+
+        then(orderService).should(never()).createOrder(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("POST /order/api/v1/pay — 202 в режиме саги, оплата продолжается асинхронно")
+    void paymentOrder_SagaMode_Returns202() throws Exception {
+        PaymentRequest req = new PaymentRequest(orderUuid, "1234 5678 9012 3456");
+        given(orderSagaService.isEnabled()).willReturn(true);
+        given(orderSagaService.startPayment(req)).willReturn(new OrderSagaStatus(orderUuid, SagaState.STOCK_CONFIRMING,
+                Status.PAYMENT_IN_PROGRESS, null, "/order/api/v1/orders/" + orderUuid + "/status"));
+
+        mvc.perform(post("/order/api/v1/pay")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(req))
+                )
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.state").value("STOCK_CONFIRMING"))
+                .andExpect(jsonPath("$.orderStatus").value("PAYMENT_IN_PROGRESS"));
+
+        then(orderService).should(never()).paymentOrder(any());
+    }
+
+    @Test
+    @DisplayName("GET /order/api/v1/orders/{uuid}/status — 200 с шагом саги, 404 для неизвестного заказа")
+    void orderStatus_ReturnsSagaState() throws Exception {
+        given(orderSagaService.getStatus(orderUuid)).willReturn(new OrderSagaStatus(orderUuid, SagaState.FAILED,
+                null, "У нас нет товара в таком количестве", "/order/api/v1/orders/" + orderUuid + "/status"));
+        UUID unknown = UUID.randomUUID();
+        given(orderSagaService.getStatus(unknown)).willThrow(new OrderNotFoundException());
+
+        mvc.perform(get("/order/api/v1/orders/{uuid}/status", orderUuid))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("FAILED"))
+                .andExpect(jsonPath("$.reason").value("У нас нет товара в таком количестве"));
+
+        mvc.perform(get("/order/api/v1/orders/{uuid}/status", unknown))
+                .andExpect(status().isNotFound());
+    }
 }
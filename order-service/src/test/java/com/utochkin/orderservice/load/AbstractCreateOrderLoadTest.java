@@ -0,0 +1,129 @@
+package com.utochkin.orderservice.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utochkin.orderservice.controllers.PaymentController;
+import com.utochkin.orderservice.controllers.ShopController;
+import com.utochkin.orderservice.dto.AddressDto;
+import com.utochkin.orderservice.request.CompositeRequest;
+import com.utochkin.orderservice.request.OrderRequest;
+import com.utochkin.orderservice.request.ReserveOrderResponse;
+import com.utochkin.orderservice.services.KafkaSenderService;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * Общая часть нагрузочных тестов /order/api/v1/create: shop-service подменён моком,
+ * который отвечает с задержкой, как медленный удалённый сервис, и все запросы отправляются разом.
+ * Время зависит от машины, поэтому тесты только печатают пропускную способность и число запросов,
+ * одновременно ждавших shop-service, для сравнения режимов, а проверяют лишь то, что все заказы созданы.
+ */
+abstract class AbstractCreateOrderLoadTest {
+
+    static final int TOMCAT_MAX_THREADS = 20;
+    static final int CONCURRENT_REQUESTS = 200;
+    static final long SHOP_LATENCY_MS = 200;
+
+    private final AtomicInteger shopCallsInFlight = new AtomicInteger();
+    private final AtomicInteger peakShopCallsInFlight = new AtomicInteger();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockitoBean
+    private ShopController shopController;
+    @MockitoBean
+    private PaymentController paymentController;
+    @MockitoBean
+    private KafkaSenderService kafkaSenderService;
+    @MockitoBean
+    private JwtDecoder jwtDecoder;
+
+    record LoadResult(long elapsedMs, long created, int peakConcurrency) {
+        double throughput() {
+            return created * 1000.0 / elapsedMs;
+        }
+    }
+
+    @BeforeEach
+    void slowShop() {
+        given(shopController.reserve(any())).willAnswer(invocation -> {
+            peakShopCallsInFlight.accumulateAndGet(shopCallsInFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(SHOP_LATENCY_MS);
+            } finally {
+                shopCallsInFlight.decrementAndGet();
+            }
+            return new ReserveOrderResponse(true, 100.0, List.of());
+        });
+    }
+
+    LoadResult fireCreateOrders(String label) throws Exception {
+        String body = objectMapper.writeValueAsString(new CompositeRequest(
+                List.of(new OrderRequest(UUID.randomUUID(), 1)),
+                new AddressDto("City", "Street", 10, 101)));
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clients)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+
+            List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(CONCURRENT_REQUESTS);
+            long start = System.nanoTime();
+
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                // у каждого запроса свой пользователь, чтобы не упираться в гонку при создании одного и того же user
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/order/api/v1/create"))
+                        .timeout(Duration.ofSeconds(60))
+                        .header("Content-Type", "application/json")
+                        .header("X-User-SubId", "load-sub-" + i)
+                        .header("X-User-UserName", "load-user-" + i)
+                        .header("X-User-FirstName", URLEncoder.encode("Иван", UTF_8))
+                        .header("X-User-LastName", URLEncoder.encode("Иванов", UTF_8))
+                        .header("X-User-Email", "load" + i + "@example.com")
+                        .header("X-User-Role", "USER")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+                responses.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+            }
+
+            CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).join();
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            long created = responses.stream()
+                    .map(CompletableFuture::join)
+                    .filter(response -> response.statusCode() == 201)
+                    .count();
+
+            LoadResult result = new LoadResult(elapsedMs, created, peakShopCallsInFlight.get());
+            System.out.printf("%s: %d/%d заказов создано за %d мс (%.1f заказов/с, одновременно в shop-service до %d запросов, задержка %d мс)%n",
+                    label, created, CONCURRENT_REQUESTS, elapsedMs, result.throughput(), result.peakConcurrency(), SHOP_LATENCY_MS);
+            return result;
+        }
+    }
+}
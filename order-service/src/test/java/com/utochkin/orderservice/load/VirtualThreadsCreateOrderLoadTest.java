@@ -0,0 +1,37 @@
+package com.utochkin.orderservice.load;
+
+import com.utochkin.orderservice.OrderServiceApplication;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(
+        classes = OrderServiceApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "eureka.client.enabled=false",
+                "spring.cloud.discovery.enabled=false",
+                "spring.jpa.hibernate.ddl-auto=create-drop",
+                "spring.cloud.compatibility-verifier.enabled=false",
+                "spring.liquibase.enabled=false",
+                "spring.datasource.url=jdbc:h2:mem:loadvirtual;DB_CLOSE_DELAY=-1",
+                "spring.threads.virtual.enabled=true",
+                "server.tomcat.threads.max=" + AbstractCreateOrderLoadTest.TOMCAT_MAX_THREADS
+        }
+)
+@ActiveProfiles("test")
+@Tag("load")
+class VirtualThreadsCreateOrderLoadTest extends AbstractCreateOrderLoadTest {
+
+    @Test
+    @DisplayName("Виртуальные потоки: все заказы созданы, печатаются пропускная способность и параллелизм без пула Tomcat")
+    void createOrder_virtualThreads() throws Exception {
+        LoadResult result = fireCreateOrders("Виртуальные потоки");
+
+        assertThat(result.created()).isEqualTo(CONCURRENT_REQUESTS);
+    }
+}
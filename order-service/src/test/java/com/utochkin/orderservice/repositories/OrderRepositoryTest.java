@@ -13,6 +13,7 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -79,4 +80,41 @@ public class OrderRepositoryTest {
         assertThat(total).isNull();
     }
 
+
+    @Test
+    @DisplayName("compareAndSetStatus меняет статус только из ожидаемого")
+    void compareAndSetStatus() {
+        UUID uuid = UUID.randomUUID();
+        orderRepo.saveAndFlush(Order.builder()
+                .orderUuid(uuid)
+                .totalAmount(100.0)
+                .orderStatus(Status.WAITING_FOR_PAYMENT)
+                .createdAt(LocalDateTime.now())
+                .build());
+
+        int first = orderRepo.compareAndSetStatus(uuid, Status.WAITING_FOR_PAYMENT, Status.PAYMENT_IN_PROGRESS, LocalDateTime.now());
+        int second = orderRepo.compareAndSetStatus(uuid, Status.WAITING_FOR_PAYMENT, Status.PAYMENT_IN_PROGRESS, LocalDateTime.now());
+
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isZero();
+        assertThat(orderRepo.findByOrderUuid(uuid).get().getOrderStatus()).isEqualTo(Status.PAYMENT_IN_PROGRESS);
+    }
+
+    @Test
+    @DisplayName("findAllByOrderStatusInAndUpdatedAtBefore находит только зависшие заказы")
+    void findStaleInProgress() {
+        LocalDateTime now = LocalDateTime.now();
+        UUID stale = UUID.randomUUID();
+        orderRepo.save(Order.builder().orderUuid(stale).totalAmount(10.0)
+                .orderStatus(Status.PAYMENT_IN_PROGRESS).createdAt(now).updatedAt(now.minusMinutes(10)).build());
+        orderRepo.save(Order.builder().orderUuid(UUID.randomUUID()).totalAmount(10.0)
+                .orderStatus(Status.REFUND_IN_PROGRESS).createdAt(now).updatedAt(now).build());
+        orderRepo.save(Order.builder().orderUuid(UUID.randomUUID()).totalAmount(10.0)
+                .orderStatus(Status.SUCCESS).createdAt(now).updatedAt(now.minusMinutes(10)).build());
+
+        List<Order> found = orderRepo.findAllByOrderStatusInAndUpdatedAtBefore(
+                List.of(Status.PAYMENT_IN_PROGRESS, Status.REFUND_IN_PROGRESS), now.minusMinutes(2));
+
+        assertThat(found).extracting(Order::getOrderUuid).containsExactly(stale);
+    }
 }
@@ -1,15 +1,26 @@
 package com.utochkin.orderservice.resilience;
 
+import com.utochkin.orderservice.controllers.PaymentController;
 import com.utochkin.orderservice.controllers.ShopController;
 import com.utochkin.orderservice.exceptions.ServiceUnavailableException;
+import com.utochkin.orderservice.models.Status;
+import com.utochkin.orderservice.request.AccountRequest;
 import com.utochkin.orderservice.request.OrderRequest;
-import com.utochkin.orderservice.services.OrderService;
+import com.utochkin.orderservice.request.PaymentResponse;
+import com.utochkin.orderservice.request.ReservationRequest;
+import com.utochkin.orderservice.request.ReserveOrderResponse;
+import com.utochkin.orderservice.services.PaymentService;
+import com.utochkin.orderservice.services.ReservationService;
+import feign.FeignException;
+import feign.Request;
+import feign.Response;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
@@ -17,12 +28,15 @@ import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
 import static org.mockito.Mockito.times;
@@ -32,24 +46,33 @@ import static org.mockito.Mockito.times;
         "spring.liquibase.enabled=false",
         "eureka.client.enabled=false",
         "spring.cloud.discovery.enabled=false",
-        "resilience4j.circuitbreaker.instances.circuitBreakerCheckOrder.slidingWindowSize=5",
-        "resilience4j.circuitbreaker.instances.circuitBreakerCheckOrder.permittedNumberOfCallsInHalfOpenState=3",
-        "resilience4j.circuitbreaker.instances.circuitBreakerCheckOrder.waitDurationInOpenState=10s",
-        "resilience4j.circuitbreaker.instances.circuitBreakerCheckOrder.failureRateThreshold=50",
-        "resilience4j.retry.instances.retryCheckOrder.max-attempts=3",
-        "resilience4j.retry.instances.retryCheckOrder.waitDuration=10ms"
+        "resilience4j.circuitbreaker.instances.circuitBreakerCreateOrder.slidingWindowSize=5",
+        "resilience4j.circuitbreaker.instances.circuitBreakerCreateOrder.permittedNumberOfCallsInHalfOpenState=3",
+        "resilience4j.circuitbreaker.instances.circuitBreakerCreateOrder.waitDurationInOpenState=10s",
+        "resilience4j.circuitbreaker.instances.circuitBreakerCreateOrder.failureRateThreshold=50",
+        "resilience4j.retry.instances.retryCreateOrder.max-attempts=3",
+        "resilience4j.retry.instances.retryCreateOrder.waitDuration=10ms",
+        "resilience4j.retry.instances.retryPayOrder.max-attempts=3",
+        "resilience4j.retry.instances.retryPayOrder.waitDuration=10ms"
 })
 @ActiveProfiles("test")
 @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 public class ResilienceTest {
 
     @Autowired
-    private OrderService orderService;
+    private ReservationService reservationService;
+
+    @Autowired
+    private PaymentService paymentService;
 
     @MockitoBean
     private ShopController shopController;
 
+    @MockitoBean
+    private PaymentController paymentController;
+
     private List<OrderRequest> dtos;
+    private final ReserveOrderResponse reserved = new ReserveOrderResponse(true, 10.0, List.of());
 
     @Autowired
     private CircuitBreakerRegistry cbRegistry;
@@ -64,22 +87,22 @@ public class ResilienceTest {
 
     @AfterEach
     void resetRegistry() {
-        cbRegistry.circuitBreaker("circuitBreakerCheckOrder").reset();
+        cbRegistry.circuitBreaker("circuitBreakerCreateOrder").reset();
     }
 
     @Test
     @DisplayName("Retry: 1-я попытка упала → 2-я успешна, CircuitBreaker остаётся CLOSED")
     void retrySucceedsAfterOneFailure() {
         // 1‑й вызов кидает, 2‑й возвращает true
-        given(shopController.checkOrder(dtos)).willThrow(new RuntimeException("remote error")).willReturn(true);
+        given(shopController.reserve(any())).willThrow(new RuntimeException("remote error")).willReturn(reserved);
 
-        boolean ok = orderService.checkOrder(dtos);
-        assertThat(ok).isTrue();
+        ReserveOrderResponse response = reservationService.reserve(UUID.randomUUID(), dtos);
+        assertThat(response.getReserved()).isTrue();
 
         // убедимся, что было именно 2 вызова: initial + 1 retry
-        then(shopController).should(times(2)).checkOrder(dtos);
+        then(shopController).should(times(2)).reserve(any());
 
-        CircuitBreaker cb = cbRegistry.circuitBreaker("circuitBreakerCheckOrder");
+        CircuitBreaker cb = cbRegistry.circuitBreaker("circuitBreakerCreateOrder");
         assertThat(cb.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
     }
 
@@ -87,18 +110,18 @@ public class ResilienceTest {
     @DisplayName("Retry: все 3 попытки падают → fallback бросает ServiceUnavailableException, CircuitBreaker остаётся CLOSED")
     void retryAllFailuresThenFallback() {
         // shopController всегда кидает
-        given(shopController.checkOrder(dtos)).willThrow(new RuntimeException("remote error"));
+        given(shopController.reserve(any())).willThrow(new RuntimeException("remote error"));
 
         // проверяем, что по трём попыткам уйдёт в fallback
-        assertThatThrownBy(() -> orderService.checkOrder(dtos))
+        assertThatThrownBy(() -> reservationService.reserve(UUID.randomUUID(), dtos))
                 .isInstanceOf(ServiceUnavailableException.class)
                 .hasMessageContaining("временно недоступен");
 
         // Retry сделал initial + 2 retry = 3 вызова
-        then(shopController).should(times(3)).checkOrder(dtos);
+        then(shopController).should(times(3)).reserve(any());
 
         // CircuitBreaker ещё не достиг порога slidingWindowSize=5, поэтому остаётся CLOSED
-        CircuitBreaker cb = cbRegistry.circuitBreaker("circuitBreakerCheckOrder");
+        CircuitBreaker cb = cbRegistry.circuitBreaker("circuitBreakerCreateOrder");
         assertThat(cb.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
     }
 
@@ -106,7 +129,7 @@ public class ResilienceTest {
     @DisplayName("CircuitBreaker открывается при 3 из 5 отказов (60% >50%)")
     void circuitBreakerOpensWhenFailureRateExceeded() {
         // настроим shopController: первые 3 вызова — ошибки, остальные (до 5) — уже не будут вызваны
-        given(shopController.checkOrder(dtos))
+        given(shopController.reserve(any()))
                 .willThrow(new RuntimeException("err1"))
                 .willThrow(new RuntimeException("err2"))
                 .willThrow(new RuntimeException("err3"));
@@ -114,13 +137,13 @@ public class ResilienceTest {
         // выполняем 3 попытки
         IntStream.range(0, 3).forEach(i -> {
             try {
-                orderService.checkOrder(dtos);
+                reservationService.reserve(UUID.randomUUID(), dtos);
             } catch (ServiceUnavailableException ignored) {
             }
         });
 
         // CircuitBreaker оценил: 3 failures из 3 вызовов (3 < slidingWindowSize=5, но failureRate 100%>50%)
-        CircuitBreaker cb = cbRegistry.circuitBreaker("circuitBreakerCheckOrder");
+        CircuitBreaker cb = cbRegistry.circuitBreaker("circuitBreakerCreateOrder");
         assertThat(cb.getState()).isEqualTo(CircuitBreaker.State.OPEN);
     }
 
@@ -128,23 +151,67 @@ public class ResilienceTest {
     @DisplayName("CircuitBreaker остаётся CLOSED если отказов меньше 50% из 5")
     void circuitBreakerRemainsClosedBelowThreshold() {
         // пусть из пяти вызовов 2 будут ошибками, 3 — успешны
-        given(shopController.checkOrder(dtos))
+        given(shopController.reserve(any()))
                 .willThrow(new RuntimeException("err1"))
                 .willThrow(new RuntimeException("err2"))
-                .willReturn(true)   // 3,4,5 вызовы
-                .willReturn(true)
-                .willReturn(true);
+                .willReturn(reserved)   // 3,4,5 вызовы
+                .willReturn(reserved)
+                .willReturn(reserved);
 
         // вызываем 5 раз подряд
         IntStream.range(0, 5).forEach(i -> {
             try {
-                orderService.checkOrder(dtos);
+                reservationService.reserve(UUID.randomUUID(), dtos);
             } catch (ServiceUnavailableException ignored) {
             }
         });
 
         // total 5 вызовов, 2 из них упало → 40% < 50%, CB остаётся CLOSED
-        CircuitBreaker cb = cbRegistry.circuitBreaker("circuitBreakerCheckOrder");
+        CircuitBreaker cb = cbRegistry.circuitBreaker("circuitBreakerCreateOrder");
         assertThat(cb.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
     }
+
+    @Test
+    @DisplayName("Retry резерва: ответ первой попытки потерян → повтор уходит с тем же orderUuid")
+    void reserveRetryKeepsOrderUuid() {
+        UUID orderUuid = UUID.randomUUID();
+        given(shopController.reserve(any()))
+                .willThrow(new RuntimeException("read timeout"))
+                .willReturn(new ReserveOrderResponse(true, 10.0, List.of()));
+
+        ReserveOrderResponse response = reservationService.reserve(orderUuid, dtos);
+
+        assertThat(response.getReserved()).isTrue();
+        ArgumentCaptor<ReservationRequest> requests = ArgumentCaptor.forClass(ReservationRequest.class);
+        then(shopController).should(times(2)).reserve(requests.capture());
+        assertThat(requests.getAllValues()).extracting(ReservationRequest::getReservationId).containsOnly(orderUuid);
+    }
+
+    @Test
+    @DisplayName("Retry оплаты: повторяется только вызов payment-service с тем же orderUuid")
+    void payRetryRepeatsRemoteCallOnly() {
+        AccountRequest accountRequest = new AccountRequest(10.0, "1111 2222 3333 4444", UUID.randomUUID());
+        PaymentResponse success = new PaymentResponse(UUID.randomUUID(), Status.SUCCESS);
+        given(paymentController.paymentOrder(accountRequest))
+                .willThrow(new RuntimeException("read timeout"))
+                .willReturn(success);
+
+        assertThat(paymentService.pay(accountRequest)).isEqualTo(success);
+
+        then(paymentController).should(times(2)).paymentOrder(accountRequest);
+    }
+
+    @Test
+    @DisplayName("Retry оплаты: отказ payment-service (4xx) не повторяется")
+    void payRetrySkipsClientErrors() {
+        AccountRequest accountRequest = new AccountRequest(10.0, "1111 2222 3333 4444", UUID.randomUUID());
+        Request request = Request.create(Request.HttpMethod.POST, "/payment/api/v1/pay", Map.of(), null, StandardCharsets.UTF_8, null);
+        Response response = Response.builder().status(402).reason("insufficient funds").request(request).headers(Map.of()).build();
+        given(paymentController.paymentOrder(accountRequest))
+                .willThrow(FeignException.errorStatus("PaymentController#paymentOrder", response));
+
+        assertThatThrownBy(() -> paymentService.pay(accountRequest)).isInstanceOf(FeignException.FeignClientException.class);
+
+        then(paymentController).should(times(1)).paymentOrder(accountRequest);
+    }
 }
@@ -0,0 +1,168 @@
+package com.utochkin.orderservice.services;
+
+import com.utochkin.orderservice.exceptions.IdempotencyKeyConflictException;
+import com.utochkin.orderservice.exceptions.InvalidIdempotencyKeyException;
+import com.utochkin.orderservice.exceptions.RequestInProgressException;
+import com.utochkin.orderservice.models.Status;
+import com.utochkin.orderservice.repositories.IdempotencyKeyRepository;
+import com.utochkin.orderservice.request.PaymentRequest;
+import com.utochkin.orderservice.request.PaymentResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.net.URI;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(
+        includeFilters = @ComponentScan.Filter(
+                type = FilterType.ASSIGNABLE_TYPE,
+                classes = {IdempotencyKeyRepository.class, IdempotencyService.class}
+        )
+)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false"
+})
+@ActiveProfiles("test")
+// сервис сам открывает короткие транзакции REQUIRES_NEW, внешняя транзакция теста не нужна
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotencyServiceTest {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private final PaymentRequest request = new PaymentRequest(UUID.randomUUID(), "1111 2222 3333 4444");
+
+    @Test
+    @DisplayName("execute → без ключа просто выполняет запрос")
+    void execute_withoutKey_runsAction() {
+        AtomicInteger calls = new AtomicInteger();
+
+        idempotencyService.execute("pay", null, request, () -> ResponseEntity.ok(calls.incrementAndGet()));
+        idempotencyService.execute("pay", null, request, () -> ResponseEntity.ok(calls.incrementAndGet()));
+
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("execute → повтор с тем же ключом возвращает сохранённый ответ и не выполняет запрос снова")
+    void execute_repeatedKey_replaysResponse() {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger calls = new AtomicInteger();
+        PaymentResponse paymentResponse = new PaymentResponse(UUID.randomUUID(), Status.SUCCESS);
+
+        ResponseEntity<?> first = idempotencyService.execute("pay", key, request, () -> {
+            calls.incrementAndGet();
+            return ResponseEntity.ok(paymentResponse);
+        });
+        ResponseEntity<?> second = idempotencyService.execute("pay", key, request, () -> {
+            calls.incrementAndGet();
+            return ResponseEntity.ok(paymentResponse);
+        });
+
+        assertThat(calls).hasValue(1);
+        assertThat(first.getBody()).isEqualTo(paymentResponse);
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(second.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat((String) second.getBody()).contains(paymentResponse.getPaymentId().toString());
+    }
+
+    @Test
+    @DisplayName("execute → повтор ответа 202 сохраняет статус и Location")
+    void execute_repeatedKey_replaysLocation() {
+        String key = UUID.randomUUID().toString();
+        URI statusUrl = URI.create("/order/api/v1/orders/" + request.getOrderUuid() + "/status");
+
+        idempotencyService.execute("pay:sub", key, request, () -> ResponseEntity.accepted().location(statusUrl).body("ok"));
+        ResponseEntity<?> second = idempotencyService.execute("pay:sub", key, request, () -> ResponseEntity.ok("dup"));
+
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        assertThat(second.getHeaders().getLocation()).isEqualTo(statusUrl);
+    }
+
+    @Test
+    @DisplayName("execute → ключ, использованный для другого тела запроса, даёт IdempotencyKeyConflictException")
+    void execute_sameKeyDifferentRequest_throws() {
+        String key = UUID.randomUUID().toString();
+        idempotencyService.execute("pay", key, request, () -> ResponseEntity.ok("ok"));
+
+        PaymentRequest other = new PaymentRequest(UUID.randomUUID(), "1111 2222 3333 4444");
+
+        assertThatThrownBy(() -> idempotencyService.execute("pay", key, other, () -> ResponseEntity.ok("ok")))
+                .isInstanceOf(IdempotencyKeyConflictException.class);
+    }
+
+    @Test
+    @DisplayName("execute → дубль, пришедший во время выполнения первого запроса, получает RequestInProgressException")
+    void execute_inFlightDuplicate_throws() {
+        String key = UUID.randomUUID().toString();
+
+        idempotencyService.execute("pay", key, request, () -> {
+            assertThatThrownBy(() -> idempotencyService.execute("pay", key, request, () -> ResponseEntity.ok("dup")))
+                    .isInstanceOf(RequestInProgressException.class);
+            return ResponseEntity.ok("ok");
+        });
+    }
+
+    @Test
+    @DisplayName("execute → после ошибки ключ освобождается и запрос можно повторить")
+    void execute_failure_releasesKey() {
+        String key = UUID.randomUUID().toString();
+
+        assertThatThrownBy(() -> idempotencyService.execute("pay", key, request, () -> {
+            throw new IllegalStateException("payment-service недоступен");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(idempotencyKeyRepository.findByScopeAndIdempotencyKey("pay", key)).isEmpty();
+        ResponseEntity<?> retry = idempotencyService.execute("pay", key, request, () -> ResponseEntity.ok("ok"));
+        assertThat(retry.getBody()).isEqualTo("ok");
+    }
+
+    @Test
+    @DisplayName("execute → ключ длиннее колонки отклоняется до выполнения запроса")
+    void execute_tooLongKey_throws() {
+        String key = "k".repeat(IdempotencyService.MAX_KEY_LENGTH + 1);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> idempotencyService.execute("pay", key, request, () -> {
+            calls.incrementAndGet();
+            return ResponseEntity.ok("ok");
+        })).isInstanceOf(InvalidIdempotencyKeyException.class);
+
+        assertThat(calls).hasValue(0);
+    }
+
+    @Test
+    @DisplayName("execute → ошибка вставки, не связанная с занятым ключом, не выдаётся за дубль")
+    void execute_otherIntegrityViolation_isNotDuplicate() {
+        String scope = "s".repeat(300);
+
+        assertThatThrownBy(() -> idempotencyService.execute(scope, UUID.randomUUID().toString(), request,
+                () -> ResponseEntity.ok("ok")))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+}
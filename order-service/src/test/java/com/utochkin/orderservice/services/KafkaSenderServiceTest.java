@@ -14,6 +14,7 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 public class KafkaSenderServiceTest {
@@ -52,19 +53,18 @@ public class KafkaSenderServiceTest {
         successfulFuture = CompletableFuture.completedFuture(fakeResult);
 
         // kafkaTemplate.send(...) → наш готовый Future
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(successfulFuture);
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(successfulFuture);
     }
 
     @Test
-    @DisplayName("Успешная отправка в kafka")
+    @DisplayName("Успешная отправка в kafka с ключом uuid заказа")
     void send_ShouldInvokeKafkaTemplateSend() {
         // Act
-        kafkaSenderService.send(dto);
+        CompletableFuture<SendResult<String, Object>> future = kafkaSenderService.send("topic-orders", dto);
 
         // Assert
-        verify(kafkaTemplate, times(1)).send("topic-orders", dto);
-
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(successfulFuture);
+        verify(kafkaTemplate, times(1)).send("topic-orders", dto.getOrderUuid().toString(), dto);
+        assertThat(future).isCompleted();
     }
 
     @Test
@@ -73,12 +73,13 @@ public class KafkaSenderServiceTest {
         // Arrange: Future, завершающийся ошибкой
         CompletableFuture<SendResult<String, Object>> failedFuture = new CompletableFuture<>();
         failedFuture.completeExceptionally(new RuntimeException("boom"));
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(failedFuture);
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(failedFuture);
 
         // Act
-        kafkaSenderService.send(dto);
+        CompletableFuture<SendResult<String, Object>> future = kafkaSenderService.send("topic-orders", dto);
 
-        // Assert: метод send() всё равно был вызван
-        verify(kafkaTemplate).send("topic-orders", dto);
+        // Assert: метод send() всё равно был вызван, а ошибка видна вызывающему
+        verify(kafkaTemplate).send("topic-orders", dto.getOrderUuid().toString(), dto);
+        assertThat(future).isCompletedExceptionally();
     }
 }
@@ -0,0 +1,185 @@
+package com.utochkin.orderservice.services;
+
+import com.utochkin.orderservice.dto.OrderDtoForKafka;
+import com.utochkin.orderservice.models.OrderOutboxEvent;
+import com.utochkin.orderservice.models.OutboxRelayLease;
+import com.utochkin.orderservice.repositories.OrderOutboxRepository;
+import com.utochkin.orderservice.repositories.OutboxRelayLeaseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class OrderOutboxRelayTest {
+
+    @Mock
+    private OrderOutboxRepository outboxRepository;
+
+    @Mock
+    private OutboxRelayLeaseRepository leaseRepository;
+
+    @Mock
+    private OrderOutboxService outboxService;
+
+    @Mock
+    private KafkaSenderService kafkaSenderService;
+
+    @Mock
+    private SagaMessageSender sagaMessageSender;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OrderOutboxRelay relay;
+
+    private final UUID orderA = UUID.randomUUID();
+    private final UUID orderB = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        relay = new OrderOutboxRelay(outboxRepository, new LeaseService(leaseRepository, transactionManager), outboxService, kafkaSenderService,
+                sagaMessageSender, transactionManager, meterRegistry, 100, 1000, 30000);
+
+        given(leaseRepository.tryAcquire(eq(OrderOutboxRelay.LEASE_NAME), anyString(), any(), any())).willReturn(1);
+
+        given(outboxService.fromJson(anyString())).willAnswer(inv -> dto(UUID.fromString(inv.getArgument(0))));
+    }
+
+    private static OrderOutboxEvent event(long id, UUID orderUuid) {
+        return new OrderOutboxEvent(id, orderUuid, "topic-orders", orderUuid.toString(), LocalDateTime.now());
+    }
+
+    private static OrderDtoForKafka dto(UUID orderUuid) {
+        return new OrderDtoForKafka(orderUuid, 10.0, null, null, null, null, null, null, null);
+    }
+
+    @Test
+    @DisplayName("relayPendingEvents → отправляет пачку с ключом заказа и удаляет отправленные события")
+    void relay_sendsAndDeletesBatch() {
+        given(outboxRepository.findBatch(any()))
+                .willReturn(List.of(event(1, orderA), event(2, orderB)));
+        given(kafkaSenderService.send(eq("topic-orders"), any())).willReturn(CompletableFuture.completedFuture(null));
+
+        relay.relayPendingEvents();
+
+        then(kafkaSenderService).should().send("topic-orders", dto(orderA));
+        then(kafkaSenderService).should().send("topic-orders", dto(orderB));
+        then(outboxRepository).should().deleteAllByIdInBatch(List.of(1L, 2L));
+    }
+
+    @Test
+    @DisplayName("relayPendingEvents → после ошибки события того же заказа остаются в outbox, другие заказы не блокируются")
+    void relay_failureKeepsOrderOfSameKey() {
+        given(outboxRepository.findBatch(any()))
+                .willReturn(List.of(event(1, orderA), event(2, orderB), event(3, orderA)));
+        given(kafkaSenderService.send(eq("topic-orders"), eq(dto(orderA))))
+                .willReturn(CompletableFuture.failedFuture(new RuntimeException("broker down")))
+                .willReturn(CompletableFuture.completedFuture(null));
+        given(kafkaSenderService.send(eq("topic-orders"), eq(dto(orderB)))).willReturn(CompletableFuture.completedFuture(null));
+
+        relay.relayPendingEvents();
+
+        // A3 не уходит после сбоя A1: иначе при повторе A1 пришёл бы к потребителям после A3 и ещё раз
+        then(kafkaSenderService).should(times(1)).send("topic-orders", dto(orderA));
+        then(outboxRepository).should().deleteAllByIdInBatch(List.of(2L));
+    }
+
+    @Test
+    @DisplayName("relayPendingEvents → события одного заказа отправляются по очереди, после подтверждения предыдущего")
+    void relay_sendsEventsOfSameKeySequentially() {
+        CompletableFuture<SendResult<String, Object>> firstAck = new CompletableFuture<>();
+        given(outboxRepository.findBatch(any())).willReturn(List.of(event(1, orderA), event(2, orderA)));
+        given(kafkaSenderService.send(eq("topic-orders"), eq(dto(orderA))))
+                .willReturn(firstAck)
+                .willReturn(CompletableFuture.completedFuture(null));
+
+        CompletableFuture<Void> relayed = CompletableFuture.runAsync(relay::relayPendingEvents);
+
+        then(kafkaSenderService).should(after(200).times(1)).send("topic-orders", dto(orderA));
+        firstAck.complete(null);
+        relayed.join();
+
+        then(kafkaSenderService).should(times(2)).send("topic-orders", dto(orderA));
+        then(outboxRepository).should().deleteAllByIdInBatch(List.of(1L, 2L));
+    }
+
+    @Test
+    @DisplayName("relayPendingEvents → команды саги отправляются записанным JSON в свой топик")
+    void relay_sendsSagaCommandsAsIs() {
+        OrderOutboxEvent command = new OrderOutboxEvent(4L, orderA, "topic-shop-commands", "{\"type\":\"RESERVE_STOCK\"}", LocalDateTime.now());
+        given(outboxRepository.findBatch(any())).willReturn(List.of(command));
+        given(sagaMessageSender.send(any(), any(), any())).willReturn(CompletableFuture.completedFuture(null));
+
+        relay.relayPendingEvents();
+
+        then(sagaMessageSender).should().send("topic-shop-commands", orderA, "{\"type\":\"RESERVE_STOCK\"}");
+        then(kafkaSenderService).shouldHaveNoInteractions();
+        then(outboxRepository).should().deleteAllByIdInBatch(List.of(4L));
+    }
+
+    @Test
+    @DisplayName("relayPendingEvents → аренду держит другой экземпляр, outbox не читается и ничего не отправляется")
+    void relay_withoutLease_sendsNothing() {
+        given(leaseRepository.tryAcquire(eq(OrderOutboxRelay.LEASE_NAME), anyString(), any(), any())).willReturn(0);
+        given(leaseRepository.existsById(OrderOutboxRelay.LEASE_NAME)).willReturn(true);
+
+        relay.relayPendingEvents();
+
+        then(outboxRepository).should(never()).findBatch(any());
+        then(kafkaSenderService).shouldHaveNoInteractions();
+        then(sagaMessageSender).shouldHaveNoInteractions();
+    }
+
+    @Test
+    @DisplayName("relayPendingEvents → строки аренды нет, экземпляр создаёт её и отправляет outbox")
+    void relay_createsMissingLease() {
+        given(leaseRepository.tryAcquire(eq(OrderOutboxRelay.LEASE_NAME), anyString(), any(), any())).willReturn(0);
+        given(leaseRepository.existsById(OrderOutboxRelay.LEASE_NAME)).willReturn(false);
+        given(outboxRepository.findBatch(any())).willReturn(List.of(event(1, orderA)));
+        given(kafkaSenderService.send(eq("topic-orders"), any())).willReturn(CompletableFuture.completedFuture(null));
+
+        relay.relayPendingEvents();
+
+        then(leaseRepository).should().saveAndFlush(any(OutboxRelayLease.class));
+        then(outboxRepository).should().deleteAllByIdInBatch(List.of(1L));
+    }
+
+    @Test
+    @DisplayName("relayPendingEvents → публикует размер outbox и возраст самого старого события")
+    void relay_updatesLagGauges() {
+        given(outboxRepository.findBatch(any())).willReturn(List.of());
+        given(outboxRepository.count()).willReturn(7L);
+        given(outboxRepository.findOldestCreatedAt()).willReturn(LocalDateTime.now().minusSeconds(30));
+
+        relay.relayPendingEvents();
+
+        assertThat(meterRegistry.get("order.outbox.pending").gauge().value()).isEqualTo(7.0);
+        assertThat(meterRegistry.get("order.outbox.lag").gauge().value()).isBetween(29.0, 31.0);
+    }
+}
@@ -0,0 +1,279 @@
+package com.utochkin.orderservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utochkin.orderservice.dto.AddressDto;
+import com.utochkin.orderservice.dto.OrderSagaStatus;
+import com.utochkin.orderservice.dto.SagaMessage;
+import com.utochkin.orderservice.exceptions.FailedOrderStatusException;
+import com.utochkin.orderservice.models.OrderSaga;
+import com.utochkin.orderservice.models.SagaMessageType;
+import com.utochkin.orderservice.models.SagaState;
+import com.utochkin.orderservice.models.Status;
+import com.utochkin.orderservice.models.User;
+import com.utochkin.orderservice.repositories.OrderRepository;
+import com.utochkin.orderservice.repositories.OrderSagaRepository;
+import com.utochkin.orderservice.repositories.UserRepository;
+import com.utochkin.orderservice.request.OrderRequest;
+import com.utochkin.orderservice.request.PaymentRequest;
+import com.utochkin.orderservice.request.PaymentResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class OrderSagaServiceTest {
+
+    @Mock
+    private OrderSagaRepository sagaRepository;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private OrderOutboxService orderOutboxService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private static final String CARD_KEY = "4f+zYuOrM17OWQZRnffN/sLZjIXS/0WjEoThW0JOfqE=";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private OrderSagaService sagaService;
+
+    private final UUID orderUuid = UUID.randomUUID();
+    private final User user = User.builder().id(1L).username("bob").build();
+    private final List<OrderRequest> items = List.of(new OrderRequest(UUID.randomUUID(), 2));
+    private final AddressDto address = new AddressDto("City", "Street", 1, 2);
+
+    @BeforeEach
+    void setUp() {
+        sagaService = new OrderSagaService(sagaRepository, orderRepository, userRepository, orderService,
+                orderOutboxService, objectMapper, new SagaCardCipher(CARD_KEY), transactionManager, true);
+    }
+
+    private String decrypt(String encryptedCard) throws Exception {
+        byte[] data = Base64.getDecoder().decode(encryptedCard);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(Base64.getDecoder().decode(CARD_KEY), "AES"),
+                new GCMParameterSpec(128, data, 0, 12));
+        cipher.updateAAD(orderUuid.toString().getBytes(StandardCharsets.UTF_8));
+        return new String(cipher.doFinal(data, 12, data.length - 12), StandardCharsets.UTF_8);
+    }
+
+    private OrderSaga saga(SagaState state) {
+        return OrderSaga.builder()
+                .orderUuid(orderUuid)
+                .state(state)
+                .userId(user.getId())
+                .payload("{\"orderRequests\":[{\"articleId\":\"" + items.get(0).getArticleId() + "\",\"quantity\":2}]," +
+                        "\"addressDto\":{\"city\":\"City\",\"street\":\"Street\",\"houseNumber\":1,\"apartmentNumber\":2}}")
+                .build();
+    }
+
+    private void sagaMoves(SagaState from, SagaState to) {
+        given(sagaRepository.compareAndSetState(eq(orderUuid), eq(from), eq(to), any(), any())).willReturn(1);
+    }
+
+    private SagaMessage reply(SagaMessageType type) {
+        return SagaMessage.builder().orderUuid(orderUuid).type(type).build();
+    }
+
+    private SagaMessage sentCommand(String topic) {
+        ArgumentCaptor<SagaMessage> captor = ArgumentCaptor.forClass(SagaMessage.class);
+        then(orderOutboxService).should().enqueueSagaMessage(eq(topic), captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    @DisplayName("startCreate → сохраняет сагу в STOCK_PENDING и пишет в outbox команду резерва, заказ ещё не создаётся")
+    void startCreate_enqueuesReserveCommand() {
+        OrderSagaStatus status = sagaService.startCreate(user, items, address);
+
+        ArgumentCaptor<OrderSaga> saved = ArgumentCaptor.forClass(OrderSaga.class);
+        then(sagaRepository).should().save(saved.capture());
+        assertThat(saved.getValue().getState()).isEqualTo(SagaState.STOCK_PENDING);
+        assertThat(saved.getValue().getUserId()).isEqualTo(1L);
+
+        SagaMessage command = sentCommand("topic-shop-commands");
+        assertThat(command.getType()).isEqualTo(SagaMessageType.RESERVE_STOCK);
+        assertThat(command.getOrderUuid()).isEqualTo(saved.getValue().getOrderUuid());
+        assertThat(command.getItems()).isEqualTo(items);
+
+        assertThat(status.state()).isEqualTo(SagaState.STOCK_PENDING);
+        assertThat(status.statusUrl()).isEqualTo("/order/api/v1/orders/" + command.getOrderUuid() + "/status");
+        then(orderService).should(never()).saveOrder(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("STOCK_RESERVED → создаёт заказ из сохранённого запроса с суммой из ответа shop-service")
+    void stockReserved_createsOrder() {
+        sagaMoves(SagaState.STOCK_PENDING, SagaState.AWAITING_PAYMENT);
+        given(sagaRepository.findByOrderUuid(orderUuid)).willReturn(Optional.of(saga(SagaState.AWAITING_PAYMENT)));
+        given(userRepository.findById(1L)).willReturn(Optional.of(user));
+
+        SagaMessage reply = reply(SagaMessageType.STOCK_RESERVED);
+        reply.setTotalAmount(300.0);
+        sagaService.handleReply(reply);
+
+        then(orderService).should().saveOrder(orderUuid, user, 300.0, items, address);
+    }
+
+    @Test
+    @DisplayName("STOCK_RESERVED после таймаута саги → резерв снимается компенсирующей командой, заказ не создаётся")
+    void stockReserved_afterTimeout_releases() {
+        given(sagaRepository.findByOrderUuid(orderUuid)).willReturn(Optional.of(saga(SagaState.FAILED)));
+
+        sagaService.handleReply(reply(SagaMessageType.STOCK_RESERVED));
+
+        assertThat(sentCommand("topic-shop-commands").getType()).isEqualTo(SagaMessageType.RELEASE_RESERVATION);
+        then(orderService).should(never()).saveOrder(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("повторный STOCK_RESERVED → пропускается, заказ второй раз не создаётся")
+    void stockReserved_duplicateIgnored() {
+        given(sagaRepository.findByOrderUuid(orderUuid)).willReturn(Optional.of(saga(SagaState.AWAITING_PAYMENT)));
+
+        sagaService.handleReply(reply(SagaMessageType.STOCK_RESERVED));
+
+        then(orderService).should(never()).saveOrder(any(), any(), any(), any(), any());
+        then(orderOutboxService).shouldHaveNoInteractions();
+    }
+
+    @Test
+    @DisplayName("startPayment → захватывает заказ и отправляет подтверждение резерва, номер карты ждёт в саге зашифрованным")
+    void startPayment_confirmsReservationFirst() throws Exception {
+        OrderSaga saga = saga(SagaState.AWAITING_PAYMENT);
+        given(sagaRepository.findByOrderUuid(orderUuid)).willReturn(Optional.of(saga));
+
+        OrderSagaStatus status = sagaService.startPayment(new PaymentRequest(orderUuid, "1234 5678 9012 3456"));
+
+        then(orderService).should().startPayment(orderUuid);
+        assertThat(saga.getState()).isEqualTo(SagaState.STOCK_CONFIRMING);
+        assertThat(saga.getEncryptedCard()).doesNotContain("1234");
+        assertThat(decrypt(saga.getEncryptedCard())).isEqualTo("1234 5678 9012 3456");
+        assertThat(sentCommand("topic-shop-commands").getType()).isEqualTo(SagaMessageType.CONFIRM_RESERVATION);
+        assertThat(status.orderStatus()).isEqualTo(Status.PAYMENT_IN_PROGRESS);
+    }
+
+    @Test
+    @DisplayName("startPayment → заказ, который ещё резервируется, оплатить нельзя")
+    void startPayment_whileStockPending_rejected() {
+        given(sagaRepository.findByOrderUuid(orderUuid)).willReturn(Optional.of(saga(SagaState.STOCK_PENDING)));
+
+        assertThrows(FailedOrderStatusException.class,
+                () -> sagaService.startPayment(new PaymentRequest(orderUuid, "1234 5678 9012 3456")));
+
+        then(orderService).should(never()).startPayment(any());
+        then(orderOutboxService).shouldHaveNoInteractions();
+    }
+
+    @Test
+    @DisplayName("RESERVATION_CONFIRMED → команда списания уходит в payment-service с зашифрованным номером карты")
+    void reservationConfirmed_requestsPayment() {
+        OrderSaga saga = saga(SagaState.STOCK_CONFIRMING);
+        saga.setEncryptedCard("encrypted");
+        sagaMoves(SagaState.STOCK_CONFIRMING, SagaState.PAYMENT_PENDING);
+        given(sagaRepository.findByOrderUuid(orderUuid)).willReturn(Optional.of(saga));
+        given(orderRepository.findTotalAmountByOrderUuid(orderUuid)).willReturn(300.0);
+
+        sagaService.handleReply(reply(SagaMessageType.RESERVATION_CONFIRMED));
+
+        SagaMessage command = sentCommand("topic-payment-commands");
+        assertThat(command.getType()).isEqualTo(SagaMessageType.PAYMENT_REQUESTED);
+        assertThat(command.getTotalAmount()).isEqualTo(300.0);
+        assertThat(command.getEncryptedCard()).isEqualTo("encrypted");
+    }
+
+    @Test
+    @DisplayName("order.saga.enabled без ключа шифрования карты → сервис не стартует")
+    void enabledWithoutCardKey_fails() {
+        assertThrows(IllegalStateException.class, () -> new OrderSagaService(sagaRepository, orderRepository, userRepository,
+                orderService, orderOutboxService, objectMapper, new SagaCardCipher(""), transactionManager, true));
+    }
+
+    @Test
+    @DisplayName("RESERVATION_EXPIRED → заказ переходит в EXPIRED, сага завершается неудачей")
+    void reservationExpired_expiresOrder() {
+        sagaMoves(SagaState.STOCK_CONFIRMING, SagaState.FAILED);
+
+        sagaService.handleReply(reply(SagaMessageType.RESERVATION_EXPIRED));
+
+        then(orderRepository).should().compareAndSetStatus(eq(orderUuid), eq(Status.PAYMENT_IN_PROGRESS), eq(Status.EXPIRED), any());
+    }
+
+    @Test
+    @DisplayName("PAYMENT_COMPLETED → результат оплаты записывается в заказ, сага завершена")
+    void paymentCompleted_recordsSuccess() {
+        sagaMoves(SagaState.PAYMENT_PENDING, SagaState.COMPLETED);
+        UUID paymentId = UUID.randomUUID();
+        SagaMessage reply = reply(SagaMessageType.PAYMENT_COMPLETED);
+        reply.setPaymentId(paymentId);
+
+        sagaService.handleReply(reply);
+
+        then(orderService).should().processPaymentResult(orderUuid, new PaymentResponse(paymentId, Status.SUCCESS));
+        then(orderOutboxService).should(never()).enqueueSagaMessage(any(), any());
+    }
+
+    @Test
+    @DisplayName("PAYMENT_FAILED → заказ FAILED, резерву возвращается срок, сага снова ждёт оплаты")
+    void paymentFailed_compensatesWithHold() {
+        given(sagaRepository.compareAndSetState(eq(orderUuid), eq(SagaState.PAYMENT_PENDING), eq(SagaState.AWAITING_PAYMENT),
+                eq("Недостаточно средств"), any())).willReturn(1);
+        SagaMessage reply = reply(SagaMessageType.PAYMENT_FAILED);
+        reply.setReason("Недостаточно средств");
+
+        sagaService.handleReply(reply);
+
+        then(orderService).should().processPaymentResult(orderUuid, new PaymentResponse(null, Status.FAILED));
+        assertThat(sentCommand("topic-shop-commands").getType()).isEqualTo(SagaMessageType.HOLD_RESERVATION);
+    }
+
+    @Test
+    @DisplayName("expireStale → сага без ответа на резерв завершается неудачей и отправляет снятие резерва")
+    void expireStale_releasesPendingReservation() {
+        given(sagaRepository.findAllByStateInAndUpdatedAtBefore(any(), any(LocalDateTime.class)))
+                .willReturn(List.of(saga(SagaState.STOCK_PENDING)));
+        sagaMoves(SagaState.STOCK_PENDING, SagaState.FAILED);
+
+        assertThat(sagaService.expireStale(Duration.ofMinutes(1))).isEqualTo(1);
+
+        assertThat(sentCommand("topic-shop-commands").getType()).isEqualTo(SagaMessageType.RELEASE_RESERVATION);
+        then(sagaRepository).should(never()).compareAndSetState(eq(orderUuid), eq(SagaState.PAYMENT_PENDING), any(), isNull(), any());
+    }
+}
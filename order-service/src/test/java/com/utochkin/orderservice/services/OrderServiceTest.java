@@ -6,9 +6,12 @@ import com.utochkin.orderservice.dto.AddressDto;
 import com.utochkin.orderservice.dto.OrderDto;
 import com.utochkin.orderservice.dto.OrderDtoForKafka;
 import com.utochkin.orderservice.dto.UserDto;
+import com.utochkin.orderservice.exceptions.CardNumberNotFoundException;
 import com.utochkin.orderservice.exceptions.FailedOrderStatusException;
 import com.utochkin.orderservice.exceptions.FailedPayOrderException;
 import com.utochkin.orderservice.exceptions.OrderNotFoundException;
+import com.utochkin.orderservice.exceptions.ProductsNotAvailableException;
+import com.utochkin.orderservice.exceptions.ServiceUnavailableException;
 import com.utochkin.orderservice.mappers.AddressMapper;
 import com.utochkin.orderservice.mappers.OrderMapper;
 import com.utochkin.orderservice.mappers.ProductInfoMapper;
@@ -16,31 +19,47 @@ import com.utochkin.orderservice.mappers.UserMapper;
 import com.utochkin.orderservice.models.*;
 import com.utochkin.orderservice.repositories.OrderRepository;
 import com.utochkin.orderservice.repositories.ProductInfoRepository;
+import com.utochkin.orderservice.request.AccountRequest;
 import com.utochkin.orderservice.request.OrderRequest;
 import com.utochkin.orderservice.request.PaymentRequest;
 import com.utochkin.orderservice.request.PaymentResponse;
+import com.utochkin.orderservice.request.ReserveOrderResponse;
+import feign.FeignException;
+import feign.Request;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -50,9 +69,15 @@ public class OrderServiceTest {
     @Mock
     private ShopController shopController;
 
+    @Mock
+    private ReservationService reservationService;
+
     @Mock
     private PaymentController paymentController;
 
+    @Mock
+    private PaymentService paymentService;
+
     @Mock
     private ProductInfoMapper productInfoMapper;
 
@@ -72,7 +97,10 @@ public class OrderServiceTest {
     private AddressMapper addressMapper;
 
     @Mock
-    private KafkaSenderService kafkaSenderService;
+    private OrderOutboxService orderOutboxService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
     @InjectMocks
     private OrderService orderService;
@@ -117,6 +145,8 @@ public class OrderServiceTest {
                 .willReturn(100.0);
         given(orderRepository.save(any()))
                 .willAnswer(inv -> inv.getArgument(0));
+        given(orderRepository.compareAndSetStatus(eq(uuid), any(), any(), any()))
+                .willReturn(1);
 
         given(addressMapper.toDto(order.getAddress()))
                 .willReturn(addrDto);
@@ -131,14 +161,6 @@ public class OrderServiceTest {
                 ));
     }
 
-    @Test
-    @DisplayName("checkOrder → делегирует полномочия ShopController")
-    void checkOrder_Delegates() {
-        given(shopController.checkOrder(orderRequests)).willReturn(true);
-        boolean ok = orderService.checkOrder(orderRequests);
-        assertThat(ok).isTrue();
-    }
-
     @Test
     @DisplayName("createOrder")
     void createOrder() {
@@ -150,7 +172,7 @@ public class OrderServiceTest {
             o.setId(5L);
             return o;
         });
-        given(shopController.getSumTotalPriceOrder(orderRequests)).willReturn(123.0);
+        given(reservationService.reserve(any(), eq(orderRequests))).willReturn(new ReserveOrderResponse(true, 123.0, List.of()));
 
         OrderDto expectedDto = new OrderDto(
                 order.getOrderUuid(), 123.0, Status.WAITING_FOR_PAYMENT,
@@ -159,11 +181,56 @@ public class OrderServiceTest {
         given(orderMapper.toDto(any(), any(), any(), any())).willReturn(expectedDto);
 
 
-        OrderDto actual = orderService.createOrder(user, orderRequests, addrDto);
+        OrderDto actual;
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            actual = orderService.createOrder(user, orderRequests, addrDto);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
 
         assertThat(actual).isEqualTo(expectedDto);
+        then(shopController).should(never()).releaseReservation(any());
+        then(orderOutboxService).should(never()).enqueue(any());
+    }
 
-        then(kafkaSenderService).should(never()).send(any());
+    @Test
+    @DisplayName("createOrder → ProductsNotAvailableException, если shop-service не зарезервировал товары")
+    void createOrder_notReserved_throws() {
+        given(reservationService.reserve(any(), eq(orderRequests))).willReturn(new ReserveOrderResponse(false, null, List.of()));
+
+        assertThrows(ProductsNotAvailableException.class,
+                () -> orderService.createOrder(user, orderRequests, addrDto));
+
+        then(productInfoRepository).should(never()).saveAll(anyList());
+        then(orderRepository).should(never()).save(any());
+    }
+
+    @Test
+    @DisplayName("createOrder → откат транзакции сохранения заказа возвращает резерв в shop-service")
+    void createOrder_saveFails_releasesReservationAfterRollback() {
+        given(reservationService.reserve(any(), eq(orderRequests))).willReturn(new ReserveOrderResponse(true, 123.0, List.of()));
+        given(productInfoMapper.toListEntity(orderRequests)).willReturn(productInfos);
+        given(orderRepository.save(any(Order.class))).willThrow(new IllegalStateException("db down"));
+
+        // менеджер транзакций здесь мок: синхронизации регистрируются вручную и завершаются как при откате
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThrows(IllegalStateException.class,
+                    () -> orderService.createOrder(user, orderRequests, addrDto));
+            then(shopController).should(never()).releaseReservation(any());
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        ArgumentCaptor<UUID> orderUuid = ArgumentCaptor.forClass(UUID.class);
+        then(reservationService).should().reserve(orderUuid.capture(), eq(orderRequests));
+        then(shopController).should().releaseReservation(orderUuid.getValue());
     }
 
     @Test
@@ -181,7 +248,7 @@ public class OrderServiceTest {
         );
         assertThat(ex.getMessage()).isEqualTo("Заказ уже оплачен!");
 
-        then(paymentController).should(never()).paymentOrder(any());
+        then(paymentService).should(never()).pay(any());
     }
 
     @Test
@@ -198,7 +265,7 @@ public class OrderServiceTest {
                 () -> orderService.paymentOrder(new PaymentRequest(uuid, "1111 2222 3333 4444"))
         );
         assertThat(ex.getMessage()).isEqualTo("Заказ отменен, необходимо создать новый заказ!");
-        then(paymentController).should(never()).paymentOrder(any());
+        then(paymentService).should(never()).pay(any());
     }
 
     @Test
@@ -215,7 +282,7 @@ public class OrderServiceTest {
     }
 
     @Test
-    @DisplayName("paymentOrder → при SUCCESS завершении возвращает PaymentResponse и отправляет в kafka")
+    @DisplayName("paymentOrder → при SUCCESS завершении возвращает PaymentResponse и пишет событие в outbox")
     void paymentOrder_OnSuccess_ReturnsResponseAndSendsKafka() {
 
         order.setOrderUuid(uuid);
@@ -224,7 +291,7 @@ public class OrderServiceTest {
         given(orderRepository.findByOrderUuid(uuid)).willReturn(Optional.of(order));
 
         PaymentResponse success = new PaymentResponse(UUID.randomUUID(), Status.SUCCESS);
-        given(paymentController.paymentOrder(any())).willReturn(success);
+        given(paymentService.pay(any())).willReturn(success);
         given(orderMapper.toDtoForKafka(any(), any(), any(), any()))
                 .willReturn(new OrderDtoForKafka(
                         uuid, 100.0, Status.SUCCESS,
@@ -235,11 +302,11 @@ public class OrderServiceTest {
         PaymentResponse resp = orderService.paymentOrder(new PaymentRequest(uuid, "1111 2222 3333 4444"));
 
         assertThat(resp).isEqualTo(success);
-        then(kafkaSenderService).should().send(any(OrderDtoForKafka.class));
+        then(orderOutboxService).should().enqueue(any(OrderDtoForKafka.class));
     }
 
     @Test
-    @DisplayName("paymentOrder → при FAILED status выдает исключение и все равно отправляет в kafka")
+    @DisplayName("paymentOrder → при FAILED status выдает исключение и все равно пишет событие в outbox")
     void paymentOrder_OnFailed_ThrowsAndSendsKafka() {
 
         order.setOrderUuid(uuid);
@@ -248,7 +315,7 @@ public class OrderServiceTest {
         given(orderRepository.findByOrderUuid(uuid)).willReturn(Optional.of(order));
 
         PaymentResponse failed = new PaymentResponse(UUID.randomUUID(), Status.FAILED);
-        given(paymentController.paymentOrder(any())).willReturn(failed);
+        given(paymentService.pay(any())).willReturn(failed);
         given(orderMapper.toDtoForKafka(any(), any(), any(), any()))
                 .willReturn(new OrderDtoForKafka(
                         uuid, 100.0, Status.FAILED,
@@ -259,7 +326,7 @@ public class OrderServiceTest {
         assertThrows(FailedPayOrderException.class, () ->
                 orderService.paymentOrder(new PaymentRequest(uuid, "1111 2222 3333 4444"))
         );
-        then(kafkaSenderService).should().send(any(OrderDtoForKafka.class));
+        then(orderOutboxService).should().enqueue(any(OrderDtoForKafka.class));
     }
 
     @Test
@@ -285,10 +352,10 @@ public class OrderServiceTest {
         assertThat(ex.getMessage())
                 .isEqualTo("Заказ нельзя отменить, т.к. он не был оплачен!");
 
-        then(paymentController).should(never()).refundedOrder(any());
+        then(paymentService).should(never()).refund(any());
         then(shopController).should(never()).changeTotalQuantityProductsAfterRefundedOrder(anyList());
         then(productInfoRepository).should(never()).deleteAllById(anyList());
-        then(kafkaSenderService).should(never()).send(any());
+        then(orderOutboxService).should(never()).enqueue(any());
     }
 
     @Test
@@ -299,20 +366,15 @@ public class OrderServiceTest {
         given(orderRepository.findTotalAmountByOrderUuid(uuid)).willReturn(100.0);
 
         PaymentResponse pr = new PaymentResponse(UUID.randomUUID(), Status.REFUNDED);
-        given(paymentController.refundedOrder(any())).willReturn(pr);
+        given(paymentService.refund(any())).willReturn(pr);
 
         orderService.refundedOrder(new PaymentRequest(uuid, "5078 6038 0721 8893"));
 
-        then(shopController).should()
-                .changeTotalQuantityProductsAfterRefundedOrder(
-                        List.of(new OrderRequest(
-                                productInfos.get(0).getArticleId(),
-                                productInfos.get(0).getQuantity()
-                        ))
-                );
+        then(shopController).should().releaseReservation(uuid);
+        then(shopController).should(never()).changeTotalQuantityProductsAfterRefundedOrder(anyList());
         then(productInfoRepository).should().deleteAllById(List.of(42L));
         then(orderRepository).should(times(1)).save(order);
-        then(kafkaSenderService).should().send(any(OrderDtoForKafka.class));
+        then(orderOutboxService).should().enqueue(any(OrderDtoForKafka.class));
     }
 
     @Test
@@ -323,13 +385,244 @@ public class OrderServiceTest {
         given(orderRepository.findTotalAmountByOrderUuid(uuid)).willReturn(100.0);
 
         PaymentResponse pr = new PaymentResponse(UUID.randomUUID(), Status.FAILED);
-        given(paymentController.refundedOrder(any())).willReturn(pr);
+        given(paymentService.refund(any())).willReturn(pr);
 
         orderService.refundedOrder(new PaymentRequest(uuid, "5078 6038 0721 8893"));
 
         then(shopController).should(never()).changeTotalQuantityProductsAfterRefundedOrder(anyList());
         then(productInfoRepository).should(never()).deleteAllById(anyList());
         then(orderRepository).should(never()).save(order);
-        then(kafkaSenderService).should(never()).send(any());
+        then(orderOutboxService).should(never()).enqueue(any());
+    }
+
+    @Test
+    @DisplayName("paymentOrder → переводит заказ в PAYMENT_IN_PROGRESS и передаёт uuid заказа в payment-service")
+    void paymentOrder_marksInProgressAndSendsOrderUuid() {
+        given(paymentService.pay(any())).willReturn(new PaymentResponse(UUID.randomUUID(), Status.SUCCESS));
+
+        orderService.paymentOrder(new PaymentRequest(uuid, "1111 2222 3333 4444"));
+
+        then(orderRepository).should()
+                .compareAndSetStatus(eq(uuid), eq(Status.WAITING_FOR_PAYMENT), eq(Status.PAYMENT_IN_PROGRESS), any());
+        then(paymentService).should().pay(new AccountRequest(100.0, "1111 2222 3333 4444", uuid));
+    }
+
+    @Test
+    @DisplayName("paymentOrder → заказ уже забрал другой запрос: FailedOrderStatusException без вызова payment-service")
+    void paymentOrder_concurrentTransition_throws() {
+        given(orderRepository.compareAndSetStatus(eq(uuid), any(), eq(Status.PAYMENT_IN_PROGRESS), any())).willReturn(0);
+
+        assertThrows(FailedOrderStatusException.class,
+                () -> orderService.paymentOrder(new PaymentRequest(uuid, "1111 2222 3333 4444")));
+
+        then(paymentService).should(never()).pay(any());
+    }
+
+    @Test
+    @DisplayName("paymentOrder → payment-service отказал (4xx): заказ снова ожидает оплаты, резерву возвращается срок")
+    void paymentOrder_rejected_releasesOrder() {
+        given(paymentService.pay(any())).willThrow(notFound());
+
+        assertThrows(CardNumberNotFoundException.class,
+                () -> orderService.paymentOrder(new PaymentRequest(uuid, "1111 2222 3333 4444")));
+
+        then(orderRepository).should()
+                .compareAndSetStatus(eq(uuid), eq(Status.PAYMENT_IN_PROGRESS), eq(Status.WAITING_FOR_PAYMENT), any());
+        then(shopController).should().holdReservation(uuid);
+        then(orderOutboxService).should(never()).enqueue(any());
+    }
+
+    @Test
+    @DisplayName("paymentOrder → circuit breaker открыт: запрос не отправлялся, заказ снова ожидает оплаты")
+    void paymentOrder_circuitOpen_releasesOrder() {
+        given(paymentService.pay(any())).willThrow(
+                CallNotPermittedException.createCallNotPermittedException(CircuitBreaker.ofDefaults("circuitBreakerPayOrder")));
+
+        assertThrows(ServiceUnavailableException.class,
+                () -> orderService.paymentOrder(new PaymentRequest(uuid, "1111 2222 3333 4444")));
+
+        then(orderRepository).should()
+                .compareAndSetStatus(eq(uuid), eq(Status.PAYMENT_IN_PROGRESS), eq(Status.WAITING_FOR_PAYMENT), any());
+        then(shopController).should().holdReservation(uuid);
+    }
+
+    @Test
+    @DisplayName("paymentOrder → таймаут payment-service: заказ остаётся в PAYMENT_IN_PROGRESS, резерв не получает срок")
+    void paymentOrder_timeout_leavesOrderToReconcile() {
+        given(paymentService.pay(any())).willThrow(new RuntimeException("timeout"));
+
+        assertThrows(ServiceUnavailableException.class,
+                () -> orderService.paymentOrder(new PaymentRequest(uuid, "1111 2222 3333 4444")));
+
+        then(orderRepository).should(never())
+                .compareAndSetStatus(eq(uuid), eq(Status.PAYMENT_IN_PROGRESS), eq(Status.WAITING_FOR_PAYMENT), any());
+        then(shopController).should(never()).holdReservation(any());
+        then(orderOutboxService).should(never()).enqueue(any());
+    }
+
+    @Test
+    @DisplayName("paymentOrder → резерв подтверждается до списания, после неудачной оплаты ему снова назначается срок")
+    void paymentOrder_confirmsReservationAndHoldsAfterFailure() {
+        given(paymentService.pay(any())).willReturn(new PaymentResponse(UUID.randomUUID(), Status.FAILED));
+
+        assertThrows(FailedPayOrderException.class,
+                () -> orderService.paymentOrder(new PaymentRequest(uuid, "1111 2222 3333 4444")));
+
+        InOrder inOrder = inOrder(shopController, paymentService);
+        inOrder.verify(shopController).confirmReservation(uuid);
+        inOrder.verify(paymentService).pay(any());
+        inOrder.verify(shopController).holdReservation(uuid);
+    }
+
+    @Test
+    @DisplayName("paymentOrder → резерв уже снят по сроку: заказ EXPIRED, payment-service не вызывается")
+    void paymentOrder_reservationExpired_marksExpired() {
+        willThrow(conflict()).given(shopController).confirmReservation(uuid);
+        given(paymentController.findPayment(uuid)).willThrow(notFound());
+
+        FailedOrderStatusException exception = assertThrows(FailedOrderStatusException.class,
+                () -> orderService.paymentOrder(new PaymentRequest(uuid, "1111 2222 3333 4444")));
+
+        assertThat(exception.getMessage()).isEqualTo("Резерв товаров истёк, необходимо создать новый заказ!");
+        then(orderRepository).should()
+                .compareAndSetStatus(eq(uuid), eq(Status.PAYMENT_IN_PROGRESS), eq(Status.EXPIRED), any());
+        then(paymentService).should(never()).pay(any());
+    }
+
+    @Test
+    @DisplayName("paymentOrder → резерв снят, но в журнале payment-service оплата есть: заказ оплачен, а не EXPIRED")
+    void paymentOrder_reservationReleasedButPaid_recordsPayment() {
+        willThrow(conflict()).given(shopController).confirmReservation(uuid);
+        PaymentResponse earlier = new PaymentResponse(UUID.randomUUID(), Status.SUCCESS);
+        given(paymentController.findPayment(uuid)).willReturn(earlier);
+
+        PaymentResponse response = orderService.paymentOrder(new PaymentRequest(uuid, "1111 2222 3333 4444"));
+
+        assertThat(response).isEqualTo(earlier);
+        assertThat(order.getOrderStatus()).isEqualTo(Status.SUCCESS);
+        then(orderRepository).should(never())
+                .compareAndSetStatus(eq(uuid), eq(Status.PAYMENT_IN_PROGRESS), eq(Status.EXPIRED), any());
+        then(paymentService).should(never()).pay(any());
+    }
+
+    @Test
+    @DisplayName("refundedOrder → при ответе не REFUNDED заказ возвращается в SUCCESS")
+    void refundedOrder_nonRefundedResponse_releasesOrder() {
+        order.setOrderStatus(Status.SUCCESS);
+        given(paymentService.refund(any())).willReturn(new PaymentResponse(null, Status.FAILED));
+
+        orderService.refundedOrder(new PaymentRequest(uuid, "5078 6038 0721 8893"));
+
+        then(orderRepository).should()
+                .compareAndSetStatus(eq(uuid), eq(Status.REFUND_IN_PROGRESS), eq(Status.SUCCESS), any());
+    }
+
+    @Test
+    @DisplayName("refundedOrder → payment-service отклонил возврат (4xx): заказ возвращается в SUCCESS")
+    void refundedOrder_rejected_releasesOrder() {
+        order.setOrderStatus(Status.SUCCESS);
+        given(paymentService.refund(any())).willThrow(notFound());
+
+        assertThrows(CardNumberNotFoundException.class,
+                () -> orderService.refundedOrder(new PaymentRequest(uuid, "5078 6038 0721 8893")));
+
+        then(orderRepository).should()
+                .compareAndSetStatus(eq(uuid), eq(Status.REFUND_IN_PROGRESS), eq(Status.SUCCESS), any());
+    }
+
+    @Test
+    @DisplayName("refundedOrder → таймаут payment-service: заказ остаётся в REFUND_IN_PROGRESS до сверки")
+    void refundedOrder_timeout_leavesOrderToReconcile() {
+        order.setOrderStatus(Status.SUCCESS);
+        given(paymentService.refund(any())).willThrow(new RuntimeException("timeout"));
+
+        assertThrows(ServiceUnavailableException.class,
+                () -> orderService.refundedOrder(new PaymentRequest(uuid, "5078 6038 0721 8893")));
+
+        then(orderRepository).should(never())
+                .compareAndSetStatus(eq(uuid), eq(Status.REFUND_IN_PROGRESS), eq(Status.SUCCESS), any());
+        then(shopController).should(never()).changeTotalQuantityProductsAfterRefundedOrder(any());
+    }
+
+    @Test
+    @DisplayName("reconcile → зависшая оплата найдена в payment-service: результат записывается в заказ")
+    void reconcile_paymentFound_appliesResult() {
+        order.setOrderStatus(Status.PAYMENT_IN_PROGRESS);
+        given(orderRepository.findAllByOrderStatusInAndUpdatedAtBefore(anyList(), any())).willReturn(List.of(order));
+        PaymentResponse success = new PaymentResponse(UUID.randomUUID(), Status.SUCCESS);
+        given(paymentController.findPayment(uuid)).willReturn(success);
+
+        int reconciled = orderService.reconcile(Duration.ofMinutes(2));
+
+        assertThat(reconciled).isEqualTo(1);
+        assertThat(order.getOrderStatus()).isEqualTo(Status.SUCCESS);
+        assertThat(order.getPaymentId()).isEqualTo(success.getPaymentId());
+        then(orderOutboxService).should().enqueue(any(OrderDtoForKafka.class));
+    }
+
+    @Test
+    @DisplayName("reconcile → оплаты нет в payment-service: заказ снова ожидает оплаты")
+    void reconcile_paymentMissing_releasesOrder() {
+        order.setOrderStatus(Status.PAYMENT_IN_PROGRESS);
+        given(orderRepository.findAllByOrderStatusInAndUpdatedAtBefore(anyList(), any())).willReturn(List.of(order));
+        given(paymentController.findPayment(uuid)).willThrow(notFound());
+
+        orderService.reconcile(Duration.ofMinutes(2));
+
+        then(orderRepository).should()
+                .compareAndSetStatus(eq(uuid), eq(Status.PAYMENT_IN_PROGRESS), eq(Status.WAITING_FOR_PAYMENT), any());
+        then(orderOutboxService).should(never()).enqueue(any());
+    }
+
+    @Test
+    @DisplayName("reconcile → возврат проведён в payment-service: товары возвращаются и заказ становится REFUNDED")
+    void reconcile_refundFound_completesRefund() {
+        order.setOrderStatus(Status.REFUND_IN_PROGRESS);
+        given(orderRepository.findAllByOrderStatusInAndUpdatedAtBefore(anyList(), any())).willReturn(List.of(order));
+        given(paymentController.findRefund(uuid)).willReturn(new PaymentResponse(null, Status.REFUNDED));
+
+        orderService.reconcile(Duration.ofMinutes(2));
+
+        then(shopController).should().releaseReservation(uuid);
+        then(productInfoRepository).should().deleteAllById(List.of(42L));
+        assertThat(order.getOrderStatus()).isEqualTo(Status.REFUNDED);
+    }
+
+    @Test
+    @DisplayName("reconcile → у заказа нет резерва в shop-service: товар возвращается по списку товаров заказа")
+    void reconcile_refundWithoutReservation_returnsStockByList() {
+        order.setOrderStatus(Status.REFUND_IN_PROGRESS);
+        given(orderRepository.findAllByOrderStatusInAndUpdatedAtBefore(anyList(), any())).willReturn(List.of(order));
+        given(paymentController.findRefund(uuid)).willReturn(new PaymentResponse(null, Status.REFUNDED));
+        willThrow(notFound()).given(shopController).releaseReservation(uuid);
+
+        orderService.reconcile(Duration.ofMinutes(2));
+
+        then(shopController).should().changeTotalQuantityProductsAfterRefundedOrder(orderRequests);
+        assertThat(order.getOrderStatus()).isEqualTo(Status.REFUNDED);
+    }
+
+    @Test
+    @DisplayName("reconcile → возврат уже записан другим запросом: событие второй раз в outbox не попадает")
+    void reconcile_refundAlreadyCompleted_skipsEvent() {
+        order.setOrderStatus(Status.REFUND_IN_PROGRESS);
+        given(orderRepository.findAllByOrderStatusInAndUpdatedAtBefore(anyList(), any())).willReturn(List.of(order));
+        given(paymentController.findRefund(uuid)).willReturn(new PaymentResponse(null, Status.REFUNDED));
+        given(orderRepository.compareAndSetStatus(eq(uuid), eq(Status.REFUND_IN_PROGRESS), eq(Status.REFUNDED), any())).willReturn(0);
+
+        orderService.reconcile(Duration.ofMinutes(2));
+
+        then(productInfoRepository).should(never()).deleteAllById(anyList());
+        then(orderOutboxService).should(never()).enqueue(any());
+    }
+
+    private static FeignException conflict() {
+        Request request = Request.create(Request.HttpMethod.POST, "/shop/api/v1/reservations", Map.of(), null, StandardCharsets.UTF_8, null);
+        return new FeignException.Conflict("conflict", request, null, Map.of());
+    }
+
+    private static FeignException notFound() {
+        Request request = Request.create(Request.HttpMethod.GET, "/payment/api/v1/pay", Map.of(), null, StandardCharsets.UTF_8, null);
+        return new FeignException.NotFound("not found", request, null, Map.of());
     }
 }
@@ -0,0 +1,15 @@
+package com.utochkin.paymentservice.config;
+
+/**
+ * Топики саги заказа со стороны payment-service: команды списания пишет order-service, ответы читает он же.
+ */
+public final class SagaTopics {
+
+    public static final String PAYMENT_COMMANDS = "topic-payment-commands";
+    // команды, которые не удалось выполнить и после повторов, для разбора вручную
+    public static final String PAYMENT_COMMANDS_DLT = PAYMENT_COMMANDS + "-dlt";
+    public static final String PAYMENT_REPLIES = "topic-payment-replies";
+
+    private SagaTopics() {
+    }
+}
@@ -1,16 +1,21 @@
 package com.utochkin.paymentservice.controllers;
 
+import com.utochkin.paymentservice.models.PaymentOperation;
 import com.utochkin.paymentservice.models.PaymentResponse;
 import com.utochkin.paymentservice.requests.AccountRequest;
 import com.utochkin.paymentservice.services.PaymentService;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.UUID;
+
 @RestController
 @RequestMapping("/payment/api/v1")
 @RequiredArgsConstructor
@@ -28,4 +33,14 @@ public class PaymentController {
         return paymentService.refundedOrder(accountRequest);
     }
 
+    @GetMapping("/pay/{orderUuid}")
+    PaymentResponse findPayment(@PathVariable UUID orderUuid) {
+        return paymentService.findPayment(orderUuid, PaymentOperation.PAY);
+    }
+
+    @GetMapping("/refunded/{orderUuid}")
+    PaymentResponse findRefund(@PathVariable UUID orderUuid) {
+        return paymentService.findPayment(orderUuid, PaymentOperation.REFUND);
+    }
+
 }
@@ -13,4 +13,10 @@ public class ExceptionControllerAdvice {
     public ErrorResponse handlerCardNumberNotFoundException(CardNumberNotFoundException cardNumberNotFoundException) {
         return new ErrorResponse(cardNumberNotFoundException.getMessage());
     }
+
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    @ExceptionHandler(PaymentNotFoundException.class)
+    public ErrorResponse handlerPaymentNotFoundException(PaymentNotFoundException paymentNotFoundException) {
+        return new ErrorResponse(paymentNotFoundException.getMessage());
+    }
 }
@@ -0,0 +1,7 @@
+package com.utochkin.paymentservice.exceptions;
+
+public class PaymentNotFoundException extends RuntimeException {
+    public PaymentNotFoundException() {
+        super("Error: payment not found!");
+    }
+}
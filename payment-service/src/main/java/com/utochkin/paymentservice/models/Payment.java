@@ -0,0 +1,38 @@
+package com.utochkin.paymentservice.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+@Entity
+@Builder
+@Table(name = "payments",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"order_uuid", "operation"}))
+public class Payment {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_uuid", nullable = false, columnDefinition = "UUID")
+    private UUID orderUuid;
+
+    @Enumerated(value = EnumType.STRING)
+    @Column(name = "operation", nullable = false)
+    private PaymentOperation operation;
+
+    @Column(name = "payment_id", columnDefinition = "UUID")
+    private UUID paymentId;
+
+    @Enumerated(value = EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private Status status;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
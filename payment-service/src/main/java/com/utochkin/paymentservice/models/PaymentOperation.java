@@ -0,0 +1,6 @@
+package com.utochkin.paymentservice.models;
+
+public enum PaymentOperation {
+    PAY,
+    REFUND
+}
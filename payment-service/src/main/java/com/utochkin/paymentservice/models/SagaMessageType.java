@@ -0,0 +1,9 @@
+package com.utochkin.paymentservice.models;
+
+public enum SagaMessageType {
+    // команда от order-service
+    PAYMENT_REQUESTED,
+    // ответы order-service
+    PAYMENT_COMPLETED,
+    PAYMENT_FAILED
+}
@@ -0,0 +1,15 @@
+package com.utochkin.paymentservice.repositories;
+
+import com.utochkin.paymentservice.models.Payment;
+import com.utochkin.paymentservice.models.PaymentOperation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface PaymentRepository extends JpaRepository<Payment, Long> {
+
+    Optional<Payment> findByOrderUuidAndOperation(UUID orderUuid, PaymentOperation operation);
+}
@@ -8,6 +8,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.UUID;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -22,4 +24,11 @@ public class AccountRequest {
             message = "Номер карты должен быть в формате '1234 5678 9012 3456'"
     )
     private String cardNumber;
+
+    // uuid заказа делает списание и возврат идемпотентными и позволяет order-service сверить незавершённые операции
+    private UUID orderUuid;
+
+    public AccountRequest(Double totalAmount, String cardNumber) {
+        this(totalAmount, cardNumber, null);
+    }
 }
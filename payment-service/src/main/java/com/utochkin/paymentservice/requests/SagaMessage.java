@@ -0,0 +1,31 @@
+package com.utochkin.paymentservice.requests;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.utochkin.paymentservice.models.SagaMessageType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+// команда или ответ саги заказа; товары, которые order-service пишет для shop-service, здесь не читаются
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class SagaMessage {
+    private UUID orderUuid;
+
+    private SagaMessageType type;
+
+    private Double totalAmount;
+
+    // номер карты, зашифрованный order-service (SagaCardCipher)
+    private String encryptedCard;
+
+    private UUID paymentId;
+
+    private String reason;
+}
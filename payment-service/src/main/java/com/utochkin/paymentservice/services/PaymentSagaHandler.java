@@ -0,0 +1,98 @@
+package com.utochkin.paymentservice.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utochkin.paymentservice.config.SagaKafkaConfig;
+import com.utochkin.paymentservice.config.SagaTopics;
+import com.utochkin.paymentservice.exceptions.CardNumberNotFoundException;
+import com.utochkin.paymentservice.models.PaymentResponse;
+import com.utochkin.paymentservice.models.SagaMessageType;
+import com.utochkin.paymentservice.models.Status;
+import com.utochkin.paymentservice.requests.AccountRequest;
+import com.utochkin.paymentservice.requests.SagaMessage;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Выполняет команды списания из саги заказа. Ответ отправляется после коммита списания; если он не ушёл,
+ * команда доставляется повторно, и PaymentService по orderUuid вернёт уже записанный результат, не списывая деньги второй раз.
+ */
+@Service
+@Log4j2
+@ConditionalOnProperty(name = "payment.saga.enabled", havingValue = "true")
+public class PaymentSagaHandler {
+
+    private static final String INSUFFICIENT_FUNDS_MESSAGE = "Недостаточно средств на карте";
+
+    private final PaymentService paymentService;
+    private final SagaCardCipher cardCipher;
+    private final KafkaTemplate<String, String> sagaKafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final long sendTimeoutMs;
+
+    public PaymentSagaHandler(PaymentService paymentService,
+                              SagaCardCipher cardCipher,
+                              KafkaTemplate<String, String> sagaKafkaTemplate,
+                              ObjectMapper objectMapper,
+                              @Value("${payment.saga.send-timeout-ms:10000}") long sendTimeoutMs) {
+        this.paymentService = paymentService;
+        this.cardCipher = cardCipher;
+        this.sagaKafkaTemplate = sagaKafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.sendTimeoutMs = sendTimeoutMs;
+    }
+
+    @KafkaListener(topics = SagaTopics.PAYMENT_COMMANDS, groupId = "payment-saga-group", containerFactory = SagaKafkaConfig.LISTENER_FACTORY)
+    public void onCommand(String payload) {
+        SagaMessage command = read(payload);
+        if (command.getType() != SagaMessageType.PAYMENT_REQUESTED) {
+            log.warn("PaymentSagaHandler: неожиданная команда {} для заказа {}", command.getType(), command.getOrderUuid());
+            return;
+        }
+        log.info("PaymentSagaHandler: списание по заказу {}", command.getOrderUuid());
+
+        String cardNumber = cardCipher.decrypt(command.getOrderUuid(), command.getEncryptedCard());
+        SagaMessage.SagaMessageBuilder reply = SagaMessage.builder().orderUuid(command.getOrderUuid());
+        try {
+            PaymentResponse response = paymentService.paymentOrder(
+                    new AccountRequest(command.getTotalAmount(), cardNumber, command.getOrderUuid()));
+            if (response.getStatus() == Status.SUCCESS) {
+                reply.type(SagaMessageType.PAYMENT_COMPLETED).paymentId(response.getPaymentId());
+            } else {
+                reply.type(SagaMessageType.PAYMENT_FAILED).reason(INSUFFICIENT_FUNDS_MESSAGE);
+            }
+        } catch (CardNumberNotFoundException notFound) {
+            reply.type(SagaMessageType.PAYMENT_FAILED).reason(notFound.getMessage());
+        }
+        send(reply.build());
+    }
+
+    private void send(SagaMessage reply) {
+        try {
+            sagaKafkaTemplate.send(SagaTopics.PAYMENT_REPLIES, reply.getOrderUuid().toString(), objectMapper.writeValueAsString(reply))
+                    .get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+            log.info("PaymentSagaHandler: ответ {} для заказа {} отправлен", reply.getType(), reply.getOrderUuid());
+        } catch (JsonProcessingException | ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Не удалось отправить ответ саги для заказа " + reply.getOrderUuid(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Отправка ответа саги прервана", e);
+        }
+    }
+
+    private SagaMessage read(String payload) {
+        try {
+            return objectMapper.readValue(payload, SagaMessage.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Не удалось прочитать команду саги", e);
+        }
+    }
+}
@@ -2,10 +2,14 @@ package com.utochkin.paymentservice.services;
 
 
 import com.utochkin.paymentservice.exceptions.CardNumberNotFoundException;
+import com.utochkin.paymentservice.exceptions.PaymentNotFoundException;
 import com.utochkin.paymentservice.models.Account;
+import com.utochkin.paymentservice.models.Payment;
+import com.utochkin.paymentservice.models.PaymentOperation;
 import com.utochkin.paymentservice.models.PaymentResponse;
 import com.utochkin.paymentservice.models.Status;
 import com.utochkin.paymentservice.repositories.AccountRepository;
+import com.utochkin.paymentservice.repositories.PaymentRepository;
 import com.utochkin.paymentservice.requests.AccountRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
@@ -14,6 +18,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.Optional;
 import java.util.UUID;
 
 
@@ -23,12 +29,44 @@ import java.util.UUID;
 public class PaymentService {
 
     private final AccountRepository accountRepository;
+    private final PaymentRepository paymentRepository;
+
+    private Optional<PaymentResponse> findRecorded(AccountRequest accountRequest, PaymentOperation operation) {
+        if (accountRequest.getOrderUuid() == null) {
+            return Optional.empty();
+        }
+        return paymentRepository.findByOrderUuidAndOperation(accountRequest.getOrderUuid(), operation)
+                .map(payment -> {
+                    log.info("PaymentService: повторный запрос {} для заказа {}, возвращаем сохранённый результат",
+                            operation, accountRequest.getOrderUuid());
+                    return new PaymentResponse(payment.getPaymentId(), payment.getStatus());
+                });
+    }
+
+    // запись в той же транзакции, что и изменение баланса: есть запись — деньги точно списаны или возвращены
+    private void record(AccountRequest accountRequest, PaymentOperation operation, PaymentResponse paymentResponse) {
+        if (accountRequest.getOrderUuid() == null) {
+            return;
+        }
+        paymentRepository.save(Payment.builder()
+                .orderUuid(accountRequest.getOrderUuid())
+                .operation(operation)
+                .paymentId(paymentResponse.getPaymentId())
+                .status(paymentResponse.getStatus())
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
 
     @Transactional
     public PaymentResponse paymentOrder(AccountRequest accountRequest) {
         log.info("PaymentService: попытка списания {} с карты {}",
                 accountRequest.getTotalAmount(), accountRequest.getCardNumber());
 
+        Optional<PaymentResponse> recorded = findRecorded(accountRequest, PaymentOperation.PAY);
+        if (recorded.isPresent()) {
+            return recorded.get();
+        }
+
         Account account = accountRepository.findAccountByCardNumber(accountRequest.getCardNumber())
                 .orElseThrow(() -> {
                     log.error("PaymentService: не найден аккаунт с номером карты {}", accountRequest.getCardNumber());
@@ -47,13 +85,20 @@ public class PaymentService {
         accountRepository.save(account);
         log.info("PaymentService: списание успешно. Новый баланс: {}", bd.doubleValue());
 
-        return new PaymentResponse(UUID.randomUUID(), Status.SUCCESS);
+        PaymentResponse paymentResponse = new PaymentResponse(UUID.randomUUID(), Status.SUCCESS);
+        record(accountRequest, PaymentOperation.PAY, paymentResponse);
+        return paymentResponse;
     }
 
     @Transactional
     public PaymentResponse refundedOrder(AccountRequest accountRequest) {
         log.info("PaymentService: возврат {} на карту {}", accountRequest.getTotalAmount(), accountRequest.getCardNumber());
 
+        Optional<PaymentResponse> recorded = findRecorded(accountRequest, PaymentOperation.REFUND);
+        if (recorded.isPresent()) {
+            return recorded.get();
+        }
+
         Account account = accountRepository.findAccountByCardNumber(accountRequest.getCardNumber())
                 .orElseThrow(() -> {
                     log.error("PaymentService: не найден аккаунт для возврата с номером карты {}", accountRequest.getCardNumber());
@@ -66,7 +111,18 @@ public class PaymentService {
         accountRepository.save(account);
 
         log.info("PaymentService: возврат успешно завершён. Новый баланс: {}", bd.doubleValue());
-        return new PaymentResponse(null, Status.REFUNDED);
+
+        PaymentResponse paymentResponse = new PaymentResponse(null, Status.REFUNDED);
+        record(accountRequest, PaymentOperation.REFUND, paymentResponse);
+        return paymentResponse;
+    }
+
+    @Transactional(readOnly = true)
+    public PaymentResponse findPayment(UUID orderUuid, PaymentOperation operation) {
+        log.info("PaymentService: поиск операции {} для заказа {}", operation, orderUuid);
+        return paymentRepository.findByOrderUuidAndOperation(orderUuid, operation)
+                .map(payment -> new PaymentResponse(payment.getPaymentId(), payment.getStatus()))
+                .orElseThrow(PaymentNotFoundException::new);
     }
 }
 
@@ -0,0 +1,48 @@
+package com.utochkin.paymentservice.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Расшифровывает номер карты из команды списания саги. order-service шифрует его AES-GCM общим ключом
+ * (payment.saga.card-key, base64 от 32 байт) и orderUuid заказа, так что открытый номер в Kafka не попадает.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.saga.enabled", havingValue = "true")
+public class SagaCardCipher {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private final SecretKeySpec key;
+
+    public SagaCardCipher(@Value("${payment.saga.card-key:}") String base64Key) {
+        if (base64Key == null || base64Key.isBlank()) {
+            throw new IllegalStateException("Не задан ключ шифрования номера карты payment.saga.card-key");
+        }
+        this.key = new SecretKeySpec(Base64.getDecoder().decode(base64Key), "AES");
+    }
+
+    public String decrypt(UUID orderUuid, String encryptedCard) {
+        try {
+            byte[] data = Base64.getDecoder().decode(encryptedCard);
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, Arrays.copyOf(data, IV_LENGTH)));
+            cipher.updateAAD(orderUuid.toString().getBytes(StandardCharsets.UTF_8));
+            return new String(cipher.doFinal(data, IV_LENGTH, data.length - IV_LENGTH), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Не удалось расшифровать номер карты заказа " + orderUuid, e);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+create table if not exists payments
+(
+    id         serial primary key,
+    order_uuid uuid        NOT NULL,
+    operation  varchar(20) NOT NULL,
+    payment_id uuid,
+    status     varchar(20) NOT NULL,
+    created_at timestamp   NOT NULL,
+    unique (order_uuid, operation)
+);
@@ -6,6 +6,8 @@ import com.utochkin.paymentservice.config.AuthServerRoleConverter;
 import com.utochkin.paymentservice.config.Config;
 import com.utochkin.paymentservice.exceptions.CardNumberNotFoundException;
 import com.utochkin.paymentservice.exceptions.CustomAccessDeniedHandler;
+import com.utochkin.paymentservice.exceptions.PaymentNotFoundException;
+import com.utochkin.paymentservice.models.PaymentOperation;
 import com.utochkin.paymentservice.models.PaymentResponse;
 import com.utochkin.paymentservice.models.Status;
 import com.utochkin.paymentservice.requests.AccountRequest;
@@ -25,8 +27,10 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -117,4 +121,33 @@ public class PaymentControllerTest {
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$.messageError").value("Error: card number not found!"));
     }
+
+    @Test
+    @DisplayName("GET /payment/api/v1/pay/{orderUuid} — 200, сохранённый результат списания")
+    void findPayment_Success() throws Exception {
+        UUID orderUuid = UUID.randomUUID();
+        PaymentResponse resp = new PaymentResponse(UUID.randomUUID(), Status.SUCCESS);
+
+        given(paymentService.findPayment(orderUuid, PaymentOperation.PAY)).willReturn(resp);
+
+        mvc.perform(get("/payment/api/v1/pay/{orderUuid}", orderUuid)
+                        .with(jwt()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.paymentId").value(resp.getPaymentId().toString()))
+                .andExpect(jsonPath("$.status").value("SUCCESS"));
+    }
+
+    @Test
+    @DisplayName("GET /payment/api/v1/refunded/{orderUuid} — 404, PaymentNotFoundException")
+    void findRefund_NotFound() throws Exception {
+        UUID orderUuid = UUID.randomUUID();
+
+        given(paymentService.findPayment(eq(orderUuid), eq(PaymentOperation.REFUND)))
+                .willThrow(new PaymentNotFoundException());
+
+        mvc.perform(get("/payment/api/v1/refunded/{orderUuid}", orderUuid)
+                        .with(jwt()))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.messageError").value("Error: payment not found!"));
+    }
 }
@@ -0,0 +1,120 @@
+package com.utochkin.paymentservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utochkin.paymentservice.exceptions.CardNumberNotFoundException;
+import com.utochkin.paymentservice.models.PaymentResponse;
+import com.utochkin.paymentservice.models.SagaMessageType;
+import com.utochkin.paymentservice.models.Status;
+import com.utochkin.paymentservice.requests.AccountRequest;
+import com.utochkin.paymentservice.requests.SagaMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PaymentSagaHandlerTest {
+
+    @Mock
+    private PaymentService paymentService;
+
+    @Mock
+    private SagaCardCipher cardCipher;
+
+    @Mock
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private PaymentSagaHandler handler;
+
+    private final UUID orderUuid = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        handler = new PaymentSagaHandler(paymentService, cardCipher, kafkaTemplate, objectMapper, 1000);
+        given(kafkaTemplate.send(anyString(), anyString(), anyString())).willReturn(CompletableFuture.completedFuture(null));
+        given(cardCipher.decrypt(orderUuid, "encrypted")).willReturn("1234 5678 9012 3456");
+    }
+
+    private String paymentRequested() throws Exception {
+        return objectMapper.writeValueAsString(SagaMessage.builder()
+                .orderUuid(orderUuid)
+                .type(SagaMessageType.PAYMENT_REQUESTED)
+                .totalAmount(50.0)
+                .encryptedCard("encrypted")
+                .build());
+    }
+
+    private SagaMessage sentReply() throws Exception {
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        then(kafkaTemplate).should().send(eq("topic-payment-replies"), eq(orderUuid.toString()), payload.capture());
+        return objectMapper.readValue(payload.getValue(), SagaMessage.class);
+    }
+
+    @Test
+    @DisplayName("PAYMENT_REQUESTED → списание по расшифрованной карте и orderUuid, в ответе PAYMENT_COMPLETED с paymentId")
+    void payment_repliesCompleted() throws Exception {
+        UUID paymentId = UUID.randomUUID();
+        given(paymentService.paymentOrder(new AccountRequest(50.0, "1234 5678 9012 3456", orderUuid)))
+                .willReturn(new PaymentResponse(paymentId, Status.SUCCESS));
+
+        handler.onCommand(paymentRequested());
+
+        SagaMessage reply = sentReply();
+        assertThat(reply.getType()).isEqualTo(SagaMessageType.PAYMENT_COMPLETED);
+        assertThat(reply.getPaymentId()).isEqualTo(paymentId);
+    }
+
+    @Test
+    @DisplayName("PAYMENT_REQUESTED → недостаточно средств, в ответе PAYMENT_FAILED с причиной")
+    void payment_repliesFailedOnInsufficientFunds() throws Exception {
+        given(paymentService.paymentOrder(any())).willReturn(new PaymentResponse(null, Status.FAILED));
+
+        handler.onCommand(paymentRequested());
+
+        SagaMessage reply = sentReply();
+        assertThat(reply.getType()).isEqualTo(SagaMessageType.PAYMENT_FAILED);
+        assertThat(reply.getReason()).isEqualTo("Недостаточно средств на карте");
+    }
+
+    @Test
+    @DisplayName("PAYMENT_REQUESTED → карта не найдена, в ответе PAYMENT_FAILED вместо исключения")
+    void payment_repliesFailedOnUnknownCard() throws Exception {
+        given(paymentService.paymentOrder(any())).willThrow(new CardNumberNotFoundException());
+
+        handler.onCommand(paymentRequested());
+
+        SagaMessage reply = sentReply();
+        assertThat(reply.getType()).isEqualTo(SagaMessageType.PAYMENT_FAILED);
+        assertThat(reply.getReason()).isEqualTo("Error: card number not found!");
+    }
+
+    @Test
+    @DisplayName("PAYMENT_REQUESTED → номер карты не расшифровался, исключение без списания и ответа")
+    void payment_undecryptableCard_rethrown() throws Exception {
+        given(cardCipher.decrypt(orderUuid, "encrypted")).willThrow(new IllegalArgumentException("bad tag"));
+
+        assertThrows(IllegalArgumentException.class, () -> handler.onCommand(paymentRequested()));
+
+        then(paymentService).shouldHaveNoInteractions();
+        then(kafkaTemplate).shouldHaveNoInteractions();
+    }
+}
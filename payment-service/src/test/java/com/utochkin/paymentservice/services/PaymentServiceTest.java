@@ -1,10 +1,14 @@
 package com.utochkin.paymentservice.services;
 
 import com.utochkin.paymentservice.exceptions.CardNumberNotFoundException;
+import com.utochkin.paymentservice.exceptions.PaymentNotFoundException;
 import com.utochkin.paymentservice.models.Account;
+import com.utochkin.paymentservice.models.Payment;
+import com.utochkin.paymentservice.models.PaymentOperation;
 import com.utochkin.paymentservice.models.PaymentResponse;
 import com.utochkin.paymentservice.models.Status;
 import com.utochkin.paymentservice.repositories.AccountRepository;
+import com.utochkin.paymentservice.repositories.PaymentRepository;
 import com.utochkin.paymentservice.requests.AccountRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -14,7 +18,9 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -27,6 +33,9 @@ public class PaymentServiceTest {
     @Mock
     private AccountRepository accountRepository;
 
+    @Mock
+    private PaymentRepository paymentRepository;
+
     @InjectMocks
     private PaymentService paymentService;
 
@@ -106,5 +115,83 @@ public class PaymentServiceTest {
                 .isInstanceOf(CardNumberNotFoundException.class)
                 .hasMessageContaining("Error: card number not found");
     }
-}
 
+    @Test
+    @DisplayName("paymentOrder: с orderUuid сохраняет запись об успешном списании")
+    void paymentOrder_withOrderUuid_recordsPayment() {
+        AccountRequest requestWithOrder = new AccountRequest(50.0, account.getCardNumber(), UUID.randomUUID());
+        when(paymentRepository.findByOrderUuidAndOperation(requestWithOrder.getOrderUuid(), PaymentOperation.PAY))
+                .thenReturn(Optional.empty());
+        when(accountRepository.findAccountByCardNumber(request.getCardNumber()))
+                .thenReturn(Optional.of(account));
+
+        PaymentResponse response = paymentService.paymentOrder(requestWithOrder);
+
+        assertThat(response.getStatus()).isEqualTo(Status.SUCCESS);
+        verify(paymentRepository).save(argThat(payment ->
+                payment.getOrderUuid().equals(requestWithOrder.getOrderUuid())
+                        && payment.getOperation() == PaymentOperation.PAY
+                        && payment.getPaymentId().equals(response.getPaymentId())));
+    }
+
+    @Test
+    @DisplayName("paymentOrder: повторный запрос по тому же orderUuid не списывает деньги второй раз")
+    void paymentOrder_repeated_returnsRecorded() {
+        UUID orderUuid = UUID.randomUUID();
+        UUID paymentId = UUID.randomUUID();
+        when(paymentRepository.findByOrderUuidAndOperation(orderUuid, PaymentOperation.PAY))
+                .thenReturn(Optional.of(new Payment(1L, orderUuid, PaymentOperation.PAY, paymentId,
+                        Status.SUCCESS, LocalDateTime.now())));
+
+        PaymentResponse response = paymentService.paymentOrder(new AccountRequest(50.0, account.getCardNumber(), orderUuid));
+
+        assertThat(response.getPaymentId()).isEqualTo(paymentId);
+        assertThat(response.getStatus()).isEqualTo(Status.SUCCESS);
+        assertThat(account.getAmountMoney()).isEqualTo(100.0);
+        verifyNoInteractions(accountRepository);
+        verify(paymentRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("paymentOrder: неуспешное списание не записывается, чтобы его можно было повторить")
+    void paymentOrder_insufficient_notRecorded() {
+        account.setAmountMoney(30.0);
+        AccountRequest requestWithOrder = new AccountRequest(50.0, account.getCardNumber(), UUID.randomUUID());
+        when(paymentRepository.findByOrderUuidAndOperation(requestWithOrder.getOrderUuid(), PaymentOperation.PAY))
+                .thenReturn(Optional.empty());
+        when(accountRepository.findAccountByCardNumber(request.getCardNumber()))
+                .thenReturn(Optional.of(account));
+
+        PaymentResponse response = paymentService.paymentOrder(requestWithOrder);
+
+        assertThat(response.getStatus()).isEqualTo(Status.FAILED);
+        verify(paymentRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("refundedOrder: повторный возврат по тому же orderUuid не зачисляет деньги второй раз")
+    void refundedOrder_repeated_returnsRecorded() {
+        UUID orderUuid = UUID.randomUUID();
+        when(paymentRepository.findByOrderUuidAndOperation(orderUuid, PaymentOperation.REFUND))
+                .thenReturn(Optional.of(new Payment(2L, orderUuid, PaymentOperation.REFUND, null,
+                        Status.REFUNDED, LocalDateTime.now())));
+
+        PaymentResponse response = paymentService.refundedOrder(new AccountRequest(50.0, account.getCardNumber(), orderUuid));
+
+        assertThat(response.getStatus()).isEqualTo(Status.REFUNDED);
+        assertThat(account.getAmountMoney()).isEqualTo(100.0);
+        verifyNoInteractions(accountRepository);
+    }
+
+    @Test
+    @DisplayName("findPayment: выдает исключение PaymentNotFoundException, если операции не было")
+    void findPayment_missing_throws() {
+        UUID orderUuid = UUID.randomUUID();
+        when(paymentRepository.findByOrderUuidAndOperation(orderUuid, PaymentOperation.PAY))
+                .thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> paymentService.findPayment(orderUuid, PaymentOperation.PAY))
+                .isInstanceOf(PaymentNotFoundException.class)
+                .hasMessageContaining("Error: payment not found");
+    }
+}
@@ -0,0 +1,23 @@
+package com.utochkin.shopservice.cache;
+
+/**
+ * Сообщение об инвалидации near cache, которое экземпляр рассылает остальным через Redis pub/sub.
+ * key == null — очистить кэш целиком.
+ */
+record CacheInvalidation(String origin, String cacheName, String key) {
+
+    private static final char SEPARATOR = '|';
+
+    String encode() {
+        return origin + SEPARATOR + cacheName + SEPARATOR + (key == null ? "" : key);
+    }
+
+    // ключ идёт последним и может содержать разделитель, поэтому режем не больше чем на три части
+    static CacheInvalidation decode(String message) {
+        String[] parts = message.split("\\|", 3);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Некорректное сообщение об инвалидации кэша: " + message);
+        }
+        return new CacheInvalidation(parts[0], parts[1], parts[2].isEmpty() ? null : parts[2]);
+    }
+}
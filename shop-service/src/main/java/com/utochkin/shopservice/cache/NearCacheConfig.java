@@ -0,0 +1,87 @@
+package com.utochkin.shopservice.cache;
+
+import com.utochkin.shopservice.services.ProductCatalogCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.function.Consumer;
+
+/**
+ * Заменяет RedisCacheManager из автоконфигурации на двухуровневый. Настройки spring.cache.redis.*
+ * продолжают действовать для L2; при shop.cache.near.enabled=false остаётся обычный кэш в Redis.
+ */
+@Configuration
+@EnableConfigurationProperties({NearCacheProperties.class, CacheProperties.class})
+@ConditionalOnProperty(name = "shop.cache.near.enabled", havingValue = "true", matchIfMissing = true)
+@Log4j2
+public class NearCacheConfig {
+
+    @Bean
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                             CacheProperties cacheProperties,
+                                             NearCacheProperties nearCacheProperties,
+                                             StringRedisTemplate redisTemplate,
+                                             MeterRegistry meterRegistry,
+                                             @Value("${shop.search.cache-ttl:PT1M}") Duration searchCacheTtl) {
+        RedisCacheConfiguration defaults = redisCacheConfiguration(cacheProperties.getRedis());
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(defaults)
+                // поиск фильтрует по наличию, а заказы кэш не сбрасывают: выдача устаревает не дольше TTL
+                .withCacheConfiguration(ProductCatalogCache.SEARCH_CACHE, defaults.entryTtl(searchCacheTtl))
+                .initialCacheNames(new LinkedHashSet<>(cacheProperties.getCacheNames()))
+                .build();
+        redisCacheManager.afterPropertiesSet();
+
+        Consumer<CacheInvalidation> publisher = invalidation -> {
+            try {
+                redisTemplate.convertAndSend(nearCacheProperties.getChannel(), invalidation.encode());
+            } catch (RuntimeException e) {
+                // запись уже в Redis, а L1 на других экземплярах устареет не дольше, чем на shop.cache.near.ttl
+                log.warn("NearCacheConfig: не удалось разослать инвалидацию кэша {}: {}", invalidation.cacheName(), e.getMessage());
+            }
+        };
+        return new TwoLevelCacheManager(redisCacheManager, nearCacheProperties, publisher, meterRegistry);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer nearCacheInvalidationContainer(RedisConnectionFactory connectionFactory,
+                                                                        TwoLevelCacheManager cacheManager,
+                                                                        NearCacheProperties nearCacheProperties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheManager, new ChannelTopic(nearCacheProperties.getChannel()));
+        return container;
+    }
+
+    // то же, что строит RedisCacheConfiguration автоконфигурация кэша по spring.cache.redis.*
+    private static RedisCacheConfiguration redisCacheConfiguration(CacheProperties.Redis redis) {
+        RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig();
+        if (redis.getTimeToLive() != null) {
+            config = config.entryTtl(redis.getTimeToLive());
+        }
+        if (redis.getKeyPrefix() != null) {
+            config = config.prefixCacheNameWith(redis.getKeyPrefix());
+        }
+        if (!redis.isCacheNullValues()) {
+            config = config.disableCachingNullValues();
+        }
+        if (!redis.isUseKeyPrefix()) {
+            config = config.disableKeyPrefix();
+        }
+        return config;
+    }
+}
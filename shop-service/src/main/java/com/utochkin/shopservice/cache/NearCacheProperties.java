@@ -0,0 +1,25 @@
+package com.utochkin.shopservice.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Near cache — кэш в памяти экземпляра перед общим кэшем в Redis.
+ * ttl ограничивает, сколько экземпляр может отдавать устаревшее значение, если сообщение
+ * об инвалидации через Redis pub/sub до него не дошло.
+ */
+@Data
+@ConfigurationProperties(prefix = "shop.cache.near")
+public class NearCacheProperties {
+
+    private boolean enabled = true;
+
+    // записей на каждый кэш ("product", "products")
+    private long maximumSize = 10_000;
+
+    private Duration ttl = Duration.ofSeconds(30);
+
+    private String channel = "shop:cache:invalidation";
+}
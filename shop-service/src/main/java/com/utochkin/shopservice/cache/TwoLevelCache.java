@@ -0,0 +1,201 @@
+package com.utochkin.shopservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+/**
+ * Двухуровневый кэш: L1 — Caffeine в памяти экземпляра, L2 — общий кэш в Redis.
+ * Чтение идёт в L1, при промахе — в L2, и найденное значение кладётся в L1.
+ * Запись и удаление идут в оба уровня, после чего остальные экземпляры получают
+ * сообщение и сбрасывают у себя L1 по этому ключу.
+ */
+class TwoLevelCache implements org.springframework.cache.Cache {
+
+    private final String name;
+    private final org.springframework.cache.Cache redisCache;
+    // значения хранятся обёрнутыми, чтобы в L1 помещался и закэшированный null
+    private final Cache<String, ValueWrapper> nearCache;
+    private final Consumer<CacheInvalidation> invalidationPublisher;
+    private final String origin;
+
+    private final Counter l1Hits;
+    private final Counter l1Misses;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+
+    TwoLevelCache(String name,
+                  org.springframework.cache.Cache redisCache,
+                  NearCacheProperties properties,
+                  Consumer<CacheInvalidation> invalidationPublisher,
+                  String origin,
+                  MeterRegistry meterRegistry) {
+        this.name = name;
+        this.redisCache = redisCache;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+        this.invalidationPublisher = invalidationPublisher;
+        this.origin = origin;
+        this.l1Hits = counter(meterRegistry, "l1", "hit");
+        this.l1Misses = counter(meterRegistry, "l1", "miss");
+        this.l2Hits = counter(meterRegistry, "l2", "hit");
+        this.l2Misses = counter(meterRegistry, "l2", "miss");
+    }
+
+    private Counter counter(MeterRegistry meterRegistry, String tier, String result) {
+        return Counter.builder("shop.cache.requests")
+                .tag("cache", name)
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    // ключи кэшей — UUID и строки; строковое представление одинаково на всех экземплярах
+    private static String nearKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return redisCache.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String nearKey = nearKey(key);
+        ValueWrapper near = nearCache.getIfPresent(nearKey);
+        if (near != null) {
+            l1Hits.increment();
+            return near;
+        }
+        l1Misses.increment();
+
+        ValueWrapper remote = redisCache.get(key);
+        if (remote == null) {
+            l2Misses.increment();
+            return null;
+        }
+        l2Hits.increment();
+        nearCache.put(nearKey, new SimpleValueWrapper(remote.get()));
+        return remote;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Закэшированное значение не типа [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    /**
+     * Одновременные промахи по одному ключу на экземпляре схлопываются: Caffeine вычисляет значение
+     * для ключа один раз, остальные потоки ждут его результата. Загруженное значение кладётся в Redis
+     * без рассылки инвалидации — это заполнение кэша, а не изменение данных.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String nearKey = nearKey(key);
+        ValueWrapper near = nearCache.getIfPresent(nearKey);
+        if (near != null) {
+            l1Hits.increment();
+            return (T) near.get();
+        }
+        l1Misses.increment();
+
+        return (T) nearCache.get(nearKey, k -> {
+            ValueWrapper remote = redisCache.get(key);
+            if (remote != null) {
+                l2Hits.increment();
+                return new SimpleValueWrapper(remote.get());
+            }
+            l2Misses.increment();
+            T value;
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            redisCache.put(key, value);
+            return new SimpleValueWrapper(value);
+        }).get();
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        redisCache.put(key, value);
+        nearCache.put(nearKey(key), new SimpleValueWrapper(value));
+        publish(nearKey(key));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = redisCache.putIfAbsent(key, value);
+        nearCache.invalidate(nearKey(key));
+        if (existing == null) {
+            publish(nearKey(key));
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        redisCache.evict(key);
+        nearCache.invalidate(nearKey(key));
+        publish(nearKey(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean evicted = redisCache.evictIfPresent(key);
+        nearCache.invalidate(nearKey(key));
+        publish(nearKey(key));
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        redisCache.clear();
+        nearCache.invalidateAll();
+        publish(null);
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean invalidated = redisCache.invalidate();
+        nearCache.invalidateAll();
+        publish(null);
+        return invalidated;
+    }
+
+    /**
+     * Сбрасывает только L1 по сообщению от другого экземпляра; key == null — весь кэш.
+     */
+    void evictLocal(String key) {
+        if (key == null) {
+            nearCache.invalidateAll();
+        } else {
+            nearCache.invalidate(key);
+        }
+    }
+
+    private void publish(String key) {
+        invalidationPublisher.accept(new CacheInvalidation(origin, name, key));
+    }
+}
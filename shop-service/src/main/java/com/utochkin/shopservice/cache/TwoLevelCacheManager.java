@@ -0,0 +1,80 @@
+package com.utochkin.shopservice.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * CacheManager для @Cacheable в ProductService: каждый кэш Redis оборачивается в TwoLevelCache.
+ * Он же слушает канал инвалидации и сбрасывает L1 по сообщениям других экземпляров.
+ */
+@Log4j2
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    private final CacheManager redisCacheManager;
+    private final NearCacheProperties properties;
+    private final Consumer<CacheInvalidation> invalidationPublisher;
+    private final MeterRegistry meterRegistry;
+    // свои же сообщения, вернувшиеся из канала, пропускаются
+    private final String origin = UUID.randomUUID().toString();
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager redisCacheManager,
+                                NearCacheProperties properties,
+                                Consumer<CacheInvalidation> invalidationPublisher,
+                                MeterRegistry meterRegistry) {
+        this.redisCacheManager = redisCacheManager;
+        this.properties = properties;
+        this.invalidationPublisher = invalidationPublisher;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        TwoLevelCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache redisCache = redisCacheManager.getCache(name);
+        if (redisCache == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, cacheName ->
+                new TwoLevelCache(cacheName, redisCache, properties, invalidationPublisher, origin, meterRegistry));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        CacheInvalidation invalidation;
+        try {
+            invalidation = CacheInvalidation.decode(new String(message.getBody(), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            log.warn("TwoLevelCacheManager: {}", e.getMessage());
+            return;
+        }
+        if (origin.equals(invalidation.origin())) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(invalidation.cacheName());
+        if (cache != null) {
+            cache.evictLocal(invalidation.key());
+            log.debug("TwoLevelCacheManager: сброшен near cache {} по ключу {}", invalidation.cacheName(), invalidation.key());
+        }
+    }
+}
@@ -34,6 +34,8 @@ public class Config {
                         .requestMatchers("/shop/api/v1/addProduct/**").hasRole("ADMIN")
                         .requestMatchers("/shop/api/v1/deleteProduct/**").hasRole("ADMIN")
                         .requestMatchers("/shop/api/v1/updateProduct/**").hasRole("ADMIN")
+                        .requestMatchers("/shop/api/v1/shardStock/**").hasRole("ADMIN")
+                        .requestMatchers("/shop/api/v1/importProducts/**").hasRole("ADMIN")
                         .anyRequest().authenticated())
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .oauth2ResourceServer(oauth2 -> oauth2
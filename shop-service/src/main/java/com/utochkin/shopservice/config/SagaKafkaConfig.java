@@ -0,0 +1,73 @@
+package com.utochkin.shopservice.config;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+
+import java.util.Map;
+
+// сообщения саги — JSON-строки: каждый сервис читает их в свои классы, заголовки с именами классов не нужны
+@Configuration
+@ConditionalOnProperty(name = "shop.saga.enabled", havingValue = "true")
+public class SagaKafkaConfig {
+
+    public static final String LISTENER_FACTORY = "sagaListenerFactory";
+
+    private static final int RETRIES = 4;
+    private static final long RETRY_INTERVAL_MS = 1000;
+
+    @Bean(LISTENER_FACTORY)
+    public ConcurrentKafkaListenerContainerFactory<String, String> sagaListenerFactory(KafkaProperties kafkaProperties,
+                                                                                      KafkaTemplate<String, String> sagaKafkaTemplate) {
+        Map<String, Object> props = kafkaProperties.buildConsumerProperties(null);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(props));
+        factory.setCommonErrorHandler(sagaErrorHandler(sagaKafkaTemplate));
+        return factory;
+    }
+
+    // команда повторяется на месте с растущей паузой (ответ не ушёл — брокер может вернуться), затем уходит
+    // в topic-shop-commands-dlt, чтобы не держать партицию и следующие заказы. Нечитаемая команда в DLT идёт сразу
+    private DefaultErrorHandler sagaErrorHandler(KafkaTemplate<String, String> sagaKafkaTemplate) {
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(sagaKafkaTemplate,
+                (record, exception) -> new TopicPartition(SagaTopics.SHOP_COMMANDS_DLT, -1));
+
+        ExponentialBackOffWithMaxRetries backOff = new ExponentialBackOffWithMaxRetries(RETRIES);
+        backOff.setInitialInterval(RETRY_INTERVAL_MS);
+        backOff.setMultiplier(2);
+
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(recoverer, backOff);
+        errorHandler.addNotRetryableExceptions(IllegalArgumentException.class);
+        return errorHandler;
+    }
+
+    @Bean
+    public ProducerFactory<String, String> sagaProducerFactory(KafkaProperties kafkaProperties) {
+        Map<String, Object> props = kafkaProperties.buildProducerProperties(null);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        return new DefaultKafkaProducerFactory<>(props);
+    }
+
+    @Bean
+    public KafkaTemplate<String, String> sagaKafkaTemplate(ProducerFactory<String, String> sagaProducerFactory) {
+        return new KafkaTemplate<>(sagaProducerFactory);
+    }
+}
@@ -0,0 +1,15 @@
+package com.utochkin.shopservice.config;
+
+/**
+ * Топики саги заказа со стороны shop-service: команды пишет order-service, ответы читает он же.
+ */
+public final class SagaTopics {
+
+    public static final String SHOP_COMMANDS = "topic-shop-commands";
+    // команды, которые не удалось выполнить и после повторов, для разбора вручную
+    public static final String SHOP_COMMANDS_DLT = SHOP_COMMANDS + "-dlt";
+    public static final String SHOP_REPLIES = "topic-shop-replies";
+
+    private SagaTopics() {
+    }
+}
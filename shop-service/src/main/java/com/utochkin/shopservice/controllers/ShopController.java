@@ -1,10 +1,20 @@
 package com.utochkin.shopservice.controllers;
 
+import com.utochkin.shopservice.dto.ProductCursorPage;
 import com.utochkin.shopservice.dto.ProductDto;
 import com.utochkin.shopservice.dto.ProductDtoRequest;
+import com.utochkin.shopservice.dto.ProductImportResult;
+import com.utochkin.shopservice.dto.ProductSearchPage;
+import com.utochkin.shopservice.repositories.ProductSearchQuery;
+import com.utochkin.shopservice.repositories.ProductSearchSort;
 import com.utochkin.shopservice.requests.ErrorResponse;
 import com.utochkin.shopservice.requests.OrderRequest;
+import com.utochkin.shopservice.requests.ReservationRequest;
+import com.utochkin.shopservice.requests.ReserveOrderResponse;
+import com.utochkin.shopservice.services.ProductImportFormat;
+import com.utochkin.shopservice.services.ProductImportService;
 import com.utochkin.shopservice.services.ProductService;
+import com.utochkin.shopservice.services.StockReservationService;
 import io.swagger.v3.oas.annotations.Hidden;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -17,10 +27,13 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.UUID;
 
@@ -31,6 +44,8 @@ import java.util.UUID;
 public class ShopController {
 
     private final ProductService productService;
+    private final ProductImportService productImportService;
+    private final StockReservationService stockReservationService;
 
     @PostMapping("/checkOrder")
     @Hidden
@@ -50,6 +65,36 @@ public class ShopController {
         productService.changeTotalQuantityProductsAfterCreateOrder(orderRequests);
     }
 
+    @PostMapping("/reserveOrder")
+    @Hidden
+    ReserveOrderResponse reserveOrder(@RequestBody List<OrderRequest> orderRequests) {
+        return productService.reserveOrder(orderRequests);
+    }
+
+    @PostMapping("/reservations")
+    @Hidden
+    ReserveOrderResponse reserve(@RequestBody @Valid ReservationRequest reservationRequest) {
+        return stockReservationService.reserve(reservationRequest);
+    }
+
+    @PostMapping("/reservations/{reservationId}/confirm")
+    @Hidden
+    void confirmReservation(@PathVariable UUID reservationId) {
+        stockReservationService.confirm(reservationId);
+    }
+
+    @PostMapping("/reservations/{reservationId}/hold")
+    @Hidden
+    void holdReservation(@PathVariable UUID reservationId) {
+        stockReservationService.hold(reservationId);
+    }
+
+    @PostMapping("/reservations/{reservationId}/release")
+    @Hidden
+    void releaseReservation(@PathVariable UUID reservationId) {
+        stockReservationService.release(reservationId);
+    }
+
     @PostMapping("/changeTotalQuantityProductsAfterRefundedOrder")
     @Hidden
     void changeTotalQuantityProductsAfterRefundedOrder(@RequestBody List<OrderRequest> orderRequests) {
@@ -70,7 +115,7 @@ public class ShopController {
                                      @Parameter(description = "Размер страницы", example = "5")
                                      @RequestParam(value = "size", required = false) Integer size,
 
-                                     @Parameter(description = "Сортировка (пример: name,asc или name,desc)", example = "name,asc")
+                                     @Parameter(description = "Сортировка (пример: name,asc или name,desc; по quantity не поддерживается)", example = "name,asc")
                                      @RequestParam(value = "sort", required = false) String[] sort,
 
                                      @Parameter(hidden = true)
@@ -78,6 +123,55 @@ public class ShopController {
         return ResponseEntity.ok(productService.getAllProducts(pageable));
     }
 
+    @GetMapping("/getAllProductsByCursor")
+    @Operation(summary = "Получение товаров магазина курсором (без OFFSET, для глубоких страниц)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Товары успешно получены", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProductCursorPage.class))),
+            @ApiResponse(responseCode = "400", description = "Плохой запрос", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Ошибка сервера", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    ResponseEntity<?> getAllProductsByCursor(@Parameter(description = "Курсор из nextCursor предыдущей страницы (значение поля сортировки,id); без него — первая страница", example = "Микроволновка,42")
+                                             @RequestParam(value = "after", required = false) String after,
+
+                                             @Parameter(description = "Размер страницы (до 100)", example = "20")
+                                             @RequestParam(value = "size", defaultValue = "20") int size,
+
+                                             @Parameter(description = "Сортировка: name или price, asc или desc", example = "name,asc")
+                                             @RequestParam(value = "sort", defaultValue = "name,asc") String sort) {
+        return ResponseEntity.ok(productService.getProductsAfter(sort, after, size));
+    }
+
+    @GetMapping("/searchProducts")
+    @Operation(summary = "Поиск товаров по названию с фильтрами по цене и наличию")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Поиск выполнен", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProductSearchPage.class))),
+            @ApiResponse(responseCode = "400", description = "Плохой запрос", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Ошибка сервера", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    ResponseEntity<?> searchProducts(@Parameter(description = "Слова из названия, можно начало слова или его часть; без него — весь каталог по фильтрам", example = "микроволн")
+                                     @RequestParam(value = "q", required = false) String q,
+
+                                     @Parameter(description = "Минимальная цена", example = "100")
+                                     @RequestParam(value = "minPrice", required = false) Double minPrice,
+
+                                     @Parameter(description = "Максимальная цена", example = "5000")
+                                     @RequestParam(value = "maxPrice", required = false) Double maxPrice,
+
+                                     @Parameter(description = "Только товары в наличии", example = "true")
+                                     @RequestParam(value = "inStock", defaultValue = "false") boolean inStock,
+
+                                     @Parameter(description = "Сортировка: relevance, price_asc или price_desc", example = "relevance")
+                                     @RequestParam(value = "sort", defaultValue = "relevance") String sort,
+
+                                     @Parameter(description = "Номер страницы (до 20)", example = "0")
+                                     @RequestParam(value = "page", defaultValue = "0") int page,
+
+                                     @Parameter(description = "Размер страницы (до 50)", example = "20")
+                                     @RequestParam(value = "size", defaultValue = "20") int size) {
+        ProductSearchQuery query = ProductSearchQuery.of(q, minPrice, maxPrice, inStock, ProductSearchSort.of(sort), page, size);
+        return ResponseEntity.ok(productService.searchProducts(query));
+    }
+
     @GetMapping("/getProducts/{articleId}")
     @Operation(summary = "Получение товара по номеру артикула")
     @ApiResponses(value = {
@@ -122,6 +216,34 @@ public class ShopController {
         return new ResponseEntity<>(String.format("Товар с articleId = %s успешно удален", articleId), HttpStatus.OK);
     }
 
+    @PostMapping(value = "/importProducts", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Массовое добавление и обновление товаров из CSV (заголовок articleId,name,quantity,price) или NDJSON")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Импорт выполнен, отклонённые строки перечислены в errors", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProductImportResult.class))),
+            @ApiResponse(responseCode = "400", description = "Плохой запрос", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Ошибка сервера", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    ResponseEntity<?> importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                     InputStream body) {
+        return ResponseEntity.ok(productImportService.importProducts(body, ProductImportFormat.of(contentType)));
+    }
+
+    @PutMapping("/shardStock/{articleId}")
+    @Operation(summary = "Разбиение остатка товара на бакеты для распродаж (1 — вернуть обычный учёт)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Остаток товара успешно перераспределен", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ProductDto.class))),
+            @ApiResponse(responseCode = "400", description = "Плохой запрос", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "404", description = "Не найдено", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "500", description = "Ошибка сервера", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    ResponseEntity<?> shardStock(@Parameter(
+            description = "UUID артикула товара, остаток которого будет разбит на бакеты",
+            example = "3873f81b-6d10-4860-97f4-0719eb88afaa") @PathVariable UUID articleId,
+                                 @Parameter(description = "Количество бакетов (от 1 до 64)", example = "16")
+                                 @RequestParam(value = "buckets") Integer buckets) {
+        return ResponseEntity.ok(productService.shardStock(articleId, buckets));
+    }
+
     @PutMapping("/updateProduct/{articleId}")
     @Operation(summary = "Обновление товара в магазине")
     @ApiResponses(value = {
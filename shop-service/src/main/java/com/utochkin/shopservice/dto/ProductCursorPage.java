@@ -0,0 +1,20 @@
+package com.utochkin.shopservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Страница каталога при листании курсором")
+public class ProductCursorPage {
+    @Schema(description = "Товары страницы")
+    private List<ProductDto> items;
+
+    @Schema(description = "Курсор следующей страницы для параметра after, null — страница последняя", example = "Микроволновка,42", type = "string")
+    private String nextCursor;
+}
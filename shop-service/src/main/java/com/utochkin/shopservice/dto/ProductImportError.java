@@ -0,0 +1,18 @@
+package com.utochkin.shopservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Ошибка в строке импорта")
+public class ProductImportError {
+    @Schema(description = "Номер строки во входном файле, начиная с 1", example = "42")
+    private long line;
+
+    @Schema(description = "Причина", example = "Цена должна быть положительной")
+    private String message;
+}
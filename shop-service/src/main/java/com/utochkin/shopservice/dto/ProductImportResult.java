@@ -0,0 +1,23 @@
+package com.utochkin.shopservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Итог массового импорта товаров")
+public class ProductImportResult {
+    @Schema(description = "Сколько строк записано (новые и обновлённые товары)", example = "9998")
+    private long imported;
+
+    @Schema(description = "Сколько строк отклонено", example = "2")
+    private long failed;
+
+    @Schema(description = "Ошибки по строкам; в ответ попадают только первые 1000")
+    private List<ProductImportError> errors;
+}
@@ -0,0 +1,23 @@
+package com.utochkin.shopservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Страница результатов поиска товаров")
+public class ProductSearchPage {
+    @Schema(description = "Найденные товары")
+    private List<ProductDto> items;
+
+    @Schema(description = "Номер страницы", example = "0")
+    private int page;
+
+    @Schema(description = "Есть ли следующая страница", example = "true")
+    private boolean hasNext;
+}
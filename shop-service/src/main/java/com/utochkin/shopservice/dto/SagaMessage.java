@@ -0,0 +1,30 @@
+package com.utochkin.shopservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.utochkin.shopservice.models.SagaMessageType;
+import com.utochkin.shopservice.requests.OrderRequest;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+// команда или ответ саги заказа; поля оплаты, которые пишет order-service, shop-service не читает
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class SagaMessage {
+    private UUID orderUuid;
+
+    private SagaMessageType type;
+
+    private List<OrderRequest> items;
+
+    private Double totalAmount;
+
+    private String reason;
+}
@@ -13,4 +13,22 @@ public class ExceptionControllerAdvice {
     public ErrorResponse handlerProductNotFoundException(ProductNotFoundException productNotFoundException) {
         return new ErrorResponse(productNotFoundException.getMessage());
     }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ErrorResponse handlerIllegalArgumentException(IllegalArgumentException illegalArgumentException) {
+        return new ErrorResponse(illegalArgumentException.getMessage());
+    }
+
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    @ExceptionHandler(ReservationNotFoundException.class)
+    public ErrorResponse handlerReservationNotFoundException(ReservationNotFoundException reservationNotFoundException) {
+        return new ErrorResponse(reservationNotFoundException.getMessage());
+    }
+
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(ReservationReleasedException.class)
+    public ErrorResponse handlerReservationReleasedException(ReservationReleasedException reservationReleasedException) {
+        return new ErrorResponse(reservationReleasedException.getMessage());
+    }
 }
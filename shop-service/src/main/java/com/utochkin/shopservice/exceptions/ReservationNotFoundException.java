@@ -0,0 +1,7 @@
+package com.utochkin.shopservice.exceptions;
+
+public class ReservationNotFoundException extends RuntimeException {
+    public ReservationNotFoundException(String msg) {
+        super(msg);
+    }
+}
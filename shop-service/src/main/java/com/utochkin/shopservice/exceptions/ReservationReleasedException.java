@@ -0,0 +1,7 @@
+package com.utochkin.shopservice.exceptions;
+
+public class ReservationReleasedException extends RuntimeException {
+    public ReservationReleasedException(String msg) {
+        super(msg);
+    }
+}
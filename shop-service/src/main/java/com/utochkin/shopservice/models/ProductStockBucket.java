@@ -0,0 +1,31 @@
+package com.utochkin.shopservice.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+@Entity
+@Builder
+@Table(name = "product_stock_buckets",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"article_id", "bucket"}))
+public class ProductStockBucket implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "article_id", nullable = false, columnDefinition = "UUID")
+    private UUID articleId;
+
+    @Column(name = "bucket", nullable = false)
+    private Integer bucket;
+
+    @Column(name = "quantity", nullable = false)
+    private Integer quantity;
+}
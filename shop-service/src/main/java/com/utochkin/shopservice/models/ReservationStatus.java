@@ -0,0 +1,10 @@
+package com.utochkin.shopservice.models;
+
+public enum ReservationStatus {
+    // товар списан с остатка и вернётся, если до expiresAt резерв не подтвердят
+    HELD,
+    // идёт или прошла оплата: резерв не истекает
+    CONFIRMED,
+    // товар возвращён на остаток (отмена или истечение срока)
+    RELEASED
+}
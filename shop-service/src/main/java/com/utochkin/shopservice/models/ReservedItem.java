@@ -0,0 +1,25 @@
+package com.utochkin.shopservice.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+@Embeddable
+public class ReservedItem implements Serializable {
+
+    @Column(name = "article_id", nullable = false, columnDefinition = "UUID")
+    private UUID articleId;
+
+    @Column(name = "quantity", nullable = false)
+    private Integer quantity;
+}
@@ -0,0 +1,14 @@
+package com.utochkin.shopservice.models;
+
+public enum SagaMessageType {
+    // команды от order-service
+    RESERVE_STOCK,
+    CONFIRM_RESERVATION,
+    HOLD_RESERVATION,
+    RELEASE_RESERVATION,
+    // ответы order-service
+    STOCK_RESERVED,
+    STOCK_REJECTED,
+    RESERVATION_CONFIRMED,
+    RESERVATION_EXPIRED
+}
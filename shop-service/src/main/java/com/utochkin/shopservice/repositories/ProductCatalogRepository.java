@@ -0,0 +1,10 @@
+package com.utochkin.shopservice.repositories;
+
+import java.util.List;
+
+public interface ProductCatalogRepository {
+
+    // страница каталога после (afterValue, afterId) по индексу (поле, id), без OFFSET и COUNT;
+    // afterValue == null — первая страница
+    List<ProductListRow> findPageAfter(ProductSortKey sortKey, boolean descending, String afterValue, Long afterId, int limit);
+}
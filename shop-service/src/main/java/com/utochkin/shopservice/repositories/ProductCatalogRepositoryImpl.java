@@ -0,0 +1,38 @@
+package com.utochkin.shopservice.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.List;
+import java.util.UUID;
+
+@RequiredArgsConstructor
+public class ProductCatalogRepositoryImpl implements ProductCatalogRepository {
+
+    private static final String SELECT_SQL = "SELECT id, article_id, name, quantity, price FROM products ";
+
+    static final RowMapper<ProductListRow> ROW_MAPPER = (rs, rowNum) -> new ProductListRow(
+            rs.getLong("id"),
+            rs.getObject("article_id", UUID.class),
+            rs.getString("name"),
+            rs.getInt("quantity"),
+            rs.getDouble("price"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<ProductListRow> findPageAfter(ProductSortKey sortKey, boolean descending, String afterValue, Long afterId, int limit) {
+        // имя колонки берётся из enum, а не из запроса, поэтому подстановка в SQL безопасна
+        String column = sortKey.column();
+        String direction = descending ? "DESC" : "ASC";
+        String orderBy = "ORDER BY " + column + " " + direction + ", id " + direction + " LIMIT ?";
+
+        if (afterValue == null) {
+            return jdbcTemplate.query(SELECT_SQL + orderBy, ROW_MAPPER, limit);
+        }
+        // сравнение кортежей (column, id) > (?, ?) Postgres выполняет одним проходом по индексу (column, id)
+        String where = "WHERE (" + column + ", id) " + (descending ? "<" : ">") + " (?, ?) ";
+        return jdbcTemplate.query(SELECT_SQL + where + orderBy, ROW_MAPPER, sortKey.parse(afterValue), afterId, limit);
+    }
+}
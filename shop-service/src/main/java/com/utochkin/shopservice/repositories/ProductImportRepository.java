@@ -0,0 +1,9 @@
+package com.utochkin.shopservice.repositories;
+
+import java.util.List;
+
+public interface ProductImportRepository {
+
+    // вставляет новые товары и обновляет существующие по article_id одним JDBC-батчем
+    void upsertProducts(List<ProductImportRow> rows);
+}
@@ -0,0 +1,35 @@
+package com.utochkin.shopservice.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class ProductImportRepositoryImpl implements ProductImportRepository {
+
+    // ON CONFLICT опирается на уникальный индекс products_article_id_uidx;
+    // у шардированного товара остаток в бакетах, поэтому products.quantity остаётся 0
+    private static final String UPSERT_SQL = """
+            INSERT INTO products (article_id, name, quantity, price) VALUES (?, ?, ?, ?)
+            ON CONFLICT (article_id) DO UPDATE SET
+                name = EXCLUDED.name,
+                price = EXCLUDED.price,
+                quantity = CASE
+                    WHEN EXISTS (SELECT 1 FROM product_stock_buckets b WHERE b.article_id = EXCLUDED.article_id) THEN 0
+                    ELSE EXCLUDED.quantity
+                END
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void upsertProducts(List<ProductImportRow> rows) {
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setObject(1, row.articleId());
+            ps.setString(2, row.name());
+            ps.setInt(3, row.quantity());
+            ps.setDouble(4, row.price());
+        });
+    }
+}
@@ -0,0 +1,44 @@
+package com.utochkin.shopservice.repositories;
+
+import java.util.UUID;
+
+/**
+ * Строка массового импорта; line — номер строки во входном файле, для отчёта об ошибках.
+ */
+public record ProductImportRow(long line, UUID articleId, String name, int quantity, double price) {
+
+    private static final int MAX_NAME_LENGTH = 255;
+
+    /**
+     * Разбирает и проверяет поля строки; пустой articleId означает новый товар.
+     */
+    public static ProductImportRow of(long line, String articleId, String name, String quantity, String price) {
+        UUID id;
+        try {
+            id = articleId == null || articleId.isBlank() ? UUID.randomUUID() : UUID.fromString(articleId.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Некорректный articleId: " + articleId);
+        }
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Не указано название товара");
+        }
+        if (name.length() > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Название товара длиннее " + MAX_NAME_LENGTH + " символов");
+        }
+        int parsedQuantity;
+        double parsedPrice;
+        try {
+            parsedQuantity = Integer.parseInt(quantity == null ? "" : quantity.trim());
+            parsedPrice = Double.parseDouble(price == null ? "" : price.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Количество и цена должны быть числами");
+        }
+        if (parsedQuantity < 0) {
+            throw new IllegalArgumentException("Количество не может быть отрицательным");
+        }
+        if (!(parsedPrice > 0) || Double.isInfinite(parsedPrice)) {
+            throw new IllegalArgumentException("Цена должна быть положительной");
+        }
+        return new ProductImportRow(line, id, name.trim(), parsedQuantity, parsedPrice);
+    }
+}
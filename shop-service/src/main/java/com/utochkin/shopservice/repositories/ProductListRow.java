@@ -0,0 +1,22 @@
+package com.utochkin.shopservice.repositories;
+
+import com.utochkin.shopservice.dto.ProductDto;
+
+import java.util.UUID;
+
+/**
+ * Строка каталога прямо из SQL, без загрузки сущности Product; id нужен для курсора.
+ */
+public record ProductListRow(long id, UUID articleId, String name, int quantity, double price) {
+
+    public ProductDto toDto() {
+        return new ProductDto(articleId, name, quantity, price);
+    }
+
+    public String sortValue(ProductSortKey sortKey) {
+        return switch (sortKey) {
+            case NAME -> name;
+            case PRICE -> Double.toString(price);
+        };
+    }
+}
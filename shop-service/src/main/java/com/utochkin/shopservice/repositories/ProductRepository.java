@@ -1,22 +1,41 @@
 package com.utochkin.shopservice.repositories;
 
+import com.utochkin.shopservice.dto.ProductDto;
 import com.utochkin.shopservice.models.Product;
 import feign.Param;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductStockRepository, ProductCatalogRepository, ProductSearchRepository, ProductImportRepository {
 
     @Query("SELECT p FROM Product p WHERE p.articleId IN :articleIds")
     List<Product> findAllByArticleIds(@Param("articleIds") List<UUID> articleIds);
 
+    // строки блокируются в порядке id, чтобы параллельные резервы не ловили deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.articleId IN :articleIds ORDER BY p.id")
+    List<Product> findAllByArticleIdsForUpdate(@Param("articleIds") List<UUID> articleIds);
+
+    // только остаток, без загрузки сущностей
+    @Query("SELECT p.articleId, p.quantity FROM Product p WHERE p.articleId IN :articleIds")
+    List<Object[]> findQuantities(@Param("articleIds") Collection<UUID> articleIds);
+
+    // страница каталога сразу в ProductDto; Slice не делает COUNT-запрос, как Page
+    @Query("SELECT new com.utochkin.shopservice.dto.ProductDto(p.articleId, p.name, p.quantity, p.price) FROM Product p")
+    Slice<ProductDto> findAllProductDtos(Pageable pageable);
+
     Optional <Product> findByArticleId(UUID articleId);
 
     void deleteByArticleId(UUID articleId);
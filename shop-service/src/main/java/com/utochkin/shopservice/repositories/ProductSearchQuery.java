@@ -0,0 +1,58 @@
+package com.utochkin.shopservice.repositories;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Нормализованный поисковый запрос: слова в нижнем регистре без знаков препинания.
+ * Одинаковые по смыслу запросы ("  Телефон, " и "телефон") дают один cacheKey.
+ */
+public record ProductSearchQuery(List<String> terms,
+                                 Double minPrice,
+                                 Double maxPrice,
+                                 boolean inStock,
+                                 ProductSearchSort sort,
+                                 int page,
+                                 int size) {
+
+    public static final int MAX_PAGE_SIZE = 50;
+    // дальше поиск не листается: нужные товары должны находиться уточнением запроса
+    public static final int MAX_PAGE = 20;
+    private static final int MAX_TERMS = 8;
+
+    public ProductSearchQuery {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Размер страницы поиска должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        if (page < 0 || page > MAX_PAGE) {
+            throw new IllegalArgumentException("Номер страницы поиска должен быть от 0 до " + MAX_PAGE);
+        }
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new IllegalArgumentException("minPrice больше maxPrice");
+        }
+        terms = List.copyOf(terms);
+    }
+
+    public static ProductSearchQuery of(String text, Double minPrice, Double maxPrice, boolean inStock,
+                                        ProductSearchSort sort, int page, int size) {
+        List<String> terms = text == null ? List.of() : Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(term -> !term.isEmpty())
+                .distinct()
+                .limit(MAX_TERMS)
+                .toList();
+        return new ProductSearchQuery(terms, minPrice, maxPrice, inStock, sort, page, size);
+    }
+
+    /**
+     * Запрос для to_tsquery: каждое слово как префикс, все слова обязательны ("тел:* & сам:*").
+     * Слова состоят только из букв и цифр, поэтому операторы tsquery в них не попадут.
+     */
+    public String tsQuery() {
+        return String.join(" & ", terms.stream().map(term -> term + ":*").toList());
+    }
+
+    public String cacheKey() {
+        return String.join(" ", terms) + "|" + minPrice + "|" + maxPrice + "|" + inStock + "|" + sort + "|" + page + "|" + size;
+    }
+}
@@ -0,0 +1,9 @@
+package com.utochkin.shopservice.repositories;
+
+import java.util.List;
+
+public interface ProductSearchRepository {
+
+    // поиск по tsvector/триграммам с фильтрами по цене и наличию; возвращает до query.size() + 1 строк
+    List<ProductListRow> search(ProductSearchQuery query);
+}
@@ -0,0 +1,79 @@
+package com.utochkin.shopservice.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Поиск товаров на Postgres: products.search_vector (tsvector по name, GIN-индекс) находит слова
+ * по префиксу, а ILIKE по GIN-индексу pg_trgm — подстроки внутри слов ("волнов" в "Микроволновка").
+ * Индексы и колонка создаются в changelog/tables/create_search_indexes_products.sql.
+ */
+@RequiredArgsConstructor
+public class ProductSearchRepositoryImpl implements ProductSearchRepository {
+
+    // короче трёх букв триграммный индекс не помогает, такие слова ищутся только по префиксу
+    private static final int MIN_SUBSTRING_TERM = 3;
+
+    // у шардированных товаров products.quantity = 0, остаток лежит в бакетах
+    private static final String IN_STOCK_SQL = "(p.quantity > 0 OR EXISTS (SELECT 1 FROM product_stock_buckets b "
+            + "WHERE b.article_id = p.article_id AND b.quantity > 0))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<ProductListRow> search(ProductSearchQuery query) {
+        StringBuilder sql = new StringBuilder("SELECT p.id, p.article_id, p.name, p.quantity, p.price FROM products p WHERE TRUE");
+        List<Object> args = new ArrayList<>();
+
+        if (!query.terms().isEmpty()) {
+            sql.append(" AND (p.search_vector @@ to_tsquery('simple', ?)");
+            args.add(query.tsQuery());
+            List<String> substringTerms = query.terms().stream()
+                    .filter(term -> term.length() >= MIN_SUBSTRING_TERM)
+                    .toList();
+            if (!substringTerms.isEmpty()) {
+                sql.append(" OR (");
+                for (int i = 0; i < substringTerms.size(); i++) {
+                    sql.append(i == 0 ? "" : " AND ").append("p.name ILIKE ?");
+                    args.add("%" + substringTerms.get(i) + "%");
+                }
+                sql.append(")");
+            }
+            sql.append(")");
+        }
+        if (query.minPrice() != null) {
+            sql.append(" AND p.price >= ?");
+            args.add(query.minPrice());
+        }
+        if (query.maxPrice() != null) {
+            sql.append(" AND p.price <= ?");
+            args.add(query.maxPrice());
+        }
+        if (query.inStock()) {
+            sql.append(" AND ").append(IN_STOCK_SQL);
+        }
+
+        switch (query.sort()) {
+            case PRICE_ASC -> sql.append(" ORDER BY p.price ASC, p.id ASC");
+            case PRICE_DESC -> sql.append(" ORDER BY p.price DESC, p.id DESC");
+            case RELEVANCE -> {
+                if (query.terms().isEmpty()) {
+                    sql.append(" ORDER BY p.name ASC, p.id ASC");
+                } else {
+                    sql.append(" ORDER BY ts_rank(p.search_vector, to_tsquery('simple', ?)) + similarity(p.name, ?) DESC, p.id ASC");
+                    args.add(query.tsQuery());
+                    args.add(String.join(" ", query.terms()));
+                }
+            }
+        }
+
+        sql.append(" LIMIT ? OFFSET ?");
+        args.add(query.size() + 1);
+        args.add(query.page() * query.size());
+
+        return jdbcTemplate.query(sql.toString(), ProductCatalogRepositoryImpl.ROW_MAPPER, args.toArray());
+    }
+}
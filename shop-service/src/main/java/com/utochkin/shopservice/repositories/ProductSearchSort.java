@@ -0,0 +1,16 @@
+package com.utochkin.shopservice.repositories;
+
+import java.util.Arrays;
+
+public enum ProductSearchSort {
+    RELEVANCE,
+    PRICE_ASC,
+    PRICE_DESC;
+
+    public static ProductSearchSort of(String value) {
+        return Arrays.stream(values())
+                .filter(sort -> sort.name().equalsIgnoreCase(value.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Сортировка поиска: relevance, price_asc или price_desc"));
+    }
+}
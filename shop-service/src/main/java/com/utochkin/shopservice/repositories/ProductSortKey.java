@@ -0,0 +1,42 @@
+package com.utochkin.shopservice.repositories;
+
+import java.util.Arrays;
+
+/**
+ * Поля, по которым каталог листается курсором. Для каждого есть индекс (поле, id) в changelog;
+ * quantity сюда не входит: остаток меняется на каждом заказе, и индекс по нему замедлил бы списания.
+ */
+public enum ProductSortKey {
+    NAME("name") {
+        @Override
+        public Object parse(String value) {
+            return value;
+        }
+    },
+    PRICE("price") {
+        @Override
+        public Object parse(String value) {
+            return Double.valueOf(value);
+        }
+    };
+
+    private final String column;
+
+    ProductSortKey(String column) {
+        this.column = column;
+    }
+
+    String column() {
+        return column;
+    }
+
+    // значение поля сортировки из курсора; для некорректного значения — IllegalArgumentException
+    public abstract Object parse(String value);
+
+    public static ProductSortKey of(String property) {
+        return Arrays.stream(values())
+                .filter(key -> key.column.equalsIgnoreCase(property))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Сортировка по курсору возможна только по полям name и price"));
+    }
+}
@@ -0,0 +1,55 @@
+package com.utochkin.shopservice.repositories;
+
+import com.utochkin.shopservice.models.ProductStockBucket;
+import feign.Param;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+
+@Repository
+public interface ProductStockBucketRepository extends JpaRepository<ProductStockBucket, Long> {
+
+    @Query("SELECT DISTINCT b.articleId FROM ProductStockBucket b WHERE b.articleId IN :articleIds")
+    List<UUID> findShardedArticleIds(@Param("articleIds") Collection<UUID> articleIds);
+
+    @Query("SELECT DISTINCT b.articleId FROM ProductStockBucket b")
+    List<UUID> findAllShardedArticleIds();
+
+    // возвращает пары [articleId, сумма по бакетам]
+    @Query("SELECT b.articleId, SUM(b.quantity) FROM ProductStockBucket b WHERE b.articleId IN :articleIds GROUP BY b.articleId")
+    List<Object[]> sumQuantities(@Param("articleIds") Collection<UUID> articleIds);
+
+    // чтение без блокировок: кандидаты для случайного выбора бакета
+    @Query("SELECT b.bucket FROM ProductStockBucket b WHERE b.articleId = :articleId AND b.quantity >= :quantity")
+    List<Integer> findBucketsWithAtLeast(@Param("articleId") UUID articleId, @Param("quantity") Integer quantity);
+
+    @Modifying
+    @Query("UPDATE ProductStockBucket b SET b.quantity = b.quantity - :quantity " +
+            "WHERE b.articleId = :articleId AND b.bucket = :bucket AND b.quantity >= :quantity")
+    int decrementBucket(@Param("articleId") UUID articleId, @Param("bucket") Integer bucket, @Param("quantity") Integer quantity);
+
+    @Modifying
+    @Query("UPDATE ProductStockBucket b SET b.quantity = b.quantity + :quantity " +
+            "WHERE b.articleId = :articleId AND b.bucket = :bucket")
+    int incrementBucket(@Param("articleId") UUID articleId, @Param("bucket") Integer bucket, @Param("quantity") Integer quantity);
+
+    @Query("SELECT COUNT(b) FROM ProductStockBucket b WHERE b.articleId = :articleId")
+    int countByArticleId(@Param("articleId") UUID articleId);
+
+    // бакеты блокируются в порядке номера, чтобы перераспределение и списание по нескольким бакетам не ловили deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM ProductStockBucket b WHERE b.articleId = :articleId ORDER BY b.bucket")
+    List<ProductStockBucket> findAllByArticleIdForUpdate(@Param("articleId") UUID articleId);
+
+    @Modifying
+    @Query("DELETE FROM ProductStockBucket b WHERE b.articleId = :articleId")
+    void deleteAllByArticleId(@Param("articleId") UUID articleId);
+}
@@ -0,0 +1,14 @@
+package com.utochkin.shopservice.repositories;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public interface ProductStockRepository {
+
+    // условное списание остатков одним JDBC batch, возвращает артикулы, по которым списать не удалось
+    List<UUID> decrementQuantities(Map<UUID, Integer> quantities);
+
+    // возврат остатков одним JDBC batch, возвращает артикулы, которые не найдены
+    List<UUID> incrementQuantities(Map<UUID, Integer> quantities);
+}
@@ -0,0 +1,77 @@
+package com.utochkin.shopservice.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@RequiredArgsConstructor
+public class ProductStockRepositoryImpl implements ProductStockRepository {
+
+    private static final String DECREMENT_SQL =
+            "UPDATE products SET quantity = quantity - ? WHERE article_id = ? AND quantity >= ?";
+
+    private static final String INCREMENT_SQL =
+            "UPDATE products SET quantity = quantity + ? WHERE article_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<UUID> decrementQuantities(Map<UUID, Integer> quantities) {
+        List<Map.Entry<UUID, Integer>> lines = new ArrayList<>(quantities.entrySet());
+
+        int[] updated = jdbcTemplate.batchUpdate(DECREMENT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<UUID, Integer> line = lines.get(i);
+                ps.setInt(1, line.getValue());
+                ps.setObject(2, line.getKey());
+                ps.setInt(3, line.getValue());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return lines.size();
+            }
+        });
+
+        return failedLines(lines, updated);
+    }
+
+    @Override
+    public List<UUID> incrementQuantities(Map<UUID, Integer> quantities) {
+        List<Map.Entry<UUID, Integer>> lines = new ArrayList<>(quantities.entrySet());
+
+        int[] updated = jdbcTemplate.batchUpdate(INCREMENT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<UUID, Integer> line = lines.get(i);
+                ps.setInt(1, line.getValue());
+                ps.setObject(2, line.getKey());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return lines.size();
+            }
+        });
+
+        return failedLines(lines, updated);
+    }
+
+    private static List<UUID> failedLines(List<Map.Entry<UUID, Integer>> lines, int[] updated) {
+        List<UUID> failed = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (updated[i] == 0) {
+                failed.add(lines.get(i).getKey());
+            }
+        }
+        return failed;
+    }
+}
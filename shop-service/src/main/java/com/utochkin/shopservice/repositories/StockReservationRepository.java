@@ -0,0 +1,44 @@
+package com.utochkin.shopservice.repositories;
+
+import com.utochkin.shopservice.models.ReservationStatus;
+import com.utochkin.shopservice.models.StockReservation;
+import feign.Param;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, UUID> {
+
+    // просроченные резервы по возрастанию срока идут по частичному индексу (expires_at) WHERE status = 'HELD';
+    // SKIP LOCKED: резервы, которые прямо сейчас подтверждаются, достанутся следующему проходу
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT r FROM StockReservation r WHERE r.status = com.utochkin.shopservice.models.ReservationStatus.HELD " +
+            "AND r.expiresAt <= :now ORDER BY r.expiresAt")
+    List<StockReservation> findExpiredForUpdate(@Param("now") Instant now, Limit limit);
+
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.status = :newStatus, r.updatedAt = :now " +
+            "WHERE r.reservationId = :reservationId AND r.status = :expectedStatus")
+    int compareAndSetStatus(@Param("reservationId") UUID reservationId,
+                            @Param("expectedStatus") ReservationStatus expectedStatus,
+                            @Param("newStatus") ReservationStatus newStatus,
+                            @Param("now") Instant now);
+
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.status = com.utochkin.shopservice.models.ReservationStatus.HELD, " +
+            "r.expiresAt = :expiresAt, r.updatedAt = :now " +
+            "WHERE r.reservationId = :reservationId AND r.status <> com.utochkin.shopservice.models.ReservationStatus.RELEASED")
+    int hold(@Param("reservationId") UUID reservationId, @Param("expiresAt") Instant expiresAt, @Param("now") Instant now);
+}
@@ -0,0 +1,24 @@
+package com.utochkin.shopservice.requests;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservationRequest {
+    // orderUuid заказа: повтор запроса с тем же id не списывает товар второй раз
+    @NotNull
+    private UUID reservationId;
+
+    @NotEmpty
+    @Valid
+    private List<OrderRequest> items;
+}
@@ -0,0 +1,18 @@
+package com.utochkin.shopservice.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReserveOrderResponse {
+    private Boolean reserved;
+
+    private Double totalAmount;
+
+    private List<ReservedProduct> reservedProducts;
+}
@@ -0,0 +1,18 @@
+package com.utochkin.shopservice.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservedProduct {
+    private UUID articleId;
+
+    private Integer quantity;
+
+    private Double price;
+}
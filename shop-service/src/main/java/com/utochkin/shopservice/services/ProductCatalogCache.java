@@ -0,0 +1,178 @@
+package com.utochkin.shopservice.services;
+
+import com.utochkin.shopservice.dto.ProductDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Кэш каталога: страница хранит только список articleId в порядке выдачи, а сами товары
+ * берутся из кэша "product". Поэтому правка товара обновляет одну запись "product", а страницы
+ * сбрасываются, только если меняется их состав (добавление, удаление) или порядок.
+ * Страницы лежат в отдельном кэше на каждый набор изменяемых полей сортировки ("products",
+ * "products:name", "products:name+price", ...), и смена цены не трогает страницы, отсортированные по имени.
+ * Одновременные промахи по одному ключу загружаются один раз через Cache.get(key, valueLoader).
+ * Результаты поиска лежат в "product-search" под нормализованным запросом и сбрасываются при любой
+ * правке каталога: от имени, цены и остатка зависят и состав выдачи, и её порядок.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class ProductCatalogCache {
+
+    public static final String PRODUCT_CACHE = "product";
+    public static final String PAGES_CACHE = "products";
+    public static final String SEARCH_CACHE = "product-search";
+
+    // поля товара, которые меняются правкой и от которых зависит порядок страницы
+    static final List<String> MUTABLE_SORT_PROPERTIES = List.of("name", "price", "quantity");
+
+    private final CacheManager cacheManager;
+
+    /**
+     * Страница каталога: список articleId из кэша страниц, товары — из кэша "product".
+     * pageLoader загружает страницу целиком при промахе, productsLoader — товары, которых нет в кэше.
+     */
+    public List<ProductDto> page(Pageable pageable,
+                                 Supplier<List<ProductDto>> pageLoader,
+                                 Function<List<UUID>, List<ProductDto>> productsLoader) {
+        Cache products = cache(PRODUCT_CACHE);
+        Map<UUID, ProductDto> resolved = new HashMap<>();
+
+        List<UUID> articleIds = cache(pagesCacheName(pageable.getSort())).get(pageKey(pageable), () -> {
+            List<ProductDto> page = pageLoader.get();
+            // товары загруженной страницы сразу попадают в кэш "product"
+            page.forEach(productDto -> resolved.put(productDto.getArticleId(),
+                    products.get(productDto.getArticleId(), () -> productDto)));
+            return page.stream()
+                    .map(ProductDto::getArticleId)
+                    .collect(Collectors.toCollection(ArrayList::new));
+        });
+
+        List<UUID> missing = new ArrayList<>();
+        for (UUID articleId : articleIds) {
+            if (resolved.containsKey(articleId)) {
+                continue;
+            }
+            ProductDto cached = products.get(articleId, ProductDto.class);
+            if (cached != null) {
+                resolved.put(articleId, cached);
+            } else {
+                missing.add(articleId);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            log.debug("ProductCatalogCache: догружаем товары страницы {}", missing);
+            for (ProductDto productDto : productsLoader.apply(missing)) {
+                resolved.put(productDto.getArticleId(), products.get(productDto.getArticleId(), () -> productDto));
+            }
+        }
+
+        // товар мог быть удалён после того, как страница попала в кэш
+        return articleIds.stream()
+                .map(resolved::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Товар из кэша "product"; одновременные промахи по одному articleId загружают его один раз.
+     */
+    public ProductDto product(UUID articleId, Supplier<ProductDto> loader) {
+        try {
+            return cache(PRODUCT_CACHE).get(articleId, loader::get);
+        } catch (Cache.ValueRetrievalException e) {
+            // исключение загрузчика (например, ProductNotFoundException) отдаётся как есть
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Результат поиска по нормализованному запросу; одновременные промахи выполняют запрос один раз.
+     */
+    public List<ProductDto> search(String queryKey, Supplier<List<ProductDto>> loader) {
+        return cache(SEARCH_CACHE).get(queryKey, () -> new ArrayList<>(loader.get()));
+    }
+
+    /**
+     * Сбрасывает весь каталог: после массового импорта одна очистка дешевле, чем тысячи evict по одному товару.
+     */
+    public void evictAll() {
+        cache(PRODUCT_CACHE).clear();
+        evictAllPages();
+    }
+
+    /**
+     * Сбрасывает все страницы: изменился состав каталога.
+     */
+    public void evictAllPages() {
+        evictPagesSortedBy(MUTABLE_SORT_PROPERTIES);
+        cache(PAGES_CACHE).clear();
+    }
+
+    /**
+     * Сбрасывает только страницы, отсортированные хотя бы по одному из изменившихся полей.
+     */
+    public void evictPagesSortedBy(Collection<String> changedProperties) {
+        if (changedProperties.isEmpty()) {
+            return;
+        }
+        int combinations = 1 << MUTABLE_SORT_PROPERTIES.size();
+        for (int mask = 1; mask < combinations; mask++) {
+            List<String> properties = new ArrayList<>();
+            for (int i = 0; i < MUTABLE_SORT_PROPERTIES.size(); i++) {
+                if ((mask & (1 << i)) != 0) {
+                    properties.add(MUTABLE_SORT_PROPERTIES.get(i));
+                }
+            }
+            if (properties.stream().anyMatch(changedProperties::contains)) {
+                cache(PAGES_CACHE + ":" + String.join("+", properties)).clear();
+            }
+        }
+        cache(SEARCH_CACHE).clear();
+        log.info("ProductCatalogCache: сброшены страницы с сортировкой по {}", changedProperties);
+    }
+
+    static String pageKey(Pageable pageable) {
+        return pageable.getPageNumber() + "-" + pageable.getPageSize() + "-" + pageable.getSort();
+    }
+
+    static String pagesCacheName(Sort sort) {
+        Set<String> properties = sort.stream()
+                .map(Sort.Order::getProperty)
+                .collect(Collectors.toSet());
+        // тот же порядок полей, что в evictPagesSortedBy
+        String sortedBy = MUTABLE_SORT_PROPERTIES.stream()
+                .filter(properties::contains)
+                .collect(Collectors.joining("+"));
+        return sortedBy.isEmpty() ? PAGES_CACHE : PAGES_CACHE + ":" + sortedBy;
+    }
+
+    private Cache cache(String name) {
+        Cache cache = cacheManager.getCache(name);
+        if (cache == null) {
+            throw new IllegalStateException("Кэш " + name + " не настроен");
+        }
+        return cache;
+    }
+}
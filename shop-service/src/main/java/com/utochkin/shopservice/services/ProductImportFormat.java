@@ -0,0 +1,23 @@
+package com.utochkin.shopservice.services;
+
+import org.springframework.http.MediaType;
+
+public enum ProductImportFormat {
+    CSV(MediaType.valueOf("text/csv")),
+    NDJSON(MediaType.APPLICATION_NDJSON);
+
+    private final MediaType mediaType;
+
+    ProductImportFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public static ProductImportFormat of(MediaType contentType) {
+        for (ProductImportFormat format : values()) {
+            if (format.mediaType.isCompatibleWith(contentType)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Импорт принимает text/csv или application/x-ndjson");
+    }
+}
@@ -0,0 +1,233 @@
+package com.utochkin.shopservice.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utochkin.shopservice.dto.ProductImportError;
+import com.utochkin.shopservice.dto.ProductImportResult;
+import com.utochkin.shopservice.repositories.ProductImportRow;
+import com.utochkin.shopservice.repositories.ProductRepository;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Массовый импорт каталога: тело читается построчно и не держится в памяти целиком,
+ * строки пишутся батчами INSERT ... ON CONFLICT (article_id), каждый батч — в своей транзакции.
+ * Если батч не записался, его строки повторяются по одной, чтобы ошибка досталась только
+ * виноватой строке. Кэш каталога сбрасывается один раз в конце.
+ */
+@Service
+@Log4j2
+public class ProductImportService {
+
+    static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final List<String> CSV_REQUIRED_COLUMNS = List.of("name", "quantity", "price");
+
+    private final ProductRepository productRepository;
+    private final StockBucketService stockBucketService;
+    private final ProductCatalogCache productCatalogCache;
+    private final StockView stockView;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    public ProductImportService(ProductRepository productRepository,
+                                StockBucketService stockBucketService,
+                                ProductCatalogCache productCatalogCache,
+                                StockView stockView,
+                                TransactionTemplate transactionTemplate,
+                                ObjectMapper objectMapper,
+                                @Value("${shop.import.batch-size:500}") int batchSize) {
+        this.productRepository = productRepository;
+        this.stockBucketService = stockBucketService;
+        this.productCatalogCache = productCatalogCache;
+        this.stockView = stockView;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    public ProductImportResult importProducts(InputStream body, ProductImportFormat format) {
+        log.info("ProductImportService: начат импорт товаров в формате {}", format);
+        Progress progress = new Progress();
+        List<ProductImportRow> batch = new ArrayList<>(batchSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            Map<String, Integer> columns = null;
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (format == ProductImportFormat.CSV && columns == null) {
+                    columns = csvHeader(line);
+                    continue;
+                }
+                try {
+                    batch.add(format == ProductImportFormat.CSV ? csvRow(lineNumber, line, columns) : jsonRow(lineNumber, line));
+                } catch (IllegalArgumentException e) {
+                    progress.fail(lineNumber, e.getMessage());
+                }
+                if (batch.size() >= batchSize) {
+                    write(batch, progress);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch, progress);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать тело импорта", e);
+        } finally {
+            // батчи, записанные до обрыва загрузки, уже закоммичены — кэш сбрасывается и в этом случае
+            if (progress.imported > 0) {
+                productCatalogCache.evictAll();
+            }
+        }
+
+        log.info("ProductImportService: импорт завершён, записано {}, отклонено {}", progress.imported, progress.failed);
+        return new ProductImportResult(progress.imported, progress.failed, progress.errors);
+    }
+
+    private void write(List<ProductImportRow> batch, Progress progress) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> upsert(batch));
+            progress.imported += batch.size();
+        } catch (DataAccessException e) {
+            log.warn("ProductImportService: батч из {} строк не записан, повторяем по одной: {}", batch.size(), e.getMessage());
+            for (ProductImportRow row : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> upsert(List.of(row)));
+                    progress.imported++;
+                } catch (DataAccessException rowError) {
+                    progress.fail(row.line(), NestedExceptionUtils.getMostSpecificCause(rowError).getMessage());
+                }
+            }
+        }
+    }
+
+    private void upsert(List<ProductImportRow> rows) {
+        productRepository.upsertProducts(rows);
+
+        List<UUID> articleIds = rows.stream().map(ProductImportRow::articleId).toList();
+        Set<UUID> sharded = stockBucketService.findSharded(articleIds);
+        for (ProductImportRow row : rows) {
+            if (sharded.contains(row.articleId())) {
+                stockBucketService.distribute(row.articleId(), row.quantity(), stockBucketService.bucketCount(row.articleId()));
+            }
+        }
+        stockView.evictAfterCommit(articleIds);
+    }
+
+    private static Map<String, Integer> csvHeader(String line) {
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = parseCsvLine(line);
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).trim().toLowerCase(Locale.ROOT).replace("_", "");
+            columns.put(name.equals("articleid") ? "articleId" : name, i);
+        }
+        if (!columns.keySet().containsAll(CSV_REQUIRED_COLUMNS)) {
+            throw new IllegalArgumentException("В заголовке CSV должны быть колонки " + CSV_REQUIRED_COLUMNS + " и необязательная articleId");
+        }
+        return columns;
+    }
+
+    private static ProductImportRow csvRow(long lineNumber, String line, Map<String, Integer> columns) {
+        List<String> values = parseCsvLine(line);
+        return ProductImportRow.of(lineNumber,
+                column(values, columns.get("articleId")),
+                column(values, columns.get("name")),
+                column(values, columns.get("quantity")),
+                column(values, columns.get("price")));
+    }
+
+    private ProductImportRow jsonRow(long lineNumber, String line) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Строка не является JSON-объектом");
+        }
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("Строка не является JSON-объектом");
+        }
+        return ProductImportRow.of(lineNumber,
+                node.path("articleId").asText(null),
+                node.path("name").asText(null),
+                node.path("quantity").asText(null),
+                node.path("price").asText(null));
+    }
+
+    private static String column(List<String> values, Integer index) {
+        return index == null || index >= values.size() ? null : values.get(index);
+    }
+
+    /**
+     * Поля одной строки CSV: разделитель — запятая, поле в кавычках может содержать запятые
+     * и удвоенные кавычки. Переводы строк внутри полей не поддерживаются: строка файла — один товар.
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Незакрытая кавычка в строке CSV");
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private static final class Progress {
+        private long imported;
+        private long failed;
+        private final List<ProductImportError> errors = new ArrayList<>();
+
+        private void fail(long line, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ProductImportError(line, message));
+            }
+        }
+    }
+}
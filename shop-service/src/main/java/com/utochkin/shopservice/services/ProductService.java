@@ -1,29 +1,38 @@
 package com.utochkin.shopservice.services;
 
 
+import com.utochkin.shopservice.dto.ProductCursorPage;
 import com.utochkin.shopservice.dto.ProductDto;
 import com.utochkin.shopservice.dto.ProductDtoRequest;
+import com.utochkin.shopservice.dto.ProductSearchPage;
 import com.utochkin.shopservice.exceptions.ProductNotFoundException;
 import com.utochkin.shopservice.mappers.ProductMapper;
 import com.utochkin.shopservice.models.Product;
+import com.utochkin.shopservice.repositories.ProductListRow;
 import com.utochkin.shopservice.repositories.ProductRepository;
+import com.utochkin.shopservice.repositories.ProductSearchQuery;
+import com.utochkin.shopservice.repositories.ProductSortKey;
 import com.utochkin.shopservice.requests.OrderRequest;
+import com.utochkin.shopservice.requests.ReserveOrderResponse;
+import com.utochkin.shopservice.requests.ReservedProduct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -35,6 +44,11 @@ public class ProductService {
 
     private final ProductRepository productRepository;
     private final ProductMapper productMapper;
+    private final StockBucketService stockBucketService;
+    private final ProductCatalogCache productCatalogCache;
+    private final StockView stockView;
+
+    static final int MAX_CURSOR_PAGE_SIZE = 100;
 
     private List<Product> fetchProducts(List<OrderRequest> orderRequests) {
         List<UUID> ids = orderRequests.stream()
@@ -50,6 +64,7 @@ public class ProductService {
         List<Product> products = fetchProducts(orderRequests);
 
         Map<UUID, Integer> productQuantities = products.stream().collect(Collectors.toMap(Product::getArticleId, Product::getQuantity));
+        productQuantities.putAll(stockBucketService.sumQuantities(productQuantities.keySet()));
 
         boolean allAvailable = orderRequests.stream()
                 .allMatch(orderRequest -> {
@@ -88,94 +103,321 @@ public class ProductService {
         return rounded.doubleValue();
     }
 
+    private static Map<UUID, Integer> mergeQuantities(List<OrderRequest> orderRequests) {
+        return orderRequests.stream()
+                .collect(Collectors.toMap(OrderRequest::getArticleId, OrderRequest::getQuantity, Integer::sum, LinkedHashMap::new));
+    }
+
+    // шардированные артикулы сортируются, чтобы параллельные заказы брали блокировки бакетов в одном порядке
+    private static List<UUID> sortedSharded(Map<UUID, Integer> quantities, Set<UUID> sharded) {
+        return quantities.keySet().stream()
+                .filter(sharded::contains)
+                .sorted()
+                .toList();
+    }
+
+    private static Map<UUID, Integer> withoutSharded(Map<UUID, Integer> quantities, Set<UUID> sharded) {
+        Map<UUID, Integer> plain = new LinkedHashMap<>(quantities);
+        plain.keySet().removeAll(sharded);
+        return plain;
+    }
+
     @Transactional
     public void changeTotalQuantityProductsAfterCreateOrder(List<OrderRequest> orderRequests) {
         log.info("ProductService: уменьшаем остатки продуктов в бд после создания заказа {}", orderRequests);
 
-        List<Product> products = fetchProducts(orderRequests);
+        Map<UUID, Integer> requestedQuantities = mergeQuantities(orderRequests);
+        Set<UUID> sharded = stockBucketService.findSharded(requestedQuantities.keySet());
+        Map<UUID, Integer> plainQuantities = withoutSharded(requestedQuantities, sharded);
+
+        List<UUID> failedArticleIds = new ArrayList<>();
+        if (!plainQuantities.isEmpty()) {
+            failedArticleIds.addAll(productRepository.decrementQuantities(plainQuantities));
+        }
+        for (UUID articleId : sortedSharded(requestedQuantities, sharded)) {
+            if (!stockBucketService.tryDecrement(articleId, requestedQuantities.get(articleId))) {
+                failedArticleIds.add(articleId);
+            }
+        }
+
+        if (!failedArticleIds.isEmpty()) {
+            log.warn("ProductService: не удалось списать остатки для {}", failedArticleIds);
+            throw new ProductNotFoundException("Недостаточно товара с articleId " + failedArticleIds);
+        }
+        stockView.adjustAfterCommit(negated(requestedQuantities));
+
+        log.info("ProductService: остатки обновлены");
+    }
+
+    @Transactional
+    public ReserveOrderResponse reserveOrder(List<OrderRequest> orderRequests) {
+        log.info("ProductService: резервирование товаров и расчёт суммы для {}", orderRequests);
+
+        Map<UUID, Integer> requestedQuantities = mergeQuantities(orderRequests);
+        Set<UUID> sharded = stockBucketService.findSharded(requestedQuantities.keySet());
+        Map<UUID, Integer> plainQuantities = withoutSharded(requestedQuantities, sharded);
+
+        // строки products блокируются только для обычных товаров, у шардированных остаток живёт в бакетах
+        List<Product> products = plainQuantities.isEmpty()
+                ? List.of()
+                : productRepository.findAllByArticleIdsForUpdate(new ArrayList<>(plainQuantities.keySet()));
 
         Map<UUID, Product> productMap = products.stream().collect(Collectors.toMap(Product::getArticleId, product -> product));
 
-        for (OrderRequest orderRequest : orderRequests) {
-            Product product = productMap.get(orderRequest.getArticleId());
+        boolean allAvailable = plainQuantities.entrySet().stream()
+                .allMatch(entry -> {
+                    Product product = productMap.get(entry.getKey());
+                    return product != null && product.getQuantity() >= entry.getValue();
+                });
+
+        if (allAvailable && !sharded.isEmpty()) {
+            productRepository.findAllByArticleIds(new ArrayList<>(sharded))
+                    .forEach(product -> productMap.put(product.getArticleId(), product));
+            allAvailable = productMap.keySet().containsAll(sharded) && reserveSharded(requestedQuantities, sharded);
+        }
 
-            if (product == null) {
-                throw new ProductNotFoundException("Продукт с articleId " + orderRequest.getArticleId() + " не найден");
-            }
+        if (!allAvailable) {
+            log.info("ProductService: количество продуктов недостаточно для заказа, резерв не выполнен");
+            return new ReserveOrderResponse(false, null, List.of());
+        }
 
-            int remainingQuantity = product.getQuantity() - orderRequest.getQuantity();
-            if (remainingQuantity < 0) {
-                throw new ProductNotFoundException("Недостаточно товара с articleId " + orderRequest.getArticleId());
-            }
+        List<ReservedProduct> reservedProducts = new ArrayList<>();
+        double rawSum = 0;
 
-            product.setQuantity(remainingQuantity);
+        for (Map.Entry<UUID, Integer> entry : requestedQuantities.entrySet()) {
+            Product product = productMap.get(entry.getKey());
+            if (!sharded.contains(entry.getKey())) {
+                product.setQuantity(product.getQuantity() - entry.getValue());
+            }
+            reservedProducts.add(new ReservedProduct(product.getArticleId(), entry.getValue(), product.getPrice()));
+            rawSum += product.getPrice() * entry.getValue();
         }
 
         productRepository.saveAll(products);
+        stockView.adjustAfterCommit(negated(requestedQuantities));
 
-        log.info("ProductService: остатки обновлены");
+        BigDecimal rounded = BigDecimal.valueOf(rawSum).setScale(2, RoundingMode.HALF_UP);
+
+        log.info("ProductService: товары зарезервированы, сумма заказа {}", rounded);
+
+        return new ReserveOrderResponse(true, rounded.doubleValue(), reservedProducts);
     }
 
+    // при нехватке в одном из бакетов уже списанное по другим шардированным артикулам возвращается обратно
+    private boolean reserveSharded(Map<UUID, Integer> requestedQuantities, Set<UUID> sharded) {
+        List<UUID> reserved = new ArrayList<>();
+        for (UUID articleId : sortedSharded(requestedQuantities, sharded)) {
+            if (!stockBucketService.tryDecrement(articleId, requestedQuantities.get(articleId))) {
+                reserved.forEach(id -> stockBucketService.increment(id, requestedQuantities.get(id)));
+                return false;
+            }
+            reserved.add(articleId);
+        }
+        return true;
+    }
+
+    @Transactional
     public void changeTotalQuantityProductsAfterRefundedOrder(List<OrderRequest> orderRequests) {
         log.info("ProductService: восстанавливаем остатки продуктов в бд после возврата {}", orderRequests);
 
-        List<Product> products = fetchProducts(orderRequests);
+        Map<UUID, Integer> requestedQuantities = mergeQuantities(orderRequests);
+        List<UUID> failedArticleIds = incrementStock(requestedQuantities);
 
-        Map<UUID, Product> productMap = products.stream().collect(Collectors.toMap(Product::getArticleId, product -> product));
+        if (!failedArticleIds.isEmpty()) {
+            log.warn("ProductService: не найдены продукты для возврата остатков {}", failedArticleIds);
+            throw new ProductNotFoundException("Продукт с articleId " + failedArticleIds + " не найден");
+        }
+        stockView.adjustAfterCommit(requestedQuantities);
 
-        for (OrderRequest orderRequest : orderRequests) {
-            Product product = productMap.get(orderRequest.getArticleId());
+        log.info("ProductService: остатки восстановлены");
+    }
+
+    /**
+     * Возвращает товар на остаток, пропуская артикулы, которых уже нет в каталоге, и возвращает их.
+     * Для снятия резервов: удалённый товар не должен мешать вернуть остальные.
+     */
+    @Transactional
+    public List<UUID> returnStock(List<OrderRequest> orderRequests) {
+        Map<UUID, Integer> requestedQuantities = mergeQuantities(orderRequests);
+        List<UUID> failedArticleIds = incrementStock(requestedQuantities);
+
+        Map<UUID, Integer> returned = new LinkedHashMap<>(requestedQuantities);
+        failedArticleIds.forEach(returned::remove);
+        stockView.adjustAfterCommit(returned);
+        return failedArticleIds;
+    }
 
-            if (product == null) {
-                throw new ProductNotFoundException("Продукт с articleId " + orderRequest.getArticleId() + " не найден");
+    private List<UUID> incrementStock(Map<UUID, Integer> requestedQuantities) {
+        Set<UUID> sharded = stockBucketService.findSharded(requestedQuantities.keySet());
+        Map<UUID, Integer> plainQuantities = withoutSharded(requestedQuantities, sharded);
+
+        List<UUID> failedArticleIds = new ArrayList<>();
+        if (!plainQuantities.isEmpty()) {
+            failedArticleIds.addAll(productRepository.incrementQuantities(plainQuantities));
+        }
+        for (UUID articleId : sortedSharded(requestedQuantities, sharded)) {
+            if (!stockBucketService.increment(articleId, requestedQuantities.get(articleId))) {
+                failedArticleIds.add(articleId);
             }
+        }
+        return failedArticleIds;
+    }
 
-            int updatedQuantity = product.getQuantity() + orderRequest.getQuantity();
-            product.setQuantity(updatedQuantity);
+    @Transactional(readOnly = true)
+    public List<ProductDto> getAllProducts(Pageable pageable) {
+        // у шардированных товаров products.quantity = 0, остаток лежит в бакетах: по колонке они оказались бы среди распроданных
+        if (pageable.getSort().getOrderFor("quantity") != null) {
+            throw new IllegalArgumentException("Сортировка каталога по quantity не поддерживается");
         }
+        List<ProductDto> page = productCatalogCache.page(pageable,
+                () -> {
+                    log.info("ProductService: получение всех продуктов {}", pageable);
+                    return productRepository.findAllProductDtos(pageable).getContent();
+                },
+                articleIds -> productMapper.toListDto(productRepository.findAllByArticleIds(articleIds)));
+        return withLiveStock(page);
+    }
 
-        productRepository.saveAll(products);
+    /**
+     * Листание каталога курсором: следующая страница начинается после (значение поля сортировки, id)
+     * последнего товара предыдущей, поэтому глубокие страницы стоят столько же, сколько первая.
+     * Страницы не кэшируются, остатки подставляются из StockView.
+     */
+    @Transactional(readOnly = true)
+    public ProductCursorPage getProductsAfter(String sort, String after, int size) {
+        log.info("ProductService: получение продуктов после {} с сортировкой {}", after, sort);
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new IllegalArgumentException("Размер страницы должен быть от 1 до " + MAX_CURSOR_PAGE_SIZE);
+        }
 
-        log.info("ProductService: остатки восстановлены");
+        String[] sortParts = sort.split(",");
+        ProductSortKey sortKey = ProductSortKey.of(sortParts[0].trim());
+        boolean descending = sortParts.length > 1 && Sort.Direction.fromString(sortParts[1].trim()).isDescending();
+
+        String afterValue = null;
+        Long afterId = null;
+        if (after != null && !after.isEmpty()) {
+            // значение поля может само содержать запятую, id всегда после последней
+            int separator = after.lastIndexOf(',');
+            try {
+                afterId = Long.valueOf(after.substring(separator + 1));
+                afterValue = after.substring(0, separator);
+                sortKey.parse(afterValue);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Некорректный курсор: " + after);
+            }
+        }
+
+        // на одну строку больше, чтобы узнать, есть ли следующая страница, без COUNT
+        List<ProductListRow> rows = productRepository.findPageAfter(sortKey, descending, afterValue, afterId, size + 1);
+        boolean hasNext = rows.size() > size;
+        List<ProductListRow> pageRows = hasNext ? rows.subList(0, size) : rows;
+
+        String nextCursor = null;
+        if (hasNext) {
+            ProductListRow last = pageRows.getLast();
+            nextCursor = last.sortValue(sortKey) + "," + last.id();
+        }
+        return new ProductCursorPage(withLiveStock(pageRows.stream().map(ProductListRow::toDto).toList()), nextCursor);
     }
 
+    /**
+     * Поиск по имени (слова по префиксу и подстроке) с фильтрами по цене и наличию.
+     * Выдача кэшируется по нормализованному запросу, остатки подставляются из StockView.
+     */
     @Transactional(readOnly = true)
-    @Cacheable(value = "products", key = "#pageable.pageNumber + '-' + #pageable.pageSize + '-' + #pageable.sort.toString()")
-    public List<ProductDto> getAllProducts(Pageable pageable) {
-        log.info("ProductService: получение всех продуктов {}", pageable);
-        Page<Product> productsPage = productRepository.findAll(pageable);
-        return productMapper.toListDto(productsPage.getContent());
+    public ProductSearchPage searchProducts(ProductSearchQuery query) {
+        // на один товар больше, чтобы узнать, есть ли следующая страница, без COUNT
+        List<ProductDto> found = productCatalogCache.search(query.cacheKey(), () -> {
+            log.info("ProductService: поиск продуктов {}", query.cacheKey());
+            return productRepository.search(query).stream().map(ProductListRow::toDto).toList();
+        });
+        boolean hasNext = found.size() > query.size();
+        List<ProductDto> items = hasNext ? found.subList(0, query.size()) : found;
+        return new ProductSearchPage(withLiveStock(items), query.page(), hasNext);
     }
 
     @Transactional(readOnly = true)
-    @Cacheable(value = "product", key = "#articleId")
     public ProductDto getProduct(UUID articleId) {
-        log.info("ProductService: получение продукта {}", articleId);
-        Product product = productRepository.findByArticleId(articleId).orElseThrow(() -> new ProductNotFoundException("Продукт с articleId " + articleId + " не найден"));
-        return productMapper.toDto(product);
+        ProductDto productDto = productCatalogCache.product(articleId, () -> {
+            log.info("ProductService: получение продукта {}", articleId);
+            Product product = productRepository.findByArticleId(articleId).orElseThrow(() -> new ProductNotFoundException("Продукт с articleId " + articleId + " не найден"));
+            return productMapper.toDto(product);
+        });
+        return withLiveStock(List.of(productDto)).getFirst();
     }
 
+    // закэшированный товар не меняется: количество из StockView подставляется в копию
+    private List<ProductDto> withLiveStock(List<ProductDto> productDtos) {
+        Map<UUID, Integer> quantities = stockView.quantities(productDtos.stream()
+                .map(ProductDto::getArticleId)
+                .toList());
+        return productDtos.stream()
+                .map(productDto -> new ProductDto(
+                        productDto.getArticleId(),
+                        productDto.getName(),
+                        quantities.getOrDefault(productDto.getArticleId(), productDto.getQuantity()),
+                        productDto.getPrice()))
+                .toList();
+    }
+
+    private static Map<UUID, Integer> negated(Map<UUID, Integer> quantities) {
+        Map<UUID, Integer> negated = new LinkedHashMap<>();
+        quantities.forEach((articleId, quantity) -> negated.put(articleId, -quantity));
+        return negated;
+    }
 
     @Transactional
-    @Caching(
-            put = {@CachePut(value = "product", key = "#result.articleId")},
-            evict = {@CacheEvict(value = "products", allEntries = true)}
-    )
+    public ProductDto shardStock(UUID articleId, int buckets) {
+        log.info("ProductService: перевод остатков продукта {} на {} бакетов", articleId, buckets);
+        if (buckets < 1 || buckets > StockBucketService.MAX_BUCKETS) {
+            throw new IllegalArgumentException("Количество бакетов должно быть от 1 до " + StockBucketService.MAX_BUCKETS);
+        }
+
+        Product product = productRepository.findAllByArticleIdsForUpdate(List.of(articleId)).stream()
+                .findFirst()
+                .orElseThrow(() -> new ProductNotFoundException("Продукт с articleId " + articleId + " не найден"));
+
+        int total = product.getQuantity() + stockBucketService.removeBuckets(articleId);
+        if (buckets > 1) {
+            stockBucketService.distribute(articleId, total, buckets);
+            product.setQuantity(0);
+        } else {
+            product.setQuantity(total);
+        }
+        productRepository.save(product);
+        // products.quantity шардированного товара становится 0, порядок страниц по количеству меняется
+        productCatalogCache.evictPagesSortedBy(List.of("quantity"));
+        stockView.evictAfterCommit(List.of(articleId));
+
+        ProductDto productDto = productMapper.toDto(product);
+        productDto.setQuantity(total);
+        return productDto;
+    }
+
+
+    @Transactional
+    @CachePut(value = ProductCatalogCache.PRODUCT_CACHE, key = "#result.articleId")
     public ProductDto addProduct(ProductDtoRequest productDtoRequest) {
         log.info("ProductService: добавление продукта {}", productDtoRequest);
         ProductDto productDto = new ProductDto(UUID.randomUUID(), productDtoRequest.getName(), productDtoRequest.getQuantity(), productDtoRequest.getPrice());
         Product product = productMapper.toEntity(productDto);
         productRepository.save(product);
+        productCatalogCache.evictAllPages();
+        stockView.evictAfterCommit(List.of(product.getArticleId()));
         return productMapper.toDto(product);
     }
 
     @Transactional
-    @CacheEvict(value = {"products", "product"}, allEntries = true)
+    @CacheEvict(value = ProductCatalogCache.PRODUCT_CACHE, key = "#articleId")
     public void deleteProduct(UUID articleId) {
         log.info("ProductService: удаление продукта {}", articleId);
         Optional<Product> productByArticleId = productRepository.findByArticleId(articleId);
         if (productByArticleId.isPresent()) {
+            stockBucketService.removeBuckets(articleId);
             productRepository.deleteByArticleId(articleId);
+            productCatalogCache.evictAllPages();
+            stockView.evictAfterCommit(List.of(articleId));
         } else {
             throw new ProductNotFoundException("Not found this product!");
         }
@@ -183,24 +425,51 @@ public class ProductService {
     }
 
     @Transactional
-    @Caching(
-            put = {@CachePut(value = "product", key = "#articleId")},
-            evict = {@CacheEvict(value = "products", allEntries = true)}
-    )
+    @CachePut(value = ProductCatalogCache.PRODUCT_CACHE, key = "#articleId")
     public ProductDto updateProduct(UUID articleId, ProductDtoRequest productDtoRequest) {
         log.info("ProductService: обновление продукта {} -> {}", articleId, productDtoRequest);
         Optional<Product> productByArticleId = productRepository.findByArticleId(articleId);
         if (productByArticleId.isPresent()) {
             Product product = productByArticleId.get();
+            String oldName = product.getName();
+            Double oldPrice = product.getPrice();
+            Integer oldQuantity = product.getQuantity();
+
             product.setName(productDtoRequest.getName());
-            product.setQuantity(productDtoRequest.getQuantity());
             product.setPrice(productDtoRequest.getPrice());
 
+            int buckets = stockBucketService.bucketCount(articleId);
+            if (buckets > 0) {
+                stockBucketService.distribute(articleId, productDtoRequest.getQuantity(), buckets);
+                product.setQuantity(0);
+            } else {
+                product.setQuantity(productDtoRequest.getQuantity());
+            }
+
             productRepository.save(product);
-            return productMapper.toDto(product);
+            productCatalogCache.evictPagesSortedBy(changedSortProperties(oldName, oldPrice, oldQuantity, product));
+            stockView.evictAfterCommit(List.of(articleId));
+
+            ProductDto productDto = productMapper.toDto(product);
+            productDto.setQuantity(productDtoRequest.getQuantity());
+            return productDto;
         } else {
             throw new ProductNotFoundException("Not found this product!");
         }
     }
-}
 
+    // поля, от которых зависит порядок товара на отсортированных страницах каталога
+    private static List<String> changedSortProperties(String oldName, Double oldPrice, Integer oldQuantity, Product product) {
+        List<String> changed = new ArrayList<>();
+        if (!Objects.equals(oldName, product.getName())) {
+            changed.add("name");
+        }
+        if (!Objects.equals(oldPrice, product.getPrice())) {
+            changed.add("price");
+        }
+        if (!Objects.equals(oldQuantity, product.getQuantity())) {
+            changed.add("quantity");
+        }
+        return changed;
+    }
+}
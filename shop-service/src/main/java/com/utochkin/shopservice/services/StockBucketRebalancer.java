@@ -0,0 +1,28 @@
+package com.utochkin.shopservice.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class StockBucketRebalancer {
+
+    private final StockBucketService stockBucketService;
+
+    // каждый артикул выравнивается в своей транзакции, чтобы не держать блокировки всех бакетов разом
+    @Scheduled(fixedDelayString = "${shop.stock.rebalance-interval-ms:5000}")
+    public void rebalanceDrainedBuckets() {
+        for (UUID articleId : stockBucketService.findAllSharded()) {
+            try {
+                stockBucketService.rebalance(articleId);
+            } catch (RuntimeException e) {
+                log.warn("StockBucketRebalancer: не удалось перераспределить бакеты товара {}: {}", articleId, e.getMessage());
+            }
+        }
+    }
+}
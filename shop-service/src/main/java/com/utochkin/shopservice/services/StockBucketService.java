@@ -0,0 +1,187 @@
+package com.utochkin.shopservice.services;
+
+import com.utochkin.shopservice.models.ProductStockBucket;
+import com.utochkin.shopservice.repositories.ProductStockBucketRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Шардированные остатки для "горячих" товаров: количество товара разложено по N бакетам
+ * в таблице product_stock_buckets, и параллельные списания попадают в разные строки,
+ * а не выстраиваются в очередь на одной строке products.
+ * Пока у товара есть бакеты, products.quantity для него равно 0, а остаток — сумма по бакетам.
+ */
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class StockBucketService {
+
+    public static final int MAX_BUCKETS = 64;
+
+    private final ProductStockBucketRepository bucketRepository;
+
+    @Transactional(readOnly = true)
+    public Set<UUID> findSharded(Collection<UUID> articleIds) {
+        if (articleIds.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(bucketRepository.findShardedArticleIds(articleIds));
+    }
+
+    /**
+     * Остатки по бакетам только для шардированных артикулов из списка, остальные в ответ не попадают.
+     */
+    @Transactional(readOnly = true)
+    public Map<UUID, Integer> sumQuantities(Collection<UUID> articleIds) {
+        if (articleIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<UUID, Integer> quantities = new HashMap<>();
+        for (Object[] row : bucketRepository.sumQuantities(articleIds)) {
+            quantities.put((UUID) row[0], ((Number) row[1]).intValue());
+        }
+        return quantities;
+    }
+
+    @Transactional(readOnly = true)
+    public int bucketCount(UUID articleId) {
+        return bucketRepository.countByArticleId(articleId);
+    }
+
+    /**
+     * Списывает количество из случайного бакета, в котором хватает товара. Если ни в одном бакете
+     * целиком не хватает, но хватает в сумме — бакеты блокируются и списание идёт по нескольким.
+     */
+    @Transactional
+    public boolean tryDecrement(UUID articleId, int quantity) {
+        List<Integer> candidates = new ArrayList<>(bucketRepository.findBucketsWithAtLeast(articleId, quantity));
+        Collections.shuffle(candidates, ThreadLocalRandom.current());
+
+        for (Integer bucket : candidates) {
+            if (bucketRepository.decrementBucket(articleId, bucket, quantity) > 0) {
+                return true;
+            }
+        }
+
+        return drainAcrossBuckets(articleId, quantity);
+    }
+
+    private boolean drainAcrossBuckets(UUID articleId, int quantity) {
+        List<ProductStockBucket> buckets = bucketRepository.findAllByArticleIdForUpdate(articleId);
+
+        int total = buckets.stream().mapToInt(ProductStockBucket::getQuantity).sum();
+        if (total < quantity) {
+            log.info("StockBucketService: недостаточно товара {} в бакетах: есть {}, нужно {}", articleId, total, quantity);
+            return false;
+        }
+
+        int remaining = quantity;
+        for (ProductStockBucket bucket : buckets) {
+            int taken = Math.min(bucket.getQuantity(), remaining);
+            bucket.setQuantity(bucket.getQuantity() - taken);
+            remaining -= taken;
+            if (remaining == 0) {
+                break;
+            }
+        }
+        bucketRepository.saveAll(buckets);
+
+        log.info("StockBucketService: товар {} списан по нескольким бакетам", articleId);
+        return true;
+    }
+
+    @Transactional
+    public boolean increment(UUID articleId, int quantity) {
+        int buckets = bucketRepository.countByArticleId(articleId);
+        if (buckets == 0) {
+            return false;
+        }
+        return bucketRepository.incrementBucket(articleId, ThreadLocalRandom.current().nextInt(buckets), quantity) > 0;
+    }
+
+    /**
+     * Раскладывает количество товара поровну по бакетам, заменяя существующие бакеты артикула.
+     */
+    @Transactional
+    public void distribute(UUID articleId, int total, int bucketCount) {
+        bucketRepository.deleteAllByArticleId(articleId);
+        bucketRepository.saveAll(split(articleId, total, bucketCount));
+        log.info("StockBucketService: товар {} разложен по {} бакетам, всего {}", articleId, bucketCount, total);
+    }
+
+    /**
+     * Удаляет бакеты артикула и возвращает их суммарный остаток.
+     */
+    @Transactional
+    public int removeBuckets(UUID articleId) {
+        List<ProductStockBucket> buckets = bucketRepository.findAllByArticleIdForUpdate(articleId);
+        if (buckets.isEmpty()) {
+            return 0;
+        }
+        int total = buckets.stream().mapToInt(ProductStockBucket::getQuantity).sum();
+        bucketRepository.deleteAllByArticleId(articleId);
+        log.info("StockBucketService: бакеты товара {} удалены, остаток {}", articleId, total);
+        return total;
+    }
+
+    /**
+     * Выравнивает бакеты, если какой-то из них опустел меньше чем наполовину от среднего,
+     * чтобы случайный выбор бакета продолжал находить товар без списания по нескольким бакетам.
+     */
+    @Transactional
+    public boolean rebalance(UUID articleId) {
+        List<ProductStockBucket> buckets = bucketRepository.findAllByArticleIdForUpdate(articleId);
+        if (buckets.size() < 2) {
+            return false;
+        }
+
+        int total = buckets.stream().mapToInt(ProductStockBucket::getQuantity).sum();
+        int average = total / buckets.size();
+        boolean drained = buckets.stream().anyMatch(bucket -> bucket.getQuantity() < average / 2);
+        if (!drained) {
+            return false;
+        }
+
+        for (int i = 0; i < buckets.size(); i++) {
+            buckets.get(i).setQuantity(share(total, buckets.size(), i));
+        }
+        bucketRepository.saveAll(buckets);
+
+        log.info("StockBucketService: бакеты товара {} перераспределены, всего {}", articleId, total);
+        return true;
+    }
+
+    @Transactional(readOnly = true)
+    public List<UUID> findAllSharded() {
+        return bucketRepository.findAllShardedArticleIds();
+    }
+
+    private static List<ProductStockBucket> split(UUID articleId, int total, int bucketCount) {
+        List<ProductStockBucket> buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(ProductStockBucket.builder()
+                    .articleId(articleId)
+                    .bucket(i)
+                    .quantity(share(total, bucketCount, i))
+                    .build());
+        }
+        return buckets;
+    }
+
+    private static int share(int total, int bucketCount, int bucket) {
+        return total / bucketCount + (bucket < total % bucketCount ? 1 : 0);
+    }
+}
@@ -0,0 +1,165 @@
+package com.utochkin.shopservice.services;
+
+import com.utochkin.shopservice.exceptions.ReservationNotFoundException;
+import com.utochkin.shopservice.exceptions.ReservationReleasedException;
+import com.utochkin.shopservice.models.ReservationStatus;
+import com.utochkin.shopservice.models.ReservedItem;
+import com.utochkin.shopservice.models.StockReservation;
+import com.utochkin.shopservice.repositories.StockReservationRepository;
+import com.utochkin.shopservice.requests.OrderRequest;
+import com.utochkin.shopservice.requests.ReservationRequest;
+import com.utochkin.shopservice.requests.ReserveOrderResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Резервы товара под заказ: товар списывается с остатка сразу, но если заказ не перешёл к оплате
+ * до expiresAt, StockReservationSweeper возвращает его на склад. Подтверждённый резерв (оплата
+ * идёт или прошла) не истекает; после неудачной оплаты order-service снова переводит его в HELD.
+ */
+@Service
+@Log4j2
+public class StockReservationService {
+
+    private final StockReservationRepository reservationRepository;
+    private final ProductService productService;
+    private final Duration ttl;
+    private final Counter heldCounter;
+    private final Counter cancelledCounter;
+    private final Counter expiredCounter;
+
+    public StockReservationService(StockReservationRepository reservationRepository,
+                                   ProductService productService,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${shop.reservation.ttl:PT15M}") Duration ttl) {
+        this.reservationRepository = reservationRepository;
+        this.productService = productService;
+        this.ttl = ttl;
+        this.heldCounter = meterRegistry.counter("shop.reservations.held");
+        this.cancelledCounter = meterRegistry.counter("shop.reservations.released", "reason", "cancelled");
+        this.expiredCounter = meterRegistry.counter("shop.reservations.released", "reason", "expired");
+    }
+
+    @Transactional
+    public ReserveOrderResponse reserve(ReservationRequest request) {
+        UUID reservationId = request.getReservationId();
+        Optional<StockReservation> existing = reservationRepository.findById(reservationId);
+        if (existing.isPresent()) {
+            // повтор запроса: товар списан при первом
+            boolean active = existing.get().getStatus() != ReservationStatus.RELEASED;
+            log.info("StockReservationService: резерв {} уже существует, статус {}", reservationId, existing.get().getStatus());
+            return new ReserveOrderResponse(active, active ? existing.get().getTotalAmount() : null, List.of());
+        }
+
+        ReserveOrderResponse response = productService.reserveOrder(request.getItems());
+        if (Boolean.TRUE.equals(response.getReserved())) {
+            Instant now = Instant.now();
+            reservationRepository.save(StockReservation.builder()
+                    .reservationId(reservationId)
+                    .status(ReservationStatus.HELD)
+                    .totalAmount(response.getTotalAmount())
+                    .expiresAt(now.plus(ttl))
+                    .createdAt(now)
+                    .items(request.getItems().stream()
+                            .map(item -> new ReservedItem(item.getArticleId(), item.getQuantity()))
+                            .toList())
+                    .build());
+            heldCounter.increment();
+            log.info("StockReservationService: резерв {} создан до {}", reservationId, now.plus(ttl));
+        }
+        return response;
+    }
+
+    /**
+     * Закрепляет резерв перед оплатой; повторное подтверждение ничего не меняет.
+     */
+    @Transactional
+    public void confirm(UUID reservationId) {
+        if (reservationRepository.compareAndSetStatus(reservationId, ReservationStatus.HELD, ReservationStatus.CONFIRMED, Instant.now()) == 1) {
+            log.info("StockReservationService: резерв {} подтверждён", reservationId);
+            return;
+        }
+        if (find(reservationId).getStatus() == ReservationStatus.RELEASED) {
+            throw new ReservationReleasedException("Резерв " + reservationId + " снят, товар возвращён на склад");
+        }
+    }
+
+    /**
+     * Снова ограничивает резерв сроком ttl: оплата не прошла, и заказ может быть брошен.
+     */
+    @Transactional
+    public void hold(UUID reservationId) {
+        Instant now = Instant.now();
+        if (reservationRepository.hold(reservationId, now.plus(ttl), now) == 0) {
+            find(reservationId);
+            throw new ReservationReleasedException("Резерв " + reservationId + " снят, товар возвращён на склад");
+        }
+        log.info("StockReservationService: резерв {} снова истекает в {}", reservationId, now.plus(ttl));
+    }
+
+    /**
+     * Отменяет резерв и возвращает товар; снятый резерв повторно не возвращается.
+     */
+    @Transactional
+    public void release(UUID reservationId) {
+        Instant now = Instant.now();
+        // UPDATE блокирует строку резерва: параллельный release или проход сборщика товар второй раз не вернёт
+        boolean released = reservationRepository.compareAndSetStatus(reservationId, ReservationStatus.HELD, ReservationStatus.RELEASED, now) == 1
+                || reservationRepository.compareAndSetStatus(reservationId, ReservationStatus.CONFIRMED, ReservationStatus.RELEASED, now) == 1;
+        StockReservation reservation = find(reservationId);
+        if (!released) {
+            log.info("StockReservationService: резерв {} уже снят", reservationId);
+            return;
+        }
+        returnStock(List.of(reservation));
+        cancelledCounter.increment();
+        log.info("StockReservationService: резерв {} отменён, товар возвращён", reservationId);
+    }
+
+    /**
+     * Снимает до limit просроченных резервов, начиная с самых старых, и возвращает их число.
+     */
+    @Transactional
+    public int releaseExpired(int limit) {
+        Instant now = Instant.now();
+        List<StockReservation> expired = reservationRepository.findExpiredForUpdate(now, Limit.of(limit));
+        if (expired.isEmpty()) {
+            return 0;
+        }
+        expired.forEach(reservation -> {
+            reservation.setStatus(ReservationStatus.RELEASED);
+            reservation.setUpdatedAt(now);
+        });
+        returnStock(expired);
+        expiredCounter.increment(expired.size());
+        return expired.size();
+    }
+
+    // товары всех резервов возвращаются одним обновлением на артикул
+    private void returnStock(List<StockReservation> reservations) {
+        List<OrderRequest> items = reservations.stream()
+                .flatMap(reservation -> reservation.getItems().stream())
+                .map(item -> new OrderRequest(item.getArticleId(), item.getQuantity()))
+                .toList();
+        List<UUID> missing = productService.returnStock(items);
+        if (!missing.isEmpty()) {
+            log.warn("StockReservationService: товары {} удалены из каталога, их резерв просто снимается", missing);
+        }
+    }
+
+    private StockReservation find(UUID reservationId) {
+        return reservationRepository.findById(reservationId)
+                .orElseThrow(() -> new ReservationNotFoundException("Резерв " + reservationId + " не найден"));
+    }
+}
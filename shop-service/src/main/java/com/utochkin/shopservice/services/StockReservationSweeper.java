@@ -0,0 +1,60 @@
+package com.utochkin.shopservice.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Возвращает на склад товар из просроченных резервов. Каждая пачка — отдельная транзакция,
+ * поэтому блокировки не копятся; экземпляры сервиса делят работу через SKIP LOCKED.
+ * Скорость снятия видна по shop.reservations.released{reason=expired}, длительность прохода — по shop.reservations.sweep.
+ */
+@Component
+@Log4j2
+public class StockReservationSweeper {
+
+    private final StockReservationService reservationService;
+    private final Timer sweepTimer;
+    private final int batchSize;
+    private final int maxBatches;
+
+    public StockReservationSweeper(StockReservationService reservationService,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${shop.reservation.sweep-batch-size:200}") int batchSize,
+                                   @Value("${shop.reservation.sweep-max-batches:50}") int maxBatches) {
+        this.reservationService = reservationService;
+        this.sweepTimer = meterRegistry.timer("shop.reservations.sweep");
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+    }
+
+    @Scheduled(fixedDelayString = "${shop.reservation.sweep-interval-ms:5000}")
+    public void releaseExpired() {
+        int released = sweepTimer.record(this::sweep);
+        if (released > 0) {
+            log.info("StockReservationSweeper: снято просроченных резервов: {}", released);
+        }
+    }
+
+    // пачки идут, пока находятся полные; maxBatches ограничивает один проход, остальное заберёт следующий
+    int sweep() {
+        int released = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            int count;
+            try {
+                count = reservationService.releaseExpired(batchSize);
+            } catch (RuntimeException e) {
+                log.warn("StockReservationSweeper: не удалось снять просроченные резервы: {}", e.getMessage());
+                break;
+            }
+            released += count;
+            if (count < batchSize) {
+                break;
+            }
+        }
+        return released;
+    }
+}
@@ -0,0 +1,132 @@
+package com.utochkin.shopservice.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utochkin.shopservice.config.SagaKafkaConfig;
+import com.utochkin.shopservice.config.SagaTopics;
+import com.utochkin.shopservice.dto.SagaMessage;
+import com.utochkin.shopservice.exceptions.ReservationNotFoundException;
+import com.utochkin.shopservice.exceptions.ReservationReleasedException;
+import com.utochkin.shopservice.models.SagaMessageType;
+import com.utochkin.shopservice.requests.ReservationRequest;
+import com.utochkin.shopservice.requests.ReserveOrderResponse;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Выполняет команды саги заказа над резервами. Каждая команда — отдельная транзакция StockReservationService,
+ * ответ отправляется после её коммита. Если ответ не ушёл, команда доставляется повторно: резерв по orderUuid
+ * и подтверждение идемпотентны, и повтор только отправит тот же ответ ещё раз.
+ */
+@Service
+@Log4j2
+@ConditionalOnProperty(name = "shop.saga.enabled", havingValue = "true")
+public class StockSagaHandler {
+
+    private final StockReservationService reservationService;
+    private final KafkaTemplate<String, String> sagaKafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final long sendTimeoutMs;
+
+    public StockSagaHandler(StockReservationService reservationService,
+                            KafkaTemplate<String, String> sagaKafkaTemplate,
+                            ObjectMapper objectMapper,
+                            @Value("${shop.saga.send-timeout-ms:10000}") long sendTimeoutMs) {
+        this.reservationService = reservationService;
+        this.sagaKafkaTemplate = sagaKafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.sendTimeoutMs = sendTimeoutMs;
+    }
+
+    @KafkaListener(topics = SagaTopics.SHOP_COMMANDS, groupId = "shop-saga-group", containerFactory = SagaKafkaConfig.LISTENER_FACTORY)
+    public void onCommand(String payload) {
+        SagaMessage command = read(payload);
+        log.info("StockSagaHandler: команда {} для заказа {}", command.getType(), command.getOrderUuid());
+        switch (command.getType()) {
+            case RESERVE_STOCK -> reserve(command);
+            case CONFIRM_RESERVATION -> confirm(command.getOrderUuid());
+            case HOLD_RESERVATION -> hold(command.getOrderUuid());
+            case RELEASE_RESERVATION -> release(command.getOrderUuid());
+            default -> log.warn("StockSagaHandler: неожиданная команда {} для заказа {}", command.getType(), command.getOrderUuid());
+        }
+    }
+
+    private void reserve(SagaMessage command) {
+        ReserveOrderResponse response = reservationService.reserve(new ReservationRequest(command.getOrderUuid(), command.getItems()));
+        if (Boolean.TRUE.equals(response.getReserved())) {
+            reply(SagaMessage.builder()
+                    .orderUuid(command.getOrderUuid())
+                    .type(SagaMessageType.STOCK_RESERVED)
+                    .totalAmount(response.getTotalAmount())
+                    .build());
+        } else {
+            reply(SagaMessage.builder()
+                    .orderUuid(command.getOrderUuid())
+                    .type(SagaMessageType.STOCK_REJECTED)
+                    .reason("Товаров нет в нужном количестве")
+                    .build());
+        }
+    }
+
+    private void confirm(UUID orderUuid) {
+        SagaMessageType result;
+        try {
+            reservationService.confirm(orderUuid);
+            result = SagaMessageType.RESERVATION_CONFIRMED;
+        } catch (ReservationNotFoundException notFound) {
+            // заказ создан до резервов со сроком: товар списан без срока, оплачивать можно
+            log.info("StockSagaHandler: у заказа {} нет резерва, подтверждать нечего", orderUuid);
+            result = SagaMessageType.RESERVATION_CONFIRMED;
+        } catch (ReservationReleasedException released) {
+            result = SagaMessageType.RESERVATION_EXPIRED;
+        }
+        reply(SagaMessage.builder().orderUuid(orderUuid).type(result).build());
+    }
+
+    // компенсации ответа не требуют: order-service уже перевёл сагу дальше
+    private void hold(UUID orderUuid) {
+        try {
+            reservationService.hold(orderUuid);
+        } catch (ReservationNotFoundException | ReservationReleasedException e) {
+            log.info("StockSagaHandler: резерв заказа {} не продлён: {}", orderUuid, e.getMessage());
+        }
+    }
+
+    private void release(UUID orderUuid) {
+        try {
+            reservationService.release(orderUuid);
+        } catch (ReservationNotFoundException notFound) {
+            log.info("StockSagaHandler: у заказа {} нет резерва, снимать нечего", orderUuid);
+        }
+    }
+
+    private void reply(SagaMessage reply) {
+        try {
+            sagaKafkaTemplate.send(SagaTopics.SHOP_REPLIES, reply.getOrderUuid().toString(), objectMapper.writeValueAsString(reply))
+                    .get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+            log.info("StockSagaHandler: ответ {} для заказа {} отправлен", reply.getType(), reply.getOrderUuid());
+        } catch (JsonProcessingException | ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Не удалось отправить ответ саги для заказа " + reply.getOrderUuid(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Отправка ответа саги прервана", e);
+        }
+    }
+
+    private SagaMessage read(String payload) {
+        try {
+            return objectMapper.readValue(payload, SagaMessage.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Не удалось прочитать команду саги", e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.utochkin.shopservice.services;
+
+import com.utochkin.shopservice.repositories.ProductRepository;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Текущие остатки товаров отдельно от кэша каталога: счётчик shop:stock:{articleId} в Redis.
+ * Кэш "product"/"products" хранит медленно меняющиеся поля, а количество при чтении берётся отсюда,
+ * поэтому заказы не сбрасывают кэш каталога.
+ * После коммита заказ сдвигает счётчик на списанное количество (INCRBY только для существующего ключа),
+ * правки товара удаляют счётчик. Отсутствующий счётчик заполняется из БД с TTL, так что расхождение
+ * при потерянном обновлении живёт не дольше shop.stock.cache.ttl.
+ */
+@Component
+@Log4j2
+public class StockView {
+
+    static final String KEY_PREFIX = "shop:stock:";
+
+    private static final RedisScript<Long> ADJUST_IF_PRESENT = RedisScript.of("""
+            if redis.call('EXISTS', KEYS[1]) == 1 then
+                return redis.call('INCRBY', KEYS[1], ARGV[1])
+            end
+            return nil
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ProductRepository productRepository;
+    private final StockBucketService stockBucketService;
+    private final boolean enabled;
+    private final Duration ttl;
+
+    public StockView(StringRedisTemplate redisTemplate,
+                     ProductRepository productRepository,
+                     StockBucketService stockBucketService,
+                     @Value("${shop.stock.cache.enabled:true}") boolean enabled,
+                     @Value("${shop.stock.cache.ttl:PT1M}") Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.productRepository = productRepository;
+        this.stockBucketService = stockBucketService;
+        this.enabled = enabled;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Остатки по артикулам; артикулов, которых нет в БД, в ответе нет.
+     */
+    public Map<UUID, Integer> quantities(Collection<UUID> articleIds) {
+        if (articleIds.isEmpty()) {
+            return Map.of();
+        }
+        if (!enabled) {
+            return loadQuantities(articleIds);
+        }
+
+        List<UUID> ids = new ArrayList<>(articleIds);
+        List<String> values;
+        try {
+            values = redisTemplate.opsForValue().multiGet(ids.stream().map(StockView::key).toList());
+        } catch (RuntimeException e) {
+            log.warn("StockView: Redis недоступен, остатки читаются из БД: {}", e.getMessage());
+            return loadQuantities(ids);
+        }
+
+        Map<UUID, Integer> quantities = new HashMap<>();
+        List<UUID> missing = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            String value = values != null ? values.get(i) : null;
+            if (value != null) {
+                quantities.put(ids.get(i), Integer.parseInt(value));
+            } else {
+                missing.add(ids.get(i));
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Map<UUID, Integer> loaded = loadQuantities(missing);
+            quantities.putAll(loaded);
+            store(loaded);
+        }
+        return quantities;
+    }
+
+    /**
+     * Сдвигает счётчики после коммита текущей транзакции: отрицательное значение — списание.
+     */
+    public void adjustAfterCommit(Map<UUID, Integer> deltas) {
+        afterCommit(() -> deltas.forEach((articleId, delta) ->
+                redisTemplate.execute(ADJUST_IF_PRESENT, List.of(key(articleId)), String.valueOf(delta))));
+    }
+
+    /**
+     * Удаляет счётчики после коммита, следующее чтение возьмёт остаток из БД.
+     */
+    public void evictAfterCommit(Collection<UUID> articleIds) {
+        List<String> keys = articleIds.stream().map(StockView::key).toList();
+        afterCommit(() -> redisTemplate.delete(keys));
+    }
+
+    private Map<UUID, Integer> loadQuantities(Collection<UUID> articleIds) {
+        Map<UUID, Integer> quantities = new HashMap<>();
+        for (Object[] row : productRepository.findQuantities(articleIds)) {
+            quantities.put((UUID) row[0], ((Number) row[1]).intValue());
+        }
+        // у шардированных товаров products.quantity = 0, остаток — сумма по бакетам
+        quantities.putAll(stockBucketService.sumQuantities(quantities.keySet()));
+        return quantities;
+    }
+
+    // setIfAbsent не затирает счётчик, который успел заполнить и сдвинуть параллельный запрос
+    private void store(Map<UUID, Integer> quantities) {
+        try {
+            quantities.forEach((articleId, quantity) ->
+                    redisTemplate.opsForValue().setIfAbsent(key(articleId), String.valueOf(quantity), ttl));
+        } catch (RuntimeException e) {
+            log.warn("StockView: не удалось сохранить остатки в Redis: {}", e.getMessage());
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!enabled) {
+            return;
+        }
+        Runnable safeAction = () -> {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log.warn("StockView: не удалось обновить остатки в Redis, расхождение сгладит TTL: {}", e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    safeAction.run();
+                }
+            });
+        } else {
+            safeAction.run();
+        }
+    }
+
+    private static String key(UUID articleId) {
+        return KEY_PREFIX + articleId;
+    }
+}
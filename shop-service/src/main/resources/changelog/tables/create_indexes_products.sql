@@ -0,0 +1,3 @@
+create index if not exists products_article_id_idx on products (article_id);
+create index if not exists products_name_id_idx on products (name, id);
+create index if not exists products_price_id_idx on products (price, id);
@@ -0,0 +1,8 @@
+create table if not exists product_stock_buckets
+(
+    id         serial primary key,
+    article_id uuid    NOT NULL,
+    bucket     INTEGER NOT NULL,
+    quantity   INTEGER NOT NULL CHECK (quantity >= 0),
+    unique (article_id, bucket)
+);
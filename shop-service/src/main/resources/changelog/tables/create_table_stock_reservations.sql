@@ -0,0 +1,17 @@
+create table if not exists stock_reservations
+(
+    reservation_id uuid primary key,
+    status         VARCHAR(20)      NOT NULL,
+    total_amount   DOUBLE PRECISION NOT NULL,
+    expires_at     TIMESTAMP WITH TIME ZONE NOT NULL,
+    created_at     TIMESTAMP WITH TIME ZONE NOT NULL,
+    updated_at     TIMESTAMP WITH TIME ZONE
+);
+create table if not exists stock_reservation_items
+(
+    reservation_id uuid    NOT NULL REFERENCES stock_reservations (reservation_id) ON DELETE CASCADE,
+    article_id     uuid    NOT NULL,
+    quantity       INTEGER NOT NULL CHECK (quantity > 0)
+);
+create index if not exists stock_reservation_items_reservation_id_idx on stock_reservation_items (reservation_id);
+create index if not exists stock_reservations_held_expires_at_idx on stock_reservations (expires_at) where status = 'HELD';
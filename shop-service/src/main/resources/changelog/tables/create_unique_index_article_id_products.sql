@@ -0,0 +1,2 @@
+create unique index if not exists products_article_id_uidx on products (article_id);
+drop index if exists products_article_id_idx;
@@ -52,6 +52,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
         "spring.liquibase.enabled=false",
         "eureka.client.enabled=false",
         "spring.cloud.discovery.enabled=false",
+        "shop.cache.near.enabled=false",
+        "shop.stock.cache.enabled=false",
         "spring.jpa.hibernate.ddl-auto=create-drop"
 })
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
@@ -79,7 +81,7 @@ class ShopServiceApplicationTests {
         @Bean
         @Primary
         public CacheManager cacheManager() {
-            return new ConcurrentMapCacheManager("products", "product");
+            return new ConcurrentMapCacheManager();
         }
     }
 
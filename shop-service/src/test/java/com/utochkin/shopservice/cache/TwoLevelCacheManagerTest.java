@@ -0,0 +1,187 @@
+package com.utochkin.shopservice.cache;
+
+import com.utochkin.shopservice.dto.ProductDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TwoLevelCacheManagerTest {
+
+    // ConcurrentMapCacheManager играет роль общего кэша в Redis
+    private ConcurrentMapCacheManager redis;
+    private SimpleMeterRegistry meterRegistry;
+    private List<CacheInvalidation> published;
+    private TwoLevelCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        redis = new ConcurrentMapCacheManager("product", "products");
+        meterRegistry = new SimpleMeterRegistry();
+        published = new ArrayList<>();
+        cacheManager = new TwoLevelCacheManager(redis, new NearCacheProperties(), published::add, meterRegistry);
+    }
+
+    private double requests(String tier, String result) {
+        return meterRegistry.counter("shop.cache.requests", "cache", "product", "tier", tier, "result", result).count();
+    }
+
+    private static DefaultMessage message(CacheInvalidation invalidation) {
+        return new DefaultMessage("shop:cache:invalidation".getBytes(StandardCharsets.UTF_8),
+                invalidation.encode().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("get → промах L1 читает Redis и кладёт значение в L1, следующий get не ходит в Redis")
+    void get_populatesNearCacheFromRedis() {
+        UUID id = UUID.randomUUID();
+        ProductDto dto = new ProductDto(id, "Phone", 3, 100.0);
+        redis.getCache("product").put(id, dto);
+        Cache cache = cacheManager.getCache("product");
+
+        assertThat(cache.get(id, ProductDto.class)).isEqualTo(dto);
+        redis.getCache("product").evict(id);
+        assertThat(cache.get(id, ProductDto.class)).isEqualTo(dto);
+
+        assertThat(requests("l1", "miss")).isEqualTo(1);
+        assertThat(requests("l2", "hit")).isEqualTo(1);
+        assertThat(requests("l1", "hit")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("get → промах в обоих уровнях считается по каждому уровню")
+    void get_missCountedPerTier() {
+        assertThat(cacheManager.getCache("product").get(UUID.randomUUID())).isNull();
+
+        assertThat(requests("l1", "miss")).isEqualTo(1);
+        assertThat(requests("l2", "miss")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("put/evict/clear → пишут в оба уровня и рассылают инвалидацию")
+    void writes_publishInvalidation() {
+        UUID id = UUID.randomUUID();
+        ProductDto dto = new ProductDto(id, "Phone", 3, 100.0);
+        Cache cache = cacheManager.getCache("product");
+
+        cache.put(id, dto);
+        assertThat(redis.getCache("product").get(id, ProductDto.class)).isEqualTo(dto);
+
+        cache.evict(id);
+        assertThat(redis.getCache("product").get(id)).isNull();
+        assertThat(cache.get(id)).isNull();
+
+        cache.clear();
+
+        assertThat(published).extracting(CacheInvalidation::key)
+                .containsExactly(id.toString(), id.toString(), null);
+        assertThat(published).extracting(CacheInvalidation::cacheName).containsOnly("product");
+    }
+
+    @Test
+    @DisplayName("onMessage → сообщение другого экземпляра сбрасывает L1, и значение перечитывается из Redis")
+    void onMessage_evictsNearCache() {
+        UUID id = UUID.randomUUID();
+        Cache cache = cacheManager.getCache("product");
+        cache.put(id, new ProductDto(id, "Old", 1, 10.0));
+
+        // другой экземпляр обновил товар в Redis и разослал инвалидацию
+        ProductDto updated = new ProductDto(id, "New", 2, 20.0);
+        redis.getCache("product").put(id, updated);
+        assertThat(cache.get(id, ProductDto.class).getName()).isEqualTo("Old");
+
+        cacheManager.onMessage(message(new CacheInvalidation("other", "product", id.toString())), null);
+
+        assertThat(cache.get(id, ProductDto.class)).isEqualTo(updated);
+    }
+
+    @Test
+    @DisplayName("onMessage → собственные сообщения и сброс всего кэша")
+    void onMessage_ignoresOwnAndClearsAll() {
+        UUID id = UUID.randomUUID();
+        Cache cache = cacheManager.getCache("products");
+        cache.put("0-10-UNSORTED", List.of(new ProductDto(id, "A", 1, 1.0)));
+        CacheInvalidation own = published.getFirst();
+        redis.getCache("products").clear();
+
+        cacheManager.onMessage(message(own), null);
+        assertThat(cache.get("0-10-UNSORTED")).isNotNull();
+
+        cacheManager.onMessage(message(new CacheInvalidation("other", "products", null)), null);
+        assertThat(cache.get("0-10-UNSORTED")).isNull();
+    }
+
+    @Test
+    @DisplayName("get с загрузчиком → одновременные промахи по одному ключу загружают значение один раз")
+    void getWithLoader_coalescesConcurrentMisses() throws Exception {
+        UUID id = UUID.randomUUID();
+        Cache cache = cacheManager.getCache("product");
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Callable<ProductDto> loader = () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            release.await();
+            return new ProductDto(id, "Phone", 3, 100.0);
+        };
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            List<Future<ProductDto>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.get(id, loader)));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> cache.get(id, loader)));
+            }
+            release.countDown();
+
+            for (Future<ProductDto> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS).getName()).isEqualTo("Phone");
+            }
+        }
+
+        assertThat(loads).hasValue(1);
+        // загрузка — заполнение кэша, а не изменение, инвалидация не рассылается
+        assertThat(published).isEmpty();
+        assertThat(redis.getCache("product").get(id)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("get с загрузчиком → исключение загрузчика оборачивается в ValueRetrievalException")
+    void getWithLoader_wrapsLoaderException() {
+        Cache cache = cacheManager.getCache("product");
+
+        assertThatThrownBy(() -> cache.get(UUID.randomUUID(), () -> {
+            throw new IllegalStateException("нет товара");
+        }))
+                .isInstanceOf(Cache.ValueRetrievalException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("CacheInvalidation → ключ с разделителем переживает encode/decode")
+    void invalidation_roundTrip() {
+        CacheInvalidation invalidation = new CacheInvalidation("origin", "products", "0-10-name: ASC|x");
+
+        assertThat(CacheInvalidation.decode(invalidation.encode())).isEqualTo(invalidation);
+        assertThat(CacheInvalidation.decode(new CacheInvalidation("o", "product", null).encode()).key()).isNull();
+    }
+}
@@ -5,10 +5,17 @@ import com.utochkin.shopservice.config.AuthServerRoleConverter;
 import com.utochkin.shopservice.config.Config;
 import com.utochkin.shopservice.dto.ProductDto;
 import com.utochkin.shopservice.dto.ProductDtoRequest;
+import com.utochkin.shopservice.dto.ProductImportError;
+import com.utochkin.shopservice.dto.ProductImportResult;
 import com.utochkin.shopservice.exceptions.CustomAccessDeniedHandler;
 import com.utochkin.shopservice.exceptions.ProductNotFoundException;
 import com.utochkin.shopservice.requests.OrderRequest;
+import com.utochkin.shopservice.requests.ReserveOrderResponse;
+import com.utochkin.shopservice.requests.ReservedProduct;
+import com.utochkin.shopservice.services.ProductImportFormat;
+import com.utochkin.shopservice.services.ProductImportService;
 import com.utochkin.shopservice.services.ProductService;
+import com.utochkin.shopservice.services.StockReservationService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -50,12 +57,47 @@ class ShopControllerTest {
     @MockitoBean
     private ProductService productService;
 
+    @MockitoBean
+    private ProductImportService productImportService;
+
+    @MockitoBean
+    private StockReservationService stockReservationService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
     @MockitoBean
     private JwtDecoder jwtDecoder;
 
+    @Test
+    @DisplayName("importProducts разрешен Admin, формат определяется по Content-Type")
+    void import_ok_withAdminRole() throws Exception {
+        given(productImportService.importProducts(any(), eq(ProductImportFormat.NDJSON)))
+                .willReturn(new ProductImportResult(1, 1, List.of(new ProductImportError(2, "Цена должна быть положительной"))));
+
+        mvc.perform(post("/shop/api/v1/importProducts")
+                        .with(jwt()
+                                .authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"name\":\"A\",\"quantity\":1,\"price\":10}\n{\"name\":\"B\",\"quantity\":1,\"price\":-1}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(2));
+    }
+
+    @Test
+    @DisplayName("importProducts не разрешен, когда у нас пользователь не Admin")
+    void import_forbidden_forUserRole() throws Exception {
+        mvc.perform(post("/shop/api/v1/importProducts")
+                        .with(jwt()
+                                .authorities(new SimpleGrantedAuthority("ROLE_USER")))
+                        .contentType("text/csv")
+                        .content("name,quantity,price\nA,1,10\n"))
+                .andExpect(status().isForbidden());
+
+        then(productImportService).shouldHaveNoInteractions();
+    }
+
     @Test
     @DisplayName("updateProduct разрешен, когда у нас пользователь Admin")
     void update_ok_withAdminRole() throws Exception {
@@ -83,6 +125,41 @@ class ShopControllerTest {
                 .andExpect(status().isForbidden());
     }
 
+    @Test
+    @DisplayName("shardStock разрешен, когда у нас пользователь Admin")
+    void shardStock_ok_withAdminRole() throws Exception {
+        UUID id = UUID.randomUUID();
+        given(productService.shardStock(id, 16)).willReturn(new ProductDto(id, "L", 1000, 200.0));
+
+        mvc.perform(put("/shop/api/v1/shardStock/{id}", id)
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .param("buckets", "16"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity").value(1000));
+    }
+
+    @Test
+    @DisplayName("shardStock возвращает 400 при недопустимом количестве бакетов")
+    void shardStock_badRequest_forInvalidBuckets() throws Exception {
+        UUID id = UUID.randomUUID();
+        given(productService.shardStock(id, 0)).willThrow(new IllegalArgumentException("Количество бакетов должно быть от 1 до 64"));
+
+        mvc.perform(put("/shop/api/v1/shardStock/{id}", id)
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .param("buckets", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.messageError").value("Количество бакетов должно быть от 1 до 64"));
+    }
+
+    @Test
+    @DisplayName("shardStock не разрешен, когда у нас пользователь не Admin")
+    void shardStock_forbidden_forUserRole() throws Exception {
+        mvc.perform(put("/shop/api/v1/shardStock/{id}", UUID.randomUUID())
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_USER")))
+                        .param("buckets", "16"))
+                .andExpect(status().isForbidden());
+    }
+
     @Nested
     @DisplayName("проверка /shop/api/v1/checkOrder")
     @WithMockUser(roles = "ADMIN")
@@ -116,6 +193,25 @@ class ShopControllerTest {
 
             then(productService).should().getSumTotalPriceOrder(reqs);
         }
+
+        @Test
+        @DisplayName("reserveOrder → признак резерва, цены и сумма")
+        void reserveOrder_reserved() throws Exception {
+            UUID articleId = UUID.randomUUID();
+            List<OrderRequest> reqs = List.of(new OrderRequest(articleId, 2));
+            given(productService.reserveOrder(reqs))
+                    .willReturn(new ReserveOrderResponse(true, 200.0, List.of(new ReservedProduct(articleId, 2, 100.0))));
+
+            mvc.perform(post("/shop/api/v1/reserveOrder")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(reqs)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.reserved").value(true))
+                    .andExpect(jsonPath("$.totalAmount").value(200.0))
+                    .andExpect(jsonPath("$.reservedProducts[0].price").value(100.0));
+
+            then(productService).should().reserveOrder(reqs);
+        }
     }
 
     @Nested
@@ -1,5 +1,6 @@
 package com.utochkin.shopservice.repositories;
 
+import com.utochkin.shopservice.dto.ProductDto;
 import com.utochkin.shopservice.models.Product;
 import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.DisplayName;
@@ -9,10 +10,15 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.FilterType;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -89,6 +95,62 @@ class ProductRepositoryTest {
         assertThat(found).isEmpty();
     }
 
+    @Test
+    @DisplayName("findAllByArticleIdsForUpdate → возвращает запрошенные сущности, упорядоченные по id")
+    void findAllByArticleIdsForUpdate_returnsOrderedById() {
+        UUID id1 = UUID.randomUUID();
+        UUID id2 = UUID.randomUUID();
+        Product p1 = persistProduct(id1, "A", 5, 100.0);
+        Product p2 = persistProduct(id2, "B", 3, 50.0);
+        persistProduct(UUID.randomUUID(), "X", 1, 10.0);
+
+        List<Product> found = productRepository.findAllByArticleIdsForUpdate(List.of(id2, id1));
+
+        assertThat(found)
+                .extracting(Product::getId)
+                .containsExactly(p1.getId(), p2.getId());
+    }
+
+    @Test
+    @DisplayName("decrementQuantities → списывает только строки с достаточным остатком и возвращает несписанные")
+    void decrementQuantities_reportsFailedLines() {
+        UUID enough = UUID.randomUUID();
+        UUID notEnough = UUID.randomUUID();
+        UUID missing = UUID.randomUUID();
+        persistProduct(enough, "A", 5, 100.0);
+        persistProduct(notEnough, "B", 1, 50.0);
+
+        Map<UUID, Integer> quantities = new LinkedHashMap<>();
+        quantities.put(enough, 3);
+        quantities.put(notEnough, 2);
+        quantities.put(missing, 1);
+
+        List<UUID> failed = productRepository.decrementQuantities(quantities);
+        em.clear();
+
+        assertThat(failed).containsExactly(notEnough, missing);
+        assertThat(productRepository.findByArticleId(enough)).get().extracting(Product::getQuantity).isEqualTo(2);
+        assertThat(productRepository.findByArticleId(notEnough)).get().extracting(Product::getQuantity).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("incrementQuantities → возвращает остатки и сообщает о несуществующих артикулах")
+    void incrementQuantities_restoresStock() {
+        UUID id = UUID.randomUUID();
+        UUID missing = UUID.randomUUID();
+        persistProduct(id, "A", 5, 100.0);
+
+        Map<UUID, Integer> quantities = new LinkedHashMap<>();
+        quantities.put(id, 4);
+        quantities.put(missing, 1);
+
+        List<UUID> failed = productRepository.incrementQuantities(quantities);
+        em.clear();
+
+        assertThat(failed).containsExactly(missing);
+        assertThat(productRepository.findByArticleId(id)).get().extracting(Product::getQuantity).isEqualTo(9);
+    }
+
     @Test
     @DisplayName("findByArticleId → существующий артикул возвращает Optional с сущностью")
     void findByArticleId_existing_returnsProduct() {
@@ -127,4 +189,46 @@ class ProductRepositoryTest {
 
         assertThat(productRepository.findByArticleId(id)).isEmpty();
     }
+
+    @Test
+    @DisplayName("findPageAfter → листает по (name, id) без пропусков и повторов, в том числе при одинаковых именах")
+    void findPageAfter_walksAllRowsByName() {
+        persistProduct(UUID.randomUUID(), "B", 1, 30.0);
+        persistProduct(UUID.randomUUID(), "A", 1, 10.0);
+        persistProduct(UUID.randomUUID(), "B", 1, 20.0);
+        persistProduct(UUID.randomUUID(), "C", 1, 40.0);
+
+        List<ProductListRow> first = productRepository.findPageAfter(ProductSortKey.NAME, false, null, null, 2);
+        ProductListRow last = first.getLast();
+        List<ProductListRow> second = productRepository.findPageAfter(ProductSortKey.NAME, false, last.name(), last.id(), 2);
+
+        assertThat(first).extracting(ProductListRow::name).containsExactly("A", "B");
+        assertThat(second).extracting(ProductListRow::name).containsExactly("B", "C");
+        assertThat(second.getFirst().id()).isGreaterThan(last.id());
+    }
+
+    @Test
+    @DisplayName("findPageAfter → по убыванию цены начинает после курсора")
+    void findPageAfter_priceDescending() {
+        persistProduct(UUID.randomUUID(), "A", 1, 10.0);
+        Product middle = persistProduct(UUID.randomUUID(), "B", 1, 20.0);
+        persistProduct(UUID.randomUUID(), "C", 1, 30.0);
+
+        List<ProductListRow> rows = productRepository.findPageAfter(ProductSortKey.PRICE, true, "20.0", middle.getId(), 10);
+
+        assertThat(rows).extracting(ProductListRow::price).containsExactly(10.0);
+    }
+
+    @Test
+    @DisplayName("findAllProductDtos → страница сразу в ProductDto с сортировкой из Pageable")
+    void findAllProductDtos_returnsSortedSlice() {
+        UUID id = UUID.randomUUID();
+        persistProduct(id, "A", 3, 10.0);
+        persistProduct(UUID.randomUUID(), "B", 4, 20.0);
+
+        Slice<ProductDto> slice = productRepository.findAllProductDtos(PageRequest.of(0, 1, Sort.by("name")));
+
+        assertThat(slice.getContent()).containsExactly(new ProductDto(id, "A", 3, 10.0));
+        assertThat(slice.hasNext()).isTrue();
+    }
 }
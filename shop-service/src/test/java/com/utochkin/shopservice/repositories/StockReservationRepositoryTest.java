@@ -0,0 +1,91 @@
+package com.utochkin.shopservice.repositories;
+
+import com.utochkin.shopservice.models.ReservationStatus;
+import com.utochkin.shopservice.models.ReservedItem;
+import com.utochkin.shopservice.models.StockReservation;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(
+        includeFilters = @ComponentScan.Filter(
+                type = FilterType.ASSIGNABLE_TYPE,
+                classes = StockReservationRepository.class
+        )
+)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false"
+})
+@ActiveProfiles("test")
+class StockReservationRepositoryTest {
+
+    @Autowired
+    private StockReservationRepository reservationRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    private UUID persistReservation(ReservationStatus status, Instant expiresAt) {
+        UUID id = UUID.randomUUID();
+        em.persist(StockReservation.builder()
+                .reservationId(id)
+                .status(status)
+                .totalAmount(10.0)
+                .expiresAt(expiresAt)
+                .createdAt(Instant.now())
+                .items(new ArrayList<>(List.of(new ReservedItem(UUID.randomUUID(), 1))))
+                .build());
+        em.flush();
+        return id;
+    }
+
+    @Test
+    @DisplayName("findExpiredForUpdate → только просроченные HELD, самые старые первыми, не больше limit")
+    void findExpiredForUpdate_oldestHeldFirst() {
+        Instant now = Instant.now();
+        UUID oldest = persistReservation(ReservationStatus.HELD, now.minus(Duration.ofMinutes(10)));
+        UUID older = persistReservation(ReservationStatus.HELD, now.minus(Duration.ofMinutes(5)));
+        persistReservation(ReservationStatus.HELD, now.minus(Duration.ofMinutes(1)));
+        persistReservation(ReservationStatus.HELD, now.plus(Duration.ofMinutes(5)));
+        persistReservation(ReservationStatus.CONFIRMED, now.minus(Duration.ofMinutes(20)));
+
+        List<StockReservation> expired = reservationRepository.findExpiredForUpdate(now, Limit.of(2));
+
+        assertThat(expired).extracting(StockReservation::getReservationId).containsExactly(oldest, older);
+    }
+
+    @Test
+    @DisplayName("compareAndSetStatus и hold → меняют статус только из ожидаемого, снятый резерв не возвращается в HELD")
+    void compareAndSetStatus_andHold() {
+        Instant now = Instant.now();
+        UUID id = persistReservation(ReservationStatus.HELD, now);
+
+        assertThat(reservationRepository.compareAndSetStatus(id, ReservationStatus.HELD, ReservationStatus.CONFIRMED, now)).isEqualTo(1);
+        assertThat(reservationRepository.compareAndSetStatus(id, ReservationStatus.HELD, ReservationStatus.CONFIRMED, now)).isZero();
+        assertThat(reservationRepository.hold(id, now.plus(Duration.ofMinutes(15)), now)).isEqualTo(1);
+        em.clear();
+        assertThat(reservationRepository.findById(id).orElseThrow().getStatus()).isEqualTo(ReservationStatus.HELD);
+
+        assertThat(reservationRepository.compareAndSetStatus(id, ReservationStatus.HELD, ReservationStatus.RELEASED, now)).isEqualTo(1);
+        assertThat(reservationRepository.hold(id, now.plus(Duration.ofMinutes(15)), now)).isZero();
+    }
+}
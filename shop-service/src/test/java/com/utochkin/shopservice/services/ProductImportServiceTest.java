@@ -0,0 +1,149 @@
+package com.utochkin.shopservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utochkin.shopservice.dto.ProductImportError;
+import com.utochkin.shopservice.dto.ProductImportResult;
+import com.utochkin.shopservice.repositories.ProductImportRow;
+import com.utochkin.shopservice.repositories.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductImportServiceTest {
+
+    @Mock
+    private ProductRepository productRepo;
+
+    @Mock
+    private StockBucketService stockBucketService;
+
+    @Mock
+    private StockView stockView;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private ProductCatalogCache productCatalogCache;
+    private ProductImportService importService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        productCatalogCache = spy(new ProductCatalogCache(new ConcurrentMapCacheManager()));
+        importService = new ProductImportService(productRepo, stockBucketService, productCatalogCache, stockView,
+                transactionTemplate, new ObjectMapper(), 2);
+        lenient().doAnswer(inv -> {
+            ((Consumer<TransactionStatus>) inv.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        lenient().when(stockBucketService.findSharded(anyCollection())).thenReturn(Set.of());
+    }
+
+    private static InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("CSV: пишет батчами по batch-size, ошибки возвращает с номерами строк, кэш сбрасывает один раз")
+    @SuppressWarnings("unchecked")
+    void importCsv_batchesAndReportsErrors() {
+        UUID existing = UUID.randomUUID();
+        String csv = """
+                price,name,quantity,article_id
+                10.5,"Чайник, белый",3,%s
+                1,Без артикула,1,
+                -1,Плохая цена,1,
+                20,"Кружка ""Лого""\",0,
+
+                30,Ложка,7,not-a-uuid
+                40,Вилка,2,
+                """.formatted(existing);
+
+        ProductImportResult result = importService.importProducts(body(csv), ProductImportFormat.CSV);
+
+        ArgumentCaptor<List<ProductImportRow>> batches = ArgumentCaptor.forClass(List.class);
+        verify(productRepo, times(2)).upsertProducts(batches.capture());
+        assertThat(batches.getAllValues()).extracting(List::size).containsExactly(2, 2);
+        assertThat(batches.getAllValues().getFirst().getFirst())
+                .isEqualTo(new ProductImportRow(2, existing, "Чайник, белый", 3, 10.5));
+        assertThat(batches.getAllValues().get(1).getFirst().name()).isEqualTo("Кружка \"Лого\"");
+
+        assertThat(result.getImported()).isEqualTo(4);
+        assertThat(result.getFailed()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(ProductImportError::getLine).containsExactly(4L, 7L);
+        verify(productCatalogCache, times(1)).evictAll();
+    }
+
+    @Test
+    @DisplayName("NDJSON: у шардированного товара остаток раскладывается по его бакетам")
+    void importNdjson_distributesShardedStock() {
+        UUID sharded = UUID.randomUUID();
+        when(stockBucketService.findSharded(anyCollection())).thenReturn(Set.of(sharded));
+        when(stockBucketService.bucketCount(sharded)).thenReturn(4);
+
+        ProductImportResult result = importService.importProducts(body("""
+                {"articleId":"%s","name":"Чайник","quantity":40,"price":10}
+                [1,2]
+                """.formatted(sharded)), ProductImportFormat.NDJSON);
+
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getErrors()).extracting(ProductImportError::getLine).containsExactly(2L);
+        verify(stockBucketService).distribute(sharded, 40, 4);
+        verify(stockView).evictAfterCommit(List.of(sharded));
+    }
+
+    @Test
+    @DisplayName("батч, отклонённый БД, повторяется по строкам, и ошибка достаётся только виноватой")
+    void import_failedBatchRetriedRowByRow() {
+        doAnswer(inv -> {
+            List<ProductImportRow> rows = inv.getArgument(0);
+            if (rows.stream().anyMatch(row -> row.name().equals("Дубль"))) {
+                throw new DataIntegrityViolationException("duplicate key");
+            }
+            return null;
+        }).when(productRepo).upsertProducts(any());
+
+        ProductImportResult result = importService.importProducts(body("""
+                name,quantity,price
+                Дубль,1,10
+                Чайник,1,10
+                """), ProductImportFormat.CSV);
+
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getErrors()).containsExactly(new ProductImportError(2, "duplicate key"));
+    }
+
+    @Test
+    @DisplayName("CSV без обязательных колонок и неизвестный Content-Type отклоняются целиком")
+    void import_invalidHeaderOrFormat_throws() {
+        assertThatThrownBy(() -> importService.importProducts(body("name,price\nA,1\n"), ProductImportFormat.CSV))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ProductImportFormat.of(org.springframework.http.MediaType.APPLICATION_JSON))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(productRepo);
+        verify(productCatalogCache, never()).evictAll();
+    }
+}
@@ -5,6 +5,7 @@ import com.utochkin.shopservice.dto.ProductDtoRequest;
 import com.utochkin.shopservice.mappers.ProductMapper;
 import com.utochkin.shopservice.models.Product;
 import com.utochkin.shopservice.repositories.ProductRepository;
+import com.utochkin.shopservice.requests.OrderRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -22,6 +23,7 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -32,7 +34,7 @@ import static org.mockito.BDDMockito.then;
 import static org.mockito.Mockito.times;
 
 @ExtendWith(SpringExtension.class)
-@Import(ProductService.class)
+@Import({ProductService.class, ProductCatalogCache.class})
 class ProductServiceCacheTest {
 
     @Autowired
@@ -44,6 +46,12 @@ class ProductServiceCacheTest {
     @MockitoBean
     private ProductMapper productMapper;
 
+    @MockitoBean
+    private StockBucketService stockBucketService;
+
+    @MockitoBean
+    private StockView stockView;
+
     @Autowired
     private CacheManager cacheManager;
 
@@ -57,8 +65,8 @@ class ProductServiceCacheTest {
     public static class CacheTestConfig {
         @Bean
         public CacheManager cacheManager() {
-            // создаём in‑memory кэши "products" и "product"
-            return new ConcurrentMapCacheManager("products", "product");
+            // in‑memory кэши создаются при первом обращении: "product" и страницы "products:<поля сортировки>"
+            return new ConcurrentMapCacheManager();
         }
     }
 
@@ -76,17 +84,14 @@ class ProductServiceCacheTest {
         sampleDto = new ProductDto(sampleId, "A", 5, 10.0);
 
         // очистим кеши перед каждым тестом
-        cacheManager.getCache("product").clear();
-        cacheManager.getCache("products").clear();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
     }
 
     @Test
     @DisplayName("кэширование на getAllProducts")
     void caching_getAllProducts() {
         // given
-        Page<Product> page = new PageImpl<>(List.of(sampleEntity), pageable, 1);
-        given(productRepo.findAll(pageable)).willReturn(page);
-        given(productMapper.toListDto(page.getContent())).willReturn(List.of(sampleDto));
+        given(productRepo.findAllProductDtos(pageable)).willReturn(new SliceImpl<>(List.of(sampleDto), pageable, false));
 
         // when — первый вызов
         List<ProductDto> first = productService.getAllProducts(pageable);
@@ -96,13 +101,14 @@ class ProductServiceCacheTest {
         // then
         assertThat(first).isEqualTo(second);
         // репозиторий должен был вызваться 1 раз
-        then(productRepo).should(times(1)).findAll(pageable);
-        // в кеше лежит результат под ключом "page-size-sort"
+        then(productRepo).should(times(1)).findAllProductDtos(pageable);
+        // страница хранит только articleId под ключом "page-size-sort", сам товар — в кэше "product"
         String key = "0-2-" + pageable.getSort().toString();
-        Cache cache = cacheManager.getCache("products");
+        Cache cache = cacheManager.getCache(pagesCache(pageable));
         @SuppressWarnings("unchecked")
-        List<ProductDto> cached = cache.get(key, List.class);
-        assertThat(cached).containsExactly(sampleDto);
+        List<UUID> cached = cache.get(key, List.class);
+        assertThat(cached).containsExactly(sampleId);
+        assertThat(cacheManager.getCache("product").get(sampleId, ProductDto.class)).isEqualTo(sampleDto);
     }
 
     @Test
@@ -126,8 +132,8 @@ class ProductServiceCacheTest {
 
         // 1) заполняем кэш getAllProducts
         Pageable page = PageRequest.of(0, 10, Sort.by("name").ascending());
-        given(productRepo.findAll(page))
-                .willReturn(new PageImpl<>(List.of()));
+        given(productRepo.findAllProductDtos(page))
+                .willReturn(new SliceImpl<>(List.of()));
 
         // первый вызов — кладёт в кэш пустой список
         List<ProductDto> before = productService.getAllProducts(page);
@@ -138,14 +144,14 @@ class ProductServiceCacheTest {
                 + "-" + page.getPageSize()
                 + "-" + page.getSort().toString();
         // убеждаемся, что кэш не пустой
-        assertThat(cacheManager.getCache("products").get(productsKey)).isNotNull();
+        assertThat(cacheManager.getCache(pagesCache(page)).get(productsKey)).isNotNull();
 
         // 2) вызываем addProduct → должен инвалидировать "products" и заполнить "product"
         ProductDto actual = productService.addProduct(req);
         assertThat(actual).isEqualTo(returnedDto);
 
         // 3) кэш "products" под тем же ключом должен исчезнуть
-        assertThat(cacheManager.getCache("products").get(productsKey)).isNull();
+        assertThat(cacheManager.getCache(pagesCache(page)).get(productsKey)).isNull();
 
         // 4) а кэш "product" под ключом articleId должен содержать returnedDto
         Cache.ValueWrapper wrapped = cacheManager.getCache("product")
@@ -160,15 +166,19 @@ class ProductServiceCacheTest {
     @Test
     @DisplayName("работа кэширования при удалении продукта")
     void caching_evictCachesOnDelete() {
-        cacheManager.getCache("products").put("0-2-" + pageable.getSort(), List.of(sampleDto));
+        UUID otherId = UUID.randomUUID();
+        cacheManager.getCache(pagesCache(pageable)).put("0-2-" + pageable.getSort(), List.of(sampleId, otherId));
         cacheManager.getCache("product").put(sampleId, sampleDto);
+        cacheManager.getCache("product").put(otherId, new ProductDto(otherId, "B", 1, 1.0));
 
         given(productRepo.findByArticleId(sampleId)).willReturn(Optional.of(sampleEntity));
 
         productService.deleteProduct(sampleId);
 
-        assertThat(cacheManager.getCache("products").get("0-2-" + pageable.getSort())).isNull();
+        assertThat(cacheManager.getCache(pagesCache(pageable)).get("0-2-" + pageable.getSort())).isNull();
         assertThat(cacheManager.getCache("product").get(sampleId)).isNull();
+        // остальные товары из кэша не выкидываются
+        assertThat(cacheManager.getCache("product").get(otherId)).isNotNull();
 
         then(productRepo).should().deleteByArticleId(sampleId);
     }
@@ -176,7 +186,8 @@ class ProductServiceCacheTest {
     @Test
     @DisplayName("работа кэширования при обновлении продукта")
     void caching_putOnUpdateAndEvictProducts() {
-        cacheManager.getCache("products").put("0-2-" + pageable.getSort(), List.of(sampleDto));
+        cacheManager.getCache(pagesCache(pageable)).put("0-2-" + pageable.getSort(), List.of(sampleId));
+        cacheManager.getCache(ProductCatalogCache.SEARCH_CACHE).put("a|null|null|false|RELEVANCE|0|20", List.of(sampleDto));
 
         given(productRepo.findByArticleId(sampleId)).willReturn(Optional.of(sampleEntity));
 
@@ -189,11 +200,70 @@ class ProductServiceCacheTest {
 
         assertThat(result).isEqualTo(updatedDto);
 
-        assertThat(cacheManager.getCache("products").get("0-2-" + pageable.getSort())).isNull();
+        // имя изменилось — страницы, отсортированные по имени, и результаты поиска сбрасываются
+        assertThat(cacheManager.getCache(ProductCatalogCache.SEARCH_CACHE).get("a|null|null|false|RELEVANCE|0|20")).isNull();
+        assertThat(cacheManager.getCache(pagesCache(pageable)).get("0-2-" + pageable.getSort())).isNull();
 
         ProductDto cached = cacheManager.getCache("product").get(sampleId, ProductDto.class);
         assertThat(cached).isEqualTo(updatedDto);
 
         then(productRepo).should().save(sampleEntity);
     }
+
+    @Test
+    @DisplayName("смена цены сбрасывает только страницы с сортировкой по цене, товар на странице берётся обновлённым")
+    void caching_updatePriceKeepsNameSortedPages() {
+        Pageable byPrice = PageRequest.of(0, 2, Sort.by("price"));
+        given(productRepo.findAllProductDtos(pageable)).willReturn(new SliceImpl<>(List.of(sampleDto), pageable, false));
+        productService.getAllProducts(pageable);
+        cacheManager.getCache(pagesCache(byPrice)).put("0-2-" + byPrice.getSort(), List.of(sampleId));
+
+        ProductDto updatedDto = new ProductDto(sampleId, "A", 5, 99.0);
+        given(productRepo.findByArticleId(sampleId)).willReturn(Optional.of(sampleEntity));
+        given(productMapper.toDto(sampleEntity)).willReturn(updatedDto);
+
+        productService.updateProduct(sampleId, new ProductDtoRequest("A", 5, 99.0));
+
+        assertThat(cacheManager.getCache(pagesCache(byPrice)).get("0-2-" + byPrice.getSort())).isNull();
+        assertThat(productService.getAllProducts(pageable)).containsExactly(updatedDto);
+        // страница по имени не перечитывалась из БД
+        then(productRepo).should(times(1)).findAllProductDtos(pageable);
+    }
+
+    @Test
+    @DisplayName("товар, выпавший из кэша, догружается по articleId, а не страницей целиком")
+    void caching_missingProductLoadedById() {
+        cacheManager.getCache(pagesCache(pageable)).put("0-2-" + pageable.getSort(), List.of(sampleId));
+        given(productRepo.findAllByArticleIds(List.of(sampleId))).willReturn(List.of(sampleEntity));
+        given(productMapper.toListDto(List.of(sampleEntity))).willReturn(List.of(sampleDto));
+
+        assertThat(productService.getAllProducts(pageable)).containsExactly(sampleDto);
+
+        then(productRepo).should(times(0)).findAllProductDtos(pageable);
+        assertThat(cacheManager.getCache("product").get(sampleId, ProductDto.class)).isEqualTo(sampleDto);
+    }
+
+    @Test
+    @DisplayName("остаток берётся из StockView поверх закэшированного товара, заказ не сбрасывает кэш")
+    void stock_mergedFromStockViewWithoutEviction() {
+        given(productRepo.findByArticleId(sampleId)).willReturn(Optional.of(sampleEntity));
+        given(productMapper.toDto(sampleEntity)).willReturn(sampleDto);
+        given(stockView.quantities(List.of(sampleId))).willReturn(Map.of(sampleId, 5));
+
+        assertThat(productService.getProduct(sampleId).getQuantity()).isEqualTo(5);
+
+        given(productRepo.decrementQuantities(Map.of(sampleId, 4))).willReturn(List.of());
+        productService.changeTotalQuantityProductsAfterCreateOrder(List.of(new OrderRequest(sampleId, 4)));
+        given(stockView.quantities(List.of(sampleId))).willReturn(Map.of(sampleId, 1));
+
+        assertThat(productService.getProduct(sampleId).getQuantity()).isEqualTo(1);
+        then(stockView).should().adjustAfterCommit(Map.of(sampleId, -4));
+        // товар остался в кэше и не перечитывался, закэшированная копия не изменилась
+        then(productRepo).should(times(1)).findByArticleId(sampleId);
+        assertThat(cacheManager.getCache("product").get(sampleId, ProductDto.class).getQuantity()).isEqualTo(5);
+    }
+
+    private static String pagesCache(Pageable pageable) {
+        return ProductCatalogCache.pagesCacheName(pageable.getSort());
+    }
 }
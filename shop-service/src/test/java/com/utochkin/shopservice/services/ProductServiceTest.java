@@ -1,30 +1,44 @@
 package com.utochkin.shopservice.services;
 
+import com.utochkin.shopservice.dto.ProductCursorPage;
 import com.utochkin.shopservice.dto.ProductDto;
 import com.utochkin.shopservice.dto.ProductDtoRequest;
+import com.utochkin.shopservice.dto.ProductSearchPage;
 import com.utochkin.shopservice.exceptions.ProductNotFoundException;
 import com.utochkin.shopservice.mappers.ProductMapper;
 import com.utochkin.shopservice.models.Product;
+import com.utochkin.shopservice.repositories.ProductListRow;
 import com.utochkin.shopservice.repositories.ProductRepository;
+import com.utochkin.shopservice.repositories.ProductSearchQuery;
+import com.utochkin.shopservice.repositories.ProductSearchSort;
+import com.utochkin.shopservice.repositories.ProductSortKey;
 import com.utochkin.shopservice.requests.OrderRequest;
+import com.utochkin.shopservice.requests.ReserveOrderResponse;
+import com.utochkin.shopservice.requests.ReservedProduct;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,6 +50,15 @@ class ProductServiceTest {
     @Mock
     private ProductMapper productMapper;
 
+    @Mock
+    private StockBucketService stockBucketService;
+
+    @Mock
+    private StockView stockView;
+
+    @Spy
+    private ProductCatalogCache productCatalogCache = new ProductCatalogCache(new ConcurrentMapCacheManager());
+
     @InjectMocks
     private ProductService productService;
 
@@ -101,50 +124,191 @@ class ProductServiceTest {
     }
 
     @Test
-    @DisplayName("changeTotalQuantityProductsAfterCreateOrder: уменьшает количество")
+    @DisplayName("changeTotalQuantityProductsAfterCreateOrder: уменьшает количество одним условным batch-обновлением")
     void changeTotalQuantityProductsAfterCreateOrder_happy() {
-        when(productRepo.findAllByArticleIds(List.of(uuid)))
-                .thenReturn(List.of(product));
+        when(productRepo.decrementQuantities(Map.of(uuid, 3)))
+                .thenReturn(List.of());
 
         productService.changeTotalQuantityProductsAfterCreateOrder(List.of(orderRequest));
 
+        verify(productRepo).decrementQuantities(Map.of(uuid, 3));
+        verify(productRepo, never()).findAllByArticleIds(any());
+        verify(productRepo, never()).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("changeTotalQuantityProductsAfterCreateOrder: выбрасывает исключение со списком несписанных артикулов")
+    void changeTotalQuantityProductsAfterCreateOrder_errors() {
+        when(productRepo.decrementQuantities(Map.of(uuid, 3)))
+                .thenReturn(List.of(uuid));
+
+        assertThatThrownBy(() -> productService.changeTotalQuantityProductsAfterCreateOrder(List.of(orderRequest)))
+                .isInstanceOf(ProductNotFoundException.class)
+                .hasMessageContaining("Недостаточно товара")
+                .hasMessageContaining(uuid.toString());
+    }
+
+    @Test
+    @DisplayName("changeTotalQuantityProductsAfterCreateOrder: повторяющиеся артикулы списываются одной строкой batch")
+    void changeTotalQuantityProductsAfterCreateOrder_mergesDuplicates() {
+        when(productRepo.decrementQuantities(Map.of(uuid, 5)))
+                .thenReturn(List.of());
+
+        productService.changeTotalQuantityProductsAfterCreateOrder(List.of(new OrderRequest(uuid, 2), orderRequest));
+
+        verify(productRepo).decrementQuantities(Map.of(uuid, 5));
+    }
+
+    @Test
+    @DisplayName("reserveOrder: списывает остатки и возвращает цены и сумму за один запрос")
+    void reserveOrder_happy() {
+        when(productRepo.findAllByArticleIdsForUpdate(List.of(uuid)))
+                .thenReturn(List.of(product));
+
+        ReserveOrderResponse response = productService.reserveOrder(List.of(orderRequest));
+
+        assertThat(response.getReserved()).isTrue();
+        assertThat(response.getTotalAmount()).isEqualTo(30.0);
+        assertThat(response.getReservedProducts()).containsExactly(new ReservedProduct(uuid, 3, 10.0));
         assertThat(product.getQuantity()).isEqualTo(2);
         verify(productRepo).saveAll(List.of(product));
+        verify(productRepo, never()).findAllByArticleIds(any());
     }
 
     @Test
-    @DisplayName("changeTotalQuantityProductsAfterCreateOrder: выбрасывает исключение при отсутствии или недостаточном количестве")
-    void changeTotalQuantityProductsAfterCreateOrder_errors() {
-        when(productRepo.findAllByArticleIds(List.of(uuid)))
+    @DisplayName("reserveOrder: суммирует количество для повторяющихся артикулов")
+    void reserveOrder_mergesDuplicateArticles() {
+        when(productRepo.findAllByArticleIdsForUpdate(List.of(uuid)))
+                .thenReturn(List.of(product));
+
+        ReserveOrderResponse response = productService.reserveOrder(List.of(new OrderRequest(uuid, 2), new OrderRequest(uuid, 2)));
+
+        assertThat(response.getReserved()).isTrue();
+        assertThat(response.getTotalAmount()).isEqualTo(40.0);
+        assertThat(product.getQuantity()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("reserveOrder: при нехватке или отсутствии товара ничего не списывает")
+    void reserveOrder_insufficientOrMissing_notReserved() {
+        product.setQuantity(2);
+        when(productRepo.findAllByArticleIdsForUpdate(List.of(uuid)))
+                .thenReturn(List.of(product));
+
+        ReserveOrderResponse response = productService.reserveOrder(List.of(orderRequest));
+
+        assertThat(response.getReserved()).isFalse();
+        assertThat(response.getTotalAmount()).isNull();
+        assertThat(product.getQuantity()).isEqualTo(2);
+
+        when(productRepo.findAllByArticleIdsForUpdate(List.of(uuid)))
                 .thenReturn(List.of());
-        assertThatThrownBy(() -> productService.changeTotalQuantityProductsAfterCreateOrder(List.of(orderRequest)))
-                .isInstanceOf(ProductNotFoundException.class);
+        assertThat(productService.reserveOrder(List.of(orderRequest)).getReserved()).isFalse();
 
+        verify(productRepo, never()).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("checkOrder: для шардированного товара берёт остаток из суммы бакетов")
+    void checkOrder_shardedUsesBucketSum() {
+        product.setQuantity(0);
         when(productRepo.findAllByArticleIds(List.of(uuid)))
                 .thenReturn(List.of(product));
-        product.setQuantity(1);
-        assertThatThrownBy(() -> productService.changeTotalQuantityProductsAfterCreateOrder(List.of(orderRequest)))
-                .isInstanceOf(ProductNotFoundException.class)
-                .hasMessageContaining("Недостаточно товара");
+        when(stockBucketService.sumQuantities(Set.of(uuid)))
+                .thenReturn(Map.of(uuid, 7));
+
+        assertThat(productService.checkOrder(List.of(orderRequest))).isTrue();
+    }
+
+    @Test
+    @DisplayName("reserveOrder: шардированный товар списывается из бакетов без блокировки строки products")
+    void reserveOrder_sharded() {
+        product.setQuantity(0);
+        when(stockBucketService.findSharded(Set.of(uuid))).thenReturn(Set.of(uuid));
+        when(productRepo.findAllByArticleIds(List.of(uuid))).thenReturn(List.of(product));
+        when(stockBucketService.tryDecrement(uuid, 3)).thenReturn(true);
+
+        ReserveOrderResponse response = productService.reserveOrder(List.of(orderRequest));
+
+        assertThat(response.getReserved()).isTrue();
+        assertThat(response.getTotalAmount()).isEqualTo(30.0);
+        assertThat(product.getQuantity()).isZero();
+        verify(productRepo, never()).findAllByArticleIdsForUpdate(any());
+    }
+
+    @Test
+    @DisplayName("reserveOrder: при нехватке в бакетах возвращает уже списанное по другим шардированным товарам")
+    void reserveOrder_shardedShortage_releasesReserved() {
+        UUID first = new UUID(0, 1);
+        UUID second = new UUID(0, 2);
+        Product secondProduct = Product.builder().articleId(second).name("Other").quantity(0).price(1.0).build();
+        Product firstProduct = Product.builder().articleId(first).name("First").quantity(0).price(1.0).build();
+        when(stockBucketService.findSharded(Set.of(second, first))).thenReturn(Set.of(first, second));
+        when(productRepo.findAllByArticleIds(any())).thenReturn(List.of(firstProduct, secondProduct));
+        when(stockBucketService.tryDecrement(first, 1)).thenReturn(true);
+        when(stockBucketService.tryDecrement(second, 2)).thenReturn(false);
+
+        ReserveOrderResponse response = productService.reserveOrder(List.of(new OrderRequest(second, 2), new OrderRequest(first, 1)));
+
+        assertThat(response.getReserved()).isFalse();
+        verify(stockBucketService).increment(first, 1);
+        verify(productRepo, never()).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("shardStock: переносит остаток products в бакеты и обнуляет его в строке товара")
+    void shardStock_movesQuantityToBuckets() {
+        ProductDto dto = new ProductDto(uuid, "Item", 0, 10.0);
+        when(productRepo.findAllByArticleIdsForUpdate(List.of(uuid))).thenReturn(List.of(product));
+        when(productMapper.toDto(product)).thenReturn(dto);
+
+        ProductDto result = productService.shardStock(uuid, 4);
+
+        verify(stockBucketService).distribute(uuid, 5, 4);
+        assertThat(product.getQuantity()).isZero();
+        assertThat(result.getQuantity()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("shardStock: один бакет возвращает остаток обратно в products")
+    void shardStock_singleBucketFoldsBack() {
+        product.setQuantity(0);
+        when(productRepo.findAllByArticleIdsForUpdate(List.of(uuid))).thenReturn(List.of(product));
+        when(stockBucketService.removeBuckets(uuid)).thenReturn(12);
+        when(productMapper.toDto(product)).thenReturn(new ProductDto(uuid, "Item", 12, 10.0));
+
+        productService.shardStock(uuid, 1);
+
+        verify(stockBucketService, never()).distribute(any(), anyInt(), anyInt());
+        assertThat(product.getQuantity()).isEqualTo(12);
+    }
+
+    @Test
+    @DisplayName("shardStock: недопустимое количество бакетов")
+    void shardStock_invalidBuckets_throws() {
+        assertThatThrownBy(() -> productService.shardStock(uuid, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> productService.shardStock(uuid, StockBucketService.MAX_BUCKETS + 1))
+                .isInstanceOf(IllegalArgumentException.class);
     }
 
     @Test
     @DisplayName("changeTotalQuantityProductsAfterRefundedOrder: восстанавливает количество")
     void changeTotalQuantityProductsAfterRefundedOrder_happy() {
-        when(productRepo.findAllByArticleIds(List.of(uuid)))
-                .thenReturn(List.of(product));
+        when(productRepo.incrementQuantities(Map.of(uuid, 3)))
+                .thenReturn(List.of());
 
         productService.changeTotalQuantityProductsAfterRefundedOrder(List.of(orderRequest));
 
-        assertThat(product.getQuantity()).isEqualTo(8);
-        verify(productRepo).saveAll(List.of(product));
+        verify(productRepo).incrementQuantities(Map.of(uuid, 3));
+        verify(productRepo, never()).saveAll(any());
     }
 
     @Test
     @DisplayName("changeTotalQuantityProductsAfterRefundedOrder: выбрасывает исключение, когда пусто")
     void changeTotalQuantityProductsAfterRefundedOrder_missing_throws() {
-        when(productRepo.findAllByArticleIds(List.of(uuid)))
-                .thenReturn(List.of());
+        when(productRepo.incrementQuantities(Map.of(uuid, 3)))
+                .thenReturn(List.of(uuid));
         assertThatThrownBy(() -> productService.changeTotalQuantityProductsAfterRefundedOrder(List.of(orderRequest)))
                 .isInstanceOf(ProductNotFoundException.class);
     }
@@ -155,16 +319,104 @@ class ProductServiceTest {
         Pageable pg = PageRequest.of(0,2);
         Product p2 = Product.builder().articleId(UUID.randomUUID())
                 .name("X").quantity(1).price(5.0).build();
-        when(productRepo.findAll(pg))
-                .thenReturn(new PageImpl<>(List.of(product, p2)));
         ProductDto dto1 = new ProductDto(uuid, "Item", 5, 10.0);
         ProductDto dto2 = new ProductDto(p2.getArticleId(), "X",1,5.0);
-        when(productMapper.toListDto(List.of(product, p2))).thenReturn(List.of(dto1, dto2));
+        when(productRepo.findAllProductDtos(pg))
+                .thenReturn(new SliceImpl<>(List.of(dto1, dto2)));
 
         List<ProductDto> out = productService.getAllProducts(pg);
         assertThat(out).containsExactly(dto1, dto2);
     }
 
+    @Test
+    @DisplayName("getAllProducts: сортировка по quantity отклоняется — у шардированных товаров остаток в бакетах")
+    void getAllProducts_quantitySort_throws() {
+        Pageable pg = PageRequest.of(0, 2, Sort.by("quantity"));
+
+        assertThatThrownBy(() -> productService.getAllProducts(pg))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(productRepo, never()).findAllProductDtos(any());
+    }
+
+    @Test
+    @DisplayName("getProductsAfter: берёт на строку больше и строит курсор по последнему товару страницы")
+    void getProductsAfter_buildsNextCursor() {
+        UUID second = UUID.randomUUID();
+        when(productRepo.findPageAfter(ProductSortKey.NAME, false, "Item", 7L, 3)).thenReturn(List.of(
+                new ProductListRow(8, uuid, "Item, большой", 5, 10.0),
+                new ProductListRow(9, second, "X", 1, 5.0),
+                new ProductListRow(10, UUID.randomUUID(), "Y", 1, 5.0)));
+
+        ProductCursorPage page = productService.getProductsAfter("name,asc", "Item,7", 2);
+
+        assertThat(page.getItems()).extracting(ProductDto::getArticleId).containsExactly(uuid, second);
+        assertThat(page.getNextCursor()).isEqualTo("X,9");
+    }
+
+    @Test
+    @DisplayName("getProductsAfter: последняя страница без курсора, значение с запятой разбирается по последней запятой")
+    void getProductsAfter_lastPage() {
+        when(productRepo.findPageAfter(ProductSortKey.PRICE, true, "10.5", 3L, 6))
+                .thenReturn(List.of(new ProductListRow(2, uuid, "Item", 5, 10.0)));
+
+        ProductCursorPage page = productService.getProductsAfter("price,desc", "10.5,3", 5);
+
+        assertThat(page.getItems()).hasSize(1);
+        assertThat(page.getNextCursor()).isNull();
+
+        when(productRepo.findPageAfter(ProductSortKey.NAME, false, "a,b", 4L, 6)).thenReturn(List.of());
+        assertThat(productService.getProductsAfter("name", "a,b,4", 5).getItems()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("getProductsAfter: некорректные курсор, сортировка и размер страницы")
+    void getProductsAfter_invalidArguments_throws() {
+        assertThatThrownBy(() -> productService.getProductsAfter("name,asc", "Item", 5))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> productService.getProductsAfter("price,asc", "дорого,5", 5))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> productService.getProductsAfter("quantity,asc", null, 5))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> productService.getProductsAfter("name,asc", null, ProductService.MAX_CURSOR_PAGE_SIZE + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("searchProducts: запросы, отличающиеся регистром и пунктуацией, идут в БД один раз")
+    void searchProducts_cachedPerNormalizedQuery() {
+        ProductSearchQuery query = ProductSearchQuery.of("  Микроволн, ПЕЧЬ ", 100.0, null, true, ProductSearchSort.RELEVANCE, 0, 1);
+        when(productRepo.search(query)).thenReturn(List.of(
+                new ProductListRow(1, uuid, "Микроволновая печь", 5, 300.0),
+                new ProductListRow(2, UUID.randomUUID(), "Печь микроволновая", 2, 400.0)));
+        when(stockView.quantities(List.of(uuid))).thenReturn(Map.of(uuid, 3));
+
+        ProductSearchPage page = productService.searchProducts(query);
+        ProductSearchPage same = productService.searchProducts(
+                ProductSearchQuery.of("микроволн печь", 100.0, null, true, ProductSearchSort.RELEVANCE, 0, 1));
+
+        assertThat(query.terms()).containsExactly("микроволн", "печь");
+        assertThat(query.tsQuery()).isEqualTo("микроволн:* & печь:*");
+        assertThat(page.getItems()).extracting(ProductDto::getArticleId).containsExactly(uuid);
+        assertThat(page.getItems().getFirst().getQuantity()).isEqualTo(3);
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(same).isEqualTo(page);
+        verify(productRepo, times(1)).search(any());
+    }
+
+    @Test
+    @DisplayName("searchProducts: некорректные размер страницы, номер страницы, цены и сортировка")
+    void searchProducts_invalidArguments_throws() {
+        assertThatThrownBy(() -> ProductSearchQuery.of("a", null, null, false, ProductSearchSort.RELEVANCE, 0, ProductSearchQuery.MAX_PAGE_SIZE + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ProductSearchQuery.of("a", null, null, false, ProductSearchSort.RELEVANCE, ProductSearchQuery.MAX_PAGE + 1, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ProductSearchQuery.of("a", 10.0, 5.0, false, ProductSearchSort.RELEVANCE, 0, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ProductSearchSort.of("rating"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(ProductSearchSort.of("Price_Desc")).isEqualTo(ProductSearchSort.PRICE_DESC);
+    }
+
     @Test
     @DisplayName("getProduct")
     void getProduct_cases() {
@@ -173,8 +425,9 @@ class ProductServiceTest {
         when(productMapper.toDto(product)).thenReturn(dto);
         assertThat(productService.getProduct(uuid)).isEqualTo(dto);
 
-        when(productRepo.findByArticleId(uuid)).thenReturn(Optional.empty());
-        assertThatThrownBy(() -> productService.getProduct(uuid))
+        UUID missing = UUID.randomUUID();
+        when(productRepo.findByArticleId(missing)).thenReturn(Optional.empty());
+        assertThatThrownBy(() -> productService.getProduct(missing))
                 .isInstanceOf(ProductNotFoundException.class);
     }
 
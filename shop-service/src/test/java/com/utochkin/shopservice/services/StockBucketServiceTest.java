@@ -0,0 +1,136 @@
+package com.utochkin.shopservice.services;
+
+import com.utochkin.shopservice.models.ProductStockBucket;
+import com.utochkin.shopservice.repositories.ProductStockBucketRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(
+        includeFilters = @ComponentScan.Filter(
+                type = FilterType.ASSIGNABLE_TYPE,
+                classes = {ProductStockBucketRepository.class, StockBucketService.class}
+        )
+)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.liquibase.enabled=false"
+})
+@ActiveProfiles("test")
+class StockBucketServiceTest {
+
+    @Autowired
+    private StockBucketService stockBucketService;
+
+    @Autowired
+    private ProductStockBucketRepository bucketRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    private List<Integer> bucketQuantities(UUID articleId) {
+        em.flush();
+        em.clear();
+        return bucketRepository.findAllByArticleIdForUpdate(articleId).stream()
+                .map(ProductStockBucket::getQuantity)
+                .toList();
+    }
+
+    @Test
+    @DisplayName("distribute → раскладывает остаток поровну, остаток от деления уходит в первые бакеты")
+    void distribute_splitsEvenly() {
+        UUID id = UUID.randomUUID();
+
+        stockBucketService.distribute(id, 10, 4);
+
+        assertThat(bucketQuantities(id)).containsExactly(3, 3, 2, 2);
+        assertThat(stockBucketService.findSharded(List.of(id, UUID.randomUUID()))).isEqualTo(Set.of(id));
+        assertThat(stockBucketService.sumQuantities(List.of(id))).isEqualTo(Map.of(id, 10));
+    }
+
+    @Test
+    @DisplayName("tryDecrement → списывает из одного бакета, если в нём хватает товара")
+    void tryDecrement_singleBucket() {
+        UUID id = UUID.randomUUID();
+        stockBucketService.distribute(id, 20, 4);
+
+        assertThat(stockBucketService.tryDecrement(id, 3)).isTrue();
+
+        assertThat(bucketQuantities(id)).containsExactlyInAnyOrder(2, 5, 5, 5);
+    }
+
+    @Test
+    @DisplayName("tryDecrement → списывает по нескольким бакетам, когда ни в одном не хватает целиком")
+    void tryDecrement_drainsAcrossBuckets() {
+        UUID id = UUID.randomUUID();
+        stockBucketService.distribute(id, 8, 4);
+
+        assertThat(stockBucketService.tryDecrement(id, 5)).isTrue();
+
+        assertThat(bucketQuantities(id).stream().mapToInt(Integer::intValue).sum()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("tryDecrement → не списывает ничего, если в сумме товара не хватает")
+    void tryDecrement_insufficient() {
+        UUID id = UUID.randomUUID();
+        stockBucketService.distribute(id, 4, 2);
+
+        assertThat(stockBucketService.tryDecrement(id, 5)).isFalse();
+
+        assertThat(bucketQuantities(id)).containsExactly(2, 2);
+    }
+
+    @Test
+    @DisplayName("increment → возвращает товар в один из бакетов, для нешардированного артикула — false")
+    void increment_addsToBucket() {
+        UUID id = UUID.randomUUID();
+        stockBucketService.distribute(id, 4, 2);
+
+        assertThat(stockBucketService.increment(id, 3)).isTrue();
+        assertThat(stockBucketService.increment(UUID.randomUUID(), 3)).isFalse();
+
+        assertThat(bucketQuantities(id).stream().mapToInt(Integer::intValue).sum()).isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("rebalance → выравнивает опустевшие бакеты и не трогает ровные")
+    void rebalance_levelsDrainedBuckets() {
+        UUID id = UUID.randomUUID();
+        stockBucketService.distribute(id, 40, 4);
+        assertThat(stockBucketService.rebalance(id)).isFalse();
+
+        bucketRepository.decrementBucket(id, 0, 10);
+        bucketRepository.decrementBucket(id, 1, 9);
+        em.clear();
+
+        assertThat(stockBucketService.rebalance(id)).isTrue();
+        assertThat(bucketQuantities(id)).containsExactly(6, 5, 5, 5);
+    }
+
+    @Test
+    @DisplayName("removeBuckets → удаляет бакеты и возвращает их суммарный остаток")
+    void removeBuckets_returnsTotal() {
+        UUID id = UUID.randomUUID();
+        stockBucketService.distribute(id, 9, 3);
+
+        assertThat(stockBucketService.removeBuckets(id)).isEqualTo(9);
+        assertThat(stockBucketService.bucketCount(id)).isZero();
+    }
+}
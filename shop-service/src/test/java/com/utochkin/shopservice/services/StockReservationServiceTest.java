@@ -0,0 +1,162 @@
+package com.utochkin.shopservice.services;
+
+import com.utochkin.shopservice.exceptions.ReservationNotFoundException;
+import com.utochkin.shopservice.exceptions.ReservationReleasedException;
+import com.utochkin.shopservice.models.ReservationStatus;
+import com.utochkin.shopservice.models.ReservedItem;
+import com.utochkin.shopservice.models.StockReservation;
+import com.utochkin.shopservice.repositories.StockReservationRepository;
+import com.utochkin.shopservice.requests.OrderRequest;
+import com.utochkin.shopservice.requests.ReservationRequest;
+import com.utochkin.shopservice.requests.ReserveOrderResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockReservationServiceTest {
+
+    @Mock
+    private StockReservationRepository reservationRepository;
+
+    @Mock
+    private ProductService productService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private StockReservationService reservationService;
+
+    private final UUID reservationId = UUID.randomUUID();
+    private final UUID articleId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        reservationService = new StockReservationService(reservationRepository, productService, meterRegistry, Duration.ofMinutes(15));
+    }
+
+    private StockReservation reservation(ReservationStatus status, UUID id, int quantity) {
+        return StockReservation.builder()
+                .reservationId(id)
+                .status(status)
+                .totalAmount(100.0)
+                .expiresAt(Instant.now())
+                .createdAt(Instant.now())
+                .items(new ArrayList<>(List.of(new ReservedItem(articleId, quantity))))
+                .build();
+    }
+
+    private double released(String reason) {
+        return meterRegistry.counter("shop.reservations.released", "reason", reason).count();
+    }
+
+    @Test
+    @DisplayName("reserve → списывает товар и сохраняет резерв HELD со сроком ttl")
+    void reserve_savesHeldReservation() {
+        List<OrderRequest> items = List.of(new OrderRequest(articleId, 2));
+        when(reservationRepository.findById(reservationId)).thenReturn(Optional.empty());
+        when(productService.reserveOrder(items)).thenReturn(new ReserveOrderResponse(true, 20.0, List.of()));
+
+        Instant before = Instant.now();
+        ReserveOrderResponse response = reservationService.reserve(new ReservationRequest(reservationId, items));
+
+        ArgumentCaptor<StockReservation> saved = ArgumentCaptor.forClass(StockReservation.class);
+        verify(reservationRepository).save(saved.capture());
+        assertThat(response.getReserved()).isTrue();
+        assertThat(saved.getValue().getStatus()).isEqualTo(ReservationStatus.HELD);
+        assertThat(saved.getValue().getExpiresAt()).isAfterOrEqualTo(before.plus(Duration.ofMinutes(15)));
+        assertThat(saved.getValue().getItems()).extracting(ReservedItem::getQuantity).containsExactly(2);
+        assertThat(meterRegistry.counter("shop.reservations.held").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("reserve → повтор с тем же id не списывает товар второй раз, снятый резерв не считается")
+    void reserve_repeatedRequestIsIdempotent() {
+        when(reservationRepository.findById(reservationId)).thenReturn(Optional.of(reservation(ReservationStatus.HELD, reservationId, 2)));
+
+        ReserveOrderResponse response = reservationService.reserve(new ReservationRequest(reservationId, List.of(new OrderRequest(articleId, 2))));
+
+        assertThat(response.getReserved()).isTrue();
+        assertThat(response.getTotalAmount()).isEqualTo(100.0);
+
+        when(reservationRepository.findById(reservationId)).thenReturn(Optional.of(reservation(ReservationStatus.RELEASED, reservationId, 2)));
+        assertThat(reservationService.reserve(new ReservationRequest(reservationId, List.of(new OrderRequest(articleId, 2)))).getReserved()).isFalse();
+
+        verifyNoInteractions(productService);
+        verify(reservationRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("confirm → снятый резерв даёт ReservationReleasedException, неизвестный — ReservationNotFoundException")
+    void confirm_releasedOrMissing_throws() {
+        when(reservationRepository.compareAndSetStatus(eq(reservationId), eq(ReservationStatus.HELD), eq(ReservationStatus.CONFIRMED), any())).thenReturn(0);
+        when(reservationRepository.findById(reservationId)).thenReturn(Optional.of(reservation(ReservationStatus.RELEASED, reservationId, 2)));
+
+        assertThatThrownBy(() -> reservationService.confirm(reservationId)).isInstanceOf(ReservationReleasedException.class);
+
+        UUID unknown = UUID.randomUUID();
+        when(reservationRepository.findById(unknown)).thenReturn(Optional.empty());
+        assertThatThrownBy(() -> reservationService.confirm(unknown)).isInstanceOf(ReservationNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("release → возвращает товар один раз, повторный release ничего не возвращает")
+    void release_returnsStockOnce() {
+        when(reservationRepository.compareAndSetStatus(eq(reservationId), eq(ReservationStatus.HELD), eq(ReservationStatus.RELEASED), any())).thenReturn(1, 0);
+        when(reservationRepository.compareAndSetStatus(eq(reservationId), eq(ReservationStatus.CONFIRMED), eq(ReservationStatus.RELEASED), any())).thenReturn(0);
+        when(reservationRepository.findById(reservationId)).thenReturn(Optional.of(reservation(ReservationStatus.RELEASED, reservationId, 3)));
+        when(productService.returnStock(any())).thenReturn(List.of());
+
+        reservationService.release(reservationId);
+        reservationService.release(reservationId);
+
+        verify(productService, times(1)).returnStock(List.of(new OrderRequest(articleId, 3)));
+        assertThat(released("cancelled")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("releaseExpired → снимает пачку просроченных резервов и возвращает товар одним вызовом")
+    void releaseExpired_releasesBatch() {
+        StockReservation first = reservation(ReservationStatus.HELD, UUID.randomUUID(), 1);
+        StockReservation second = reservation(ReservationStatus.HELD, UUID.randomUUID(), 4);
+        when(reservationRepository.findExpiredForUpdate(any(), any())).thenReturn(List.of(first, second));
+        when(productService.returnStock(any())).thenReturn(List.of(articleId));
+
+        assertThat(reservationService.releaseExpired(10)).isEqualTo(2);
+
+        assertThat(first.getStatus()).isEqualTo(ReservationStatus.RELEASED);
+        assertThat(second.getStatus()).isEqualTo(ReservationStatus.RELEASED);
+        verify(productService).returnStock(List.of(new OrderRequest(articleId, 1), new OrderRequest(articleId, 4)));
+        assertThat(released("expired")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("сборщик берёт пачки, пока они полные, и не больше sweep-max-batches за проход")
+    void sweeper_stopsOnPartialBatch() {
+        StockReservationService service = mock(StockReservationService.class);
+        when(service.releaseExpired(2)).thenReturn(2, 2, 1);
+        StockReservationSweeper sweeper = new StockReservationSweeper(service, meterRegistry, 2, 10);
+
+        assertThat(sweeper.sweep()).isEqualTo(5);
+
+        when(service.releaseExpired(2)).thenReturn(2);
+        assertThat(new StockReservationSweeper(service, meterRegistry, 2, 3).sweep()).isEqualTo(6);
+    }
+}
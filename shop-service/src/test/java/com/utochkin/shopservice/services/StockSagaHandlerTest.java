@@ -0,0 +1,120 @@
+package com.utochkin.shopservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utochkin.shopservice.dto.SagaMessage;
+import com.utochkin.shopservice.exceptions.ReservationNotFoundException;
+import com.utochkin.shopservice.exceptions.ReservationReleasedException;
+import com.utochkin.shopservice.models.SagaMessageType;
+import com.utochkin.shopservice.requests.OrderRequest;
+import com.utochkin.shopservice.requests.ReservationRequest;
+import com.utochkin.shopservice.requests.ReserveOrderResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class StockSagaHandlerTest {
+
+    @Mock
+    private StockReservationService reservationService;
+
+    @Mock
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private StockSagaHandler handler;
+
+    private final UUID orderUuid = UUID.randomUUID();
+    private final List<OrderRequest> items = List.of(new OrderRequest(UUID.randomUUID(), 2));
+
+    @BeforeEach
+    void setUp() {
+        handler = new StockSagaHandler(reservationService, kafkaTemplate, objectMapper, 1000);
+        given(kafkaTemplate.send(anyString(), anyString(), anyString())).willReturn(CompletableFuture.completedFuture(null));
+    }
+
+    private String command(SagaMessageType type) throws Exception {
+        return objectMapper.writeValueAsString(SagaMessage.builder().orderUuid(orderUuid).type(type).items(items).build());
+    }
+
+    private SagaMessage sentReply() throws Exception {
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        then(kafkaTemplate).should().send(eq("topic-shop-replies"), eq(orderUuid.toString()), payload.capture());
+        return objectMapper.readValue(payload.getValue(), SagaMessage.class);
+    }
+
+    @Test
+    @DisplayName("RESERVE_STOCK → резерв по orderUuid, в ответе STOCK_RESERVED с суммой заказа")
+    void reserve_repliesReserved() throws Exception {
+        given(reservationService.reserve(new ReservationRequest(orderUuid, items)))
+                .willReturn(new ReserveOrderResponse(true, 300.0, List.of()));
+
+        handler.onCommand(command(SagaMessageType.RESERVE_STOCK));
+
+        SagaMessage reply = sentReply();
+        assertThat(reply.getType()).isEqualTo(SagaMessageType.STOCK_RESERVED);
+        assertThat(reply.getTotalAmount()).isEqualTo(300.0);
+    }
+
+    @Test
+    @DisplayName("RESERVE_STOCK → товара не хватает, в ответе STOCK_REJECTED")
+    void reserve_repliesRejected() throws Exception {
+        given(reservationService.reserve(any())).willReturn(new ReserveOrderResponse(false, null, List.of()));
+
+        handler.onCommand(command(SagaMessageType.RESERVE_STOCK));
+
+        assertThat(sentReply().getType()).isEqualTo(SagaMessageType.STOCK_REJECTED);
+    }
+
+    @Test
+    @DisplayName("CONFIRM_RESERVATION → снятый по сроку резерв отвечает RESERVATION_EXPIRED")
+    void confirm_mapsReleasedToExpired() throws Exception {
+        willThrow(new ReservationReleasedException("снят")).given(reservationService).confirm(orderUuid);
+
+        handler.onCommand(command(SagaMessageType.CONFIRM_RESERVATION));
+
+        assertThat(sentReply().getType()).isEqualTo(SagaMessageType.RESERVATION_EXPIRED);
+    }
+
+    @Test
+    @DisplayName("RELEASE_RESERVATION → резерв снимается без ответа, отсутствие резерва не ошибка")
+    void release_withoutReply() throws Exception {
+        willThrow(new ReservationNotFoundException("нет")).given(reservationService).release(orderUuid);
+
+        handler.onCommand(command(SagaMessageType.RELEASE_RESERVATION));
+
+        then(reservationService).should().release(orderUuid);
+        then(kafkaTemplate).shouldHaveNoInteractions();
+    }
+
+    @Test
+    @DisplayName("ответ не отправлен → исключение, и Kafka доставит команду повторно")
+    void reply_failureRethrown() throws Exception {
+        given(reservationService.reserve(any())).willReturn(new ReserveOrderResponse(true, 300.0, List.of()));
+        given(kafkaTemplate.send(anyString(), anyString(), anyString()))
+                .willReturn(CompletableFuture.failedFuture(new RuntimeException("broker down")));
+
+        assertThrows(IllegalStateException.class, () -> handler.onCommand(command(SagaMessageType.RESERVE_STOCK)));
+    }
+}
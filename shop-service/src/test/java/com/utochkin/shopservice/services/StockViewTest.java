@@ -0,0 +1,120 @@
+package com.utochkin.shopservice.services;
+
+import com.utochkin.shopservice.repositories.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+
+@ExtendWith(MockitoExtension.class)
+class StockViewTest {
+
+    private static final Duration TTL = Duration.ofMinutes(1);
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private StockBucketService stockBucketService;
+
+    private StockView stockView;
+
+    private final UUID cachedId = UUID.randomUUID();
+    private final UUID missingId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        stockView = new StockView(redisTemplate, productRepository, stockBucketService, true, TTL);
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(Arrays.asList(rows));
+    }
+
+    @Test
+    @DisplayName("quantities → счётчики из Redis, промахи читаются из БД и сохраняются с TTL")
+    void quantities_loadsMissesFromDatabase() {
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.multiGet(List.of(StockView.KEY_PREFIX + cachedId, StockView.KEY_PREFIX + missingId)))
+                .willReturn(Arrays.asList("3", null));
+        given(productRepository.findQuantities(List.of(missingId))).willReturn(rows(new Object[]{missingId, 0}));
+        given(stockBucketService.sumQuantities(any())).willReturn(Map.of(missingId, 12));
+
+        Map<UUID, Integer> quantities = stockView.quantities(List.of(cachedId, missingId));
+
+        assertThat(quantities).isEqualTo(Map.of(cachedId, 3, missingId, 12));
+        then(valueOperations).should().setIfAbsent(StockView.KEY_PREFIX + missingId, "12", TTL);
+    }
+
+    @Test
+    @DisplayName("quantities → при недоступном Redis остатки читаются из БД")
+    void quantities_redisDown_fallsBackToDatabase() {
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.multiGet(anyList())).willThrow(new RedisConnectionFailureException("down"));
+        given(productRepository.findQuantities(List.of(cachedId))).willReturn(rows(new Object[]{cachedId, 7}));
+        given(stockBucketService.sumQuantities(any())).willReturn(Map.of());
+
+        assertThat(stockView.quantities(List.of(cachedId))).isEqualTo(Map.of(cachedId, 7));
+    }
+
+    @Test
+    @DisplayName("quantities → выключенный кэш остатков не обращается к Redis")
+    void quantities_disabled_readsDatabase() {
+        StockView disabled = new StockView(redisTemplate, productRepository, stockBucketService, false, TTL);
+        given(productRepository.findQuantities(List.of(cachedId))).willReturn(rows(new Object[]{cachedId, 7}));
+        given(stockBucketService.sumQuantities(any())).willReturn(Map.of());
+
+        assertThat(disabled.quantities(List.of(cachedId))).isEqualTo(Map.of(cachedId, 7));
+
+        disabled.adjustAfterCommit(Map.of(cachedId, -1));
+        then(redisTemplate).shouldHaveNoInteractions();
+    }
+
+    @Test
+    @DisplayName("adjustAfterCommit → вне транзакции сдвигает счётчик сразу и только существующий")
+    @SuppressWarnings("unchecked")
+    void adjustAfterCommit_withoutTransaction_runsImmediately() {
+        stockView.adjustAfterCommit(Map.of(cachedId, -2));
+
+        then(redisTemplate).should().execute(any(RedisScript.class), eq(List.of(StockView.KEY_PREFIX + cachedId)), eq("-2"));
+    }
+
+    @Test
+    @DisplayName("evictAfterCommit → ошибка Redis не пробрасывается")
+    void evictAfterCommit_redisError_swallowed() {
+        given(redisTemplate.delete(any(Collection.class))).willThrow(new RedisConnectionFailureException("down"));
+
+        stockView.evictAfterCommit(List.of(cachedId));
+
+        then(valueOperations).should(never()).setIfAbsent(anyString(), anyString(), any(Duration.class));
+    }
+}